@@ -119,4 +119,10 @@ public class JdbcSplit
     {
         return this;
     }
+
+    @Override
+    public boolean isBlockingIo()
+    {
+        return true;
+    }
 }
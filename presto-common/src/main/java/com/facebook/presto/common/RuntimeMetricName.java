@@ -76,4 +76,16 @@ public class RuntimeMetricName
     public static final String DIRECTORY_LISTING_CACHE_MISS = "directoryListingCacheMiss";
     public static final String DIRECTORY_LISTING_TIME_NANOS = "directoryListingTimeNanos";
     public static final String FILES_READ_COUNT = "filesReadCount";
+    // Number of times a partial aggregation switched to passing rows through without aggregating them
+    public static final String PARTIAL_AGGREGATION_DISABLED_COUNT = "partialAggregationDisabledCount";
+    // Rows passed through a partial aggregation without being aggregated
+    public static final String PARTIAL_AGGREGATION_SKIPPED_INPUT_ROWS = "partialAggregationSkippedInputRows";
+    // Partial aggregation buffers flushed before reaching their memory limit because of a poor rows reduction ratio
+    public static final String PARTIAL_AGGREGATION_EARLY_FLUSH_COUNT = "partialAggregationEarlyFlushCount";
+    // Scanned rows dropped because their join keys are not in the Bloom filter of a dynamic filter
+    public static final String DYNAMIC_FILTER_BLOOM_FILTERED_ROWS = "dynamicFilterBloomFilteredRows";
+    // Partitioning keys of a partitioned output that make up at least 1% of its sampled rows
+    public static final String PARTITIONED_OUTPUT_HOT_KEY_COUNT = "partitionedOutputHotKeyCount";
+    // Estimated rows of a partitioned output that have one of its hot partitioning keys
+    public static final String PARTITIONED_OUTPUT_HOT_KEY_ROWS = "partitionedOutputHotKeyRows";
 }
@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.common.block;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+
+import static com.facebook.presto.common.block.EncoderUtil.decodeNullBits;
+import static com.facebook.presto.common.block.EncoderUtil.encodeNullsAsBits;
+
+/**
+ * Frame of reference encoding of long values. The non null values are written as their difference
+ * from the smallest value, using as many bits per value as the largest difference needs.
+ * Blocks are read back as {@link LongArrayBlock}s. The layout after the null bits is the smallest
+ * value, the number of bits per value as a byte, and the packed differences as little endian longs.
+ */
+public class BitPackedLongArrayBlockEncoding
+        implements BlockEncoding
+{
+    public static final String NAME = "LONG_ARRAY_BIT_PACKED";
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public void writeBlock(BlockEncodingSerde blockEncodingSerde, SliceOutput sliceOutput, Block block)
+    {
+        int positionCount = block.getPositionCount();
+        sliceOutput.appendInt(positionCount);
+
+        encodeNullsAsBits(sliceOutput, block);
+
+        long[] values = new long[positionCount];
+        int valueCount = 0;
+        for (int position = 0; position < positionCount; position++) {
+            if (!block.isNull(position)) {
+                values[valueCount] = block.getLong(position);
+                valueCount++;
+            }
+        }
+        writeValues(sliceOutput, Slices.wrappedLongArray(values, 0, valueCount), valueCount);
+    }
+
+    @Override
+    public Block readBlock(BlockEncodingSerde blockEncodingSerde, SliceInput sliceInput)
+    {
+        int positionCount = sliceInput.readInt();
+
+        boolean[] valueIsNull = decodeNullBits(sliceInput, positionCount).orElse(null);
+
+        long[] values = new long[positionCount];
+        int valueCount = positionCount;
+        if (valueIsNull != null) {
+            for (int position = 0; position < positionCount; position++) {
+                if (valueIsNull[position]) {
+                    valueCount--;
+                }
+            }
+        }
+
+        if (valueCount > 0) {
+            long minValue = sliceInput.readLong();
+            int bitWidth = sliceInput.readByte();
+            long[] words = new long[getPackedWordCount(valueCount, bitWidth)];
+            sliceInput.readBytes(Slices.wrappedLongArray(words));
+
+            long mask = bitWidth == Long.SIZE ? -1 : (1L << bitWidth) - 1;
+            int valueIndex = 0;
+            for (int position = 0; position < positionCount; position++) {
+                if (valueIsNull == null || !valueIsNull[position]) {
+                    values[position] = minValue + unpack(words, valueIndex, bitWidth, mask);
+                    valueIndex++;
+                }
+            }
+        }
+
+        return new LongArrayBlock(0, positionCount, valueIsNull, values);
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeValues} writes for these values.
+     *
+     * @param values little endian longs
+     */
+    public static int getSerializedValuesSizeInBytes(Slice values, int valueCount)
+    {
+        if (valueCount == 0) {
+            return 0;
+        }
+        return Long.BYTES + Byte.BYTES + getPackedWordCount(valueCount, getBitWidth(values, valueCount)) * Long.BYTES;
+    }
+
+    /**
+     * Writes the packed non null values, which follow the null bits of the block.
+     *
+     * @param values little endian longs
+     */
+    public static void writeValues(SliceOutput sliceOutput, Slice values, int valueCount)
+    {
+        if (valueCount == 0) {
+            return;
+        }
+
+        long minValue = getMinValue(values, valueCount);
+        int bitWidth = getBitWidth(values, valueCount);
+        long[] words = new long[getPackedWordCount(valueCount, bitWidth)];
+        for (int i = 0; bitWidth > 0 && i < valueCount; i++) {
+            long delta = values.getLong(i * Long.BYTES) - minValue;
+            long bitOffset = (long) i * bitWidth;
+            int word = (int) (bitOffset >>> 6);
+            int shift = (int) (bitOffset & 63);
+            words[word] |= delta << shift;
+            if (shift + bitWidth > Long.SIZE) {
+                words[word + 1] |= delta >>> (Long.SIZE - shift);
+            }
+        }
+
+        sliceOutput.appendLong(minValue);
+        sliceOutput.appendByte(bitWidth);
+        sliceOutput.writeBytes(Slices.wrappedLongArray(words));
+    }
+
+    private static long unpack(long[] words, int index, int bitWidth, long mask)
+    {
+        if (bitWidth == 0) {
+            return 0;
+        }
+        long bitOffset = (long) index * bitWidth;
+        int word = (int) (bitOffset >>> 6);
+        int shift = (int) (bitOffset & 63);
+        long value = words[word] >>> shift;
+        if (shift + bitWidth > Long.SIZE) {
+            value |= words[word + 1] << (Long.SIZE - shift);
+        }
+        return value & mask;
+    }
+
+    private static long getMinValue(Slice values, int valueCount)
+    {
+        long minValue = Long.MAX_VALUE;
+        for (int i = 0; i < valueCount; i++) {
+            minValue = Math.min(minValue, values.getLong(i * Long.BYTES));
+        }
+        return minValue;
+    }
+
+    private static int getBitWidth(Slice values, int valueCount)
+    {
+        long minValue = Long.MAX_VALUE;
+        long maxValue = Long.MIN_VALUE;
+        for (int i = 0; i < valueCount; i++) {
+            long value = values.getLong(i * Long.BYTES);
+            minValue = Math.min(minValue, value);
+            maxValue = Math.max(maxValue, value);
+        }
+        // the difference is unsigned, as it can be larger than Long.MAX_VALUE
+        return Long.SIZE - Long.numberOfLeadingZeros(maxValue - minValue);
+    }
+
+    private static int getPackedWordCount(int valueCount, int bitWidth)
+    {
+        return (int) (((long) valueCount * bitWidth + Long.SIZE - 1) / Long.SIZE);
+    }
+}
@@ -60,9 +60,23 @@ public class IntArrayBlockEncoding
             sliceInput.readBytes(Slices.wrappedIntArray(values));
         }
         else {
-            for (int position = 0; position < values.length; position++) {
+            // read the non null values in bulk and then move them to their positions,
+            // starting from the end so that no value is overwritten before it is moved
+            int nonNullCount = 0;
+            for (int position = 0; position < positionCount; position++) {
                 if (!valueIsNull[position]) {
-                    values[position] = sliceInput.readInt();
+                    nonNullCount++;
+                }
+            }
+            sliceInput.readBytes(Slices.wrappedIntArray(values, 0, nonNullCount));
+            int valueIndex = nonNullCount - 1;
+            for (int position = positionCount - 1; position > valueIndex; position--) {
+                if (valueIsNull[position]) {
+                    values[position] = 0;
+                }
+                else {
+                    values[position] = values[valueIndex];
+                    valueIndex--;
                 }
             }
         }
@@ -60,9 +60,23 @@ public class LongArrayBlockEncoding
             sliceInput.readBytes(Slices.wrappedLongArray(values));
         }
         else {
-            for (int position = 0; position < values.length; position++) {
+            // read the non null values in bulk and then move them to their positions,
+            // starting from the end so that no value is overwritten before it is moved
+            int nonNullCount = 0;
+            for (int position = 0; position < positionCount; position++) {
                 if (!valueIsNull[position]) {
-                    values[position] = sliceInput.readLong();
+                    nonNullCount++;
+                }
+            }
+            sliceInput.readBytes(Slices.wrappedLongArray(values, 0, nonNullCount));
+            int valueIndex = nonNullCount - 1;
+            for (int position = positionCount - 1; position > valueIndex; position--) {
+                if (valueIsNull[position]) {
+                    values[position] = 0;
+                }
+                else {
+                    values[position] = values[valueIndex];
+                    valueIndex--;
                 }
             }
         }
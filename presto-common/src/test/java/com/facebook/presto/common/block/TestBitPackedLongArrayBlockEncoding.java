@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.common.block;
+
+import io.airlift.slice.DynamicSliceOutput;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestBitPackedLongArrayBlockEncoding
+{
+    private final BlockEncodingSerde blockEncodingSerde = new TestingBlockEncodingSerde();
+    private final BlockEncoding encoding = new BitPackedLongArrayBlockEncoding();
+
+    @Test
+    public void testRoundTrip()
+    {
+        assertRoundTrip(new long[] {7, 7, 7, 7}, null);
+        assertRoundTrip(new long[] {1000, 1001, 1003, 1002, 1000}, null);
+        assertRoundTrip(new long[] {-3, 0, 5, 0, 12}, new boolean[] {false, true, false, true, false});
+        assertRoundTrip(new long[] {0, 0, 0}, new boolean[] {true, true, true});
+        assertRoundTrip(new long[] {Long.MIN_VALUE, 0, Long.MAX_VALUE}, null);
+        assertRoundTrip(new long[] {Long.MIN_VALUE, -1, Long.MAX_VALUE, 1}, new boolean[] {false, true, false, false});
+
+        long[] values = new long[1001];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i * 31L) % 127 - 50;
+        }
+        assertRoundTrip(values, null);
+    }
+
+    @Test
+    public void testSmallRangeIsPacked()
+    {
+        long[] values = new long[1024];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1_000_000_000L + i % 16;
+        }
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        encoding.writeBlock(blockEncodingSerde, sliceOutput, new LongArrayBlock(values.length, Optional.empty(), values));
+        // 4 bits per value after the position count, null flag, min value and bit width
+        assertEquals(sliceOutput.size(), Integer.BYTES + Byte.BYTES + Long.BYTES + Byte.BYTES + values.length / 2);
+        assertTrue(sliceOutput.size() < values.length * Long.BYTES);
+    }
+
+    private void assertRoundTrip(long[] values, boolean[] valueIsNull)
+    {
+        Block expected = new LongArrayBlock(values.length, Optional.ofNullable(valueIsNull), values);
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        encoding.writeBlock(blockEncodingSerde, sliceOutput, expected);
+        Block actual = encoding.readBlock(blockEncodingSerde, sliceOutput.slice().getInput());
+
+        assertEquals(actual.getPositionCount(), expected.getPositionCount());
+        for (int position = 0; position < expected.getPositionCount(); position++) {
+            assertEquals(actual.isNull(position), expected.isNull(position));
+            if (!expected.isNull(position)) {
+                assertEquals(BIGINT.getLong(actual, position), BIGINT.getLong(expected, position));
+            }
+        }
+    }
+}
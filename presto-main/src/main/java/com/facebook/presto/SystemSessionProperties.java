@@ -132,6 +132,7 @@ public final class SystemSessionProperties
     public static final String PUSH_TABLE_WRITE_THROUGH_UNION = "push_table_write_through_union";
     public static final String EXECUTION_POLICY = "execution_policy";
     public static final String DICTIONARY_AGGREGATION = "dictionary_aggregation";
+    public static final String FIXED_WIDTH_GROUP_BY_HASH_ENABLED = "fixed_width_group_by_hash_enabled";
     public static final String PLAN_WITH_TABLE_NODE_PARTITIONING = "plan_with_table_node_partitioning";
     public static final String SPATIAL_JOIN = "spatial_join";
     public static final String SPATIAL_PARTITIONING_TABLE_NAME = "spatial_partitioning_table_name";
@@ -201,6 +202,14 @@ public final class SystemSessionProperties
     public static final String PUSHDOWN_SUBFIELDS_FROM_LAMBDA_ENABLED = "pushdown_subfields_from_lambda_enabled";
     public static final String INDEX_LOADER_TIMEOUT = "index_loader_timeout";
     public static final String OPTIMIZED_REPARTITIONING_ENABLED = "optimized_repartitioning";
+    public static final String OPTIMIZED_REPARTITIONING_BIT_PACKING_ENABLED = "optimized_repartitioning_bit_packing_enabled";
+    public static final String PARTITIONED_OUTPUT_HOT_KEY_DETECTION_ENABLED = "partitioned_output_hot_key_detection_enabled";
+    public static final String LOCK_FREE_LOCAL_EXCHANGE_ENABLED = "lock_free_local_exchange_enabled";
+    public static final String OPTIMIZED_REPARTITIONING_DICTIONARY_ENCODING_ENABLED = "optimized_repartitioning_dictionary_encoding_enabled";
+    public static final String EXCHANGE_PAGE_COALESCING_ENABLED = "exchange_page_coalescing_enabled";
+    public static final String EXCHANGE_MIN_OUTPUT_PAGE_SIZE = "exchange_min_output_page_size";
+    public static final String EXCHANGE_MIN_OUTPUT_PAGE_ROW_COUNT = "exchange_min_output_page_row_count";
+    public static final String EXCHANGE_MAX_OUTPUT_PAGE_SIZE = "exchange_max_output_page_size";
     public static final String AGGREGATION_PARTITIONING_MERGING_STRATEGY = "aggregation_partitioning_merging_strategy";
     public static final String LIST_BUILT_IN_FUNCTIONS_ONLY = "list_built_in_functions_only";
     public static final String PARTITIONING_PRECISION_STRATEGY = "partitioning_precision_strategy";
@@ -216,6 +225,7 @@ public final class SystemSessionProperties
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT = "dynamic_filtering_max_per_driver_row_count";
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE = "dynamic_filtering_max_per_driver_size";
     public static final String DYNAMIC_FILTERING_RANGE_ROW_LIMIT_PER_DRIVER = "dynamic_filtering_range_row_limit_per_driver";
+    public static final String DYNAMIC_FILTERING_MAX_BLOOM_FILTER_SIZE_PER_DRIVER = "dynamic_filtering_max_bloom_filter_size_per_driver";
     public static final String FRAGMENT_RESULT_CACHING_ENABLED = "fragment_result_caching_enabled";
     public static final String INLINE_SQL_FUNCTIONS = "inline_sql_functions";
     public static final String REMOTE_FUNCTIONS_ENABLED = "remote_functions_enabled";
@@ -326,6 +336,8 @@ public final class SystemSessionProperties
     public static final String INLINE_PROJECTIONS_ON_VALUES = "inline_projections_on_values";
     public static final String INCLUDE_VALUES_NODE_IN_CONNECTOR_OPTIMIZER = "include_values_node_in_connector_optimizer";
     public static final String SINGLE_NODE_EXECUTION_ENABLED = "single_node_execution_enabled";
+    public static final String JOIN_HASH_TABLE_OFF_HEAP_ENABLED = "join_hash_table_off_heap_enabled";
+    public static final String JOIN_HASH_BUILD_PARALLELISM = "join_hash_build_parallelism";
 
     // TODO: Native execution related session properties that are temporarily put here. They will be relocated in the future.
     public static final String NATIVE_AGGREGATION_SPILL_ALL = "native_aggregation_spill_all";
@@ -651,6 +663,11 @@ public final class SystemSessionProperties
                         "Enable optimization for aggregations on dictionaries",
                         featuresConfig.isDictionaryAggregation(),
                         false),
+                booleanProperty(
+                        FIXED_WIDTH_GROUP_BY_HASH_ENABLED,
+                        "Use a specialized group by hash for two to four fixed width keys",
+                        featuresConfig.isFixedWidthGroupByHashEnabled(),
+                        false),
                 integerProperty(
                         INITIAL_SPLITS_PER_NODE,
                         "The number of splits each node will run per task, initially",
@@ -1080,6 +1097,54 @@ public final class SystemSessionProperties
                         "Experimental: Use optimized repartitioning",
                         featuresConfig.isOptimizedRepartitioningEnabled(),
                         false),
+                booleanProperty(
+                        OPTIMIZED_REPARTITIONING_BIT_PACKING_ENABLED,
+                        "Experimental: Bit pack bigint columns in pages written by optimized repartitioning. All workers reading the pages must support the encoding",
+                        featuresConfig.isOptimizedRepartitioningBitPackingEnabled(),
+                        false),
+                booleanProperty(
+                        PARTITIONED_OUTPUT_HOT_KEY_DETECTION_ENABLED,
+                        "Experimental: Sample the partitioning keys of partitioned outputs and report the keys that make up a large share of the rows",
+                        featuresConfig.isPartitionedOutputHotKeyDetectionEnabled(),
+                        false),
+                booleanProperty(
+                        LOCK_FREE_LOCAL_EXCHANGE_ENABLED,
+                        "Experimental: Hand pages between the pipelines of a local exchange through lock-free ring buffers",
+                        featuresConfig.isLockFreeLocalExchangeEnabled(),
+                        false),
+                booleanProperty(
+                        OPTIMIZED_REPARTITIONING_DICTIONARY_ENCODING_ENABLED,
+                        "Experimental: Keep dictionary encoded variable width columns dictionary encoded in optimized repartitioning",
+                        featuresConfig.isOptimizedRepartitioningDictionaryEncodingEnabled(),
+                        false),
+                booleanProperty(
+                        EXCHANGE_PAGE_COALESCING_ENABLED,
+                        "Experimental: Merge small pages and split large pages received by exchanges",
+                        featuresConfig.isExchangePageCoalescingEnabled(),
+                        false),
+                new PropertyMetadata<>(
+                        EXCHANGE_MIN_OUTPUT_PAGE_SIZE,
+                        "Experimental: Pages received by exchanges that are smaller than this and have fewer rows than the minimum row count are merged",
+                        VARCHAR,
+                        DataSize.class,
+                        featuresConfig.getExchangeMinOutputPageSize(),
+                        false,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
+                integerProperty(
+                        EXCHANGE_MIN_OUTPUT_PAGE_ROW_COUNT,
+                        "Experimental: Pages received by exchanges that have fewer rows than this and are smaller than the minimum size are merged",
+                        featuresConfig.getExchangeMinOutputPageRowCount(),
+                        false),
+                new PropertyMetadata<>(
+                        EXCHANGE_MAX_OUTPUT_PAGE_SIZE,
+                        "Experimental: Pages received by exchanges that are larger than this are split",
+                        VARCHAR,
+                        DataSize.class,
+                        featuresConfig.getExchangeMaxOutputPageSize(),
+                        false,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
                 new PropertyMetadata<>(
                         AGGREGATION_PARTITIONING_MERGING_STRATEGY,
                         format("Strategy to merge partition preference in aggregation node. Options are %s",
@@ -1179,6 +1244,15 @@ public final class SystemSessionProperties
                         "Maximum number of build-side rows per driver up to which min and max values will be collected for dynamic filtering",
                         featuresConfig.getDynamicFilteringRangeRowLimitPerDriver(),
                         false),
+                new PropertyMetadata<>(
+                        DYNAMIC_FILTERING_MAX_BLOOM_FILTER_SIZE_PER_DRIVER,
+                        "Maximum size of the Bloom filter collected per build-side column and driver once there are too many values for an exact dynamic filter",
+                        VARCHAR,
+                        DataSize.class,
+                        featuresConfig.getDynamicFilteringMaxBloomFilterSizePerDriver(),
+                        false,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
                 booleanProperty(
                         FRAGMENT_RESULT_CACHING_ENABLED,
                         "Enable fragment result caching and read/write leaf fragment result pages from/to cache when applicable",
@@ -1841,6 +1915,16 @@ public final class SystemSessionProperties
                         SINGLE_NODE_EXECUTION_ENABLED,
                         "Enable single node execution",
                         featuresConfig.isSingleNodeExecutionEnabled(),
+                        false),
+                booleanProperty(
+                        JOIN_HASH_TABLE_OFF_HEAP_ENABLED,
+                        "Keep the hash table of join build sides in off-heap memory",
+                        featuresConfig.isJoinHashTableOffHeapEnabled(),
+                        false),
+                integerProperty(
+                        JOIN_HASH_BUILD_PARALLELISM,
+                        "Maximum number of threads used to build the hash table of one join build partition",
+                        featuresConfig.getJoinHashBuildParallelism(),
                         false));
     }
 
@@ -2046,6 +2130,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DICTIONARY_AGGREGATION, Boolean.class);
     }
 
+    public static boolean isFixedWidthGroupByHashEnabled(Session session)
+    {
+        return session.getSystemProperty(FIXED_WIDTH_GROUP_BY_HASH_ENABLED, Boolean.class);
+    }
+
     public static boolean isOptimizeMetadataQueries(Session session)
     {
         return session.getSystemProperty(OPTIMIZE_METADATA_QUERIES, Boolean.class);
@@ -2293,6 +2382,18 @@ public final class SystemSessionProperties
         return session.getSystemProperty(SINGLE_NODE_EXECUTION_ENABLED, Boolean.class);
     }
 
+    public static boolean isJoinHashTableOffHeapEnabled(Session session)
+    {
+        return session.getSystemProperty(JOIN_HASH_TABLE_OFF_HEAP_ENABLED, Boolean.class);
+    }
+
+    public static int getJoinHashBuildParallelism(Session session)
+    {
+        int parallelism = session.getSystemProperty(JOIN_HASH_BUILD_PARALLELISM, Integer.class);
+        checkArgument(parallelism > 0, "%s must be positive: %s", JOIN_HASH_BUILD_PARALLELISM, parallelism);
+        return parallelism;
+    }
+
     public static boolean isPushAggregationThroughJoin(Session session)
     {
         return session.getSystemProperty(PUSH_PARTIAL_AGGREGATION_THROUGH_JOIN, Boolean.class);
@@ -2541,6 +2642,53 @@ public final class SystemSessionProperties
         return session.getSystemProperty(OPTIMIZED_REPARTITIONING_ENABLED, Boolean.class);
     }
 
+    public static boolean isOptimizedRepartitioningBitPackingEnabled(Session session)
+    {
+        return session.getSystemProperty(OPTIMIZED_REPARTITIONING_BIT_PACKING_ENABLED, Boolean.class);
+    }
+
+    public static boolean isPartitionedOutputHotKeyDetectionEnabled(Session session)
+    {
+        return session.getSystemProperty(PARTITIONED_OUTPUT_HOT_KEY_DETECTION_ENABLED, Boolean.class);
+    }
+
+    public static boolean isLockFreeLocalExchangeEnabled(Session session)
+    {
+        return session.getSystemProperty(LOCK_FREE_LOCAL_EXCHANGE_ENABLED, Boolean.class);
+    }
+
+    public static boolean isOptimizedRepartitioningDictionaryEncodingEnabled(Session session)
+    {
+        return session.getSystemProperty(OPTIMIZED_REPARTITIONING_DICTIONARY_ENCODING_ENABLED, Boolean.class);
+    }
+
+    public static boolean isExchangePageCoalescingEnabled(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_PAGE_COALESCING_ENABLED, Boolean.class);
+    }
+
+    public static DataSize getExchangeMinOutputPageSize(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_MIN_OUTPUT_PAGE_SIZE, DataSize.class);
+    }
+
+    public static int getExchangeMinOutputPageRowCount(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_MIN_OUTPUT_PAGE_ROW_COUNT, Integer.class);
+    }
+
+    public static DataSize getExchangeMaxOutputPageSize(Session session)
+    {
+        DataSize maxOutputPageSize = session.getSystemProperty(EXCHANGE_MAX_OUTPUT_PAGE_SIZE, DataSize.class);
+        DataSize minOutputPageSize = getExchangeMinOutputPageSize(session);
+        if (maxOutputPageSize.compareTo(minOutputPageSize) < 0) {
+            throw new PrestoException(
+                    INVALID_SESSION_PROPERTY,
+                    format("%s must be greater than or equal to %s: %s < %s", EXCHANGE_MAX_OUTPUT_PAGE_SIZE, EXCHANGE_MIN_OUTPUT_PAGE_SIZE, maxOutputPageSize, minOutputPageSize));
+        }
+        return maxOutputPageSize;
+    }
+
     public static AggregationPartitioningMergingStrategy getAggregationPartitioningMergingStrategy(Session session)
     {
         return session.getSystemProperty(AGGREGATION_PARTITIONING_MERGING_STRATEGY, AggregationPartitioningMergingStrategy.class);
@@ -2615,6 +2763,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DYNAMIC_FILTERING_RANGE_ROW_LIMIT_PER_DRIVER, Integer.class);
     }
 
+    public static DataSize getDynamicFilteringMaxBloomFilterSizePerDriver(Session session)
+    {
+        return session.getSystemProperty(DYNAMIC_FILTERING_MAX_BLOOM_FILTER_SIZE_PER_DRIVER, DataSize.class);
+    }
+
     public static boolean isFragmentResultCachingEnabled(Session session)
     {
         return session.getSystemProperty(FRAGMENT_RESULT_CACHING_ENABLED, Boolean.class);
@@ -24,6 +24,8 @@ import io.airlift.units.Duration;
 import io.airlift.units.MinDataSize;
 import io.airlift.units.MinDuration;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
@@ -63,6 +65,9 @@ public class QueryManagerConfig
     private int maxQueryRunningTaskCount = Integer.MAX_VALUE;
     private int maxTotalRunningTaskCountToNotExecuteNewQuery = Integer.MAX_VALUE;
     private double concurrencyThresholdToEnableResourceGroupRefresh = 1.0;
+    private boolean predictiveMemoryAdmissionEnabled;
+    private double predictiveMemoryAdmissionTargetWatermark = 0.9;
+    private Duration predictiveMemoryAdmissionMaxWait = new Duration(5, TimeUnit.MINUTES);
     private Duration resourceGroupRunTimeInfoRefreshInterval = new Duration(100, TimeUnit.MILLISECONDS);
 
     private Duration clientTimeout = new Duration(5, TimeUnit.MINUTES);
@@ -351,6 +356,48 @@ public class QueryManagerConfig
         return this;
     }
 
+    public boolean isPredictiveMemoryAdmissionEnabled()
+    {
+        return predictiveMemoryAdmissionEnabled;
+    }
+
+    @Config("experimental.predictive-memory-admission-enabled")
+    @ConfigDescription("Keep new queries in the queue if the peak memory of their earlier runs would take the general pool past the target watermark")
+    public QueryManagerConfig setPredictiveMemoryAdmissionEnabled(boolean predictiveMemoryAdmissionEnabled)
+    {
+        this.predictiveMemoryAdmissionEnabled = predictiveMemoryAdmissionEnabled;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getPredictiveMemoryAdmissionTargetWatermark()
+    {
+        return predictiveMemoryAdmissionTargetWatermark;
+    }
+
+    @Config("experimental.predictive-memory-admission-target-watermark")
+    @ConfigDescription("Fraction of the general pool that queries admitted by their predicted peak memory may use")
+    public QueryManagerConfig setPredictiveMemoryAdmissionTargetWatermark(double predictiveMemoryAdmissionTargetWatermark)
+    {
+        this.predictiveMemoryAdmissionTargetWatermark = predictiveMemoryAdmissionTargetWatermark;
+        return this;
+    }
+
+    @NotNull
+    public Duration getPredictiveMemoryAdmissionMaxWait()
+    {
+        return predictiveMemoryAdmissionMaxWait;
+    }
+
+    @Config("experimental.predictive-memory-admission-max-wait")
+    @ConfigDescription("Time after which a query kept queued by its predicted peak memory is started anyway")
+    public QueryManagerConfig setPredictiveMemoryAdmissionMaxWait(Duration predictiveMemoryAdmissionMaxWait)
+    {
+        this.predictiveMemoryAdmissionMaxWait = predictiveMemoryAdmissionMaxWait;
+        return this;
+    }
+
     public Duration getResourceGroupRunTimeInfoRefreshInterval()
     {
         return resourceGroupRunTimeInfoRefreshInterval;
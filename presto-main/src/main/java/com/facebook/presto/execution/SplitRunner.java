@@ -27,6 +27,14 @@ public interface SplitRunner
 
     String getInfo();
 
+    /**
+     * Whether the split mostly waits on blocking I/O rather than using CPU.
+     */
+    default boolean isBlockingIo()
+    {
+        return false;
+    }
+
     @Override
     void close();
 }
@@ -482,6 +482,33 @@ public class SqlTask
         return getTaskInfo();
     }
 
+    public TaskInfo addSources(List<TaskSource> sources)
+    {
+        try {
+            TaskHolder taskHolder = taskHolderReference.get();
+            if (taskHolder.isFinished()) {
+                return taskHolder.getFinalTaskInfo();
+            }
+            SqlTaskExecution taskExecution = taskHolder.getTaskExecution();
+            if (taskExecution == null) {
+                // the task was created by this request, for example after the worker restarted, so it has no plan yet.
+                // The sources are not acknowledged, since the returned task info says the plan is needed, and the
+                // coordinator resends them with the plan
+                return getTaskInfo();
+            }
+            taskExecution.addSources(sources);
+        }
+        catch (Error e) {
+            failed(e);
+            throw e;
+        }
+        catch (RuntimeException e) {
+            failed(e);
+        }
+
+        return getTaskInfo();
+    }
+
     public TaskMetadataContext getTaskMetadataContext()
     {
         return taskHolderReference.get().taskExecution.getTaskContext().getTaskMetadataContext();
@@ -1085,6 +1085,12 @@ public class SqlTaskExecution
             return (partitionedSplit == null) ? "" : partitionedSplit.getSplit().getInfo().toString();
         }
 
+        @Override
+        public boolean isBlockingIo()
+        {
+            return partitionedSplit != null && partitionedSplit.getSplit().getConnectorSplit().isBlockingIo();
+        }
+
         @Override
         public void close()
         {
@@ -434,6 +434,17 @@ public class SqlTaskManager
         return sqlTask.updateTask(session, fragment, sources, outputBuffers, tableWriteInfo);
     }
 
+    @Override
+    public TaskInfo addSources(TaskId taskId, List<TaskSource> sources)
+    {
+        requireNonNull(taskId, "taskId is null");
+        requireNonNull(sources, "sources is null");
+
+        SqlTask sqlTask = tasks.getUnchecked(taskId);
+        sqlTask.recordHeartbeat();
+        return sqlTask.addSources(sources);
+    }
+
     @Override
     public void updateMetadataResults(TaskId taskId, MetadataUpdates metadataUpdates)
     {
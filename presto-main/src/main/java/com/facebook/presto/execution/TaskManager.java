@@ -93,6 +93,12 @@ public interface TaskManager
             OutputBuffers outputBuffers,
             Optional<TableWriteInfo> tableWriteInfo);
 
+    /**
+     * Adds sources to a task whose plan has already been delivered by {@link #updateTask}.
+     * The task fails if it does not have a plan.
+     */
+    TaskInfo addSources(TaskId taskId, List<TaskSource> sources);
+
     /**
      * Cancels a task.  If the task does not already exist, is is created and then
      * canceled.
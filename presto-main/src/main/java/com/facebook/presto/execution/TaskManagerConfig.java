@@ -56,6 +56,8 @@ public class TaskManagerConfig
     private DataSize maxIndexMemoryUsage = new DataSize(64, Unit.MEGABYTE);
     private boolean shareIndexLoading;
     private int maxWorkerThreads = Runtime.getRuntime().availableProcessors() * 2;
+    private int blockingIoWorkerThreads;
+    private int runnerThreadAffinityGroups = 1;
     private Integer minDrivers;
     private Integer initialSplitsPerNode;
     private int minDriversPerTask = 3;
@@ -287,6 +289,35 @@ public class TaskManagerConfig
         return this;
     }
 
+    @Min(0)
+    public int getBlockingIoWorkerThreads()
+    {
+        return blockingIoWorkerThreads;
+    }
+
+    @Config("task.blocking-io-worker-threads")
+    @ConfigDescription("Number of additional threads that run the splits of connectors that block on I/O, or 0 to run them on the worker threads")
+    public TaskManagerConfig setBlockingIoWorkerThreads(int blockingIoWorkerThreads)
+    {
+        this.blockingIoWorkerThreads = blockingIoWorkerThreads;
+        return this;
+    }
+
+    @Min(1)
+    public int getRunnerThreadAffinityGroups()
+    {
+        return runnerThreadAffinityGroups;
+    }
+
+    @Config("task.runner-thread-affinity-groups")
+    @ConfigDescription("Number of groups the worker threads are divided in, such as the number of sockets. " +
+            "The splits of a task keep running on the threads of one group unless another group runs out of splits")
+    public TaskManagerConfig setRunnerThreadAffinityGroups(int runnerThreadAffinityGroups)
+    {
+        this.runnerThreadAffinityGroups = runnerThreadAffinityGroups;
+        return this;
+    }
+
     @Min(1)
     public int getInitialSplitsPerNode()
     {
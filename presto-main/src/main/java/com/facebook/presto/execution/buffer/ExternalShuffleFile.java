@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.concurrent.Immutable;
+
+import java.util.List;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A shuffle file written by {@link ExternalShuffleWriter}. The pages of every partition are stored
+ * contiguously, in partition order, so a consumer reads its partition with a single ranged read.
+ */
+@Immutable
+public class ExternalShuffleFile
+{
+    private final byte[] storageHandle;
+    // partition i is stored in [partitionOffsets[i], partitionOffsets[i + 1])
+    private final List<Long> partitionOffsets;
+    private final List<Integer> partitionPageCounts;
+
+    @JsonCreator
+    public ExternalShuffleFile(
+            @JsonProperty("storageHandle") byte[] storageHandle,
+            @JsonProperty("partitionOffsets") List<Long> partitionOffsets,
+            @JsonProperty("partitionPageCounts") List<Integer> partitionPageCounts)
+    {
+        this.storageHandle = requireNonNull(storageHandle, "storageHandle is null").clone();
+        this.partitionOffsets = ImmutableList.copyOf(requireNonNull(partitionOffsets, "partitionOffsets is null"));
+        this.partitionPageCounts = ImmutableList.copyOf(requireNonNull(partitionPageCounts, "partitionPageCounts is null"));
+        checkArgument(partitionOffsets.size() == partitionPageCounts.size() + 1, "expected one more partition offset than partitions");
+    }
+
+    /**
+     * The handle of the file, serialized with {@link com.facebook.presto.spi.storage.TempStorage#serializeHandle}.
+     */
+    @JsonProperty
+    public byte[] getStorageHandle()
+    {
+        return storageHandle.clone();
+    }
+
+    @JsonProperty
+    public List<Long> getPartitionOffsets()
+    {
+        return partitionOffsets;
+    }
+
+    @JsonProperty
+    public List<Integer> getPartitionPageCounts()
+    {
+        return partitionPageCounts;
+    }
+
+    public int getPartitionCount()
+    {
+        return partitionPageCounts.size();
+    }
+
+    public long getPartitionOffset(int partition)
+    {
+        return partitionOffsets.get(partition);
+    }
+
+    public long getPartitionSizeInBytes(int partition)
+    {
+        return partitionOffsets.get(partition + 1) - partitionOffsets.get(partition);
+    }
+
+    public int getPartitionPageCount(int partition)
+    {
+        return partitionPageCounts.get(partition);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("partitionCount", getPartitionCount())
+                .add("sizeInBytes", partitionOffsets.get(partitionOffsets.size() - 1))
+                .toString();
+    }
+}
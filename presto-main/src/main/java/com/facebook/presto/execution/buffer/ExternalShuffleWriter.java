@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.common.io.DataOutput;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.page.PageDataOutput;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.spi.storage.TempDataSink;
+import com.facebook.presto.spi.storage.TempStorage;
+import com.facebook.presto.spi.storage.TempStorageHandle;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.spi.StandardErrorCode.SPOOLING_STORAGE_ERROR;
+import static com.facebook.presto.spi.storage.StorageCapabilities.REMOTELY_ACCESSIBLE;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the partitioned output of a task to shuffle files in a {@link TempStorage} that every node can read,
+ * so that consumers can read their partitions after the producing worker is gone.
+ * Pages are buffered per partition, and every {@link #flush()} writes the buffered pages to a new file
+ * ordered by partition.
+ */
+@ThreadSafe
+public class ExternalShuffleWriter
+{
+    private final TempStorage tempStorage;
+    private final TempDataOperationContext context;
+
+    @GuardedBy("this")
+    private final List<List<SerializedPage>> partitionPages;
+    @GuardedBy("this")
+    private final List<ExternalShuffleFile> files = new ArrayList<>();
+    @GuardedBy("this")
+    private long bufferedBytes;
+    @GuardedBy("this")
+    private boolean closed;
+
+    public ExternalShuffleWriter(TempStorage tempStorage, TempDataOperationContext context, int partitionCount)
+    {
+        this.tempStorage = requireNonNull(tempStorage, "tempStorage is null");
+        this.context = requireNonNull(context, "context is null");
+        checkArgument(tempStorage.getStorageCapabilities().contains(REMOTELY_ACCESSIBLE), "shuffle files must be written to a remotely accessible temp storage");
+        checkArgument(partitionCount > 0, "partitionCount must be positive");
+
+        ImmutableList.Builder<List<SerializedPage>> partitionPages = ImmutableList.builder();
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitionPages.add(new ArrayList<>());
+        }
+        this.partitionPages = partitionPages.build();
+    }
+
+    public synchronized void addPages(int partition, List<SerializedPage> pages)
+    {
+        checkState(!closed, "writer is closed");
+        checkArgument(partition >= 0 && partition < partitionPages.size(), "invalid partition: %s", partition);
+        for (SerializedPage page : pages) {
+            partitionPages.get(partition).add(page);
+            bufferedBytes += page.getRetainedSizeInBytes();
+        }
+    }
+
+    public synchronized long getBufferedBytes()
+    {
+        return bufferedBytes;
+    }
+
+    /**
+     * Writes the buffered pages to a new shuffle file. Returns empty if no pages are buffered.
+     */
+    public synchronized Optional<ExternalShuffleFile> flush()
+    {
+        checkState(!closed, "writer is closed");
+        if (partitionPages.stream().allMatch(List::isEmpty)) {
+            return Optional.empty();
+        }
+
+        ImmutableList.Builder<DataOutput> dataOutputs = ImmutableList.builder();
+        ImmutableList.Builder<Long> partitionOffsets = ImmutableList.builder();
+        ImmutableList.Builder<Integer> partitionPageCounts = ImmutableList.builder();
+        long offset = 0;
+        for (List<SerializedPage> pages : partitionPages) {
+            partitionOffsets.add(offset);
+            partitionPageCounts.add(pages.size());
+            for (SerializedPage page : pages) {
+                DataOutput dataOutput = new PageDataOutput(page);
+                dataOutputs.add(dataOutput);
+                offset += dataOutput.size();
+            }
+        }
+        partitionOffsets.add(offset);
+
+        TempStorageHandle handle;
+        TempDataSink dataSink = null;
+        try {
+            dataSink = tempStorage.create(context);
+            dataSink.write(dataOutputs.build());
+            handle = dataSink.commit();
+        }
+        catch (IOException e) {
+            rollbackQuietly(dataSink, e);
+            throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to write shuffle file", e);
+        }
+
+        ExternalShuffleFile file = new ExternalShuffleFile(tempStorage.serializeHandle(handle), partitionOffsets.build(), partitionPageCounts.build());
+        files.add(file);
+        partitionPages.forEach(List::clear);
+        bufferedBytes = 0;
+        return Optional.of(file);
+    }
+
+    /**
+     * Flushes the remaining pages and returns all files written, in the order they were written.
+     */
+    public synchronized List<ExternalShuffleFile> finish()
+    {
+        flush();
+        closed = true;
+        return ImmutableList.copyOf(files);
+    }
+
+    /**
+     * Discards the buffered pages and removes the files written so far.
+     */
+    public synchronized void abort()
+    {
+        closed = true;
+        partitionPages.forEach(List::clear);
+        bufferedBytes = 0;
+        for (ExternalShuffleFile file : files) {
+            try {
+                tempStorage.remove(context, tempStorage.deserialize(file.getStorageHandle()));
+            }
+            catch (IOException e) {
+                throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to remove shuffle file", e);
+            }
+        }
+        files.clear();
+    }
+
+    private static void rollbackQuietly(TempDataSink dataSink, IOException failure)
+    {
+        if (dataSink == null) {
+            return;
+        }
+        try {
+            dataSink.rollback();
+        }
+        catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+}
@@ -37,47 +37,83 @@ import static com.google.common.base.Preconditions.checkState;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+/**
+ * Splits are queued for one of {@code affinityGroups} groups of runner threads, so that the splits
+ * of a task keep running on the same threads (e.g. the same socket) and their data stays in the caches
+ * of those threads. A runner takes a split of its own group, and only takes a split of another group,
+ * which then moves to its group, when its own group has no waiting splits. The levels and their scheduled
+ * time are shared by all groups.
+ */
 @ThreadSafe
 public class MultilevelSplitQueue
 {
     static final int[] LEVEL_THRESHOLD_SECONDS = {0, 1, 10, 60, 300};
     static final long LEVEL_CONTRIBUTION_CAP = SECONDS.toNanos(30);
 
+    // waiting splits by affinity group and level
     @GuardedBy("lock")
-    private final List<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits;
+    private final List<List<PriorityQueue<PrioritizedSplitRunner>>> levelWaitingSplits;
 
     private final AtomicLong[] levelScheduledTime = new AtomicLong[LEVEL_THRESHOLD_SECONDS.length];
 
     private final AtomicLong[] levelMinPriority;
     private final List<CounterStat> selectedLevelCounters;
+    private final CounterStat stolenSplits = new CounterStat();
+    private final AtomicLong[] groupStolenSplits;
 
     private final ReentrantLock lock = new ReentrantLock();
     private final Condition notEmpty = lock.newCondition();
 
     private final double levelTimeMultiplier;
+    private final int affinityGroups;
 
     @Inject
     public MultilevelSplitQueue(TaskManagerConfig taskManagerConfig)
     {
-        this(taskManagerConfig.getLevelTimeMultiplier().doubleValue());
+        this(taskManagerConfig.getLevelTimeMultiplier().doubleValue(), taskManagerConfig.getRunnerThreadAffinityGroups());
     }
 
     public MultilevelSplitQueue(double levelTimeMultiplier)
     {
+        this(levelTimeMultiplier, 1);
+    }
+
+    public MultilevelSplitQueue(double levelTimeMultiplier, int affinityGroups)
+    {
+        checkArgument(affinityGroups > 0, "affinityGroups must be at least 1");
         this.levelMinPriority = new AtomicLong[LEVEL_THRESHOLD_SECONDS.length];
-        this.levelWaitingSplits = new ArrayList<>(LEVEL_THRESHOLD_SECONDS.length);
+        this.levelWaitingSplits = new ArrayList<>(affinityGroups);
+        this.groupStolenSplits = new AtomicLong[affinityGroups];
         ImmutableList.Builder<CounterStat> counters = ImmutableList.builder();
 
         for (int i = 0; i < LEVEL_THRESHOLD_SECONDS.length; i++) {
             levelScheduledTime[i] = new AtomicLong();
             levelMinPriority[i] = new AtomicLong(-1);
-            levelWaitingSplits.add(new PriorityQueue<>());
             counters.add(new CounterStat());
         }
+        for (int group = 0; group < affinityGroups; group++) {
+            List<PriorityQueue<PrioritizedSplitRunner>> groupWaitingSplits = new ArrayList<>(LEVEL_THRESHOLD_SECONDS.length);
+            for (int i = 0; i < LEVEL_THRESHOLD_SECONDS.length; i++) {
+                groupWaitingSplits.add(new PriorityQueue<>());
+            }
+            levelWaitingSplits.add(groupWaitingSplits);
+            groupStolenSplits[group] = new AtomicLong();
+        }
 
         this.selectedLevelCounters = counters.build();
 
         this.levelTimeMultiplier = levelTimeMultiplier;
+        this.affinityGroups = affinityGroups;
+    }
+
+    public double getLevelTimeMultiplier()
+    {
+        return levelTimeMultiplier;
+    }
+
+    public int getAffinityGroups()
+    {
+        return affinityGroups;
     }
 
     private void addLevelTime(int level, long nanos)
@@ -101,9 +137,13 @@ public class MultilevelSplitQueue
 
         split.setReady();
         int level = split.getPriority().getLevel();
+        if (split.getAffinityGroup() < 0) {
+            // the splits of a task start in the same group
+            split.setAffinityGroup(Math.floorMod(split.getTaskHandle().getTaskId().hashCode(), affinityGroups));
+        }
         lock.lock();
         try {
-            if (levelWaitingSplits.get(level).isEmpty()) {
+            if (isLevelEmpty(level)) {
                 // Accesses to levelScheduledTime are not synchronized, so we have a data race
                 // here - our level time math will be off. However, the staleness is bounded by
                 // the fact that only running splits that complete during this computation
@@ -114,7 +154,7 @@ public class MultilevelSplitQueue
                 levelScheduledTime[level].addAndGet(delta);
             }
 
-            levelWaitingSplits.get(level).offer(split);
+            levelWaitingSplits.get(split.getAffinityGroup()).get(level).offer(split);
             notEmpty.signal();
         }
         finally {
@@ -122,14 +162,33 @@ public class MultilevelSplitQueue
         }
     }
 
-    public PrioritizedSplitRunner take()
+    @GuardedBy("lock")
+    private boolean isLevelEmpty(int level)
+    {
+        for (List<PriorityQueue<PrioritizedSplitRunner>> groupWaitingSplits : levelWaitingSplits) {
+            if (!groupWaitingSplits.get(level).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes the next split for a runner thread of the given affinity group, waiting until a split is available.
+     */
+    public PrioritizedSplitRunner take(int affinityGroup)
             throws InterruptedException
     {
+        checkArgument(affinityGroup >= 0 && affinityGroup < affinityGroups, "invalid affinity group %s", affinityGroup);
         while (true) {
             lock.lockInterruptibly();
             try {
                 PrioritizedSplitRunner result;
-                while ((result = pollSplit()) == null) {
+                while ((result = pollSplit(affinityGroup)) == null) {
+                    result = stealSplit(affinityGroup);
+                    if (result != null) {
+                        break;
+                    }
                     notEmpty.await();
                 }
 
@@ -159,13 +218,14 @@ public class MultilevelSplitQueue
      * we pick the split with the lowest priority.
      */
     @GuardedBy("lock")
-    private PrioritizedSplitRunner pollSplit()
+    private PrioritizedSplitRunner pollSplit(int affinityGroup)
     {
+        List<PriorityQueue<PrioritizedSplitRunner>> groupWaitingSplits = levelWaitingSplits.get(affinityGroup);
         long targetScheduledTime = getLevel0TargetTime();
         double worstRatio = 1;
         int selectedLevel = -1;
         for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
-            if (!levelWaitingSplits.get(level).isEmpty()) {
+            if (!groupWaitingSplits.get(level).isEmpty()) {
                 long levelTime = levelScheduledTime[level].get();
                 double ratio = levelTime == 0 ? 0 : targetScheduledTime / (1.0 * levelTime);
                 if (selectedLevel == -1 || ratio > worstRatio) {
@@ -181,12 +241,48 @@ public class MultilevelSplitQueue
             return null;
         }
 
-        PrioritizedSplitRunner result = levelWaitingSplits.get(selectedLevel).poll();
+        PrioritizedSplitRunner result = groupWaitingSplits.get(selectedLevel).poll();
         checkState(result != null, "pollSplit cannot return null");
 
         return result;
     }
 
+    /**
+     * Takes a split of the group with the most waiting splits, and moves it to the given group.
+     */
+    @GuardedBy("lock")
+    private PrioritizedSplitRunner stealSplit(int affinityGroup)
+    {
+        int victimGroup = -1;
+        int victimSize = 0;
+        for (int group = 0; group < affinityGroups; group++) {
+            int groupSize = getGroupSize(group);
+            if (group != affinityGroup && groupSize > victimSize) {
+                victimGroup = group;
+                victimSize = groupSize;
+            }
+        }
+        if (victimGroup == -1) {
+            return null;
+        }
+
+        PrioritizedSplitRunner result = pollSplit(victimGroup);
+        result.setAffinityGroup(affinityGroup);
+        stolenSplits.update(1);
+        groupStolenSplits[affinityGroup].incrementAndGet();
+        return result;
+    }
+
+    @GuardedBy("lock")
+    private int getGroupSize(int affinityGroup)
+    {
+        int total = 0;
+        for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits.get(affinityGroup)) {
+            total += level.size();
+        }
+        return total;
+    }
+
     @GuardedBy("lock")
     private long getLevel0TargetTime()
     {
@@ -249,8 +345,10 @@ public class MultilevelSplitQueue
         checkArgument(split != null, "split is null");
         lock.lock();
         try {
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                level.remove(split);
+            for (List<PriorityQueue<PrioritizedSplitRunner>> groupWaitingSplits : levelWaitingSplits) {
+                for (PriorityQueue<PrioritizedSplitRunner> level : groupWaitingSplits) {
+                    level.remove(split);
+                }
             }
         }
         finally {
@@ -262,8 +360,10 @@ public class MultilevelSplitQueue
     {
         lock.lock();
         try {
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                level.removeAll(splits);
+            for (List<PriorityQueue<PrioritizedSplitRunner>> groupWaitingSplits : levelWaitingSplits) {
+                for (PriorityQueue<PrioritizedSplitRunner> level : groupWaitingSplits) {
+                    level.removeAll(splits);
+                }
             }
         }
         finally {
@@ -282,8 +382,8 @@ public class MultilevelSplitQueue
         lock.lock();
         try {
             int total = 0;
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                total += level.size();
+            for (int group = 0; group < affinityGroups; group++) {
+                total += getGroupSize(group);
             }
             return total;
         }
@@ -310,6 +410,21 @@ public class MultilevelSplitQueue
         return levelScheduledTime[level].longValue();
     }
 
+    /**
+     * Returns the number of splits the runner threads of the given group took from other groups.
+     */
+    public long getStolenSplits(int affinityGroup)
+    {
+        return groupStolenSplits[affinityGroup].get();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getStolenSplits()
+    {
+        return stolenSplits;
+    }
+
     @Managed
     public long getLevel0Time()
     {
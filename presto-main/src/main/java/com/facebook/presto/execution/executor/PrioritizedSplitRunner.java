@@ -50,6 +50,8 @@ public class PrioritizedSplitRunner
     private final int splitId;
     private final long workerId;
     private final SplitRunner splitRunner;
+    // whether the split runs on the blocking I/O runner threads
+    private final boolean blockingIo;
 
     private final Ticker ticker;
 
@@ -59,6 +61,9 @@ public class PrioritizedSplitRunner
 
     protected final AtomicReference<Priority> priority = new AtomicReference<>(new Priority(0, 0));
 
+    // group of runner threads the split is queued for, assigned by the split queue
+    private volatile int affinityGroup = -1;
+
     protected final AtomicLong lastRun = new AtomicLong();
     private final AtomicLong lastReady = new AtomicLong();
     private final AtomicLong start = new AtomicLong();
@@ -82,10 +87,24 @@ public class PrioritizedSplitRunner
             CounterStat globalScheduledTimeMicros,
             TimeStat blockedQuantaWallTime,
             TimeStat unblockedQuantaWallTime)
+    {
+        this(taskHandle, splitRunner, false, ticker, globalCpuTimeMicros, globalScheduledTimeMicros, blockedQuantaWallTime, unblockedQuantaWallTime);
+    }
+
+    PrioritizedSplitRunner(
+            TaskHandle taskHandle,
+            SplitRunner splitRunner,
+            boolean blockingIo,
+            Ticker ticker,
+            CounterStat globalCpuTimeMicros,
+            CounterStat globalScheduledTimeMicros,
+            TimeStat blockedQuantaWallTime,
+            TimeStat unblockedQuantaWallTime)
     {
         this.taskHandle = taskHandle;
         this.splitId = taskHandle.getNextSplitId();
         this.splitRunner = splitRunner;
+        this.blockingIo = blockingIo;
         this.ticker = ticker;
         this.workerId = NEXT_WORKER_ID.getAndIncrement();
         this.globalCpuTimeMicros = globalCpuTimeMicros;
@@ -101,6 +120,21 @@ public class PrioritizedSplitRunner
         return taskHandle;
     }
 
+    public boolean isBlockingIo()
+    {
+        return blockingIo;
+    }
+
+    public int getAffinityGroup()
+    {
+        return affinityGroup;
+    }
+
+    public void setAffinityGroup(int affinityGroup)
+    {
+        this.affinityGroup = affinityGroup;
+    }
+
     public ListenableFuture<?> getFinishedFuture()
     {
         return finishedFuture;
@@ -169,7 +203,7 @@ public class PrioritizedSplitRunner
             long quantaScheduledNanos = endNanos - startNanos;
             scheduledNanos.addAndGet(quantaScheduledNanos);
 
-            priority.set(taskHandle.addScheduledNanos(quantaScheduledNanos));
+            priority.set(taskHandle.addScheduledNanos(quantaScheduledNanos, blockingIo));
             lastRun.set(endNanos);
 
             Duration wallDuration = new Duration(quantaScheduledNanos, NANOSECONDS);
@@ -206,7 +240,7 @@ public class PrioritizedSplitRunner
      */
     public boolean updateLevelPriority()
     {
-        Priority newPriority = taskHandle.getPriority();
+        Priority newPriority = taskHandle.getPriority(blockingIo);
         Priority oldPriority = priority.getAndSet(newPriority);
         return newPriority.getLevel() != oldPriority.getLevel();
     }
@@ -219,7 +253,7 @@ public class PrioritizedSplitRunner
      */
     public void resetLevelPriority()
     {
-        priority.set(taskHandle.resetLevelPriority());
+        priority.set(taskHandle.resetLevelPriority(blockingIo));
     }
 
     @Override
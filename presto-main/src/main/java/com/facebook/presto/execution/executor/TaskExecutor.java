@@ -104,6 +104,7 @@ public class TaskExecutor
     private final ThreadPoolExecutorMBean executorMBean;
 
     private final int runnerThreads;
+    private final int blockingIoRunnerThreads;
     private final int minimumNumberOfDrivers;
     private final int guaranteedNumberOfDriversPerTask;
     private final int maximumNumberOfDriversPerTask;
@@ -138,10 +139,23 @@ public class TaskExecutor
      */
     private final MultilevelSplitQueue waitingSplits;
 
+    /**
+     * Blocking I/O splits (i.e. splits that run on their own runner threads).
+     * Their scheduled time is charged to the levels of {@link #waitingBlockingIoSplits} by the blocking I/O task priority trackers.
+     */
+    @GuardedBy("this")
+    private final Set<PrioritizedSplitRunner> blockingIoSplits = new HashSet<>();
+
+    /**
+     * Blocking I/O splits waiting for a blocking I/O runner thread.
+     */
+    private final MultilevelSplitQueue waitingBlockingIoSplits;
+
     /**
      * Per query priority trackers
      */
     private final Function<QueryId, TaskPriorityTracker> taskPriorityTrackerFactory;
+    private final Function<QueryId, TaskPriorityTracker> blockingIoTaskPriorityTrackerFactory;
 
     /**
      * Splits running on a thread.
@@ -187,6 +201,7 @@ public class TaskExecutor
     public TaskExecutor(TaskManagerConfig config, EmbedVersion embedVersion, MultilevelSplitQueue splitQueue)
     {
         this(requireNonNull(config, "config is null").getMaxWorkerThreads(),
+                config.getBlockingIoWorkerThreads(),
                 config.getMinDrivers(),
                 config.getMinDriversPerTask(),
                 config.getMaxDriversPerTask(),
@@ -258,8 +273,39 @@ public class TaskExecutor
             EmbedVersion embedVersion,
             MultilevelSplitQueue splitQueue,
             Ticker ticker)
+    {
+        this(
+                runnerThreads,
+                0,
+                minDrivers,
+                guaranteedNumberOfDriversPerTask,
+                maximumNumberOfDriversPerTask,
+                taskPriorityTracking,
+                interruptRunawaySplitsTimeout,
+                interruptibleSplitPredicate,
+                interruptSplitInterval,
+                embedVersion,
+                splitQueue,
+                ticker);
+    }
+
+    @VisibleForTesting
+    public TaskExecutor(
+            int runnerThreads,
+            int blockingIoRunnerThreads,
+            int minDrivers,
+            int guaranteedNumberOfDriversPerTask,
+            int maximumNumberOfDriversPerTask,
+            TaskPriorityTracking taskPriorityTracking,
+            Duration interruptRunawaySplitsTimeout,
+            Predicate<List<StackTraceElement>> interruptibleSplitPredicate,
+            Duration interruptSplitInterval,
+            EmbedVersion embedVersion,
+            MultilevelSplitQueue splitQueue,
+            Ticker ticker)
     {
         checkArgument(runnerThreads > 0, "runnerThreads must be at least 1");
+        checkArgument(blockingIoRunnerThreads >= 0, "blockingIoRunnerThreads is negative");
         checkArgument(guaranteedNumberOfDriversPerTask > 0, "guaranteedNumberOfDriversPerTask must be at least 1");
         checkArgument(maximumNumberOfDriversPerTask > 0, "maximumNumberOfDriversPerTask must be at least 1");
         checkArgument(guaranteedNumberOfDriversPerTask <= maximumNumberOfDriversPerTask, "guaranteedNumberOfDriversPerTask cannot be greater than maximumNumberOfDriversPerTask");
@@ -270,6 +316,7 @@ public class TaskExecutor
         this.executor = newCachedThreadPool(threadsNamed("task-processor-%s"));
         this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) executor);
         this.runnerThreads = runnerThreads;
+        this.blockingIoRunnerThreads = blockingIoRunnerThreads;
         this.embedVersion = requireNonNull(embedVersion, "embedVersion is null");
 
         this.ticker = requireNonNull(ticker, "ticker is null");
@@ -278,33 +325,40 @@ public class TaskExecutor
         this.guaranteedNumberOfDriversPerTask = guaranteedNumberOfDriversPerTask;
         this.maximumNumberOfDriversPerTask = maximumNumberOfDriversPerTask;
         this.waitingSplits = requireNonNull(splitQueue, "splitQueue is null");
-        Function<QueryId, TaskPriorityTracker> taskPriorityTrackerFactory;
+        this.waitingBlockingIoSplits = new MultilevelSplitQueue(splitQueue.getLevelTimeMultiplier(), splitQueue.getAffinityGroups());
+        this.taskPriorityTrackerFactory = createTaskPriorityTrackerFactory(taskPriorityTracking, waitingSplits);
+        this.blockingIoTaskPriorityTrackerFactory = createTaskPriorityTrackerFactory(taskPriorityTracking, waitingBlockingIoSplits);
+        this.tasks = new LinkedList<>();
+        this.interruptRunawaySplitsTimeout = interruptRunawaySplitsTimeout;
+        this.interruptibleSplitPredicate = interruptibleSplitPredicate;
+        this.interruptSplitInterval = interruptSplitInterval;
+    }
+
+    private static Function<QueryId, TaskPriorityTracker> createTaskPriorityTrackerFactory(TaskPriorityTracking taskPriorityTracking, MultilevelSplitQueue splitQueue)
+    {
         switch (taskPriorityTracking) {
             case TASK_FAIR:
-                taskPriorityTrackerFactory = (queryId) -> new TaskPriorityTracker(splitQueue);
-                break;
+                return (queryId) -> new TaskPriorityTracker(splitQueue);
             case QUERY_FAIR:
                 LoadingCache<QueryId, TaskPriorityTracker> cache = CacheBuilder.newBuilder()
                         .weakValues()
                         .build(CacheLoader.from(queryId -> new TaskPriorityTracker(splitQueue)));
-                taskPriorityTrackerFactory = cache::getUnchecked;
-                break;
+                return cache::getUnchecked;
             default:
                 throw new IllegalArgumentException("Unexpected taskPriorityTracking: " + taskPriorityTracking);
         }
-        this.taskPriorityTrackerFactory = taskPriorityTrackerFactory;
-        this.tasks = new LinkedList<>();
-        this.interruptRunawaySplitsTimeout = interruptRunawaySplitsTimeout;
-        this.interruptibleSplitPredicate = interruptibleSplitPredicate;
-        this.interruptSplitInterval = interruptSplitInterval;
     }
 
     @PostConstruct
     public synchronized void start()
     {
         checkState(!closed, "TaskExecutor is closed");
+        // runner threads are spread evenly over the affinity groups
         for (int i = 0; i < runnerThreads; i++) {
-            addRunnerThread();
+            addRunnerThread(waitingSplits, i % waitingSplits.getAffinityGroups());
+        }
+        for (int i = 0; i < blockingIoRunnerThreads; i++) {
+            addRunnerThread(waitingBlockingIoSplits, i % waitingBlockingIoSplits.getAffinityGroups());
         }
         if (interruptRunawaySplitsTimeout != null) {
             long interval = (long) interruptSplitInterval.getValue(SECONDS);
@@ -325,18 +379,21 @@ public class TaskExecutor
     {
         return toStringHelper(this)
                 .add("runnerThreads", runnerThreads)
+                .add("blockingIoRunnerThreads", blockingIoRunnerThreads)
                 .add("allSplits", allSplits.size())
                 .add("intermediateSplits", intermediateSplits.size())
                 .add("waitingSplits", waitingSplits.size())
+                .add("blockingIoSplits", blockingIoSplits.size())
+                .add("waitingBlockingIoSplits", waitingBlockingIoSplits.size())
                 .add("runningSplits", runningSplits.size())
                 .add("blockedSplits", blockedSplits.size())
                 .toString();
     }
 
-    private synchronized void addRunnerThread()
+    private synchronized void addRunnerThread(MultilevelSplitQueue splitQueue, int affinityGroup)
     {
         try {
-            executor.execute(embedVersion.embedVersion(new TaskRunner()));
+            executor.execute(embedVersion.embedVersion(new TaskRunner(splitQueue, affinityGroup)));
         }
         catch (RejectedExecutionException ignored) {
         }
@@ -359,6 +416,7 @@ public class TaskExecutor
         TaskHandle taskHandle = new TaskHandle(
                 taskId,
                 taskPriorityTrackerFactory.apply(taskId.getQueryId()),
+                blockingIoTaskPriorityTrackerFactory.apply(taskId.getQueryId()),
                 utilizationSupplier,
                 initialSplitConcurrency,
                 splitConcurrencyAdjustFrequency,
@@ -388,8 +446,10 @@ public class TaskExecutor
             // stop tracking splits (especially blocked splits which may never unblock)
             allSplits.removeAll(splits);
             intermediateSplits.removeAll(splits);
+            blockingIoSplits.removeAll(splits);
             blockedSplits.keySet().removeAll(splits);
             waitingSplits.removeAll(splits);
+            waitingBlockingIoSplits.removeAll(splits);
         }
 
         // call destroy outside of synchronized block as it is expensive and doesn't need a lock on the task executor
@@ -413,6 +473,7 @@ public class TaskExecutor
                 PrioritizedSplitRunner prioritizedSplitRunner = new PrioritizedSplitRunner(
                         taskHandle,
                         taskSplit,
+                        blockingIoRunnerThreads > 0 && taskSplit.isBlockingIo(),
                         ticker,
                         globalCpuTimeMicros,
                         globalScheduledTimeMicros,
@@ -456,6 +517,7 @@ public class TaskExecutor
         completedSplitsPerLevel.incrementAndGet(split.getPriority().getLevel());
         synchronized (this) {
             allSplits.remove(split);
+            blockingIoSplits.remove(split);
 
             long wallNanos = System.nanoTime() - split.getCreatedNanos();
             splitWallTime.add(Duration.succinctNanos(wallNanos));
@@ -522,7 +584,9 @@ public class TaskExecutor
         // simultaneously running splits may vary. If leaf splits start first, there will
         // be 300 running splits. If intermediate splits start first, there will be only
         // 200 running splits.
-        int running = allSplits.size() - intermediateSplits.size();
+        // Blocking I/O splits are ignored as well, since they do not use the runner threads,
+        // so that waiting on I/O does not keep CPU bound splits from starting.
+        int running = allSplits.size() - intermediateSplits.size() - blockingIoSplits.size();
         for (int i = 0; i < minimumNumberOfDrivers - running; i++) {
             PrioritizedSplitRunner split = pollNextSplitWorker();
             if (split == null) {
@@ -543,7 +607,13 @@ public class TaskExecutor
     private synchronized void startSplit(PrioritizedSplitRunner split)
     {
         allSplits.add(split);
-        waitingSplits.offer(split);
+        if (split.isBlockingIo()) {
+            blockingIoSplits.add(split);
+            waitingBlockingIoSplits.offer(split);
+        }
+        else {
+            waitingSplits.offer(split);
+        }
     }
 
     private synchronized PrioritizedSplitRunner pollNextSplitWorker()
@@ -594,6 +664,14 @@ public class TaskExecutor
             implements Runnable
     {
         private final long runnerId = NEXT_RUNNER_ID.getAndIncrement();
+        private final MultilevelSplitQueue splitQueue;
+        private final int affinityGroup;
+
+        private TaskRunner(MultilevelSplitQueue splitQueue, int affinityGroup)
+        {
+            this.splitQueue = requireNonNull(splitQueue, "splitQueue is null");
+            this.affinityGroup = affinityGroup;
+        }
 
         @Override
         public void run()
@@ -603,7 +681,7 @@ public class TaskExecutor
                     // select next worker
                     final PrioritizedSplitRunner split;
                     try {
-                        split = waitingSplits.take();
+                        split = splitQueue.take(affinityGroup);
                     }
                     catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
@@ -634,7 +712,7 @@ public class TaskExecutor
                         }
                         else {
                             if (blocked.isDone()) {
-                                waitingSplits.offer(split);
+                                splitQueue.offer(split);
                             }
                             else {
                                 blockedSplits.put(split, blocked);
@@ -642,7 +720,7 @@ public class TaskExecutor
                                     blockedSplits.remove(split);
                                     // reset the level priority to prevent previously-blocked splits from starving existing splits
                                     split.resetLevelPriority();
-                                    waitingSplits.offer(split);
+                                    splitQueue.offer(split);
                                 }, executor);
                             }
                         }
@@ -676,7 +754,7 @@ public class TaskExecutor
             finally {
                 // unless we have been closed, we need to replace this thread
                 if (!closed) {
-                    addRunnerThread();
+                    addRunnerThread(splitQueue, affinityGroup);
                 }
             }
         }
@@ -722,6 +800,36 @@ public class TaskExecutor
         return waitingSplits.size();
     }
 
+    @Managed
+    public int getRunnerThreadAffinityGroups()
+    {
+        return waitingSplits.getAffinityGroups();
+    }
+
+    @Managed
+    public long getStolenBlockingIoSplits()
+    {
+        return waitingBlockingIoSplits.getStolenSplits().getTotalCount();
+    }
+
+    @Managed
+    public int getBlockingIoRunnerThreads()
+    {
+        return blockingIoRunnerThreads;
+    }
+
+    @Managed
+    public synchronized int getBlockingIoSplits()
+    {
+        return blockingIoSplits.size();
+    }
+
+    @Managed
+    public int getWaitingBlockingIoSplits()
+    {
+        return waitingBlockingIoSplits.size();
+    }
+
     @Managed
     public int getRunningSplits()
     {
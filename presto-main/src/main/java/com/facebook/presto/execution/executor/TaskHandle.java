@@ -39,6 +39,7 @@ public class TaskHandle
     private final TaskId taskId;
     private final DoubleSupplier utilizationSupplier;
     private final TaskPriorityTracker priorityTracker;
+    private final TaskPriorityTracker blockingIoPriorityTracker;
     private final OptionalInt maxDriversPerTask;
 
     @GuardedBy("this")
@@ -59,10 +60,23 @@ public class TaskHandle
             int initialSplitConcurrency,
             Duration splitConcurrencyAdjustFrequency,
             OptionalInt maxDriversPerTask)
+    {
+        this(taskId, priorityTracker, priorityTracker, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency, maxDriversPerTask);
+    }
+
+    public TaskHandle(
+            TaskId taskId,
+            TaskPriorityTracker priorityTracker,
+            TaskPriorityTracker blockingIoPriorityTracker,
+            DoubleSupplier utilizationSupplier,
+            int initialSplitConcurrency,
+            Duration splitConcurrencyAdjustFrequency,
+            OptionalInt maxDriversPerTask)
     {
         this.taskId = requireNonNull(taskId, "taskId is null");
         this.utilizationSupplier = requireNonNull(utilizationSupplier, "utilizationSupplier is null");
         this.priorityTracker = requireNonNull(priorityTracker, "queryPriorityTracker is null");
+        this.blockingIoPriorityTracker = requireNonNull(blockingIoPriorityTracker, "blockingIoPriorityTracker is null");
         this.maxDriversPerTask = requireNonNull(maxDriversPerTask, "maxDriversPerTask is null");
         this.concurrencyController = new SplitConcurrencyController(
                 initialSplitConcurrency,
@@ -70,14 +84,23 @@ public class TaskHandle
     }
 
     public synchronized Priority addScheduledNanos(long durationNanos)
+    {
+        return addScheduledNanos(durationNanos, false);
+    }
+
+    /**
+     * Charges the scheduled time to the levels of the split queue the split runs on,
+     * i.e. the blocking I/O split queue for splits that run on the blocking I/O runner threads.
+     */
+    public synchronized Priority addScheduledNanos(long durationNanos, boolean blockingIo)
     {
         concurrencyController.update(durationNanos, utilizationSupplier.getAsDouble(), runningLeafSplits.size());
-        return priorityTracker.updatePriority(durationNanos);
+        return getPriorityTracker(blockingIo).updatePriority(durationNanos);
     }
 
-    public synchronized Priority resetLevelPriority()
+    public synchronized Priority resetLevelPriority(boolean blockingIo)
     {
-        return priorityTracker.resetLevelPriority();
+        return getPriorityTracker(blockingIo).resetLevelPriority();
     }
 
     public boolean isDestroyed()
@@ -90,6 +113,16 @@ public class TaskHandle
         return priorityTracker.getPriority();
     }
 
+    public Priority getPriority(boolean blockingIo)
+    {
+        return getPriorityTracker(blockingIo).getPriority();
+    }
+
+    private TaskPriorityTracker getPriorityTracker(boolean blockingIo)
+    {
+        return blockingIo ? blockingIoPriorityTracker : priorityTracker;
+    }
+
     public TaskId getTaskId()
     {
         return taskId;
@@ -34,6 +34,7 @@ import org.weakref.jmx.Nested;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -130,7 +131,8 @@ public class InternalResourceGroup
     @GuardedBy("root")
     private final Map<String, InternalResourceGroup> subGroups = new HashMap<>();
     // Sub groups with queued queries, that have capacity to run them
-    // That is, they must return true when internalStartNext() is called on them
+    // That is, they must return true when internalStartNext() is called on them,
+    // unless memory admission keeps their next query queued
     @GuardedBy("root")
     private Queue<InternalResourceGroup> eligibleSubGroups = new FifoQueue<>();
     // Sub groups whose memory usage may be out of date. Most likely because they have a running query.
@@ -731,7 +733,7 @@ public class InternalResourceGroup
             }
             else {
                 query.setResourceGroupQueryLimits(perQueryLimits);
-                if (canRun && queuedQueries.isEmpty()) {
+                if (canRun && queuedQueries.isEmpty() && ((RootInternalResourceGroup) root).tryAdmit(query)) {
                     startInBackground(query);
                 }
                 else {
@@ -831,6 +833,7 @@ public class InternalResourceGroup
             }
             if (runningQueries.contains(query)) {
                 runningQueries.remove(query);
+                ((RootInternalResourceGroup) root).memoryAdmissionController.ifPresent(controller -> controller.queryFinished(query));
                 InternalResourceGroup group = this;
                 while (group.parent.isPresent()) {
                     group.parent.get().descendantRunningQueries--;
@@ -904,36 +907,49 @@ public class InternalResourceGroup
                 return false;
             }
 
-            ManagedQueryExecution query = queuedQueries.poll();
+            ManagedQueryExecution query = queuedQueries.peek();
             if (query != null) {
+                if (!((RootInternalResourceGroup) root).tryAdmit(query)) {
+                    // keep the query at the head of the queue until there is memory for it
+                    return false;
+                }
+                queuedQueries.poll();
                 startInBackground(query);
                 return true;
             }
 
-            // Remove even if the sub group still has queued queries, so that it goes to the back of the queue
-            InternalResourceGroup subGroup = eligibleSubGroups.poll();
-            if (subGroup == null) {
-                return false;
-            }
-            boolean started = subGroup.internalStartNext();
-            if (started) {
-                long currentTime = System.currentTimeMillis();
-                if (lastStartMillis != 0) {
-                    timeBetweenStartsSec.update(Math.max(0, (currentTime - lastStartMillis) / 1000));
+            // Sub groups that cannot start a query, for example because memory admission keeps their next query queued,
+            // are skipped so that they do not block their siblings
+            List<InternalResourceGroup> skippedSubGroups = new ArrayList<>();
+            boolean started = false;
+            while (!started) {
+                // Remove even if the sub group still has queued queries, so that it goes to the back of the queue
+                InternalResourceGroup subGroup = eligibleSubGroups.poll();
+                if (subGroup == null) {
+                    break;
                 }
-                lastStartMillis = currentTime;
+                started = subGroup.internalStartNext();
+                if (started) {
+                    long currentTime = System.currentTimeMillis();
+                    if (lastStartMillis != 0) {
+                        timeBetweenStartsSec.update(Math.max(0, (currentTime - lastStartMillis) / 1000));
+                    }
+                    lastStartMillis = currentTime;
 
-                descendantQueuedQueries--;
+                    descendantQueuedQueries--;
 
-                // Don't call updateEligibility here, as we're in a recursive call, and don't want to repeatedly update our ancestors.
-                if (subGroup.isEligibleToStartNext()) {
-                    addOrUpdateSubGroup(subGroup);
+                    // Don't call updateEligibility here, as we're in a recursive call, and don't want to repeatedly update our ancestors.
+                    if (subGroup.isEligibleToStartNext()) {
+                        addOrUpdateSubGroup(subGroup);
+                    }
+                }
+                else {
+                    skippedSubGroups.add(subGroup);
                 }
             }
-            else {
-                //If subGroup not able to start the query, we should add it back.
-                addOrUpdateSubGroup(subGroup);
-            }
+
+            //If subGroup not able to start the query, we should add it back.
+            skippedSubGroups.forEach(this::addOrUpdateSubGroup);
 
             return started;
         }
@@ -1129,6 +1145,7 @@ public class InternalResourceGroup
             extends InternalResourceGroup
     {
         private AtomicBoolean taskLimitExceeded = new AtomicBoolean();
+        private volatile Optional<MemoryAdmissionController> memoryAdmissionController = Optional.empty();
 
         public RootInternalResourceGroup(
                 String name,
@@ -1173,5 +1190,15 @@ public class InternalResourceGroup
         {
             return taskLimitExceeded.get();
         }
+
+        public void setMemoryAdmissionController(MemoryAdmissionController memoryAdmissionController)
+        {
+            this.memoryAdmissionController = Optional.of(requireNonNull(memoryAdmissionController, "memoryAdmissionController is null"));
+        }
+
+        private boolean tryAdmit(ManagedQueryExecution query)
+        {
+            return memoryAdmissionController.map(controller -> controller.tryAdmit(query)).orElse(true);
+        }
     }
 }
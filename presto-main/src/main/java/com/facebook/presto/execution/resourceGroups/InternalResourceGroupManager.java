@@ -39,6 +39,7 @@ import io.airlift.units.Duration;
 import org.weakref.jmx.JmxException;
 import org.weakref.jmx.MBeanExporter;
 import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
 import org.weakref.jmx.ObjectNames;
 
 import javax.annotation.PostConstruct;
@@ -66,6 +67,7 @@ import java.util.function.Supplier;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.execution.resourceGroups.LegacyResourceGroupConfigurationManager.HARD_CONCURRENCY_LIMIT;
 import static com.facebook.presto.execution.resourceGroups.LegacyResourceGroupConfigurationManager.MAX_QUEUED_QUERIES;
+import static com.facebook.presto.memory.LocalMemoryManager.GENERAL_POOL;
 import static com.facebook.presto.spi.StandardErrorCode.MISSING_RESOURCE_GROUP_SELECTOR;
 import static com.facebook.presto.spi.StandardErrorCode.SERVER_STARTING_UP;
 import static com.facebook.presto.util.PropertiesUtil.loadProperties;
@@ -112,6 +114,8 @@ public final class InternalResourceGroupManager<C>
     private final boolean isResourceManagerEnabled;
     private final QueryManagerConfig queryManagerConfig;
     private final InternalNodeManager nodeManager;
+    private final MemoryAdmissionController memoryAdmissionController;
+    private final boolean predictiveMemoryAdmissionEnabled;
     private AtomicBoolean isConfigurationManagerLoaded;
 
     @Inject
@@ -138,6 +142,11 @@ public final class InternalResourceGroupManager<C>
         this.resourceGroupRuntimeExecutor = new PeriodicTaskExecutor(resourceGroupRuntimeInfoRefreshInterval.toMillis(), refreshExecutor, this::refreshResourceGroupRuntimeInfo);
         configurationManagerFactories.putIfAbsent(LegacyResourceGroupConfigurationManager.NAME, new LegacyResourceGroupConfigurationManager.Factory());
         this.isConfigurationManagerLoaded = new AtomicBoolean(false);
+        this.memoryAdmissionController = new MemoryAdmissionController(queryManagerConfig.getPredictiveMemoryAdmissionTargetWatermark(), queryManagerConfig.getPredictiveMemoryAdmissionMaxWait());
+        this.predictiveMemoryAdmissionEnabled = queryManagerConfig.isPredictiveMemoryAdmissionEnabled();
+        if (predictiveMemoryAdmissionEnabled) {
+            memoryPoolManager.addChangeListener(GENERAL_POOL, memoryAdmissionController::updateGeneralPool);
+        }
     }
 
     @Override
@@ -412,6 +421,9 @@ public final class InternalResourceGroupManager<C>
                                     concurrencyThreshold),
                             nodeManager);
                 }
+                if (predictiveMemoryAdmissionEnabled) {
+                    root.setMemoryAdmissionController(memoryAdmissionController);
+                }
                 group = root;
                 rootGroups.add(root);
             }
@@ -495,6 +507,13 @@ public final class InternalResourceGroupManager<C>
         return queriesQueuedInternal;
     }
 
+    @Managed
+    @Nested
+    public MemoryAdmissionController getMemoryAdmissionController()
+    {
+        return memoryAdmissionController;
+    }
+
     @Managed
     public int getTaskLimitExceeded()
     {
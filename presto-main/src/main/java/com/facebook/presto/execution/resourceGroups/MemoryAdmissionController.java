@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.resourceGroups;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.execution.ManagedQueryExecution;
+import com.facebook.presto.spi.memory.MemoryPoolInfo;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Predicts the peak memory of a query from the peak memory of the last run of the same query text,
+ * with the same catalog and schema, and keeps the query queued while starting it would take the
+ * general pool past the target watermark. The predicted memory of a running query counts as
+ * reserved until the query actually reserves it. Queries without history are always admitted,
+ * and so is a query that has been kept queued for longer than the maximum wait, so that large
+ * queries are not starved by a stream of smaller ones.
+ */
+@ThreadSafe
+public class MemoryAdmissionController
+{
+    private static final int MAX_HISTORY_SIZE = 10_000;
+
+    private final double targetWatermark;
+    private final long maxWaitNanos;
+    private final Ticker ticker;
+    private final Cache<String, Long> peakMemoryHistory = CacheBuilder.newBuilder()
+            .maximumSize(MAX_HISTORY_SIZE)
+            .build();
+    // queries that were kept queued, which may be cancelled before they start
+    private final Cache<ManagedQueryExecution, Long> firstRefusalNanos = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    @GuardedBy("this")
+    private final Map<ManagedQueryExecution, Long> admittedQueries = new IdentityHashMap<>();
+    @GuardedBy("this")
+    private long generalPoolMaxBytes;
+    @GuardedBy("this")
+    private long generalPoolReservedBytes;
+
+    public MemoryAdmissionController(double targetWatermark, Duration maxWait)
+    {
+        this(targetWatermark, maxWait, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    MemoryAdmissionController(double targetWatermark, Duration maxWait, Ticker ticker)
+    {
+        checkArgument(targetWatermark >= 0 && targetWatermark <= 1, "targetWatermark must be between 0 and 1");
+        this.targetWatermark = targetWatermark;
+        this.maxWaitNanos = requireNonNull(maxWait, "maxWait is null").roundTo(NANOSECONDS);
+        this.ticker = requireNonNull(ticker, "ticker is null");
+    }
+
+    public synchronized void updateGeneralPool(MemoryPoolInfo memoryPoolInfo)
+    {
+        requireNonNull(memoryPoolInfo, "memoryPoolInfo is null");
+        generalPoolMaxBytes = memoryPoolInfo.getMaxBytes();
+        generalPoolReservedBytes = memoryPoolInfo.getReservedBytes() + memoryPoolInfo.getReservedRevocableBytes();
+    }
+
+    /**
+     * Returns whether the query can start. If it can, its predicted memory is counted as reserved until it finishes.
+     */
+    public synchronized boolean tryAdmit(ManagedQueryExecution query)
+    {
+        Long predictedBytes = peakMemoryHistory.getIfPresent(getHistoryKey(query));
+        if (predictedBytes == null || generalPoolMaxBytes == 0) {
+            return true;
+        }
+
+        long committedBytes = generalPoolReservedBytes + getUnreservedPredictedBytes();
+        // a query that needs more than the target on its own starts when the pool is empty
+        if (committedBytes > 0 && committedBytes + predictedBytes > targetWatermark * generalPoolMaxBytes) {
+            long now = ticker.read();
+            Long refusedSince = firstRefusalNanos.asMap().putIfAbsent(query, now);
+            if (refusedSince == null || now - refusedSince < maxWaitNanos) {
+                return false;
+            }
+        }
+        firstRefusalNanos.invalidate(query);
+        admittedQueries.put(query, predictedBytes);
+        return true;
+    }
+
+    public void queryFinished(ManagedQueryExecution query)
+    {
+        long peakBytes = query.getBasicQueryInfo().getQueryStats().getPeakTotalMemoryReservation().toBytes();
+        String historyKey = getHistoryKey(query);
+        synchronized (this) {
+            admittedQueries.remove(query);
+        }
+        if (peakBytes > 0) {
+            peakMemoryHistory.put(historyKey, peakBytes);
+        }
+    }
+
+    @GuardedBy("this")
+    private long getUnreservedPredictedBytes()
+    {
+        long unreservedBytes = 0;
+        for (Map.Entry<ManagedQueryExecution, Long> entry : admittedQueries.entrySet()) {
+            unreservedBytes += Math.max(0, entry.getValue() - entry.getKey().getTotalMemoryReservation().toBytes());
+        }
+        return unreservedBytes;
+    }
+
+    private static String getHistoryKey(ManagedQueryExecution query)
+    {
+        Session session = query.getSession();
+        String key = session.getCatalog().orElse("") + "." + session.getSchema().orElse("") + "\n" + query.getBasicQueryInfo().getQuery();
+        return Hashing.sha256().hashString(key, UTF_8).toString();
+    }
+
+    @Managed
+    public synchronized long getUnreservedPredictedBytesOfRunningQueries()
+    {
+        return getUnreservedPredictedBytes();
+    }
+
+    @Managed
+    public long getHistorySize()
+    {
+        return peakMemoryHistory.size();
+    }
+}
@@ -49,6 +49,25 @@ public final class ArrayPositionLinks
             return left;
         }
 
+        // The methods below are used by the parallel build of PagesHash, which links positions
+        // from several threads and counts the links of each thread itself. They are public because
+        // JoinCompiler loads PagesHash in its own class loader, outside of this package at runtime.
+
+        public int getLink(int position)
+        {
+            return positionLinks[position];
+        }
+
+        public void setLink(int left, int right)
+        {
+            positionLinks[left] = right;
+        }
+
+        public void addLinkCount(int count)
+        {
+            size += count;
+        }
+
         @Override
         public PositionLinks.Factory build()
         {
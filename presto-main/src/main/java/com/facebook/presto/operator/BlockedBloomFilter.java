@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.DateType;
+import com.facebook.presto.common.type.IntegerType;
+import com.facebook.presto.common.type.ShortDecimalType;
+import com.facebook.presto.common.type.SmallintType;
+import com.facebook.presto.common.type.TinyintType;
+import com.facebook.presto.common.type.Type;
+import io.airlift.units.DataSize;
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Split block Bloom filter over the values of a fixed width integral type. Every value sets one bit
+ * in each of the 8 words of a 512 bit block, so both adding and testing a value touch a single cache line.
+ * Used by dynamic filtering to summarize build sides that have too many distinct keys to be collected exactly.
+ * Filters with the same type and block count can be combined with {@link #merge(BlockedBloomFilter)}.
+ */
+public final class BlockedBloomFilter
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BlockedBloomFilter.class).instanceSize();
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BLOCK_SIZE_IN_BYTES = WORDS_PER_BLOCK * Long.BYTES;
+    // odd multipliers used to derive an independent bit index for each word of a block
+    private static final long[] SALTS = {
+            0x47b6137b44974d91L,
+            0x8824ad5ba2b7289dL,
+            0x705495c72df1424bL,
+            0x9efc49475c6bfb31L,
+            0x44974d9147b6137bL,
+            0xa2b7289d8824ad5bL,
+            0x2df1424b705495c7L,
+            0x5c6bfb319efc4947L};
+
+    private final Type type;
+    private final long[] words;
+    private final int blockMask;
+
+    public BlockedBloomFilter(Type type, int blockCount)
+    {
+        checkArgument(isSupported(type), "Unsupported type: %s", type);
+        checkArgument(blockCount > 0 && Integer.bitCount(blockCount) == 1, "blockCount must be a positive power of 2");
+        this.type = requireNonNull(type, "type is null");
+        this.words = new long[toIntExact((long) blockCount * WORDS_PER_BLOCK)];
+        this.blockMask = blockCount - 1;
+    }
+
+    public static boolean isSupported(Type type)
+    {
+        return type instanceof BigintType ||
+                type instanceof IntegerType ||
+                type instanceof SmallintType ||
+                type instanceof TinyintType ||
+                type instanceof DateType ||
+                type instanceof ShortDecimalType;
+    }
+
+    /**
+     * Returns the largest block count whose filter fits in {@code maxSize}, or 0 if not even a single block fits.
+     */
+    public static int getBlockCount(DataSize maxSize)
+    {
+        long blocks = Math.min(maxSize.toBytes() / BLOCK_SIZE_IN_BYTES, Integer.MAX_VALUE / WORDS_PER_BLOCK);
+        if (blocks == 0) {
+            return 0;
+        }
+        return Integer.highestOneBit(toIntExact(blocks));
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public int getBlockCount()
+    {
+        return blockMask + 1;
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(words);
+    }
+
+    /**
+     * Adds the non-null values of the block.
+     */
+    public void addAll(Block block)
+    {
+        for (int position = 0; position < block.getPositionCount(); position++) {
+            if (!block.isNull(position)) {
+                add(type.getLong(block, position));
+            }
+        }
+    }
+
+    public void add(long value)
+    {
+        long hash = murmurHash3(value);
+        int offset = ((int) hash & blockMask) * WORDS_PER_BLOCK;
+        long blockHash = hash >>> 32;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            words[offset + i] |= 1L << ((blockHash * SALTS[i]) >>> 58);
+        }
+    }
+
+    /**
+     * Returns false if the value at the position was never added. Nulls never match.
+     */
+    public boolean mightContain(Block block, int position)
+    {
+        return !block.isNull(position) && mightContain(type.getLong(block, position));
+    }
+
+    public boolean mightContain(long value)
+    {
+        long hash = murmurHash3(value);
+        int offset = ((int) hash & blockMask) * WORDS_PER_BLOCK;
+        long blockHash = hash >>> 32;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            if ((words[offset + i] & (1L << ((blockHash * SALTS[i]) >>> 58))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all values of the other filter to this one.
+     */
+    public void merge(BlockedBloomFilter other)
+    {
+        checkArgument(type.equals(other.type), "Cannot merge Bloom filters of types %s and %s", type, other.type);
+        checkArgument(words.length == other.words.length, "Cannot merge Bloom filters of different sizes");
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("type", type)
+                .add("blockCount", getBlockCount())
+                .toString();
+    }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isFixedWidthGroupByHashEnabled;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -150,6 +151,7 @@ public class DistinctLimitOperator
                 hashChannel,
                 min((int) limit, 10_000),
                 isDictionaryAggregationEnabled(operatorContext.getSession()),
+                isFixedWidthGroupByHashEnabled(operatorContext.getSession()),
                 joinCompiler,
                 this::updateMemoryReservation);
         remainingLimit = limit;
@@ -20,6 +20,7 @@ import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.predicate.ValueSet;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.aggregation.TypedSet;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.google.common.collect.ImmutableList;
@@ -29,7 +30,9 @@ import io.airlift.units.DataSize;
 import javax.annotation.Nullable;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import static com.facebook.presto.common.predicate.Range.range;
@@ -39,6 +42,7 @@ import static com.facebook.presto.common.type.TypeUtils.isFloatingPointNaN;
 import static com.facebook.presto.common.type.TypeUtils.readNativeValue;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toSet;
 
@@ -46,7 +50,8 @@ import static java.util.stream.Collectors.toSet;
  * This operator acts as a simple "pass-through" pipe, while saving its input pages.
  * The collected pages' value are used for creating a run-time filtering constraint (for probe-side table scan in an inner join).
  * We record all values for the run-time filter only for small build-side pages (which should be the case when using "broadcast" join).
- * For large inputs on build side, we can optionally record the min and max values per channel for orderable types (except Double and Real).
+ * For large inputs on build side, we can optionally record the min and max values per channel for orderable types (except Double and Real),
+ * and a {@link BlockedBloomFilter} per channel for fixed width integral types.
  */
 public class DynamicFilterSourceOperator
         implements Operator
@@ -87,11 +92,12 @@ public class DynamicFilterSourceOperator
     {
         private final int operatorId;
         private final PlanNodeId planNodeId;
-        private final Consumer<TupleDomain<String>> dynamicPredicateConsumer;
+        private final BiConsumer<TupleDomain<String>, Map<String, BlockedBloomFilter>> dynamicPredicateConsumer;
         private final List<Channel> channels;
         private final int maxFilterPositionsCount;
         private final DataSize maxFilterSize;
         private final int minMaxCollectionLimit;
+        private final DataSize maxBloomFilterSize;
         private final boolean useNewNanDefinition;
 
         private boolean closed;
@@ -105,6 +111,29 @@ public class DynamicFilterSourceOperator
                 DataSize maxFilterSize,
                 int minMaxCollectionLimit,
                 boolean useNewNanDefinition)
+        {
+            this(
+                    operatorId,
+                    planNodeId,
+                    (tupleDomain, bloomFilters) -> dynamicPredicateConsumer.accept(tupleDomain),
+                    channels,
+                    maxFilterPositionsCount,
+                    maxFilterSize,
+                    minMaxCollectionLimit,
+                    new DataSize(0, BYTE),
+                    useNewNanDefinition);
+        }
+
+        public DynamicFilterSourceOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                BiConsumer<TupleDomain<String>, Map<String, BlockedBloomFilter>> dynamicPredicateConsumer,
+                List<Channel> channels,
+                int maxFilterPositionsCount,
+                DataSize maxFilterSize,
+                int minMaxCollectionLimit,
+                DataSize maxBloomFilterSize,
+                boolean useNewNanDefinition)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -119,6 +148,7 @@ public class DynamicFilterSourceOperator
             this.maxFilterPositionsCount = maxFilterPositionsCount;
             this.maxFilterSize = maxFilterSize;
             this.minMaxCollectionLimit = minMaxCollectionLimit;
+            this.maxBloomFilterSize = requireNonNull(maxBloomFilterSize, "maxBloomFilterSize is null");
             this.useNewNanDefinition = useNewNanDefinition;
         }
 
@@ -134,6 +164,7 @@ public class DynamicFilterSourceOperator
                     maxFilterPositionsCount,
                     maxFilterSize,
                     minMaxCollectionLimit,
+                    maxBloomFilterSize,
                     useNewNanDefinition);
         }
 
@@ -152,12 +183,15 @@ public class DynamicFilterSourceOperator
     }
 
     private final OperatorContext context;
-    private final Consumer<TupleDomain<String>> dynamicPredicateConsumer;
+    private final BiConsumer<TupleDomain<String>, Map<String, BlockedBloomFilter>> dynamicPredicateConsumer;
     private final int maxFilterPositionsCount;
     private final long maxFilterSizeInBytes;
     private final List<Channel> channels;
     private final List<Integer> minMaxChannels;
+    private final List<Integer> bloomFilterChannels;
+    private final int bloomFilterBlockCount;
     private final boolean useNewNanDefinition;
+    private final LocalMemoryContext bloomFilterMemoryContext;
 
     private boolean finished;
     private Page current;
@@ -174,14 +208,19 @@ public class DynamicFilterSourceOperator
     @Nullable
     private Block[] maxValues;
 
+    // Created once the exact predicate becomes too large, for the channels in bloomFilterChannels.
+    @Nullable
+    private BlockedBloomFilter[] bloomFilters;
+
     private DynamicFilterSourceOperator(
             OperatorContext context,
-            Consumer<TupleDomain<String>> dynamicPredicateConsumer,
+            BiConsumer<TupleDomain<String>, Map<String, BlockedBloomFilter>> dynamicPredicateConsumer,
             List<Channel> channels,
             PlanNodeId planNodeId,
             int maxFilterPositionsCount,
             DataSize maxFilterSize,
             int minMaxCollectionLimit,
+            DataSize maxBloomFilterSize,
             boolean useNewNanDefinition)
     {
         this.context = requireNonNull(context, "context is null");
@@ -194,12 +233,17 @@ public class DynamicFilterSourceOperator
         this.blockBuilders = new BlockBuilder[channels.size()];
         this.valueSets = new TypedSet[channels.size()];
         ImmutableList.Builder<Integer> minMaxChannelsBuilder = ImmutableList.builder();
+        ImmutableList.Builder<Integer> bloomFilterChannelsBuilder = ImmutableList.builder();
+        this.bloomFilterBlockCount = BlockedBloomFilter.getBlockCount(maxBloomFilterSize);
         for (int channelIndex = 0; channelIndex < channels.size(); ++channelIndex) {
             Type type = channels.get(channelIndex).getType();
             // Skipping DOUBLE and REAL in collectMinMaxValues to avoid dealing with NaN values
             if (minMaxCollectionLimit > 0 && type.isOrderable() && !type.equals(DOUBLE) && !type.equals(REAL)) {
                 minMaxChannelsBuilder.add(channelIndex);
             }
+            if (bloomFilterBlockCount > 0 && BlockedBloomFilter.isSupported(type)) {
+                bloomFilterChannelsBuilder.add(channelIndex);
+            }
             this.blockBuilders[channelIndex] = type.createBlockBuilder(null, EXPECTED_BLOCK_BUILDER_SIZE);
             this.valueSets[channelIndex] = new TypedSet(
                     type,
@@ -211,11 +255,13 @@ public class DynamicFilterSourceOperator
         }
         this.minMaxCollectionLimit = minMaxCollectionLimit;
         minMaxChannels = minMaxChannelsBuilder.build();
+        bloomFilterChannels = bloomFilterChannelsBuilder.build();
         if (!minMaxChannels.isEmpty()) {
             minValues = new Block[channels.size()];
             maxValues = new Block[channels.size()];
         }
         this.useNewNanDefinition = useNewNanDefinition;
+        this.bloomFilterMemoryContext = context.localUserMemoryContext();
     }
 
     @Override
@@ -237,6 +283,11 @@ public class DynamicFilterSourceOperator
         current = page;
         if (valueSets == null) {
             // the exact predicate became too large.
+            if (bloomFilters != null) {
+                for (Integer channelIndex : bloomFilterChannels) {
+                    bloomFilters[channelIndex].addAll(page.getBlock(channels.get(channelIndex).getIndex()));
+                }
+            }
             if (minValues == null) {
                 // there are too many rows to collect min/max range
                 return;
@@ -276,9 +327,22 @@ public class DynamicFilterSourceOperator
     private void handleTooLargePredicate()
     {
         // The resulting predicate is too large
+        if (!bloomFilterChannels.isEmpty()) {
+            // keep summarizing the supported channels in Bloom filters, which stay bounded in size
+            bloomFilters = new BlockedBloomFilter[channels.size()];
+            long bloomFiltersSizeInBytes = 0;
+            for (Integer channelIndex : bloomFilterChannels) {
+                bloomFilters[channelIndex] = new BlockedBloomFilter(channels.get(channelIndex).getType(), bloomFilterBlockCount);
+                bloomFilters[channelIndex].addAll(blockBuilders[channelIndex].build());
+                bloomFiltersSizeInBytes += bloomFilters[channelIndex].getRetainedSizeInBytes();
+            }
+            bloomFilterMemoryContext.setBytes(bloomFiltersSizeInBytes);
+        }
         if (minMaxChannels.isEmpty()) {
-            // allow all probe-side values to be read.
-            dynamicPredicateConsumer.accept(TupleDomain.all());
+            if (bloomFilters == null) {
+                // allow all probe-side values to be read.
+                dynamicPredicateConsumer.accept(TupleDomain.all(), ImmutableMap.of());
+            }
         }
         else {
             if (minMaxCollectionLimit < 0) {
@@ -300,8 +364,10 @@ public class DynamicFilterSourceOperator
 
     private void handleMinMaxCollectionLimitExceeded()
     {
-        // allow all probe-side values to be read.
-        dynamicPredicateConsumer.accept(TupleDomain.all());
+        if (bloomFilters == null) {
+            // allow all probe-side values to be read.
+            dynamicPredicateConsumer.accept(TupleDomain.all(), ImmutableMap.of());
+        }
         // Drop references to collected values.
         minValues = null;
         maxValues = null;
@@ -369,30 +435,40 @@ public class DynamicFilterSourceOperator
         finished = true;
         ImmutableMap.Builder<String, Domain> domainsBuilder = ImmutableMap.builder();
         if (valueSets == null) {
-            if (minValues == null) {
+            if (minValues == null && bloomFilters == null) {
                 // there were too many rows to collect min/max range
                 // dynamicPredicateConsumer was notified with 'all' in handleTooLargePredicate if there are no orderable types,
                 // else it was notified with 'all' in handleMinMaxCollectionLimitExceeded
                 return;
             }
-            // valueSets became too large, create TupleDomain from min/max values
-            for (Integer channelIndex : minMaxChannels) {
-                Type type = channels.get(channelIndex).type;
-                if (minValues[channelIndex] == null) {
-                    // all values were null
-                    domainsBuilder.put(channels.get(channelIndex).filterId, Domain.none(type));
-                    continue;
+            if (minValues != null) {
+                // valueSets became too large, create TupleDomain from min/max values
+                for (Integer channelIndex : minMaxChannels) {
+                    Type type = channels.get(channelIndex).type;
+                    if (minValues[channelIndex] == null) {
+                        // all values were null
+                        domainsBuilder.put(channels.get(channelIndex).filterId, Domain.none(type));
+                        continue;
+                    }
+                    Object min = readNativeValue(type, minValues[channelIndex], 0);
+                    Object max = readNativeValue(type, maxValues[channelIndex], 0);
+                    Domain domain = Domain.create(
+                            ValueSet.ofRanges(range(type, min, true, max, true)),
+                            false);
+                    domainsBuilder.put(channels.get(channelIndex).filterId, domain);
+                }
+                minValues = null;
+                maxValues = null;
+            }
+            ImmutableMap.Builder<String, BlockedBloomFilter> bloomFiltersBuilder = ImmutableMap.builder();
+            if (bloomFilters != null) {
+                for (Integer channelIndex : bloomFilterChannels) {
+                    bloomFiltersBuilder.put(channels.get(channelIndex).getFilterId(), bloomFilters[channelIndex]);
                 }
-                Object min = readNativeValue(type, minValues[channelIndex], 0);
-                Object max = readNativeValue(type, maxValues[channelIndex], 0);
-                Domain domain = Domain.create(
-                        ValueSet.ofRanges(range(type, min, true, max, true)),
-                        false);
-                domainsBuilder.put(channels.get(channelIndex).filterId, domain);
+                bloomFilters = null;
+                bloomFilterMemoryContext.setBytes(0);
             }
-            minValues = null;
-            maxValues = null;
-            dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domainsBuilder.build()));
+            dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domainsBuilder.build()), bloomFiltersBuilder.build());
             return;
         }
 
@@ -404,7 +480,14 @@ public class DynamicFilterSourceOperator
         }
         valueSets = null;
         blockBuilders = null;
-        dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domainsBuilder.build()));
+        dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domainsBuilder.build()), ImmutableMap.of());
+    }
+
+    @Override
+    public void close()
+    {
+        bloomFilters = null;
+        bloomFilterMemoryContext.setBytes(0);
     }
 
     private Domain convertToDomain(Type type, Block block)
@@ -16,6 +16,10 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
 
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+
 final class EmptyLookupSource
         implements LookupSource
 {
@@ -55,6 +59,18 @@ final class EmptyLookupSource
         return -1;
     }
 
+    @Override
+    public boolean isBatchLookupSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        Arrays.fill(joinPositions, 0, positionCount, -1);
+    }
+
     @Override
     public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
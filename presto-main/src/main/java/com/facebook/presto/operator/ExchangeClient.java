@@ -17,6 +17,7 @@ import com.facebook.airlift.http.client.HttpClient;
 import com.facebook.drift.client.DriftClient;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.ExchangeRequestController.SourceState;
 import com.facebook.presto.operator.PageBufferClient.ClientCallback;
 import com.facebook.presto.operator.WorkProcessor.ProcessState;
 import com.facebook.presto.server.thrift.ThriftTaskClient;
@@ -115,6 +116,10 @@ public class ExchangeClient
     private long successfulRequests;
     @GuardedBy("this")
     private final ExponentialMovingAverage responseSizeExponentialMovingAverage;
+    @Nullable
+    @GuardedBy("this")
+    private final ExchangeRequestController requestController;
+    private final ConcurrentMap<PageBufferClient, SourceState> sourceStates = new ConcurrentHashMap<>();
 
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
@@ -131,6 +136,7 @@ public class ExchangeClient
             Duration maxErrorDuration,
             boolean acknowledgePages,
             double responseSizeExponentialMovingAverageDecayingAlpha,
+            boolean adaptiveRequestControlEnabled,
             HttpClient httpClient,
             DriftClient<ThriftTaskClient> driftClient,
             ScheduledExecutorService scheduler,
@@ -150,6 +156,7 @@ public class ExchangeClient
         this.maxBufferRetainedSizeInBytes = Long.MIN_VALUE;
         this.pageBufferClientCallbackExecutor = requireNonNull(pageBufferClientCallbackExecutor, "pageBufferClientCallbackExecutor is null");
         this.responseSizeExponentialMovingAverage = new ExponentialMovingAverage(responseSizeExponentialMovingAverageDecayingAlpha, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        this.requestController = adaptiveRequestControlEnabled ? new ExchangeRequestController(this.bufferCapacity, maxResponseSize.toBytes()) : null;
     }
 
     public ExchangeClientStatus getStatus()
@@ -215,6 +222,9 @@ public class ExchangeClient
                 scheduler,
                 pageBufferClientCallbackExecutor);
         allClients.put(location, client);
+        if (requestController != null) {
+            sourceStates.put(client, requestController.createSourceState());
+        }
         checkState(taskIdToLocationMap.put(remoteSourceTaskId, location) == null, "Duplicate remoteSourceTaskId: " + remoteSourceTaskId);
         queuedClients.add(client);
 
@@ -364,11 +374,15 @@ public class ExchangeClient
         if (neededBytes <= 0) {
             return;
         }
+        int pendingClients = allClients.size() - queuedClients.size() - completedClients.size();
+        if (requestController != null) {
+            scheduleAdaptiveRequests(neededBytes, pendingClients);
+            return;
+        }
+
         long averageResponseSize = max(1, responseSizeExponentialMovingAverage.get());
         int clientCount = (int) ((1.0 * neededBytes / averageResponseSize) * concurrentRequestMultiplier);
         clientCount = max(clientCount, 1);
-
-        int pendingClients = allClients.size() - queuedClients.size() - completedClients.size();
         clientCount -= pendingClients;
 
         for (int i = 0; i < clientCount; ) {
@@ -388,6 +402,36 @@ public class ExchangeClient
         }
     }
 
+    // requests are limited by the concurrency of the controller and by the free space in the buffer,
+    // but one request is always allowed when none is in flight so that the exchange makes progress
+    @GuardedBy("this")
+    private void scheduleAdaptiveRequests(long neededBytes, int pendingClients)
+    {
+        long requestedBytes = 0;
+        for (int i = pendingClients; i < requestController.getConcurrencyLimit(); ) {
+            PageBufferClient client = queuedClients.peek();
+            if (client == null) {
+                // no more clients available
+                return;
+            }
+            if (removedClients.contains(client)) {
+                queuedClients.poll();
+                continue;
+            }
+
+            SourceState source = sourceStates.get(client);
+            long requestSize = requestController.getRequestSize(source);
+            if (i > 0 && requestedBytes + requestSize > neededBytes) {
+                return;
+            }
+            queuedClients.poll();
+            requestController.requestStarted(source, requestSize, System.nanoTime());
+            client.scheduleRequest(new DataSize(requestSize, BYTE));
+            requestedBytes += requestSize;
+            i++;
+        }
+    }
+
     public ListenableFuture<?> isBlocked()
     {
         // Fast path return without synchronizing
@@ -405,7 +449,7 @@ public class ExchangeClient
         }
     }
 
-    private boolean addPages(List<SerializedPage> pages)
+    private boolean addPages(PageBufferClient client, List<SerializedPage> pages)
     {
         // Compute stats before acquiring the lock
         long pagesRetainedSizeInBytes = 0;
@@ -435,6 +479,12 @@ public class ExchangeClient
 
             successfulRequests++;
             responseSizeExponentialMovingAverage.update(responseSize);
+            if (requestController != null) {
+                SourceState source = sourceStates.get(client);
+                if (source != null) {
+                    requestController.responseReceived(source, responseSize, System.nanoTime(), bufferRetainedSizeInBytes);
+                }
+            }
         }
         // Trigger notifications after releasing the lock
         notifyListeners(notify);
@@ -512,7 +562,7 @@ public class ExchangeClient
         {
             requireNonNull(client, "client is null");
             requireNonNull(pages, "pages is null");
-            return ExchangeClient.this.addPages(pages);
+            return ExchangeClient.this.addPages(client, pages);
         }
 
         @Override
@@ -40,6 +40,7 @@ public class ExchangeClientConfig
     private int pageBufferClientMaxCallbackThreads = 25;
     private boolean acknowledgePages = true;
     private double responseSizeExponentialMovingAverageDecayingAlpha = 0.1;
+    private boolean adaptiveRequestControlEnabled;
 
     @NotNull
     public DataSize getMaxBufferSize()
@@ -171,4 +172,16 @@ public class ExchangeClientConfig
     {
         return responseSizeExponentialMovingAverageDecayingAlpha;
     }
+
+    public boolean isAdaptiveRequestControlEnabled()
+    {
+        return adaptiveRequestControlEnabled;
+    }
+
+    @Config("exchange.adaptive-request-control-enabled")
+    public ExchangeClientConfig setAdaptiveRequestControlEnabled(boolean adaptiveRequestControlEnabled)
+    {
+        this.adaptiveRequestControlEnabled = adaptiveRequestControlEnabled;
+        return this;
+    }
 }
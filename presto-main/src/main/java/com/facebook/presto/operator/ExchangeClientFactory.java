@@ -47,6 +47,7 @@ public class ExchangeClientFactory
     private final DataSize maxResponseSize;
     private final boolean acknowledgePages;
     private final double responseSizeExponentialMovingAverageDecayingAlpha;
+    private final boolean adaptiveRequestControlEnabled;
     private final ScheduledExecutorService scheduler;
     private final ThreadPoolExecutorMBean executorMBean;
     private final ExecutorService pageBufferClientCallbackExecutor;
@@ -66,6 +67,7 @@ public class ExchangeClientFactory
                 config.isAcknowledgePages(),
                 config.getPageBufferClientMaxCallbackThreads(),
                 config.getResponseSizeExponentialMovingAverageDecayingAlpha(),
+                config.isAdaptiveRequestControlEnabled(),
                 httpClient,
                 driftClient,
                 scheduler);
@@ -79,6 +81,7 @@ public class ExchangeClientFactory
             boolean acknowledgePages,
             int pageBufferClientMaxCallbackThreads,
             double responseSizeExponentialMovingAverageDecayingAlpha,
+            boolean adaptiveRequestControlEnabled,
             HttpClient httpClient,
             DriftClient<ThriftTaskClient> driftClient,
             ScheduledExecutorService scheduler)
@@ -102,6 +105,7 @@ public class ExchangeClientFactory
         this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) pageBufferClientCallbackExecutor);
 
         this.responseSizeExponentialMovingAverageDecayingAlpha = responseSizeExponentialMovingAverageDecayingAlpha;
+        this.adaptiveRequestControlEnabled = adaptiveRequestControlEnabled;
 
         checkArgument(maxBufferedBytes.toBytes() > 0, "maxBufferSize must be at least 1 byte: %s", maxBufferedBytes);
         checkArgument(maxResponseSize.toBytes() > 0, "maxResponseSize must be at least 1 byte: %s", maxResponseSize);
@@ -132,6 +136,7 @@ public class ExchangeClientFactory
                 maxErrorDuration,
                 acknowledgePages,
                 responseSizeExponentialMovingAverageDecayingAlpha,
+                adaptiveRequestControlEnabled,
                 httpClient,
                 driftClient,
                 scheduler,
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.execution.ScheduledSplit;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.metadata.Split;
 import com.facebook.presto.spi.ConnectorId;
 import com.facebook.presto.spi.UpdatablePageSource;
@@ -25,6 +26,8 @@ import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.split.RemoteSplit;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import javax.annotation.Nullable;
+
 import java.io.Closeable;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -45,6 +48,7 @@ public class ExchangeOperator
         private final PlanNodeId sourceId;
         private final TaskExchangeClientManager taskExchangeClientManager;
         private final PagesSerdeFactory serdeFactory;
+        private final Optional<Supplier<ExchangePageCompactor>> pageCompactorFactory;
         private ExchangeClient exchangeClient;
         private boolean closed;
 
@@ -53,11 +57,22 @@ public class ExchangeOperator
                 PlanNodeId sourceId,
                 TaskExchangeClientManager taskExchangeClientManager,
                 PagesSerdeFactory serdeFactory)
+        {
+            this(operatorId, sourceId, taskExchangeClientManager, serdeFactory, Optional.empty());
+        }
+
+        public ExchangeOperatorFactory(
+                int operatorId,
+                PlanNodeId sourceId,
+                TaskExchangeClientManager taskExchangeClientManager,
+                PagesSerdeFactory serdeFactory,
+                Optional<Supplier<ExchangePageCompactor>> pageCompactorFactory)
         {
             this.operatorId = operatorId;
             this.sourceId = sourceId;
             this.taskExchangeClientManager = requireNonNull(taskExchangeClientManager, "taskExchangeClientManager is null");
             this.serdeFactory = serdeFactory;
+            this.pageCompactorFactory = requireNonNull(pageCompactorFactory, "pageCompactorFactory is null");
         }
 
         @Override
@@ -79,7 +94,8 @@ public class ExchangeOperator
                     operatorContext,
                     sourceId,
                     serdeFactory.createPagesSerde(),
-                    exchangeClient);
+                    exchangeClient,
+                    pageCompactorFactory.map(Supplier::get));
         }
 
         @Override
@@ -93,6 +109,9 @@ public class ExchangeOperator
     private final PlanNodeId sourceId;
     private final ExchangeClient exchangeClient;
     private final PagesSerde serde;
+    private final Optional<ExchangePageCompactor> pageCompactor;
+    @Nullable
+    private final LocalMemoryContext pageCompactorMemoryContext;
     private ListenableFuture<?> isBlocked = NOT_BLOCKED;
 
     public ExchangeOperator(
@@ -100,11 +119,23 @@ public class ExchangeOperator
             PlanNodeId sourceId,
             PagesSerde serde,
             ExchangeClient exchangeClient)
+    {
+        this(operatorContext, sourceId, serde, exchangeClient, Optional.empty());
+    }
+
+    public ExchangeOperator(
+            OperatorContext operatorContext,
+            PlanNodeId sourceId,
+            PagesSerde serde,
+            ExchangeClient exchangeClient,
+            Optional<ExchangePageCompactor> pageCompactor)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.sourceId = requireNonNull(sourceId, "sourceId is null");
         this.exchangeClient = requireNonNull(exchangeClient, "exchangeClient is null");
         this.serde = requireNonNull(serde, "serde is null");
+        this.pageCompactor = requireNonNull(pageCompactor, "pageCompactor is null");
+        this.pageCompactorMemoryContext = pageCompactor.isPresent() ? operatorContext.newLocalSystemMemoryContext(ExchangeOperator.class.getSimpleName()) : null;
 
         operatorContext.setInfoSupplier(exchangeClient::getStatus);
     }
@@ -149,12 +180,16 @@ public class ExchangeOperator
     @Override
     public boolean isFinished()
     {
-        return exchangeClient.isFinished();
+        return exchangeClient.isFinished() && (!pageCompactor.isPresent() || pageCompactor.get().isFinished());
     }
 
     @Override
     public ListenableFuture<?> isBlocked()
     {
+        // pages that are ready in the compactor do not need to wait for the exchange
+        if (pageCompactor.isPresent() && !pageCompactor.get().needsInput()) {
+            return NOT_BLOCKED;
+        }
         // Avoid registering a new callback in the ExchangeClient when one is already pending
         if (isBlocked.isDone()) {
             isBlocked = exchangeClient.isBlocked();
@@ -179,6 +214,27 @@ public class ExchangeOperator
 
     @Override
     public Page getOutput()
+    {
+        if (!pageCompactor.isPresent()) {
+            return pollPage();
+        }
+
+        ExchangePageCompactor compactor = pageCompactor.get();
+        if (compactor.needsInput()) {
+            Page page = pollPage();
+            if (page != null) {
+                compactor.addInput(page);
+            }
+            else if (exchangeClient.isFinished()) {
+                compactor.finish();
+            }
+        }
+        Page output = compactor.getOutput();
+        pageCompactorMemoryContext.setBytes(compactor.isFinished() ? 0 : compactor.getRetainedSizeInBytes());
+        return output;
+    }
+
+    private Page pollPage()
     {
         SerializedPage page = exchangeClient.pollPage();
         if (page == null) {
@@ -197,5 +253,8 @@ public class ExchangeOperator
     public void close()
     {
         exchangeClient.close();
+        if (pageCompactorMemoryContext != null) {
+            pageCompactorMemoryContext.setBytes(0);
+        }
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.project.MergingPageOutput;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+
+/**
+ * Changes the size of the pages received by an exchange. Pages that are smaller than the
+ * minimum size and have fewer rows than the minimum row count are merged by a {@link MergingPageOutput},
+ * and pages that are larger than the maximum size are split into regions, which does not copy them.
+ * The order of the rows is kept.
+ */
+@NotThreadSafe
+public class ExchangePageCompactor
+{
+    private final MergingPageOutput mergingPageOutput;
+    private final long maxPageSizeInBytes;
+
+    public ExchangePageCompactor(List<Type> types, long minPageSizeInBytes, int minRowCount, long maxPageSizeInBytes)
+    {
+        checkArgument(maxPageSizeInBytes >= minPageSizeInBytes, "maxPageSizeInBytes must be greater or equal than minPageSizeInBytes");
+        this.mergingPageOutput = new MergingPageOutput(types, minPageSizeInBytes, minRowCount);
+        this.maxPageSizeInBytes = maxPageSizeInBytes;
+    }
+
+    public boolean needsInput()
+    {
+        return mergingPageOutput.needsInput();
+    }
+
+    public void addInput(Page page)
+    {
+        mergingPageOutput.addInput(split(page, maxPageSizeInBytes).stream()
+                .map(Optional::of)
+                .iterator());
+    }
+
+    @Nullable
+    public Page getOutput()
+    {
+        return mergingPageOutput.getOutput();
+    }
+
+    public void finish()
+    {
+        mergingPageOutput.finish();
+    }
+
+    public boolean isFinished()
+    {
+        return mergingPageOutput.isFinished();
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return mergingPageOutput.getRetainedSizeInBytes();
+    }
+
+    @VisibleForTesting
+    static List<Page> split(Page page, long maxPageSizeInBytes)
+    {
+        int positionCount = page.getPositionCount();
+        long sizeInBytes = page.getSizeInBytes();
+        if (sizeInBytes <= maxPageSizeInBytes || positionCount <= 1) {
+            return ImmutableList.of(page);
+        }
+
+        int pageCount = toIntExact(min(positionCount, (sizeInBytes + maxPageSizeInBytes - 1) / maxPageSizeInBytes));
+        int rowsPerPage = (positionCount + pageCount - 1) / pageCount;
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        for (int position = 0; position < positionCount; position += rowsPerPage) {
+            pages.add(page.getRegion(position, min(rowsPerPage, positionCount - position)));
+        }
+        return pages.build();
+    }
+}
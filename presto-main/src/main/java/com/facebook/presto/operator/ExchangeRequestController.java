@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sizes the requests of an {@link ExchangeClient} from the responses it receives, in the manner of TCP congestion control.
+ * <p>
+ * The number of concurrent requests starts small and doubles every round of responses while the buffer is less than
+ * half full, then grows by one per round. It is halved, at most once per round, when a response overflows the buffer
+ * or when a full response takes much longer per byte than the fastest full response seen so far.
+ * <p>
+ * Each source asks for twice what it returned last time, or for twice the previous request when the response filled it,
+ * capped at the maximum response size and at an equal share of the buffer for each concurrent request.
+ */
+@NotThreadSafe
+final class ExchangeRequestController
+{
+    @VisibleForTesting
+    static final int INITIAL_CONCURRENCY = 4;
+    @VisibleForTesting
+    static final long MIN_REQUEST_SIZE_IN_BYTES = 64 * 1024;
+    // a response is full when the source had at least this fraction of the requested bytes ready
+    private static final double FULL_RESPONSE_RATIO = 0.75;
+    private static final double LOW_BUFFER_UTILIZATION = 0.5;
+    private static final double LATENCY_TOLERANCE = 3.0;
+
+    private final long bufferCapacity;
+    private final long maxRequestSize;
+    private final int maxConcurrency;
+
+    private double concurrency = INITIAL_CONCURRENCY;
+    private double slowStartThreshold = Double.MAX_VALUE;
+    private int responsesSinceDecrease;
+    private double minNanosPerByte = Double.MAX_VALUE;
+
+    public ExchangeRequestController(long bufferCapacity, long maxRequestSize)
+    {
+        checkArgument(bufferCapacity > 0, "bufferCapacity must be positive");
+        checkArgument(maxRequestSize > 0, "maxRequestSize must be positive");
+        this.bufferCapacity = bufferCapacity;
+        this.maxRequestSize = maxRequestSize;
+        this.maxConcurrency = (int) min(Integer.MAX_VALUE, max(INITIAL_CONCURRENCY, bufferCapacity / MIN_REQUEST_SIZE_IN_BYTES));
+        this.responsesSinceDecrease = maxConcurrency;
+    }
+
+    public SourceState createSourceState()
+    {
+        return new SourceState(min(DEFAULT_MAX_PAGE_SIZE_IN_BYTES, maxRequestSize));
+    }
+
+    public int getConcurrencyLimit()
+    {
+        return (int) concurrency;
+    }
+
+    public long getRequestSize(SourceState source)
+    {
+        long bufferShare = max(MIN_REQUEST_SIZE_IN_BYTES, bufferCapacity / getConcurrencyLimit());
+        return max(1, min(source.requestSize, min(bufferShare, maxRequestSize)));
+    }
+
+    public void requestStarted(SourceState source, long requestSize, long nowNanos)
+    {
+        requireNonNull(source, "source is null");
+        source.requestedBytes = requestSize;
+        source.requestStartNanos = nowNanos;
+    }
+
+    /**
+     * @param bufferedBytes the bytes in the buffer after the response was added
+     */
+    public void responseReceived(SourceState source, long responseSize, long nowNanos, long bufferedBytes)
+    {
+        requireNonNull(source, "source is null");
+        boolean full = responseSize >= source.requestedBytes * FULL_RESPONSE_RATIO;
+        if (full) {
+            source.requestSize = min(source.requestedBytes * 2, maxRequestSize);
+        }
+        else if (responseSize > 0) {
+            source.requestSize = min(max(responseSize * 2, MIN_REQUEST_SIZE_IN_BYTES), maxRequestSize);
+        }
+
+        // only full responses say how fast data moves, the others include waiting for the source to produce it
+        boolean slow = false;
+        if (full && responseSize > 0) {
+            double nanosPerByte = (double) max(0, nowNanos - source.requestStartNanos) / responseSize;
+            slow = nanosPerByte > minNanosPerByte * LATENCY_TOLERANCE;
+            minNanosPerByte = min(minNanosPerByte, nanosPerByte);
+        }
+
+        // the concurrency never exceeds maxConcurrency, so counting further makes no difference
+        responsesSinceDecrease = min(responsesSinceDecrease + 1, maxConcurrency);
+        if (bufferedBytes > bufferCapacity || slow) {
+            if (responsesSinceDecrease >= concurrency) {
+                slowStartThreshold = max(1, concurrency / 2);
+                concurrency = slowStartThreshold;
+                responsesSinceDecrease = 0;
+            }
+        }
+        else if (bufferedBytes < bufferCapacity * LOW_BUFFER_UTILIZATION) {
+            if (concurrency < slowStartThreshold) {
+                concurrency += 1;
+            }
+            else {
+                concurrency += 1 / concurrency;
+            }
+            concurrency = min(concurrency, maxConcurrency);
+        }
+    }
+
+    /**
+     * Request size and timing of one source, which has at most one request in flight.
+     */
+    public static final class SourceState
+    {
+        private long requestSize;
+        private long requestedBytes;
+        private long requestStartNanos;
+
+        private SourceState(long requestSize)
+        {
+            this.requestSize = requestSize;
+        }
+    }
+}
@@ -0,0 +1,773 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.ByteBigArray;
+import com.facebook.presto.common.array.IntBigArray;
+import com.facebook.presto.common.array.LongBigArray;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.facebook.presto.common.type.AbstractIntType;
+import com.facebook.presto.common.type.AbstractLongType;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.DateType;
+import com.facebook.presto.common.type.IntegerType;
+import com.facebook.presto.common.type.ShortDecimalType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.scalar.CombineHashFunction;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INSUFFICIENT_RESOURCES;
+import static com.facebook.presto.sql.planner.PlannerUtils.INITIAL_HASH_VALUE;
+import static com.facebook.presto.type.TypeUtils.NULL_HASH_CODE;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * GroupByHash for 2 to {@value #MAX_CHANNEL_COUNT} keys of fixed width types (bigint, integer, date and short decimal).
+ * The keys of each group are packed into one flat long array, and the keys of an input page are extracted into
+ * a flat array once per page, so grouping never goes through per group blocks or a generic hash strategy.
+ * <p>
+ * Instances are created through {@link com.facebook.presto.sql.gen.JoinCompiler#compileFixedWidthGroupByHashFactory},
+ * which loads a private copy of this class for every key type combination so each one gets its own JIT profile.
+ * Hashes are computed the same way as {@link InterpretedHashGenerator}, so raw hashes are interchangeable
+ * with the ones produced by {@link MultiChannelGroupByHash}.
+ */
+public class FixedWidthGroupByHash
+        implements GroupByHash
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(FixedWidthGroupByHash.class).instanceSize();
+
+    public static final int MAX_CHANNEL_COUNT = 4;
+
+    private static final float FILL_RATIO = 0.75f;
+
+    private final List<Type> hashTypes;
+    private final List<Type> types;
+    private final int[] channels;
+    private final Optional<Integer> inputHashChannel;
+    private final int channelCount;
+    // keys read with Block.getInt rather than Block.getLong
+    private final boolean[] intKeys;
+    // keys whose type hash is the value itself (short decimal) rather than the xxhash64 mix
+    private final boolean[] identityHashKeys;
+    // the keys of the row looked up by contains
+    private final long[] rowValues;
+
+    private int hashCapacity;
+    private int maxFill;
+    private int mask;
+
+    // the hash table from raw hashes to groupIds
+    private LongBigArray rawHashes;
+    private IntBigArray groupIds;
+
+    // reverse index from the groupId back to the keys, channelCount values per group
+    private final LongBigArray valuesByGroupId;
+    // bit i is set when key i of the group is null
+    private final ByteBigArray nullsByGroupId;
+    private final LongBigArray rawHashByGroupId;
+
+    private int nextGroupId;
+    private long hashCollisions;
+    private double expectedHashCollisions;
+
+    // reserve enough memory before rehash
+    private final UpdateMemory updateMemory;
+    private long preallocatedMemoryInBytes;
+    private long currentPageSizeInBytes;
+    private long pageKeysSizeInBytes;
+
+    public static boolean isSupported(List<? extends Type> hashTypes)
+    {
+        if (hashTypes.size() < 2 || hashTypes.size() > MAX_CHANNEL_COUNT) {
+            return false;
+        }
+        for (Type type : hashTypes) {
+            if (!isSupportedType(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSupportedType(Type type)
+    {
+        return type instanceof BigintType || type instanceof IntegerType || type instanceof DateType || type instanceof ShortDecimalType;
+    }
+
+    public FixedWidthGroupByHash(
+            List<? extends Type> hashTypes,
+            int[] hashChannels,
+            Optional<Integer> inputHashChannel,
+            int expectedSize,
+            UpdateMemory updateMemory)
+    {
+        this.hashTypes = ImmutableList.copyOf(requireNonNull(hashTypes, "hashTypes is null"));
+        requireNonNull(hashChannels, "hashChannels is null");
+        checkArgument(isSupported(hashTypes), "Unsupported hash types: %s", hashTypes);
+        checkArgument(hashTypes.size() == hashChannels.length, "hashTypes and hashChannels have different sizes");
+        checkArgument(expectedSize > 0, "expectedSize must be greater than zero");
+
+        this.inputHashChannel = requireNonNull(inputHashChannel, "inputHashChannel is null");
+        this.types = inputHashChannel.isPresent() ? ImmutableList.copyOf(Iterables.concat(hashTypes, ImmutableList.of(BIGINT))) : this.hashTypes;
+        this.channels = hashChannels.clone();
+        this.channelCount = hashChannels.length;
+
+        intKeys = new boolean[channelCount];
+        identityHashKeys = new boolean[channelCount];
+        for (int i = 0; i < channelCount; i++) {
+            Type type = hashTypes.get(i);
+            intKeys[i] = type instanceof AbstractIntType;
+            identityHashKeys[i] = type instanceof ShortDecimalType;
+        }
+        rowValues = new long[channelCount];
+
+        hashCapacity = arraySize(expectedSize, FILL_RATIO);
+
+        maxFill = calculateMaxFill(hashCapacity);
+        mask = hashCapacity - 1;
+        rawHashes = new LongBigArray();
+        rawHashes.ensureCapacity(hashCapacity);
+        groupIds = new IntBigArray(-1);
+        groupIds.ensureCapacity(hashCapacity);
+
+        valuesByGroupId = new LongBigArray();
+        valuesByGroupId.ensureCapacity((long) maxFill * channelCount);
+        nullsByGroupId = new ByteBigArray();
+        nullsByGroupId.ensureCapacity(maxFill);
+        rawHashByGroupId = new LongBigArray();
+        rawHashByGroupId.ensureCapacity(maxFill);
+
+        // This interface is used for actively reserving memory (push model) for rehash.
+        // The caller can also query memory usage on this object (pull model)
+        this.updateMemory = requireNonNull(updateMemory, "updateMemory is null");
+    }
+
+    @Override
+    public long getEstimatedSize()
+    {
+        return INSTANCE_SIZE +
+                rawHashes.sizeOf() +
+                groupIds.sizeOf() +
+                valuesByGroupId.sizeOf() +
+                nullsByGroupId.sizeOf() +
+                rawHashByGroupId.sizeOf() +
+                sizeOf(rowValues) +
+                pageKeysSizeInBytes +
+                preallocatedMemoryInBytes;
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        return expectedHashCollisions + estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return types;
+    }
+
+    @Override
+    public int getGroupCount()
+    {
+        return nextGroupId;
+    }
+
+    @Override
+    public void appendValuesTo(int groupId, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        checkArgument(groupId >= 0, "groupId is negative");
+        byte nulls = nullsByGroupId.get(groupId);
+        long valuesOffset = (long) groupId * channelCount;
+        for (int i = 0; i < channelCount; i++) {
+            BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(outputChannelOffset + i);
+            if ((nulls & (1 << i)) != 0) {
+                blockBuilder.appendNull();
+            }
+            else {
+                hashTypes.get(i).writeLong(blockBuilder, valuesByGroupId.get(valuesOffset + i));
+            }
+        }
+        if (inputHashChannel.isPresent()) {
+            BIGINT.writeLong(pageBuilder.getBlockBuilder(outputChannelOffset + channelCount), rawHashByGroupId.get(groupId));
+        }
+    }
+
+    @Override
+    public Work<?> addPage(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        if (isRunLengthEncoded(page)) {
+            return new AddRunLengthEncodedPageWork(page);
+        }
+        return new AddPageWork(page);
+    }
+
+    @Override
+    public List<Page> getBufferedPages()
+    {
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        PageBuilder pageBuilder = new PageBuilder(hashTypes);
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            pageBuilder.declarePosition();
+            appendKeysTo(groupId, pageBuilder);
+            if (pageBuilder.isFull()) {
+                pages.add(pageBuilder.build());
+                pageBuilder.reset();
+            }
+        }
+        if (!pageBuilder.isEmpty()) {
+            pages.add(pageBuilder.build());
+        }
+        return pages.build();
+    }
+
+    @Override
+    public Work<GroupByIdBlock> getGroupIds(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        if (isRunLengthEncoded(page)) {
+            return new GetRunLengthEncodedGroupIdsWork(page);
+        }
+        return new GetGroupIdsWork(page);
+    }
+
+    @Override
+    public boolean contains(int position, Page page, int[] hashChannels)
+    {
+        byte nulls = readRow(page, hashChannels, position, rowValues, 0);
+        return findGroupId(rowValues, 0, nulls, hashRow(rowValues, 0, nulls)) >= 0;
+    }
+
+    @Override
+    public boolean contains(int position, Page page, int[] hashChannels, long rawHash)
+    {
+        byte nulls = readRow(page, hashChannels, position, rowValues, 0);
+        return findGroupId(rowValues, 0, nulls, rawHash) >= 0;
+    }
+
+    @Override
+    public long getRawHash(int groupId)
+    {
+        return rawHashByGroupId.get(groupId);
+    }
+
+    @VisibleForTesting
+    @Override
+    public int getCapacity()
+    {
+        return hashCapacity;
+    }
+
+    private void appendKeysTo(int groupId, PageBuilder pageBuilder)
+    {
+        byte nulls = nullsByGroupId.get(groupId);
+        long valuesOffset = (long) groupId * channelCount;
+        for (int i = 0; i < channelCount; i++) {
+            BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(i);
+            if ((nulls & (1 << i)) != 0) {
+                blockBuilder.appendNull();
+            }
+            else {
+                hashTypes.get(i).writeLong(blockBuilder, valuesByGroupId.get(valuesOffset + i));
+            }
+        }
+    }
+
+    private byte readRow(Page page, int[] hashChannels, int position, long[] values, int valuesOffset)
+    {
+        byte nulls = 0;
+        for (int i = 0; i < channelCount; i++) {
+            Block block = page.getBlock(hashChannels[i]);
+            if (block.isNull(position)) {
+                nulls |= 1 << i;
+                // null keys are compared as zero, and values may be reused
+                values[valuesOffset + i] = 0;
+            }
+            else {
+                values[valuesOffset + i] = intKeys[i] ? block.getInt(position) : block.getLong(position);
+            }
+        }
+        return nulls;
+    }
+
+    private long hashRow(long[] values, int valuesOffset, byte nulls)
+    {
+        long result = INITIAL_HASH_VALUE;
+        for (int i = 0; i < channelCount; i++) {
+            result = CombineHashFunction.getHash(result, hashValue(i, values[valuesOffset + i], (nulls & (1 << i)) != 0));
+        }
+        return result;
+    }
+
+    private long hashValue(int channel, long value, boolean isNull)
+    {
+        if (isNull) {
+            return NULL_HASH_CODE;
+        }
+        // same as Type.hash: AbstractIntType.hash is the long hash of the sign extended value
+        return identityHashKeys[channel] ? value : AbstractLongType.hash(value);
+    }
+
+    private int findGroupId(long[] values, int valuesOffset, byte nulls, long rawHash)
+    {
+        long hashPosition = getHashPosition(rawHash, mask);
+        while (true) {
+            int groupId = groupIds.get(hashPosition);
+            if (groupId == -1) {
+                return -1;
+            }
+            if (rawHash == rawHashes.get(hashPosition) && keysEqual(groupId, values, valuesOffset, nulls)) {
+                return groupId;
+            }
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+        }
+    }
+
+    private int putIfAbsent(long[] values, int valuesOffset, byte nulls, long rawHash)
+    {
+        long hashPosition = getHashPosition(rawHash, mask);
+
+        // look for an empty slot or a slot containing this key
+        while (true) {
+            int groupId = groupIds.get(hashPosition);
+            if (groupId == -1) {
+                break;
+            }
+
+            if (rawHash == rawHashes.get(hashPosition) && keysEqual(groupId, values, valuesOffset, nulls)) {
+                return groupId;
+            }
+
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+            hashCollisions++;
+        }
+
+        return addNewGroup(hashPosition, values, valuesOffset, nulls, rawHash);
+    }
+
+    private boolean keysEqual(int groupId, long[] values, int valuesOffset, byte nulls)
+    {
+        if (nullsByGroupId.get(groupId) != nulls) {
+            return false;
+        }
+        long groupOffset = (long) groupId * channelCount;
+        for (int i = 0; i < channelCount; i++) {
+            // null keys are stored as zero on both sides
+            if (valuesByGroupId.get(groupOffset + i) != values[valuesOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int addNewGroup(long hashPosition, long[] values, int valuesOffset, byte nulls, long rawHash)
+    {
+        // record group id in hash
+        int groupId = nextGroupId++;
+
+        rawHashes.set(hashPosition, rawHash);
+        groupIds.set(hashPosition, groupId);
+
+        long groupOffset = (long) groupId * channelCount;
+        for (int i = 0; i < channelCount; i++) {
+            valuesByGroupId.set(groupOffset + i, values[valuesOffset + i]);
+        }
+        nullsByGroupId.set(groupId, nulls);
+        rawHashByGroupId.set(groupId, rawHash);
+
+        // increase capacity, if necessary
+        if (needRehash()) {
+            tryRehash();
+        }
+        return groupId;
+    }
+
+    private boolean tryRehash()
+    {
+        long newCapacityLong = hashCapacity * 2L;
+        if (newCapacityLong > Integer.MAX_VALUE) {
+            throw new PrestoException(GENERIC_INSUFFICIENT_RESOURCES, "Size of hash table cannot exceed 1 billion entries");
+        }
+        int newCapacity = toIntExact(newCapacityLong);
+
+        // An estimate of how much extra memory is needed before we can go ahead and expand the hash table.
+        // This includes the new capacity for rawHashes and groupIds, the per group arrays as well as the size of the current page
+        preallocatedMemoryInBytes = newCapacity * (long) (Long.BYTES + Integer.BYTES) +
+                calculateMaxFill(newCapacity) * (long) (channelCount * Long.BYTES + Byte.BYTES + Long.BYTES) +
+                currentPageSizeInBytes;
+        if (!updateMemory.update()) {
+            // reserved memory but has exceeded the limit
+            return false;
+        }
+
+        expectedHashCollisions += estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+
+        int newMask = newCapacity - 1;
+        LongBigArray newRawHashes = new LongBigArray();
+        newRawHashes.ensureCapacity(newCapacity);
+        IntBigArray newGroupIds = new IntBigArray(-1);
+        newGroupIds.ensureCapacity(newCapacity);
+
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            long rawHash = rawHashByGroupId.get(groupId);
+
+            // find an empty slot for the group
+            long hashPosition = getHashPosition(rawHash, newMask);
+            while (newGroupIds.get(hashPosition) != -1) {
+                hashPosition = (hashPosition + 1) & newMask;
+                hashCollisions++;
+            }
+
+            // record the mapping
+            newRawHashes.set(hashPosition, rawHash);
+            newGroupIds.set(hashPosition, groupId);
+        }
+
+        mask = newMask;
+        hashCapacity = newCapacity;
+        maxFill = calculateMaxFill(hashCapacity);
+        rawHashes = newRawHashes;
+        groupIds = newGroupIds;
+
+        valuesByGroupId.ensureCapacity((long) maxFill * channelCount);
+        nullsByGroupId.ensureCapacity(maxFill);
+        rawHashByGroupId.ensureCapacity(maxFill);
+
+        preallocatedMemoryInBytes = 0;
+        // release temporary memory reservation
+        updateMemory.update();
+        return true;
+    }
+
+    private boolean needRehash()
+    {
+        return nextGroupId >= maxFill;
+    }
+
+    private boolean isRunLengthEncoded(Page page)
+    {
+        for (int channel : channels) {
+            if (!(page.getBlock(channel) instanceof RunLengthEncodedBlock)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long getHashPosition(long rawHash, int mask)
+    {
+        return murmurHash3(rawHash) & mask;
+    }
+
+    private static int calculateMaxFill(int hashSize)
+    {
+        checkArgument(hashSize > 0, "hashSize must be greater than 0");
+        int maxFill = (int) Math.ceil(hashSize * FILL_RATIO);
+        if (maxFill == hashSize) {
+            maxFill--;
+        }
+        checkArgument(hashSize > maxFill, "hashSize must be larger than maxFill");
+        return maxFill;
+    }
+
+    /**
+     * Keys and raw hashes of a whole page, extracted column by column so the
+     * per row grouping loop only touches flat arrays.
+     */
+    private class PageKeys
+    {
+        private final long[] values;
+        private final byte[] nulls;
+        private final long[] rawHashes;
+
+        public PageKeys(Page page)
+        {
+            int positionCount = page.getPositionCount();
+            values = new long[positionCount * channelCount];
+            nulls = new byte[positionCount];
+            rawHashes = new long[positionCount];
+
+            for (int i = 0; i < channelCount; i++) {
+                Block block = page.getBlock(channels[i]);
+                boolean intKey = intKeys[i];
+                byte nullBit = (byte) (1 << i);
+                for (int position = 0; position < positionCount; position++) {
+                    if (block.isNull(position)) {
+                        nulls[position] |= nullBit;
+                    }
+                    else {
+                        values[position * channelCount + i] = intKey ? block.getInt(position) : block.getLong(position);
+                    }
+                }
+            }
+
+            if (inputHashChannel.isPresent()) {
+                Block hashBlock = page.getBlock(inputHashChannel.get());
+                for (int position = 0; position < positionCount; position++) {
+                    rawHashes[position] = BIGINT.getLong(hashBlock, position);
+                }
+            }
+            else {
+                for (int position = 0; position < positionCount; position++) {
+                    rawHashes[position] = hashRow(values, position * channelCount, nulls[position]);
+                }
+            }
+        }
+
+        public int putIfAbsent(int position)
+        {
+            return FixedWidthGroupByHash.this.putIfAbsent(values, position * channelCount, nulls[position], rawHashes[position]);
+        }
+
+        public long getRetainedSizeInBytes()
+        {
+            return sizeOf(values) + sizeOf(nulls) + sizeOf(rawHashes);
+        }
+    }
+
+    private class AddPageWork
+            implements Work<Void>
+    {
+        private final Page page;
+
+        private PageKeys pageKeys;
+        private int lastPosition;
+
+        public AddPageWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = page.getPositionCount();
+            checkState(lastPosition <= positionCount, "position count out of bound");
+
+            // needRehash() == true indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            if (pageKeys == null) {
+                pageKeys = new PageKeys(page);
+                pageKeysSizeInBytes = pageKeys.getRetainedSizeInBytes();
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // get the group for the current row
+                pageKeys.putIfAbsent(lastPosition);
+                lastPosition++;
+            }
+            if (lastPosition == positionCount) {
+                // the keys of the page are no longer needed
+                pageKeys = null;
+                pageKeysSizeInBytes = 0;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Void getResult()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class AddRunLengthEncodedPageWork
+            implements Work<Void>
+    {
+        private final Page page;
+
+        private boolean finished;
+
+        public AddRunLengthEncodedPageWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            checkState(!finished);
+            if (page.getPositionCount() == 0) {
+                finished = true;
+                return true;
+            }
+
+            // needRehash() == true indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // Only needs to process the first row since it is Run Length Encoded
+            new PageKeys(page.getSingleValuePage(0)).putIfAbsent(0);
+            finished = true;
+
+            return true;
+        }
+
+        @Override
+        public Void getResult()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class GetGroupIdsWork
+            implements Work<GroupByIdBlock>
+    {
+        private final BlockBuilder blockBuilder;
+        private final Page page;
+
+        private PageKeys pageKeys;
+        private boolean finished;
+        private int lastPosition;
+
+        public GetGroupIdsWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+            // we know the exact size required for the block
+            this.blockBuilder = BIGINT.createFixedSizeBlockBuilder(page.getPositionCount());
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = page.getPositionCount();
+            checkState(lastPosition <= positionCount, "position count out of bound");
+            checkState(!finished);
+
+            // needRehash() == true indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            if (pageKeys == null) {
+                pageKeys = new PageKeys(page);
+                pageKeysSizeInBytes = pageKeys.getRetainedSizeInBytes();
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // output the group id for this row
+                BIGINT.writeLong(blockBuilder, pageKeys.putIfAbsent(lastPosition));
+                lastPosition++;
+            }
+            if (lastPosition == positionCount) {
+                // the keys of the page are no longer needed
+                pageKeys = null;
+                pageKeysSizeInBytes = 0;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public GroupByIdBlock getResult()
+        {
+            checkState(lastPosition == page.getPositionCount(), "process has not yet finished");
+            checkState(!finished, "result has produced");
+            finished = true;
+            return new GroupByIdBlock(nextGroupId, blockBuilder.build());
+        }
+    }
+
+    private class GetRunLengthEncodedGroupIdsWork
+            implements Work<GroupByIdBlock>
+    {
+        private final Page page;
+
+        int groupId = -1;
+        private boolean processFinished;
+        private boolean resultProduced;
+
+        public GetRunLengthEncodedGroupIdsWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            checkState(!processFinished);
+            if (page.getPositionCount() == 0) {
+                processFinished = true;
+                return true;
+            }
+
+            // needRehash() == true indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // Only needs to process the first row since it is Run Length Encoded
+            groupId = new PageKeys(page.getSingleValuePage(0)).putIfAbsent(0);
+            processFinished = true;
+            return true;
+        }
+
+        @Override
+        public GroupByIdBlock getResult()
+        {
+            checkState(processFinished);
+            checkState(!resultProduced);
+            resultProduced = true;
+
+            return new GroupByIdBlock(
+                    nextGroupId,
+                    new RunLengthEncodedBlock(
+                            BIGINT.createFixedSizeBlockBuilder(1).writeLong(groupId).build(),
+                            page.getPositionCount()));
+        }
+    }
+}
@@ -43,6 +43,10 @@ import java.util.OptionalInt;
 import java.util.OptionalLong;
 import java.util.stream.Collectors;
 
+import static com.facebook.presto.common.RuntimeMetricName.PARTIAL_AGGREGATION_DISABLED_COUNT;
+import static com.facebook.presto.common.RuntimeMetricName.PARTIAL_AGGREGATION_EARLY_FLUSH_COUNT;
+import static com.facebook.presto.common.RuntimeMetricName.PARTIAL_AGGREGATION_SKIPPED_INPUT_ROWS;
+import static com.facebook.presto.common.RuntimeUnit.NONE;
 import static com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder.toTypes;
 import static com.facebook.presto.sql.planner.PlannerUtils.INITIAL_HASH_VALUE;
 import static com.facebook.presto.type.TypeUtils.NULL_HASH_CODE;
@@ -309,6 +313,7 @@ public class HashAggregationOperator
     private boolean finished;
     private Page firstUnfinishedSegment;
     private Page remainingPageForSegmentedAggregation;
+    private boolean partialAggregationSkipped;
 
     // for yield when memory is not available
     private Work<?> unfinishedWork;
@@ -397,7 +402,7 @@ public class HashAggregationOperator
     // - 1. It has not received finish() signal (more input to come).
     // - 2. Current page has been processed.
     // - 3. Aggregation builder has not been triggered or has finished processing.
-    // - 4. If this is partial aggregation then it must have not reached the memory limit.
+    // - 4. If this is partial aggregation then it must have not reached the memory limit, nor be about to flush because it barely reduces its input.
     // - 5. If running in segmented aggregation mode, there must be no remaining page to process.
     @Override
     public boolean needsInput()
@@ -406,6 +411,7 @@ public class HashAggregationOperator
                 && unfinishedWork == null
                 && outputPages == null
                 && !partialAggregationReachedMemoryLimit()
+                && !shouldFlushPartialAggregationEarly()
                 && remainingPageForSegmentedAggregation == null;
     }
 
@@ -561,6 +567,9 @@ public class HashAggregationOperator
 
     private void closeAggregationBuilder()
     {
+        if (aggregationBuilder instanceof SkipAggregationBuilder) {
+            operatorContext.getRuntimeStats().addMetricValueIgnoreZero(PARTIAL_AGGREGATION_SKIPPED_INPUT_ROWS, NONE, inputRowsProcessed);
+        }
         partialAggregationController.ifPresent(
                 controller -> controller.onFlush(
                         inputBytesProcessed,
@@ -605,6 +614,11 @@ public class HashAggregationOperator
                 .orElse(false);
 
         if (step.isOutputPartial() && partialAggregationDisabled) {
+            if (!partialAggregationSkipped) {
+                // report the switch to pass-through mode, not every page processed in it
+                operatorContext.getRuntimeStats().addMetricValue(PARTIAL_AGGREGATION_DISABLED_COUNT, NONE, 1);
+                partialAggregationSkipped = true;
+            }
             aggregationBuilder = new SkipAggregationBuilder(
                     groupByChannels,
                     hashChannel,
@@ -612,6 +626,7 @@ public class HashAggregationOperator
                     operatorContext.localUserMemoryContext());
         }
         else if (step.isOutputPartial() || !spillEnabled) {
+            partialAggregationSkipped = false;
             aggregationBuilder = new InMemoryHashAggregationBuilder(
                     accumulatorFactories,
                     step,
@@ -646,9 +661,27 @@ public class HashAggregationOperator
     // - received finish() signal (no more input to come).
     // - it is a partial aggregation and has reached memory limit
     // - running in segmented aggregation mode and at least one segment has been fully processed
+    // - it is a partial aggregation that barely reduces its input
     private boolean shouldFlush()
     {
-        return finishing || partialAggregationReachedMemoryLimit() || remainingPageForSegmentedAggregation != null;
+        if (finishing || partialAggregationReachedMemoryLimit() || remainingPageForSegmentedAggregation != null) {
+            return true;
+        }
+        if (shouldFlushPartialAggregationEarly()) {
+            operatorContext.getRuntimeStats().addMetricValue(PARTIAL_AGGREGATION_EARLY_FLUSH_COUNT, NONE, 1);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean shouldFlushPartialAggregationEarly()
+    {
+        return partialAggregationController.isPresent()
+                && aggregationBuilder instanceof InMemoryHashAggregationBuilder
+                && partialAggregationController.get().shouldFlushEarly(
+                        inputBytesProcessed,
+                        inputRowsProcessed,
+                        ((InMemoryHashAggregationBuilder) aggregationBuilder).getGroupCount());
     }
 
     private boolean partialAggregationReachedMemoryLimit()
@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.airlift.log.Logger;
+import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.memory.context.LocalMemoryContext;
@@ -43,11 +44,13 @@ import java.util.Queue;
 import static com.facebook.airlift.concurrent.MoreFutures.getDone;
 import static com.facebook.presto.ExceededMemoryLimitException.exceededLocalUserMemoryLimit;
 import static com.facebook.presto.SystemSessionProperties.getQueryMaxMemoryPerNode;
+import static com.facebook.presto.SystemSessionProperties.isJoinHashTableOffHeapEnabled;
 import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static io.airlift.units.DataSize.succinctBytes;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
@@ -265,7 +268,7 @@ public class HashBuilderOperator
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
         this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
 
-        this.index = pagesIndexFactory.newPagesIndex(lookupSourceFactory.getTypes(), expectedPositions);
+        this.index = pagesIndexFactory.newUnsortedPagesIndex(lookupSourceFactory.getTypes(), expectedPositions);
         this.lookupSourceFactory = lookupSourceFactory;
         lookupSourceFactoryDestroyed = lookupSourceFactory.isDestroyed();
 
@@ -421,6 +424,8 @@ public class HashBuilderOperator
                 localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
                 localRevocableMemoryContext.setBytes(0);
                 lookupSourceChecksum = OptionalLong.of(lookupSourceSupplier.checksum());
+                // the lookup source factory no longer lends the spilled partition, so its memory outside the Java heap can be freed right away
+                lookupSourceSupplier.close();
                 lookupSourceSupplier = null;
                 state = State.INPUT_SPILLED;
             });
@@ -545,6 +550,8 @@ public class HashBuilderOperator
             return;
         }
 
+        // the probes are done with the lookup source, so memory outside the Java heap can be freed right away
+        lookupSourceSupplier.close();
         index.clear();
         localRevocableMemoryContext.setBytes(0);
         localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
@@ -633,6 +640,8 @@ public class HashBuilderOperator
             return;
         }
 
+        lookupSourceSupplier.close();
+        lookupSourceSupplier = null;
         index.clear();
         localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
 
@@ -640,9 +649,31 @@ public class HashBuilderOperator
         spilledLookupSourceHandle.setDisposeCompleted();
     }
 
+    private void closeLookupSourceSupplierWhenUnused()
+    {
+        if (lookupSourceSupplier == null) {
+            return;
+        }
+        // Probes may still be using the lookup source, and memory outside the Java heap must not be freed under them
+        ListenableFuture<?> lookupSourceUnused;
+        if (state == State.LOOKUP_SOURCE_BUILT) {
+            lookupSourceUnused = lookupSourceNotNeeded.get();
+        }
+        else if (state == State.INPUT_UNSPILLED_AND_BUILT) {
+            lookupSourceUnused = spilledLookupSourceHandle.getDisposeRequested();
+        }
+        else {
+            // not lent yet
+            lookupSourceUnused = immediateFuture(null);
+        }
+        lookupSourceUnused.addListener(lookupSourceSupplier::close, directExecutor());
+        lookupSourceSupplier = null;
+    }
+
     private LookupSourceSupplier buildLookupSource()
     {
-        LookupSourceSupplier partition = index.createLookupSourceSupplier(operatorContext.getSession(), hashChannels, preComputedHashChannel, filterFunctionFactory, sortChannel, searchFunctionFactories, Optional.of(outputChannels));
+        Session session = operatorContext.getSession();
+        LookupSourceSupplier partition = index.createLookupSourceSupplier(session, hashChannels, preComputedHashChannel, filterFunctionFactory, sortChannel, searchFunctionFactories, Optional.of(outputChannels), isJoinHashTableOffHeapEnabled(session));
         hashCollisionsCounter.recordHashCollision(partition.getHashCollisions(), partition.getExpectedHashCollisions());
         operatorContext.recordNullJoinBuildKeyCount(partition.getPositionIsNullCount());
         operatorContext.recordJoinBuildKeyCount(partition.getPositionCount());
@@ -675,7 +706,7 @@ public class HashBuilderOperator
             return;
         }
         // close() can be called in any state, due for example to query failure, and must clean resource up unconditionally
-        lookupSourceSupplier = null;
+        closeLookupSourceSupplierWhenUnused();
         unspillInProgress = Optional.empty();
         state = State.CLOSED;
         finishMemoryRevoke = finishMemoryRevoke.map(ifPresent -> () -> {});
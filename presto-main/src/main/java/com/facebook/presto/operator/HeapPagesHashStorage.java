@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.openjdk.jol.info.ClassLayout;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import static io.airlift.slice.SizeOf.sizeOf;
+import static sun.misc.Unsafe.ARRAY_INT_BASE_OFFSET;
+import static sun.misc.Unsafe.ARRAY_INT_INDEX_SCALE;
+
+/**
+ * {@link PagesHashStorage} in Java arrays.
+ */
+public final class HeapPagesHashStorage
+        implements PagesHashStorage
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(HeapPagesHashStorage.class).instanceSize();
+    private static final Unsafe unsafe;
+
+    static {
+        try {
+            // fetch theUnsafe object
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = (Unsafe) field.get(null);
+            if (unsafe == null) {
+                throw new RuntimeException("Unsafe access not available");
+            }
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final int[] key;
+    private final byte[] positionToHashes;
+
+    public HeapPagesHashStorage(int hashSize, int positionCount)
+    {
+        key = new int[hashSize];
+        Arrays.fill(key, -1);
+        positionToHashes = new byte[positionCount];
+    }
+
+    @Override
+    public int getKey(int slot)
+    {
+        return key[slot];
+    }
+
+    @Override
+    public void setKey(int slot, int position)
+    {
+        key[slot] = position;
+    }
+
+    @Override
+    public int getKeyVolatile(int slot)
+    {
+        return unsafe.getIntVolatile(key, keyOffset(slot));
+    }
+
+    @Override
+    public boolean compareAndSetKey(int slot, int expectedPosition, int position)
+    {
+        return unsafe.compareAndSwapInt(key, keyOffset(slot), expectedPosition, position);
+    }
+
+    @Override
+    public byte getPositionHash(int position)
+    {
+        return positionToHashes[position];
+    }
+
+    @Override
+    public void setPositionHash(int position, byte hash)
+    {
+        positionToHashes[position] = hash;
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(key) + sizeOf(positionToHashes);
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    private static long keyOffset(int slot)
+    {
+        return ARRAY_INT_BASE_OFFSET + (long) slot * ARRAY_INT_INDEX_SCALE;
+    }
+}
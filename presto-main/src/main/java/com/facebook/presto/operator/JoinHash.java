@@ -41,6 +41,10 @@ public final class JoinHash
     @Nullable
     private final PositionLinks positionLinks;
 
+    // scratch arrays of the batch lookup, reused across probe pages
+    private long[] hashes = new long[0];
+    private int[] addressIndexes = new int[0];
+
     public JoinHash(PagesHash pagesHash, Optional<JoinFilterFunction> filterFunction, Optional<PositionLinks> positionLinks)
     {
         this.pagesHash = requireNonNull(pagesHash, "pagesHash is null");
@@ -92,6 +96,25 @@ public final class JoinHash
         return startJoinPosition(addressIndex, position, allChannelsPage);
     }
 
+    @Override
+    public boolean isBatchLookupSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        if (hashes.length < positionCount) {
+            hashes = new long[positionCount];
+            addressIndexes = new int[positionCount];
+        }
+        pagesHash.getAddressIndexes(positions, positionCount, hashChannelsPage, rawHashes, hashes, addressIndexes);
+        for (int i = 0; i < positionCount; i++) {
+            joinPositions[i] = startJoinPosition(addressIndexes[i], positions[i], allChannelsPage);
+        }
+    }
+
     private long startJoinPosition(int currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
         if (currentJoinPosition == -1) {
@@ -22,7 +22,9 @@ import com.google.common.collect.ImmutableList;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
+import static com.facebook.presto.SystemSessionProperties.getJoinHashBuildParallelism;
 import static com.facebook.presto.SystemSessionProperties.isFastInequalityJoin;
 import static com.facebook.presto.operator.JoinUtils.channelsToPages;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -48,7 +50,9 @@ public class JoinHashSupplier
             List<List<Block>> channels,
             Optional<JoinFilterFunctionFactory> filterFunctionFactory,
             Optional<Integer> sortChannel,
-            List<JoinFilterFunctionFactory> searchFunctionFactories)
+            List<JoinFilterFunctionFactory> searchFunctionFactories,
+            Executor buildExecutor,
+            boolean offHeap)
     {
         this.session = requireNonNull(session, "session is null");
         this.addresses = requireNonNull(addresses, "addresses is null");
@@ -71,7 +75,14 @@ public class JoinHashSupplier
         }
 
         this.pages = channelsToPages(channels);
-        this.pagesHash = new PagesHash(addresses, positionCount, pagesHashStrategy, positionLinksFactoryBuilder);
+        this.pagesHash = new PagesHash(
+                addresses,
+                positionCount,
+                pagesHashStrategy,
+                positionLinksFactoryBuilder,
+                getJoinHashBuildParallelism(session),
+                buildExecutor,
+                offHeap);
         this.positionLinks = positionLinksFactoryBuilder.isEmpty() ? Optional.empty() : Optional.of(positionLinksFactoryBuilder.build());
     }
 
@@ -122,4 +133,10 @@ public class JoinHashSupplier
                     return links.create(searchFunctions);
                 }));
     }
+
+    @Override
+    public void close()
+    {
+        pagesHash.close();
+    }
 }
@@ -19,10 +19,12 @@ import com.google.common.primitives.Ints;
 
 import javax.annotation.Nullable;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.OptionalInt;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static java.util.Objects.requireNonNull;
 
 public class JoinProbe
 {
@@ -40,9 +42,36 @@ public class JoinProbe
         }
 
         public JoinProbe createJoinProbe(Page page)
+        {
+            return createJoinProbe(page, new BatchLookupBuffers());
+        }
+
+        /**
+         * Creates a probe that reuses {@code buffers} for the batch lookup. The buffers
+         * may only be shared by probes that are not processed at the same time.
+         */
+        public JoinProbe createJoinProbe(Page page, BatchLookupBuffers buffers)
         {
             Page probePage = page.getLoadedPage(probeJoinChannels);
-            return new JoinProbe(probeOutputChannels, page, probePage, probeHashChannel >= 0 ? page.getBlock(probeHashChannel).getLoadedBlock() : null);
+            return new JoinProbe(probeOutputChannels, page, probePage, probeHashChannel >= 0 ? page.getBlock(probeHashChannel).getLoadedBlock() : null, buffers);
+        }
+    }
+
+    public static class BatchLookupBuffers
+    {
+        private int[] positions = new int[0];
+        private long[] rawHashes = new long[0];
+        private long[] batchJoinPositions = new long[0];
+        private long[] joinPositions = new long[0];
+
+        private void ensureCapacity(int positionCount)
+        {
+            if (positions.length < positionCount) {
+                positions = new int[positionCount];
+                rawHashes = new long[positionCount];
+                batchJoinPositions = new long[positionCount];
+                joinPositions = new long[positionCount];
+            }
         }
     }
 
@@ -53,11 +82,18 @@ public class JoinProbe
     @Nullable
     private final Block probeHashBlock;
     private final boolean probeMayHaveNull;
+    private final BatchLookupBuffers buffers;
 
     private int position = -1;
     private int nullRowCount;
 
-    private JoinProbe(int[] probeOutputChannels, Page page, Page probePage, @Nullable Block probeHashBlock)
+    // join positions of all rows of the page, looked up in a single batch from joinPositionsLookupSource
+    @Nullable
+    private long[] joinPositions;
+    @Nullable
+    private LookupSource joinPositionsLookupSource;
+
+    private JoinProbe(int[] probeOutputChannels, Page page, Page probePage, @Nullable Block probeHashBlock, BatchLookupBuffers buffers)
     {
         this.probeOutputChannels = probeOutputChannels;
         this.positionCount = page.getPositionCount();
@@ -65,6 +101,7 @@ public class JoinProbe
         this.probePage = probePage;
         this.probeHashBlock = probeHashBlock;
         this.probeMayHaveNull = probeMayHaveNull(probePage);
+        this.buffers = requireNonNull(buffers, "buffers is null");
     }
 
     public int[] getOutputChannels()
@@ -83,6 +120,12 @@ public class JoinProbe
             ++nullRowCount;
             return -1;
         }
+        if (lookupSource.isBatchLookupSupported()) {
+            if (joinPositionsLookupSource != lookupSource) {
+                lookupJoinPositions(lookupSource);
+            }
+            return joinPositions[position];
+        }
         if (probeHashBlock != null) {
             long rawHash = BIGINT.getLong(probeHashBlock, position);
             return lookupSource.getJoinPosition(position, probePage, page, rawHash);
@@ -90,6 +133,38 @@ public class JoinProbe
         return lookupSource.getJoinPosition(position, probePage, page);
     }
 
+    private void lookupJoinPositions(LookupSource lookupSource)
+    {
+        // look up the current and all remaining rows at once, which lets the lookup source
+        // hash the rows and resolve their hash table slots in tight loops over the whole batch
+        buffers.ensureCapacity(positionCount);
+        int[] positions = buffers.positions;
+        int batchSize = 0;
+        for (int current = position; current < positionCount; current++) {
+            if (!probeMayHaveNull || !rowContainsNull(current)) {
+                positions[batchSize++] = current;
+            }
+        }
+
+        long[] rawHashes = null;
+        if (probeHashBlock != null) {
+            rawHashes = buffers.rawHashes;
+            for (int i = 0; i < batchSize; i++) {
+                rawHashes[positions[i]] = BIGINT.getLong(probeHashBlock, positions[i]);
+            }
+        }
+
+        long[] batchJoinPositions = buffers.batchJoinPositions;
+        lookupSource.getJoinPositions(positions, batchSize, probePage, page, rawHashes, batchJoinPositions);
+
+        joinPositions = buffers.joinPositions;
+        Arrays.fill(joinPositions, position, positionCount, -1);
+        for (int i = 0; i < batchSize; i++) {
+            joinPositions[positions[i]] = batchJoinPositions[i];
+        }
+        joinPositionsLookupSource = lookupSource;
+    }
+
     public int getPosition()
     {
         return position;
@@ -101,9 +176,14 @@ public class JoinProbe
     }
 
     private boolean currentRowContainsNull()
+    {
+        return rowContainsNull(position);
+    }
+
+    private boolean rowContainsNull(int probePosition)
     {
         for (int i = 0; i < probePage.getChannelCount(); i++) {
-            if (probePage.getBlock(i).isNull(position)) {
+            if (probePage.getBlock(i).isNull(probePosition)) {
                 return true;
             }
         }
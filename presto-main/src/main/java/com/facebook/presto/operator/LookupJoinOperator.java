@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.JoinProbe.BatchLookupBuffers;
 import com.facebook.presto.operator.JoinProbe.JoinProbeFactory;
 import com.facebook.presto.operator.LookupJoinOperators.JoinType;
 import com.facebook.presto.operator.LookupSourceProvider.LookupSourceLease;
@@ -65,6 +66,7 @@ public class LookupJoinOperator
     private final JoinStatisticsCounter statisticsCounter;
 
     private final LookupJoinPageBuilder pageBuilder;
+    private final BatchLookupBuffers batchLookupBuffers = new BatchLookupBuffers();
 
     private final boolean probeOnOuterSide;
 
@@ -234,7 +236,7 @@ public class LookupJoinOperator
 
         // create probe
         inputPageSpillEpoch = spillInfoSnapshot.getSpillEpoch();
-        probe = joinProbeFactory.createJoinProbe(page);
+        probe = joinProbeFactory.createJoinProbe(page, batchLookupBuffers);
 
         // initialize to invalid join position to force output code to advance the cursors
         joinPosition = -1;
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import java.io.Closeable;
@@ -36,6 +37,35 @@ public interface LookupSource
 
     long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage);
 
+    /**
+     * @return whether {@link #getJoinPositions} can be used with this lookup source. Lookup sources
+     * whose join positions are only valid until the next lookup must not support batch lookups.
+     */
+    default boolean isBatchLookupSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Batch variant of {@link #getJoinPosition(int, Page, Page, long)}. For every {@code i < positionCount}
+     * stores the first join position of probe row {@code positions[i]} in {@code joinPositions[i]}.
+     * Positions must not contain nulls in the hash channels. The default implementation looks up the rows one by one.
+     *
+     * @param rawHashes precomputed raw hashes indexed by probe position, or null if the hashes must be computed
+     */
+    default void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        for (int i = 0; i < positionCount; i++) {
+            int position = positions[i];
+            if (rawHashes == null) {
+                joinPositions[i] = getJoinPosition(position, hashChannelsPage, allChannelsPage);
+            }
+            else {
+                joinPositions[i] = getJoinPosition(position, hashChannelsPage, allChannelsPage, rawHashes[position]);
+            }
+        }
+    }
+
     long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage);
 
     void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset);
@@ -30,4 +30,11 @@ public interface LookupSourceSupplier
     long getPositionIsNullCount();
 
     long getPositionCount();
+
+    /**
+     * Releases the memory held outside the Java heap. Must only be called once no lookup source of this supplier is in use.
+     */
+    default void close()
+    {
+    }
 }
@@ -0,0 +1,621 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.Lifespan;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeFactory;
+import com.facebook.presto.operator.exchange.LocalExchangeSource;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.plan.JoinType;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static com.facebook.presto.spi.plan.JoinType.FULL;
+import static com.facebook.presto.spi.plan.JoinType.LEFT;
+import static com.facebook.presto.spi.plan.JoinType.RIGHT;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Joins two inputs that are both sorted ascending with nulls first on the join keys, without building a hash table.
+ * The left input is the operator input, the right input is read from a local exchange fed by the right pipeline.
+ * Only the right rows sharing the current join key are retained, so memory does not grow with the input sizes.
+ * Each lifespan must have a single driver on each side, since the rows of several drivers would not be in order.
+ * The order of the rows of both inputs is checked, so that unsorted input fails the query instead of giving wrong results.
+ */
+public class MergeJoinOperator
+        implements Operator
+{
+    public static class MergeJoinOperatorFactory
+            implements OperatorFactory
+    {
+        private final int operatorId;
+        private final PlanNodeId planNodeId;
+        private final JoinType joinType;
+        private final LocalExchangeFactory rightExchangeFactory;
+        private final List<Type> leftTypes;
+        private final List<Integer> leftJoinChannels;
+        private final List<Integer> leftOutputChannels;
+        private final List<Type> rightTypes;
+        private final List<Integer> rightJoinChannels;
+        private final List<Integer> rightOutputChannels;
+        private final Set<Lifespan> lifespans = ConcurrentHashMap.newKeySet();
+        private boolean closed;
+
+        public MergeJoinOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                JoinType joinType,
+                LocalExchangeFactory rightExchangeFactory,
+                List<Type> leftTypes,
+                List<Integer> leftJoinChannels,
+                List<Integer> leftOutputChannels,
+                List<Type> rightTypes,
+                List<Integer> rightJoinChannels,
+                List<Integer> rightOutputChannels)
+        {
+            this.operatorId = operatorId;
+            this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
+            this.joinType = requireNonNull(joinType, "joinType is null");
+            this.rightExchangeFactory = requireNonNull(rightExchangeFactory, "rightExchangeFactory is null");
+            this.leftTypes = ImmutableList.copyOf(requireNonNull(leftTypes, "leftTypes is null"));
+            this.leftJoinChannels = ImmutableList.copyOf(requireNonNull(leftJoinChannels, "leftJoinChannels is null"));
+            this.leftOutputChannels = ImmutableList.copyOf(requireNonNull(leftOutputChannels, "leftOutputChannels is null"));
+            this.rightTypes = ImmutableList.copyOf(requireNonNull(rightTypes, "rightTypes is null"));
+            this.rightJoinChannels = ImmutableList.copyOf(requireNonNull(rightJoinChannels, "rightJoinChannels is null"));
+            this.rightOutputChannels = ImmutableList.copyOf(requireNonNull(rightOutputChannels, "rightOutputChannels is null"));
+            checkArgument(!leftJoinChannels.isEmpty(), "leftJoinChannels is empty");
+            checkArgument(leftJoinChannels.size() == rightJoinChannels.size(), "leftJoinChannels and rightJoinChannels must have the same size");
+        }
+
+        @Override
+        public Operator createOperator(DriverContext driverContext)
+        {
+            checkState(!closed, "Factory is already closed");
+            if (!lifespans.add(driverContext.getLifespan())) {
+                throw new PrestoException(GENERIC_INTERNAL_ERROR, "Merge join requires a single driver per lifespan, but lifespan " + driverContext.getLifespan() + " has several");
+            }
+            LocalExchangeSource rightSource = rightExchangeFactory.getLocalExchange(driverContext.getLifespan()).getNextSource();
+            OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, MergeJoinOperator.class.getSimpleName());
+            return new MergeJoinOperator(
+                    operatorContext,
+                    joinType,
+                    rightSource,
+                    leftTypes,
+                    leftJoinChannels,
+                    leftOutputChannels,
+                    rightTypes,
+                    rightJoinChannels,
+                    rightOutputChannels);
+        }
+
+        @Override
+        public void noMoreOperators()
+        {
+            closed = true;
+        }
+
+        @Override
+        public OperatorFactory duplicate()
+        {
+            throw new UnsupportedOperationException("Merge join operator factories can not be duplicated");
+        }
+    }
+
+    private final OperatorContext operatorContext;
+    private final LocalMemoryContext localUserMemoryContext;
+    private final boolean outputUnmatchedLeft;
+    private final boolean outputUnmatchedRight;
+    private final LocalExchangeSource rightSource;
+    private final List<Type> joinKeyTypes;
+    private final List<Integer> leftJoinChannels;
+    private final List<Integer> leftOutputChannels;
+    private final List<Integer> rightJoinChannels;
+    private final List<Integer> rightOutputChannels;
+    private final List<Type> outputTypes;
+    private final PageBuilder pageBuilder;
+
+    private boolean leftFinishing;
+    private boolean finished;
+    private boolean waitingForRight;
+
+    @Nullable
+    private Page leftPage;
+    private int leftPosition;
+
+    @Nullable
+    private Page rightPage;
+    private int rightPosition;
+    private boolean rightFinished;
+    // the last row of the previous right page, to check the order of the right rows
+    @Nullable
+    private Page lastRightRow;
+    // the last row of the previous left page, to check the order of the left rows
+    @Nullable
+    private Page lastLeftRow;
+
+    // Right rows that share the join key of groupKeyPage, while the group is being read
+    // groupRunStart is the first row of rightPage that belongs to the group
+    @Nullable
+    private Page groupKeyPage;
+    private final List<Page> groupPages = new ArrayList<>();
+    private int groupRunStart;
+    private boolean groupComplete;
+    private boolean groupMatched;
+
+    // Position within the group of the next row to output, when joining the current left row with the group
+    // or when returning the rows of an unmatched group
+    private boolean joiningGroup;
+    private boolean returningUnmatchedGroup;
+    private int groupPageIndex;
+    private int groupPosition;
+
+    public MergeJoinOperator(
+            OperatorContext operatorContext,
+            JoinType joinType,
+            LocalExchangeSource rightSource,
+            List<Type> leftTypes,
+            List<Integer> leftJoinChannels,
+            List<Integer> leftOutputChannels,
+            List<Type> rightTypes,
+            List<Integer> rightJoinChannels,
+            List<Integer> rightOutputChannels)
+    {
+        this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        requireNonNull(joinType, "joinType is null");
+        this.outputUnmatchedLeft = joinType == LEFT || joinType == FULL;
+        this.outputUnmatchedRight = joinType == RIGHT || joinType == FULL;
+        this.rightSource = requireNonNull(rightSource, "rightSource is null");
+        this.leftJoinChannels = ImmutableList.copyOf(requireNonNull(leftJoinChannels, "leftJoinChannels is null"));
+        this.leftOutputChannels = ImmutableList.copyOf(requireNonNull(leftOutputChannels, "leftOutputChannels is null"));
+        this.rightJoinChannels = ImmutableList.copyOf(requireNonNull(rightJoinChannels, "rightJoinChannels is null"));
+        this.rightOutputChannels = ImmutableList.copyOf(requireNonNull(rightOutputChannels, "rightOutputChannels is null"));
+        this.joinKeyTypes = leftJoinChannels.stream()
+                .map(leftTypes::get)
+                .collect(toImmutableList());
+        this.outputTypes = ImmutableList.<Type>builder()
+                .addAll(leftOutputChannels.stream().map(leftTypes::get).iterator())
+                .addAll(rightOutputChannels.stream().map(rightTypes::get).iterator())
+                .build();
+        this.pageBuilder = new PageBuilder(outputTypes);
+    }
+
+    @Override
+    public OperatorContext getOperatorContext()
+    {
+        return operatorContext;
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (!waitingForRight) {
+            return NOT_BLOCKED;
+        }
+        ListenableFuture<?> blocked = rightSource.waitForReading();
+        return blocked.isDone() ? NOT_BLOCKED : blocked;
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return !leftFinishing && leftPage == null;
+    }
+
+    @Override
+    public void addInput(Page page)
+    {
+        requireNonNull(page, "page is null");
+        checkState(needsInput(), "Operator does not need input");
+        if (page.getPositionCount() > 0) {
+            checkOrder(lastLeftRow, page, leftJoinChannels, "Left");
+            lastLeftRow = page.getRegion(page.getPositionCount() - 1, 1);
+            leftPage = page;
+            leftPosition = 0;
+        }
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        if (!finished) {
+            process();
+        }
+        if (pageBuilder.isFull() || (finished && !pageBuilder.isEmpty())) {
+            Page page = pageBuilder.build();
+            pageBuilder.reset();
+            return page;
+        }
+        return null;
+    }
+
+    @Override
+    public void finish()
+    {
+        leftFinishing = true;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return finished && pageBuilder.isEmpty();
+    }
+
+    @Override
+    public void close()
+    {
+        groupPages.clear();
+        localUserMemoryContext.setBytes(0);
+        rightSource.close();
+    }
+
+    private void process()
+    {
+        waitingForRight = false;
+        while (!pageBuilder.isFull()) {
+            if (joiningGroup) {
+                if (!appendGroup(leftPage, leftPosition)) {
+                    return;
+                }
+                joiningGroup = false;
+                advanceLeft();
+                continue;
+            }
+            if (returningUnmatchedGroup) {
+                if (!appendGroup(null, 0)) {
+                    return;
+                }
+                returningUnmatchedGroup = false;
+                clearGroup();
+                continue;
+            }
+            if (groupKeyPage != null && !groupComplete) {
+                if (!readGroup()) {
+                    waitingForRight = true;
+                    return;
+                }
+                continue;
+            }
+
+            if (leftPage == null) {
+                if (!leftFinishing) {
+                    return;
+                }
+                if (groupKeyPage != null) {
+                    finishGroup();
+                    continue;
+                }
+                if (!outputUnmatchedRight) {
+                    finishJoin();
+                    return;
+                }
+                if (!loadRightRow()) {
+                    if (rightFinished) {
+                        finishJoin();
+                    }
+                    else {
+                        waitingForRight = true;
+                    }
+                    return;
+                }
+                appendRightOnly();
+                continue;
+            }
+
+            if (hasNullKey(leftPage, leftPosition, leftJoinChannels)) {
+                // null keys never match
+                appendLeftOnly();
+                continue;
+            }
+
+            if (groupKeyPage != null) {
+                int comparison = compareKeys(leftPage, leftPosition, leftJoinChannels, groupKeyPage, 0);
+                if (comparison == 0) {
+                    groupMatched = true;
+                    joiningGroup = true;
+                    groupPageIndex = 0;
+                    groupPosition = 0;
+                }
+                else if (comparison < 0) {
+                    appendLeftOnly();
+                }
+                else {
+                    finishGroup();
+                }
+                continue;
+            }
+
+            if (!loadRightRow()) {
+                if (!rightFinished) {
+                    waitingForRight = true;
+                    return;
+                }
+                appendLeftOnly();
+                continue;
+            }
+
+            if (hasNullKey(rightPage, rightPosition, rightJoinChannels)) {
+                appendRightOnly();
+                continue;
+            }
+
+            int comparison = compareKeys(leftPage, leftPosition, leftJoinChannels, rightPage, rightPosition);
+            if (comparison < 0) {
+                appendLeftOnly();
+            }
+            else if (comparison > 0) {
+                appendRightOnly();
+            }
+            else {
+                startGroup();
+            }
+        }
+    }
+
+    private void finishJoin()
+    {
+        finished = true;
+        // the right pipeline may still be producing rows that can no longer match
+        rightSource.close();
+    }
+
+    private void startGroup()
+    {
+        groupKeyPage = rightPage.getRegion(rightPosition, 1);
+        groupRunStart = rightPosition;
+        rightPosition++;
+        groupComplete = false;
+        groupMatched = false;
+    }
+
+    /**
+     * Reads the right rows with the group key. Returns false if more right input is needed first.
+     */
+    private boolean readGroup()
+    {
+        while (true) {
+            if (rightPosition == rightPage.getPositionCount()) {
+                if (rightPosition > groupRunStart) {
+                    groupPages.add(rightPage.getRegion(groupRunStart, rightPosition - groupRunStart));
+                    updateGroupMemory();
+                }
+                Page page = removeRightPage();
+                if (page == null) {
+                    if (!rightSource.isFinished()) {
+                        // keep the exhausted page, so this method can be resumed
+                        groupRunStart = rightPosition;
+                        return false;
+                    }
+                    rightFinished = true;
+                    rightPage = null;
+                    groupComplete = true;
+                    return true;
+                }
+                rightPage = page;
+                rightPosition = 0;
+                groupRunStart = 0;
+                continue;
+            }
+            if (compareKeys(groupKeyPage, 0, rightJoinChannels, rightPage, rightPosition) != 0) {
+                if (rightPosition > groupRunStart) {
+                    groupPages.add(rightPage.getRegion(groupRunStart, rightPosition - groupRunStart));
+                    updateGroupMemory();
+                }
+                groupComplete = true;
+                return true;
+            }
+            rightPosition++;
+        }
+    }
+
+    private void finishGroup()
+    {
+        if (outputUnmatchedRight && !groupMatched) {
+            returningUnmatchedGroup = true;
+            groupPageIndex = 0;
+            groupPosition = 0;
+            return;
+        }
+        clearGroup();
+    }
+
+    private void clearGroup()
+    {
+        groupKeyPage = null;
+        groupPages.clear();
+        localUserMemoryContext.setBytes(0);
+    }
+
+    private void updateGroupMemory()
+    {
+        long bytes = 0;
+        for (Page page : groupPages) {
+            bytes += page.getSizeInBytes();
+        }
+        localUserMemoryContext.setBytes(bytes);
+    }
+
+    /**
+     * Appends the group rows, joined with the given left row or with nulls when there is none.
+     * Returns false if the output became full before all group rows were appended.
+     */
+    private boolean appendGroup(@Nullable Page left, int leftRowPosition)
+    {
+        while (groupPageIndex < groupPages.size()) {
+            Page groupPage = groupPages.get(groupPageIndex);
+            while (groupPosition < groupPage.getPositionCount()) {
+                if (pageBuilder.isFull()) {
+                    return false;
+                }
+                appendRow(left, leftRowPosition, groupPage, groupPosition);
+                groupPosition++;
+            }
+            groupPageIndex++;
+            groupPosition = 0;
+        }
+        return true;
+    }
+
+    private boolean loadRightRow()
+    {
+        while (rightPage == null || rightPosition == rightPage.getPositionCount()) {
+            rightPage = null;
+            Page page = removeRightPage();
+            if (page == null) {
+                rightFinished = rightSource.isFinished();
+                return false;
+            }
+            rightPage = page;
+            rightPosition = 0;
+        }
+        return true;
+    }
+
+    @Nullable
+    private Page removeRightPage()
+    {
+        Page page = rightSource.removePage();
+        if (page == null || page.getPositionCount() == 0) {
+            return page;
+        }
+        operatorContext.recordProcessedInput(page.getSizeInBytes(), page.getPositionCount());
+
+        checkOrder(lastRightRow, page, rightJoinChannels, "Right");
+        lastRightRow = page.getRegion(page.getPositionCount() - 1, 1);
+        return page;
+    }
+
+    /**
+     * Checks that the rows of a page follow each other and the last row of the previous page of the same input.
+     */
+    private void checkOrder(@Nullable Page lastRow, Page page, List<Integer> joinChannels, String input)
+    {
+        if (lastRow != null && compareKeys(lastRow, 0, joinChannels, page, 0, joinChannels) > 0) {
+            throw new PrestoException(GENERIC_INTERNAL_ERROR, input + " input of merge join is not sorted on the join keys");
+        }
+        for (int position = 1; position < page.getPositionCount(); position++) {
+            if (compareKeys(page, position - 1, joinChannels, page, position, joinChannels) > 0) {
+                throw new PrestoException(GENERIC_INTERNAL_ERROR, input + " input of merge join is not sorted on the join keys");
+            }
+        }
+    }
+
+    private void advanceLeft()
+    {
+        leftPosition++;
+        if (leftPosition == leftPage.getPositionCount()) {
+            leftPage = null;
+        }
+    }
+
+    private void appendLeftOnly()
+    {
+        if (outputUnmatchedLeft) {
+            appendRow(leftPage, leftPosition, null, 0);
+        }
+        advanceLeft();
+    }
+
+    private void appendRightOnly()
+    {
+        if (outputUnmatchedRight) {
+            appendRow(null, 0, rightPage, rightPosition);
+        }
+        rightPosition++;
+    }
+
+    private void appendRow(@Nullable Page left, int leftRowPosition, @Nullable Page right, int rightRowPosition)
+    {
+        pageBuilder.declarePosition();
+        int outputChannel = 0;
+        for (int channel : leftOutputChannels) {
+            appendValue(left, channel, leftRowPosition, outputChannel);
+            outputChannel++;
+        }
+        for (int channel : rightOutputChannels) {
+            appendValue(right, channel, rightRowPosition, outputChannel);
+            outputChannel++;
+        }
+    }
+
+    private void appendValue(@Nullable Page page, int channel, int position, int outputChannel)
+    {
+        BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(outputChannel);
+        if (page == null) {
+            blockBuilder.appendNull();
+        }
+        else {
+            outputTypes.get(outputChannel).appendTo(page.getBlock(channel), position, blockBuilder);
+        }
+    }
+
+    private static boolean hasNullKey(Page page, int position, List<Integer> joinChannels)
+    {
+        for (int channel : joinChannels) {
+            if (page.getBlock(channel).isNull(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares a row with a right row in the sort order of the inputs, ascending with nulls first.
+     *
+     * @param leftChannels the join channels of {@code left}, which is a left or a right page
+     */
+    private int compareKeys(Page left, int leftRowPosition, List<Integer> leftChannels, Page right, int rightRowPosition)
+    {
+        return compareKeys(left, leftRowPosition, leftChannels, right, rightRowPosition, rightJoinChannels);
+    }
+
+    private int compareKeys(Page left, int leftRowPosition, List<Integer> leftChannels, Page right, int rightRowPosition, List<Integer> rightChannels)
+    {
+        for (int i = 0; i < joinKeyTypes.size(); i++) {
+            Block leftBlock = left.getBlock(leftChannels.get(i));
+            Block rightBlock = right.getBlock(rightChannels.get(i));
+            boolean leftNull = leftBlock.isNull(leftRowPosition);
+            boolean rightNull = rightBlock.isNull(rightRowPosition);
+            if (leftNull || rightNull) {
+                if (leftNull && rightNull) {
+                    continue;
+                }
+                return leftNull ? -1 : 1;
+            }
+            int comparison = joinKeyTypes.get(i).compareTo(leftBlock, leftRowPosition, rightBlock, rightRowPosition);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+}
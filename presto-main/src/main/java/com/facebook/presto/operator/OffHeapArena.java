@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.openjdk.jol.info.ClassLayout;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+
+/**
+ * Bump pointer allocator over native memory segments. Addresses are byte offsets
+ * into the arena. Every allocation is aligned to its element size and segments are
+ * a power of two bytes long, so a single value never straddles two segments.
+ * <p>
+ * Large structures kept in an arena are never traversed or copied by the garbage collector.
+ * The memory is only freed by {@link #close()}, so every owner of an arena must close it.
+ */
+public final class OffHeapArena
+        implements AutoCloseable
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(OffHeapArena.class).instanceSize();
+    private static final Unsafe unsafe;
+
+    static {
+        try {
+            // fetch theUnsafe object
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = (Unsafe) field.get(null);
+            if (unsafe == null) {
+                throw new RuntimeException("Unsafe access not available");
+            }
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // visible for testing
+    static final int MIN_SEGMENT_SHIFT = 16; // 64KB
+    static final int MAX_SEGMENT_SHIFT = 26; // 64MB
+
+    private final int segmentShift;
+    private final long segmentMask;
+    private final int segmentSize;
+
+    // native addresses of the segments, emptied on close, so that later reads fail instead of touching freed memory
+    private long[] segments = new long[0];
+    private long allocatedBytes;
+
+    /**
+     * @param expectedBytes hint used to size the segments, so that small arenas do not reserve a full segment
+     */
+    public OffHeapArena(long expectedBytes)
+    {
+        checkArgument(expectedBytes >= 0, "expectedBytes is negative");
+        int shift = 64 - Long.numberOfLeadingZeros(max(expectedBytes - 1, 1));
+        this.segmentShift = min(max(shift, MIN_SEGMENT_SHIFT), MAX_SEGMENT_SHIFT);
+        this.segmentSize = 1 << segmentShift;
+        this.segmentMask = segmentSize - 1;
+    }
+
+    /**
+     * Allocates {@code length} elements of {@code elementSize} bytes and returns the address of the first element.
+     */
+    public long allocate(long length, int elementSize)
+    {
+        checkArgument(length >= 0, "length is negative");
+        checkArgument(elementSize == 1 || elementSize == 2 || elementSize == 4 || elementSize == 8, "unsupported element size: %s", elementSize);
+
+        long address = (allocatedBytes + elementSize - 1) & -elementSize;
+        allocatedBytes = address + length * elementSize;
+        ensureCapacity(allocatedBytes);
+        return address;
+    }
+
+    public void fill(long address, long length, byte value)
+    {
+        long end = address + length;
+        while (address < end) {
+            long chunk = min(segmentSize - offset(address), end - address);
+            unsafe.setMemory(nativeAddress(address), chunk, value);
+            address += chunk;
+        }
+    }
+
+    public byte getByte(long address)
+    {
+        return unsafe.getByte(nativeAddress(address));
+    }
+
+    public void setByte(long address, byte value)
+    {
+        unsafe.putByte(nativeAddress(address), value);
+    }
+
+    public int getInt(long address)
+    {
+        return unsafe.getInt(nativeAddress(address));
+    }
+
+    public int getIntVolatile(long address)
+    {
+        return unsafe.getIntVolatile(null, nativeAddress(address));
+    }
+
+    public void setInt(long address, int value)
+    {
+        unsafe.putInt(nativeAddress(address), value);
+    }
+
+    public boolean compareAndSwapInt(long address, int expected, int value)
+    {
+        return unsafe.compareAndSwapInt(null, nativeAddress(address), expected, value);
+    }
+
+    public long getLong(long address)
+    {
+        return unsafe.getLong(nativeAddress(address));
+    }
+
+    public void setLong(long address, long value)
+    {
+        unsafe.putLong(nativeAddress(address), value);
+    }
+
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * Size of the native memory held by this arena plus its on-heap bookkeeping.
+     */
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(segments) + (long) segments.length * segmentSize;
+    }
+
+    /**
+     * Frees the native memory. Nothing may read from or write to the arena concurrently with or after this call.
+     */
+    @Override
+    public void close()
+    {
+        long[] segments = this.segments;
+        this.segments = new long[0];
+        for (long segment : segments) {
+            unsafe.freeMemory(segment);
+        }
+    }
+
+    private void ensureCapacity(long bytes)
+    {
+        int requiredSegments = toIntExact((bytes + segmentMask) >>> segmentShift);
+        if (requiredSegments <= segments.length) {
+            return;
+        }
+        long[] newSegments = Arrays.copyOf(segments, requiredSegments);
+        int allocatedSegments = segments.length;
+        try {
+            while (allocatedSegments < requiredSegments) {
+                long segment = unsafe.allocateMemory(segmentSize);
+                newSegments[allocatedSegments++] = segment;
+                unsafe.setMemory(segment, segmentSize, (byte) 0);
+            }
+        }
+        catch (OutOfMemoryError e) {
+            for (int i = segments.length; i < allocatedSegments; i++) {
+                unsafe.freeMemory(newSegments[i]);
+            }
+            throw e;
+        }
+        segments = newSegments;
+    }
+
+    private long nativeAddress(long address)
+    {
+        // the segment lookup is bounds checked and the offset is masked, so an access never leaves the allocated segments
+        return segments[(int) (address >>> segmentShift)] + offset(address);
+    }
+
+    private long offset(long address)
+    {
+        return address & segmentMask;
+    }
+}
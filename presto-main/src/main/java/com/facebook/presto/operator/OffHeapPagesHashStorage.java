@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.openjdk.jol.info.ClassLayout;
+
+/**
+ * {@link PagesHashStorage} in an {@link OffHeapArena}. For large build sides this removes the biggest
+ * arrays of the lookup source from the Java heap, which keeps garbage collection pauses independent of
+ * the build size.
+ */
+public final class OffHeapPagesHashStorage
+        implements PagesHashStorage
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(OffHeapPagesHashStorage.class).instanceSize();
+
+    // arena layout: int key[hashSize] followed by byte positionToHashes[positionCount]
+    private final OffHeapArena arena;
+    private final long keyAddress;
+    private final long positionToHashesAddress;
+
+    public OffHeapPagesHashStorage(int hashSize, int positionCount)
+    {
+        arena = new OffHeapArena((long) hashSize * Integer.BYTES + positionCount);
+        keyAddress = arena.allocate(hashSize, Integer.BYTES);
+        positionToHashesAddress = arena.allocate(positionCount, Byte.BYTES);
+        arena.fill(keyAddress, (long) hashSize * Integer.BYTES, (byte) -1);
+    }
+
+    @Override
+    public int getKey(int slot)
+    {
+        return arena.getInt(keyAddress(slot));
+    }
+
+    @Override
+    public void setKey(int slot, int position)
+    {
+        arena.setInt(keyAddress(slot), position);
+    }
+
+    @Override
+    public int getKeyVolatile(int slot)
+    {
+        return arena.getIntVolatile(keyAddress(slot));
+    }
+
+    @Override
+    public boolean compareAndSetKey(int slot, int expectedPosition, int position)
+    {
+        return arena.compareAndSwapInt(keyAddress(slot), expectedPosition, position);
+    }
+
+    @Override
+    public byte getPositionHash(int position)
+    {
+        return arena.getByte(positionToHashesAddress + position);
+    }
+
+    @Override
+    public void setPositionHash(int position, byte hash)
+    {
+        arena.setByte(positionToHashesAddress + position, hash);
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + arena.getRetainedSizeInBytes();
+    }
+
+    @Override
+    public void close()
+    {
+        arena.close();
+    }
+
+    private long keyAddress(int slot)
+    {
+        return keyAddress + (long) slot * Integer.BYTES;
+    }
+}
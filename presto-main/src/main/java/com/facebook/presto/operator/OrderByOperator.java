@@ -17,7 +17,10 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.spiller.Spiller;
 import com.facebook.presto.spiller.SpillerFactory;
@@ -26,6 +29,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
@@ -57,6 +61,7 @@ public class OrderByOperator
         private final boolean spillEnabled;
         private final Optional<SpillerFactory> spillerFactory;
         private final OrderingCompiler orderingCompiler;
+        private final Optional<PagesSerdeFactory> revokeCompressionSerdeFactory;
 
         private boolean closed;
 
@@ -72,6 +77,39 @@ public class OrderByOperator
                 boolean spillEnabled,
                 Optional<SpillerFactory> spillerFactory,
                 OrderingCompiler orderingCompiler)
+        {
+            this(
+                    operatorId,
+                    planNodeId,
+                    sourceTypes,
+                    outputChannels,
+                    expectedPositions,
+                    sortChannels,
+                    sortOrder,
+                    pagesIndexFactory,
+                    spillEnabled,
+                    spillerFactory,
+                    orderingCompiler,
+                    Optional.empty());
+        }
+
+        /**
+         * @param revokeCompressionSerdeFactory if present, the first memory revoke compresses the rows in memory
+         * with serdes of this factory, and only the following one spills them
+         */
+        public OrderByOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> outputChannels,
+                int expectedPositions,
+                List<Integer> sortChannels,
+                List<SortOrder> sortOrder,
+                PagesIndex.Factory pagesIndexFactory,
+                boolean spillEnabled,
+                Optional<SpillerFactory> spillerFactory,
+                OrderingCompiler orderingCompiler,
+                Optional<PagesSerdeFactory> revokeCompressionSerdeFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -85,7 +123,9 @@ public class OrderByOperator
             this.spillEnabled = spillEnabled;
             this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
             this.orderingCompiler = requireNonNull(orderingCompiler, "orderingCompiler is null");
+            this.revokeCompressionSerdeFactory = requireNonNull(revokeCompressionSerdeFactory, "revokeCompressionSerdeFactory is null");
             checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
+            checkArgument(spillEnabled || !revokeCompressionSerdeFactory.isPresent(), "Revoke compression requires spill to be enabled");
         }
 
         @Override
@@ -104,7 +144,8 @@ public class OrderByOperator
                     pagesIndexFactory,
                     spillEnabled,
                     spillerFactory,
-                    orderingCompiler);
+                    orderingCompiler,
+                    revokeCompressionSerdeFactory.map(PagesSerdeFactory::createPagesSerde));
         }
 
         @Override
@@ -127,7 +168,8 @@ public class OrderByOperator
                     pagesIndexFactory,
                     spillEnabled,
                     spillerFactory,
-                    orderingCompiler);
+                    orderingCompiler,
+                    revokeCompressionSerdeFactory);
         }
     }
 
@@ -152,6 +194,12 @@ public class OrderByOperator
     private final boolean spillEnabled;
     private final Optional<SpillerFactory> spillerFactory;
     private final OrderingCompiler orderingCompiler;
+    private final Optional<PagesSerde> revokeCompressionSerde;
+
+    // sorted runs of rows that a memory revoke compressed in memory instead of spilling them
+    private final List<List<SerializedPage>> compressedRuns = new ArrayList<>();
+    private long compressedRunsSizeInBytes;
+    private boolean compressOnNextRevoke = true;
 
     private Optional<Spiller> spiller = Optional.empty();
     private ListenableFuture<?> spillInProgress = immediateFuture(null);
@@ -172,6 +220,22 @@ public class OrderByOperator
             boolean spillEnabled,
             Optional<SpillerFactory> spillerFactory,
             OrderingCompiler orderingCompiler)
+    {
+        this(operatorContext, sourceTypes, outputChannels, expectedPositions, sortChannels, sortOrder, pagesIndexFactory, spillEnabled, spillerFactory, orderingCompiler, Optional.empty());
+    }
+
+    public OrderByOperator(
+            OperatorContext operatorContext,
+            List<Type> sourceTypes,
+            List<Integer> outputChannels,
+            int expectedPositions,
+            List<Integer> sortChannels,
+            List<SortOrder> sortOrder,
+            PagesIndex.Factory pagesIndexFactory,
+            boolean spillEnabled,
+            Optional<SpillerFactory> spillerFactory,
+            OrderingCompiler orderingCompiler,
+            Optional<PagesSerde> revokeCompressionSerde)
     {
         requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
 
@@ -187,6 +251,7 @@ public class OrderByOperator
         this.spillEnabled = spillEnabled;
         this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
         this.orderingCompiler = requireNonNull(orderingCompiler, "orderingCompiler is null");
+        this.revokeCompressionSerde = requireNonNull(revokeCompressionSerde, "revokeCompressionSerde is null");
         checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
     }
 
@@ -225,7 +290,10 @@ public class OrderByOperator
             pageIndex.sort(sortChannels, sortOrder);
             Iterator<Page> sortedPagesIndex = pageIndex.getSortedPages();
 
-            List<WorkProcessor<Page>> spilledPages = getSpilledPages();
+            List<WorkProcessor<Page>> spilledPages = ImmutableList.<WorkProcessor<Page>>builder()
+                    .addAll(getSpilledPages())
+                    .addAll(getCompressedPages(compressedRuns))
+                    .build();
             if (spilledPages.isEmpty()) {
                 sortedPages = transform(sortedPagesIndex, Optional::of);
             }
@@ -288,9 +356,43 @@ public class OrderByOperator
     public ListenableFuture<?> startMemoryRevoke()
     {
         verify(state == State.NEEDS_INPUT || revocableMemoryContext.getBytes() == 0, "Cannot spill in state: %s", state);
+        // once the output is produced, pageIndex holds the rows being returned, which must not be compressed
+        if (revokeCompressionSerde.isPresent() && compressOnNextRevoke && state == State.NEEDS_INPUT && revocableMemoryContext.getBytes() > 0 && pageIndex.getPositionCount() > 0) {
+            return compressInMemory(revokeCompressionSerde.get());
+        }
         return spillToDisk();
     }
 
+    /**
+     * Sorts the rows and keeps them as a compressed run in memory. Since revoking this way is much cheaper than spilling,
+     * it is tried first, and the rows are only spilled if memory is still revoked after that.
+     */
+    private ListenableFuture<?> compressInMemory(PagesSerde serde)
+    {
+        checkSpillSucceeded(spillInProgress);
+
+        pageIndex.sort(sortChannels, sortOrder);
+        ImmutableList.Builder<SerializedPage> compressedRun = ImmutableList.builder();
+        long compressedRunSizeInBytes = 0;
+        Iterator<Page> sortedPagesIndex = pageIndex.getSortedPages();
+        while (sortedPagesIndex.hasNext()) {
+            SerializedPage page = serde.serialize(sortedPagesIndex.next());
+            compressedRun.add(page);
+            compressedRunSizeInBytes += page.getRetainedSizeInBytes();
+        }
+        compressOnNextRevoke = false;
+
+        List<SerializedPage> run = compressedRun.build();
+        long runSizeInBytes = compressedRunSizeInBytes;
+        finishMemoryRevoke = () -> {
+            compressedRuns.add(run);
+            compressedRunsSizeInBytes += runSizeInBytes;
+            pageIndex.clear();
+            updateMemoryUsage();
+        };
+        return immediateFuture(null);
+    }
+
     private ListenableFuture<?> spillToDisk()
     {
         checkSpillSucceeded(spillInProgress);
@@ -311,9 +413,26 @@ public class OrderByOperator
         }
 
         pageIndex.sort(sortChannels, sortOrder);
-        spillInProgress = spiller.get().spill(pageIndex.getSortedPages());
+        Iterator<Page> pagesToSpill = pageIndex.getSortedPages();
+        if (!compressedRuns.isEmpty()) {
+            // the compressed runs are spilled together with the rows in memory, as a single sorted run
+            List<WorkProcessor<Page>> sortedStreams = ImmutableList.<WorkProcessor<Page>>builder()
+                    .addAll(getCompressedPages(ImmutableList.copyOf(compressedRuns)))
+                    .add(WorkProcessor.fromIterator(pagesToSpill))
+                    .build();
+            pagesToSpill = mergeSortedPages(
+                    sortedStreams,
+                    orderingCompiler.compilePageWithPositionComparator(sourceTypes, sortChannels, sortOrder),
+                    sourceTypes,
+                    operatorContext.aggregateSystemMemoryContext(),
+                    new DriverYieldSignal()).iterator();
+        }
+        spillInProgress = spiller.get().spill(pagesToSpill);
+        compressOnNextRevoke = true;
         finishMemoryRevoke = () -> {
             pageIndex.clear();
+            compressedRuns.clear();
+            compressedRunsSizeInBytes = 0;
             updateMemoryUsage();
         };
 
@@ -338,6 +457,18 @@ public class OrderByOperator
                 .collect(toImmutableList());
     }
 
+    private List<WorkProcessor<Page>> getCompressedPages(List<List<SerializedPage>> runs)
+    {
+        if (runs.isEmpty()) {
+            return ImmutableList.of();
+        }
+
+        PagesSerde serde = revokeCompressionSerde.get();
+        return runs.stream()
+                .map(run -> WorkProcessor.fromIterator(transform(run.iterator(), serde::deserialize)))
+                .collect(toImmutableList());
+    }
+
     private WorkProcessor<Page> mergeSpilledAndMemoryPages(List<WorkProcessor<Page>> spilledPages, Iterator<Page> sortedPagesIndex)
     {
         List<WorkProcessor<Page>> sortedStreams = ImmutableList.<WorkProcessor<Page>>builder()
@@ -358,18 +489,18 @@ public class OrderByOperator
         if (spillEnabled && state == State.NEEDS_INPUT) {
             if (pageIndex.getPositionCount() == 0) {
                 localUserMemoryContext.setBytes(pageIndex.getEstimatedSize().toBytes());
-                revocableMemoryContext.setBytes(0L);
+                revocableMemoryContext.setBytes(compressedRunsSizeInBytes);
             }
             else {
                 localUserMemoryContext.setBytes(0);
-                revocableMemoryContext.setBytes(pageIndex.getEstimatedSize().toBytes());
+                revocableMemoryContext.setBytes(pageIndex.getEstimatedSize().toBytes() + compressedRunsSizeInBytes);
             }
         }
         else {
             revocableMemoryContext.setBytes(0);
-            if (!localUserMemoryContext.trySetBytes(pageIndex.getEstimatedSize().toBytes())) {
+            if (!localUserMemoryContext.trySetBytes(pageIndex.getEstimatedSize().toBytes() + compressedRunsSizeInBytes)) {
                 pageIndex.compact();
-                localUserMemoryContext.setBytes(pageIndex.getEstimatedSize().toBytes());
+                localUserMemoryContext.setBytes(pageIndex.getEstimatedSize().toBytes() + compressedRunsSizeInBytes);
             }
         }
     }
@@ -378,6 +509,7 @@ public class OrderByOperator
     public void close()
     {
         pageIndex.clear();
+        compressedRuns.clear();
         sortedPages = null;
         spiller.ifPresent(Spiller::close);
     }
@@ -13,19 +13,33 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.airlift.concurrent.MoreFutures;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.array.AdaptiveLongBigArray;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import io.airlift.units.DataSize;
 import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import org.openjdk.jol.info.ClassLayout;
 
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
 import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
-import static io.airlift.slice.SizeOf.sizeOf;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.successfulAsList;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
@@ -35,19 +49,18 @@ public final class PagesHash
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(PagesHash.class).instanceSize();
     private static final DataSize CACHE_SIZE = new DataSize(128, KILOBYTE);
+    // smaller builds are not worth handing to other threads
+    private static final int MIN_POSITIONS_PER_BUILD_TASK = 1 << 16;
+
     private final AdaptiveLongBigArray addresses;
     private final int positionCount;
     private final PagesHashStrategy pagesHashStrategy;
 
     private final int channelCount;
     private final int mask;
-    private final int[] key;
+    private final PagesHashStorage storage;
     private final long size;
 
-    // Native array of hashes for faster collisions resolution compared
-    // to accessing values in blocks. We use bytes to reduce memory foot print
-    // and there is no performance gain from storing full hashes
-    private final byte[] positionToHashes;
     private final long hashCollisions;
     private final double expectedHashCollisions;
     private final long positionIsNullCount;
@@ -57,80 +70,200 @@ public final class PagesHash
             int positionCount,
             PagesHashStrategy pagesHashStrategy,
             PositionLinks.FactoryBuilder positionLinks)
+    {
+        this(addresses, positionCount, pagesHashStrategy, positionLinks, 1, directExecutor(), false);
+    }
+
+    public PagesHash(
+            AdaptiveLongBigArray addresses,
+            int positionCount,
+            PagesHashStrategy pagesHashStrategy,
+            PositionLinks.FactoryBuilder positionLinks,
+            int buildParallelism,
+            Executor buildExecutor,
+            boolean offHeap)
     {
         this.addresses = requireNonNull(addresses, "addresses is null");
         this.positionCount = positionCount;
         this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
         this.channelCount = pagesHashStrategy.getChannelCount();
+        checkArgument(buildParallelism > 0, "buildParallelism must be positive");
+        requireNonNull(buildExecutor, "buildExecutor is null");
 
         // reserve memory for the arrays
         int hashSize = HashCommon.arraySize(positionCount, 0.75f);
 
         mask = hashSize - 1;
-        key = new int[hashSize];
-        Arrays.fill(key, -1);
+        storage = offHeap ? new OffHeapPagesHashStorage(hashSize, positionCount) : new HeapPagesHashStorage(hashSize, positionCount);
 
-        positionToHashes = new byte[positionCount];
-
-        // We will process addresses in batches, to save memory on array of hashes.
-        int positionsInStep = Math.min(positionCount + 1, (int) CACHE_SIZE.toBytes() / Integer.SIZE);
-        long[] positionToFullHashes = new long[positionsInStep];
         long hashCollisionsLocal = 0;
         long positionIsNullCountLocal = 0;
 
-        for (int step = 0; step * positionsInStep < positionCount; step++) {
-            int stepBeginPosition = step * positionsInStep;
-            int stepEndPosition = Math.min((step + 1) * positionsInStep, positionCount);
-            int stepSize = stepEndPosition - stepBeginPosition;
-
-            // First extract all hashes from blocks to native array.
-            // Somehow having this as a separate loop is much faster compared
-            // to extracting hashes on the fly in the loop below.
-            for (int position = 0; position < stepSize; position++) {
-                int realPosition = position + stepBeginPosition;
-                long hash = readHashPosition(realPosition);
-                positionToFullHashes[position] = hash;
-                positionToHashes[realPosition] = (byte) hash;
-            }
-
-            // index pages
-            for (int position = 0; position < stepSize; position++) {
-                int realPosition = position + stepBeginPosition;
-                if (isPositionNull(realPosition)) {
-                    ++positionIsNullCountLocal;
-                    continue;
+        int taskCount = Math.min(buildParallelism, positionCount / MIN_POSITIONS_PER_BUILD_TASK);
+        if (taskCount > 1 && positionLinks instanceof ArrayPositionLinks.FactoryBuilder) {
+            long[] counts = buildInParallel((ArrayPositionLinks.FactoryBuilder) positionLinks, taskCount, buildExecutor);
+            hashCollisionsLocal = counts[0];
+            positionIsNullCountLocal = counts[1];
+        }
+        else {
+            // We will process addresses in batches, to save memory on array of hashes.
+            int positionsInStep = Math.min(positionCount + 1, (int) CACHE_SIZE.toBytes() / Integer.SIZE);
+            long[] positionToFullHashes = new long[positionsInStep];
+
+            for (int step = 0; step * positionsInStep < positionCount; step++) {
+                int stepBeginPosition = step * positionsInStep;
+                int stepEndPosition = Math.min((step + 1) * positionsInStep, positionCount);
+                int stepSize = stepEndPosition - stepBeginPosition;
+
+                // First extract all hashes from blocks to native array.
+                // Somehow having this as a separate loop is much faster compared
+                // to extracting hashes on the fly in the loop below.
+                for (int position = 0; position < stepSize; position++) {
+                    int realPosition = position + stepBeginPosition;
+                    long hash = readHashPosition(realPosition);
+                    positionToFullHashes[position] = hash;
+                    storage.setPositionHash(realPosition, (byte) hash);
                 }
 
-                long hash = positionToFullHashes[position];
-                int pos = getHashPosition(hash, mask);
-
-                // look for an empty slot or a slot containing this key
-                while (key[pos] != -1) {
-                    int currentKey = key[pos];
-                    if (((byte) hash) == positionToHashes[currentKey] && positionEqualsPositionIgnoreNulls(currentKey, realPosition)) {
-                        // found a slot for this key
-                        // link the new key position to the current key position
-                        realPosition = positionLinks.link(realPosition, currentKey);
+                // index pages
+                for (int position = 0; position < stepSize; position++) {
+                    int realPosition = position + stepBeginPosition;
+                    if (isPositionNull(realPosition)) {
+                        ++positionIsNullCountLocal;
+                        continue;
+                    }
 
-                        // key[pos] updated outside of this loop
-                        break;
+                    long hash = positionToFullHashes[position];
+                    int pos = getHashPosition(hash, mask);
+
+                    // look for an empty slot or a slot containing this key
+                    int currentKey = storage.getKey(pos);
+                    while (currentKey != -1) {
+                        if (((byte) hash) == storage.getPositionHash(currentKey) && positionEqualsPositionIgnoreNulls(currentKey, realPosition)) {
+                            // found a slot for this key
+                            // link the new key position to the current key position
+                            realPosition = positionLinks.link(realPosition, currentKey);
+
+                            // key[pos] updated outside of this loop
+                            break;
+                        }
+                        // increment position and mask to handler wrap around
+                        pos = (pos + 1) & mask;
+                        currentKey = storage.getKey(pos);
+                        hashCollisionsLocal++;
                     }
-                    // increment position and mask to handler wrap around
-                    pos = (pos + 1) & mask;
-                    hashCollisionsLocal++;
-                }
 
-                key[pos] = realPosition;
+                    storage.setKey(pos, realPosition);
+                }
             }
         }
 
-        size = addresses.getRetainedSizeInBytes() + pagesHashStrategy.getSizeInBytes() +
-                sizeOf(key) + sizeOf(positionToHashes);
+        size = addresses.getRetainedSizeInBytes() + pagesHashStrategy.getSizeInBytes();
         hashCollisions = hashCollisionsLocal;
         expectedHashCollisions = estimateNumberOfHashCollisions(positionCount, hashSize);
         positionIsNullCount = positionIsNullCountLocal;
     }
 
+    /**
+     * Inserts the positions from several threads at once. Empty slots are claimed with compare-and-swap, and
+     * a position whose key is already in a slot replaces it as the head of the chain of that key. The chains
+     * are then put in descending position order, as the sequential build does, so that the position links
+     * do not depend on how the threads interleaved and the checksum of the lookup source stays stable.
+     *
+     * @return the number of hash collisions and the number of positions with null keys
+     */
+    private long[] buildInParallel(ArrayPositionLinks.FactoryBuilder positionLinks, int taskCount, Executor executor)
+    {
+        long[] hashCollisions = new long[taskCount];
+        long[] positionIsNullCounts = new long[taskCount];
+        int[] linkCounts = new int[taskCount];
+
+        runInParallel(executor, taskCount, task -> {
+            int startPosition = (int) ((long) positionCount * task / taskCount);
+            int endPosition = (int) ((long) positionCount * (task + 1) / taskCount);
+            for (int position = startPosition; position < endPosition; position++) {
+                long hash = readHashPosition(position);
+                storage.setPositionHash(position, (byte) hash);
+                if (isPositionNull(position)) {
+                    positionIsNullCounts[task]++;
+                    continue;
+                }
+
+                int pos = getHashPosition(hash, mask);
+                while (true) {
+                    int currentKey = storage.getKeyVolatile(pos);
+                    if (currentKey == -1) {
+                        if (storage.compareAndSetKey(pos, -1, position)) {
+                            break;
+                        }
+                    }
+                    else if (((byte) hash) == storage.getPositionHash(currentKey) && positionEqualsPositionIgnoreNulls(currentKey, position)) {
+                        positionLinks.setLink(position, currentKey);
+                        if (storage.compareAndSetKey(pos, currentKey, position)) {
+                            linkCounts[task]++;
+                            break;
+                        }
+                    }
+                    else {
+                        // increment position and mask to handler wrap around
+                        pos = (pos + 1) & mask;
+                        hashCollisions[task]++;
+                    }
+                }
+            }
+        });
+
+        int linkCount = Arrays.stream(linkCounts).sum();
+        positionLinks.addLinkCount(linkCount);
+        if (linkCount > 0) {
+            runInParallel(executor, taskCount, task -> {
+                long hashSize = mask + 1L;
+                int startSlot = (int) (hashSize * task / taskCount);
+                int endSlot = (int) (hashSize * (task + 1) / taskCount);
+                IntArrayList chain = new IntArrayList();
+                for (int slot = startSlot; slot < endSlot; slot++) {
+                    int head = storage.getKey(slot);
+                    if (head == -1 || positionLinks.getLink(head) == -1) {
+                        continue;
+                    }
+                    chain.clear();
+                    for (int position = head; position != -1; position = positionLinks.getLink(position)) {
+                        chain.add(position);
+                    }
+                    int[] positions = chain.elements();
+                    int chainSize = chain.size();
+                    IntArrays.quickSort(positions, 0, chainSize);
+                    storage.setKey(slot, positions[chainSize - 1]);
+                    for (int i = chainSize - 1; i > 0; i--) {
+                        positionLinks.setLink(positions[i], positions[i - 1]);
+                    }
+                    positionLinks.setLink(positions[0], -1);
+                }
+            });
+        }
+
+        return new long[] {Arrays.stream(hashCollisions).sum(), Arrays.stream(positionIsNullCounts).sum()};
+    }
+
+    /**
+     * Runs the first task on the calling thread and the others on the executor, and waits for all of them.
+     */
+    private static void runInParallel(Executor executor, int taskCount, IntConsumer task)
+    {
+        List<ListenableFutureTask<?>> tasks = IntStream.range(1, taskCount)
+                .mapToObj(index -> ListenableFutureTask.create(() -> task.accept(index), null))
+                .collect(toImmutableList());
+        tasks.forEach(executor::execute);
+        try {
+            task.accept(0);
+        }
+        finally {
+            // the other tasks write to this hash table, so all of them must be done even when one fails
+            getFutureValue(successfulAsList(tasks));
+        }
+        tasks.forEach(MoreFutures::getFutureValue);
+    }
+
     public final int getChannelCount()
     {
         return channelCount;
@@ -143,7 +276,8 @@ public final class PagesHash
 
     public long getInMemorySizeInBytes()
     {
-        return INSTANCE_SIZE + size;
+        // the storage is counted separately, since it shrinks when the memory outside the Java heap is freed
+        return INSTANCE_SIZE + size + storage.getRetainedSizeInBytes();
     }
 
     public long getHashCollisions()
@@ -170,16 +304,53 @@ public final class PagesHash
     {
         int pos = getHashPosition(rawHash, mask);
 
-        while (key[pos] != -1) {
-            if (positionEqualsCurrentRowIgnoreNulls(key[pos], (byte) rawHash, rightPosition, hashChannelsPage)) {
-                return key[pos];
+        int currentKey = storage.getKey(pos);
+        while (currentKey != -1) {
+            if (positionEqualsCurrentRowIgnoreNulls(currentKey, (byte) rawHash, rightPosition, hashChannelsPage)) {
+                return currentKey;
             }
             // increment position and mask to handler wrap around
             pos = (pos + 1) & mask;
+            currentKey = storage.getKey(pos);
         }
         return -1;
     }
 
+    /**
+     * Batch variant of {@link #getAddressIndex(int, Page, long)} for the first {@code positionCount} entries of {@code positions}.
+     *
+     * @param rawHashes precomputed raw hashes indexed by probe position, or null if the hashes must be computed
+     * @param hashes scratch array of at least {@code positionCount} entries
+     */
+    public void getAddressIndexes(int[] positions, int positionCount, Page hashChannelsPage, @Nullable long[] rawHashes, long[] hashes, int[] addressIndexes)
+    {
+        // The lookup is done in passes over the whole batch. Loads within a pass do not depend
+        // on each other, so the CPU can overlap the cache misses of many probe rows instead of
+        // waiting for each row's key slot and hash byte in turn.
+        for (int i = 0; i < positionCount; i++) {
+            int position = positions[i];
+            hashes[i] = rawHashes == null ? pagesHashStrategy.hashRow(position, hashChannelsPage) : rawHashes[position];
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            addressIndexes[i] = storage.getKey(getHashPosition(hashes[i], mask));
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            int currentKey = addressIndexes[i];
+            int pos = getHashPosition(hashes[i], mask);
+            while (currentKey != -1) {
+                if (positionEqualsCurrentRowIgnoreNulls(currentKey, (byte) hashes[i], positions[i], hashChannelsPage)) {
+                    break;
+                }
+                // increment position and mask to handler wrap around
+                pos = (pos + 1) & mask;
+                currentKey = storage.getKey(pos);
+            }
+            addressIndexes[i] = currentKey;
+        }
+    }
+
     public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
     {
         long pageAddress = addresses.get(toIntExact(position));
@@ -189,6 +360,14 @@ public final class PagesHash
         pagesHashStrategy.appendTo(blockIndex, blockPosition, pageBuilder, outputChannelOffset);
     }
 
+    /**
+     * Releases the memory held outside the Java heap. No lookup source of this hash may be in use anymore.
+     */
+    public void close()
+    {
+        storage.close();
+    }
+
     private boolean isPositionNull(int position)
     {
         long pageAddress = addresses.get(position);
@@ -209,7 +388,7 @@ public final class PagesHash
 
     private boolean positionEqualsCurrentRowIgnoreNulls(int leftPosition, byte rawHash, int rightPosition, Page rightPage)
     {
-        if (positionToHashes[leftPosition] != rawHash) {
+        if (storage.getPositionHash(leftPosition) != rawHash) {
             return false;
         }
 
@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+/**
+ * Open addressing key table and per position hash bytes of a {@link PagesHash}.
+ * The key table maps each slot to the last build position with the key hashed to it, or -1 for an empty slot.
+ * The hash bytes speed up collision resolution compared to accessing the values in the blocks.
+ * Bytes reduce the memory footprint and there is no performance gain from storing full hashes.
+ */
+public interface PagesHashStorage
+        extends AutoCloseable
+{
+    int getKey(int slot);
+
+    void setKey(int slot, int position);
+
+    /**
+     * Reads a slot that other threads may update with {@link #compareAndSetKey} during a parallel build.
+     */
+    int getKeyVolatile(int slot);
+
+    boolean compareAndSetKey(int slot, int expectedPosition, int position);
+
+    byte getPositionHash(int position);
+
+    void setPositionHash(int position, byte hash);
+
+    long getRetainedSizeInBytes();
+
+    /**
+     * Releases memory held outside the Java heap. The storage must not be used afterwards.
+     */
+    @Override
+    void close();
+}
@@ -41,6 +41,7 @@ import it.unimi.dsi.fastutil.Swapper;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.openjdk.jol.info.ClassLayout;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 import java.util.Arrays;
@@ -49,11 +50,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.function.IntUnaryOperator;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
 import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
@@ -63,6 +67,8 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.airlift.slice.SizeOf.sizeOf;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 /**
  * PagesIndex a low-level data structure which contains the address of every value position of every channel.
@@ -78,15 +84,19 @@ public class PagesIndex
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(PagesIndex.class).instanceSize();
     private static final Logger log = Logger.get(PagesIndex.class);
+    // below this size the comparator sort is as fast as building the prefixes
+    private static final int MIN_PREFIX_SORT_POSITIONS = 64;
 
     private final OrderingCompiler orderingCompiler;
     private final JoinCompiler joinCompiler;
+    private final Executor joinHashBuildExecutor;
     private final FunctionAndTypeManager functionAndTypeManager;
 
     private final List<Type> types;
     private final AdaptiveLongBigArray valueAddresses;
     private final ObjectArrayList<Block>[] channels;
     private final boolean eagerCompact;
+    private final boolean prefixSortEnabled;
 
     private int nextBlockToCompact;
     private int positionCount;
@@ -96,18 +106,22 @@ public class PagesIndex
     private PagesIndex(
             OrderingCompiler orderingCompiler,
             JoinCompiler joinCompiler,
+            Executor joinHashBuildExecutor,
             FunctionAndTypeManager functionAndTypeManager,
             List<Type> types,
             int expectedPositions,
-            boolean eagerCompact)
+            boolean eagerCompact,
+            boolean prefixSortEnabled)
     {
         this.orderingCompiler = requireNonNull(orderingCompiler, "orderingCompiler is null");
         this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.joinHashBuildExecutor = requireNonNull(joinHashBuildExecutor, "joinHashBuildExecutor is null");
         this.functionAndTypeManager = requireNonNull(functionAndTypeManager, "functionManager is null");
         this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
         this.valueAddresses = new AdaptiveLongBigArray();
         this.valueAddresses.ensureCapacity(expectedPositions);
         this.eagerCompact = eagerCompact;
+        this.prefixSortEnabled = prefixSortEnabled && this.types.stream().anyMatch(PagesIndexPrefixSort::isSupported);
 
         //noinspection rawtypes
         channels = (ObjectArrayList<Block>[]) new ObjectArrayList[types.size()];
@@ -121,6 +135,12 @@ public class PagesIndex
     public interface Factory
     {
         PagesIndex newPagesIndex(List<Type> types, int expectedPositions);
+
+        /**
+         * Creates an index that is not expected to be sorted. Its estimated size does not include the memory
+         * of a prefix sort, and it is sorted with the comparator only.
+         */
+        PagesIndex newUnsortedPagesIndex(List<Type> types, int expectedPositions);
     }
 
     public static class TestingFactory
@@ -128,17 +148,31 @@ public class PagesIndex
     {
         private static final OrderingCompiler ORDERING_COMPILER = new OrderingCompiler();
         private static final JoinCompiler JOIN_COMPILER = new JoinCompiler(MetadataManager.createTestMetadataManager());
+        private static final ExecutorService JOIN_HASH_BUILD_EXECUTOR = newCachedThreadPool(daemonThreadsNamed("test-join-hash-build-%s"));
         private final boolean eagerCompact;
+        private final boolean prefixSortEnabled;
 
         public TestingFactory(boolean eagerCompact)
+        {
+            this(eagerCompact, true);
+        }
+
+        public TestingFactory(boolean eagerCompact, boolean prefixSortEnabled)
         {
             this.eagerCompact = eagerCompact;
+            this.prefixSortEnabled = prefixSortEnabled;
         }
 
         @Override
         public PagesIndex newPagesIndex(List<Type> types, int expectedPositions)
         {
-            return new PagesIndex(ORDERING_COMPILER, JOIN_COMPILER, MetadataManager.createTestMetadataManager().getFunctionAndTypeManager(), types, expectedPositions, eagerCompact);
+            return new PagesIndex(ORDERING_COMPILER, JOIN_COMPILER, JOIN_HASH_BUILD_EXECUTOR, MetadataManager.createTestMetadataManager().getFunctionAndTypeManager(), types, expectedPositions, eagerCompact, prefixSortEnabled);
+        }
+
+        @Override
+        public PagesIndex newUnsortedPagesIndex(List<Type> types, int expectedPositions)
+        {
+            return new PagesIndex(ORDERING_COMPILER, JOIN_COMPILER, JOIN_HASH_BUILD_EXECUTOR, MetadataManager.createTestMetadataManager().getFunctionAndTypeManager(), types, expectedPositions, eagerCompact, false);
         }
     }
 
@@ -147,7 +181,9 @@ public class PagesIndex
     {
         private final OrderingCompiler orderingCompiler;
         private final JoinCompiler joinCompiler;
+        private final ExecutorService joinHashBuildExecutor;
         private final boolean eagerCompact;
+        private final boolean prefixSortEnabled;
         private final FunctionAndTypeManager functionAndTypeManager;
 
         @Inject
@@ -155,14 +191,30 @@ public class PagesIndex
         {
             this.orderingCompiler = requireNonNull(orderingCompiler, "orderingCompiler is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
-            this.eagerCompact = requireNonNull(featuresConfig, "featuresConfig is null").isPagesIndexEagerCompactionEnabled();
+            this.joinHashBuildExecutor = newFixedThreadPool(
+                    requireNonNull(featuresConfig, "featuresConfig is null").getJoinHashBuildThreads(),
+                    daemonThreadsNamed("join-hash-build-%s"));
+            this.eagerCompact = featuresConfig.isPagesIndexEagerCompactionEnabled();
+            this.prefixSortEnabled = featuresConfig.isPagesIndexPrefixSortEnabled();
             this.functionAndTypeManager = requireNonNull(metadata, "metadata is null").getFunctionAndTypeManager();
         }
 
         @Override
         public PagesIndex newPagesIndex(List<Type> types, int expectedPositions)
         {
-            return new PagesIndex(orderingCompiler, joinCompiler, functionAndTypeManager, types, expectedPositions, eagerCompact);
+            return new PagesIndex(orderingCompiler, joinCompiler, joinHashBuildExecutor, functionAndTypeManager, types, expectedPositions, eagerCompact, prefixSortEnabled);
+        }
+
+        @Override
+        public PagesIndex newUnsortedPagesIndex(List<Type> types, int expectedPositions)
+        {
+            return new PagesIndex(orderingCompiler, joinCompiler, joinHashBuildExecutor, functionAndTypeManager, types, expectedPositions, eagerCompact, false);
+        }
+
+        @PreDestroy
+        public void destroy()
+        {
+            joinHashBuildExecutor.shutdownNow();
         }
     }
 
@@ -257,7 +309,9 @@ public class PagesIndex
         long elementsSize = (channels.length > 0) ? sizeOf(channels[0].elements()) : 0;
         long channelsArraySize = elementsSize * channels.length;
         long addressesArraySize = valueAddresses.getRetainedSizeInBytes();
-        return INSTANCE_SIZE + pagesMemorySize + channelsArraySize + addressesArraySize;
+        // the arrays a prefix sort of all positions allocates are reserved up front, so that sorting does not allocate past the reservation
+        long prefixSortSize = prefixSortEnabled ? PagesIndexPrefixSort.getSortSizeInBytes(positionCount) : 0;
+        return INSTANCE_SIZE + pagesMemorySize + channelsArraySize + addressesArraySize + prefixSortSize;
     }
 
     public Type getType(int channel)
@@ -373,7 +427,28 @@ public class PagesIndex
 
     public void sort(List<Integer> sortChannels, List<SortOrder> sortOrders, int startPosition, int endPosition)
     {
-        createPagesIndexComparator(sortChannels, sortOrders).sort(this, startPosition, endPosition);
+        PagesIndexOrdering ordering = createPagesIndexComparator(sortChannels, sortOrders);
+        Type firstSortType = sortChannels.isEmpty() ? null : types.get(sortChannels.get(0));
+        if (prefixSortEnabled && endPosition - startPosition >= MIN_PREFIX_SORT_POSITIONS && PagesIndexPrefixSort.isSupported(firstSortType)) {
+            PagesIndexPrefixSort.sort(this, ordering, sortChannels.get(0), firstSortType, sortOrders.get(0), sortChannels.size() == 1, startPosition, endPosition);
+        }
+        else {
+            ordering.sort(this, startPosition, endPosition);
+        }
+    }
+
+    /**
+     * Moves the row at {@code startPosition + order[i]} to {@code startPosition + i}.
+     */
+    void reorder(int startPosition, int[] order)
+    {
+        long[] addresses = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            addresses[i] = valueAddresses.get(startPosition + order[i]);
+        }
+        for (int i = 0; i < order.length; i++) {
+            valueAddresses.set(startPosition + i, addresses[i]);
+        }
     }
 
     public boolean positionEqualsPosition(PagesHashStrategy partitionHashStrategy, int leftPosition, int rightPosition)
@@ -478,6 +553,22 @@ public class PagesIndex
             Optional<Integer> sortChannel,
             List<JoinFilterFunctionFactory> searchFunctionFactories,
             Optional<List<Integer>> outputChannels)
+    {
+        return createLookupSourceSupplier(session, joinChannels, hashChannel, filterFunctionFactory, sortChannel, searchFunctionFactories, outputChannels, false);
+    }
+
+    /**
+     * @param offHeap whether to keep the hash table in off-heap memory, which is only freed when the returned supplier is closed
+     */
+    public LookupSourceSupplier createLookupSourceSupplier(
+            Session session,
+            List<Integer> joinChannels,
+            OptionalInt hashChannel,
+            Optional<JoinFilterFunctionFactory> filterFunctionFactory,
+            Optional<Integer> sortChannel,
+            List<JoinFilterFunctionFactory> searchFunctionFactories,
+            Optional<List<Integer>> outputChannels,
+            boolean offHeap)
     {
         List<List<Block>> channels = ImmutableList.copyOf(this.channels);
         if (!joinChannels.isEmpty()) {
@@ -495,7 +586,9 @@ public class PagesIndex
                         hashChannel,
                         filterFunctionFactory,
                         sortChannel,
-                        searchFunctionFactories);
+                        searchFunctionFactories,
+                        joinHashBuildExecutor,
+                        offHeap);
             }
             catch (Exception e) {
                 log.error(e, "Lookup source compile failed for types=%s error=%s", types, e);
@@ -520,7 +613,9 @@ public class PagesIndex
                 channels,
                 filterFunctionFactory,
                 sortChannel,
-                searchFunctionFactories);
+                searchFunctionFactories,
+                joinHashBuildExecutor,
+                offHeap);
     }
 
     private List<Integer> rangeList(int endExclusive)
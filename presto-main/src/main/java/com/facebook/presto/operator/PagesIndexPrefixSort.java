@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.block.SortOrder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.VarcharType;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.slice.Slice;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.util.Set;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TimestampType.TIMESTAMP;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static java.lang.Double.doubleToLongBits;
+
+/**
+ * Sorts a range of a {@link PagesIndex} by first radix sorting a flat array of normalized prefixes
+ * of the first sort key, and then sorting rows with equal prefixes with the full comparator.
+ * The prefix of a row is a long whose signed order is the sort order of the first sort key, so the
+ * full comparator and the blocks are only used for ties instead of for every comparison.
+ */
+final class PagesIndexPrefixSort
+{
+    // types whose whole value is the prefix
+    private static final Set<Type> EXACT_TYPES = ImmutableSet.of(BIGINT, INTEGER, SMALLINT, TINYINT, DATE, TIMESTAMP, DOUBLE);
+    private static final int VARCHAR_PREFIX_BYTES = Long.BYTES;
+
+    private PagesIndexPrefixSort() {}
+
+    public static boolean isSupported(Type type)
+    {
+        return EXACT_TYPES.contains(type) || type instanceof VarcharType;
+    }
+
+    /**
+     * Returns the size of the arrays that sorting {@code positionCount} positions allocates.
+     */
+    public static long getSortSizeInBytes(int positionCount)
+    {
+        // rows, prefixes, order and the reordered addresses
+        return (long) positionCount * (Integer.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES);
+    }
+
+    /**
+     * @param singleKey whether the rows are only sorted by {@code channel}
+     */
+    public static void sort(PagesIndex pagesIndex, PagesIndexOrdering ordering, int channel, Type type, SortOrder sortOrder, boolean singleKey, int startPosition, int endPosition)
+    {
+        int positionCount = endPosition - startPosition;
+        int[] rows = new int[positionCount];
+        long[] prefixes = new long[positionCount];
+        int nonNullCount = 0;
+        int nullCount = 0;
+        // non null rows are collected at the start of rows and null rows at the end
+        for (int row = 0; row < positionCount; row++) {
+            int position = startPosition + row;
+            if (pagesIndex.isNull(channel, position)) {
+                nullCount++;
+                rows[positionCount - nullCount] = row;
+            }
+            else {
+                long prefix = getPrefix(pagesIndex, channel, type, singleKey, position);
+                prefixes[row] = sortOrder.isAscending() ? prefix : ~prefix;
+                rows[nonNullCount] = row;
+                nonNullCount++;
+            }
+        }
+
+        LongArrays.radixSortIndirect(rows, prefixes, 0, nonNullCount, false);
+
+        int[] order = new int[positionCount];
+        int nonNullStart = sortOrder.isNullsFirst() ? nullCount : 0;
+        int nullStart = sortOrder.isNullsFirst() ? 0 : nonNullCount;
+        System.arraycopy(rows, 0, order, nonNullStart, nonNullCount);
+        System.arraycopy(rows, nonNullCount, order, nullStart, nullCount);
+        pagesIndex.reorder(startPosition, order);
+
+        if (singleKey && EXACT_TYPES.contains(type)) {
+            return;
+        }
+        if (!singleKey && nullCount > 1) {
+            ordering.sort(pagesIndex, startPosition + nullStart, startPosition + nullStart + nullCount);
+        }
+        int runStart = 0;
+        for (int i = 1; i <= nonNullCount; i++) {
+            if (i == nonNullCount || prefixes[rows[i]] != prefixes[rows[runStart]]) {
+                if (i - runStart > 1) {
+                    ordering.sort(pagesIndex, startPosition + nonNullStart + runStart, startPosition + nonNullStart + i);
+                }
+                runStart = i;
+            }
+        }
+    }
+
+    private static long getPrefix(PagesIndex pagesIndex, int channel, Type type, boolean singleKey, int position)
+    {
+        if (type.equals(DOUBLE)) {
+            double value = pagesIndex.getDouble(channel, position);
+            // all NaNs are equal and larger than any other value. +0 and -0 are equal, so they share a prefix
+            // when later keys order them, and -0 is ordered first otherwise, so that the order does not depend on the input
+            long bits = doubleToLongBits(value == 0 && !singleKey ? 0 : value);
+            return bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+        }
+        if (type instanceof VarcharType) {
+            // the first bytes in big endian order, padded with zeros, compared as unsigned
+            Slice slice = pagesIndex.getSlice(channel, position);
+            long prefix;
+            if (slice.length() >= VARCHAR_PREFIX_BYTES) {
+                prefix = Long.reverseBytes(slice.getLong(0));
+            }
+            else {
+                prefix = 0;
+                for (int i = 0; i < slice.length(); i++) {
+                    prefix |= (slice.getByte(i) & 0xFFL) << (Long.SIZE - Byte.SIZE * (i + 1));
+                }
+            }
+            return prefix ^ Long.MIN_VALUE;
+        }
+        return pagesIndex.getLong(channel, position);
+    }
+}
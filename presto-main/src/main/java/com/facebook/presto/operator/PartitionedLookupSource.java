@@ -86,6 +86,16 @@ public class PartitionedLookupSource
 
     private boolean closed;
 
+    // scratch arrays of the batch lookup, reused across probe pages
+    private final int[] partitionOffsets;
+    private final int[] nextOffsets;
+    private long[] rawHashes = new long[0];
+    private int[] partitions = new int[0];
+    private int[] partitionPositions = new int[0];
+    private int[] partitionIndexes = new int[0];
+    private int[] lookupPositions = new int[0];
+    private long[] lookupJoinPositions = new long[0];
+
     private PartitionedLookupSource(List<? extends LookupSource> lookupSources, List<Type> hashChannelTypes, Optional<OuterPositionTracker> outerPositionTracker)
     {
         this.lookupSources = lookupSources.toArray(new LookupSource[lookupSources.size()]);
@@ -97,6 +107,8 @@ public class PartitionedLookupSource
         this.partitionMask = lookupSources.size() - 1;
         this.shiftSize = numberOfTrailingZeros(lookupSources.size()) + 1;
         this.outerPositionTracker = outerPositionTracker.orElse(null);
+        this.partitionOffsets = new int[lookupSources.size() + 1];
+        this.nextOffsets = new int[lookupSources.size()];
     }
 
     @Override
@@ -143,6 +155,64 @@ public class PartitionedLookupSource
         return encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
     }
 
+    @Override
+    public boolean isBatchLookupSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        if (rawHashes == null) {
+            if (this.rawHashes.length < hashChannelsPage.getPositionCount()) {
+                this.rawHashes = new long[hashChannelsPage.getPositionCount()];
+            }
+            rawHashes = this.rawHashes;
+            for (int i = 0; i < positionCount; i++) {
+                rawHashes[positions[i]] = partitionGenerator.getRawHash(hashChannelsPage, positions[i]);
+            }
+        }
+        if (partitions.length < positionCount) {
+            partitions = new int[positionCount];
+            partitionPositions = new int[positionCount];
+            partitionIndexes = new int[positionCount];
+            lookupPositions = new int[positionCount];
+            lookupJoinPositions = new long[positionCount];
+        }
+
+        // group the probe rows by partition, so that every partition can look up its rows in a single batch
+        Arrays.fill(partitionOffsets, 0);
+        for (int i = 0; i < positionCount; i++) {
+            int partition = partitionGenerator.getPartition(rawHashes[positions[i]]);
+            partitions[i] = partition;
+            partitionOffsets[partition + 1]++;
+        }
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            partitionOffsets[partition + 1] += partitionOffsets[partition];
+        }
+        System.arraycopy(partitionOffsets, 0, nextOffsets, 0, lookupSources.length);
+        for (int i = 0; i < positionCount; i++) {
+            int offset = nextOffsets[partitions[i]]++;
+            partitionPositions[offset] = positions[i];
+            partitionIndexes[offset] = i;
+        }
+
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            int start = partitionOffsets[partition];
+            int count = partitionOffsets[partition + 1] - start;
+            if (count == 0) {
+                continue;
+            }
+            System.arraycopy(partitionPositions, start, lookupPositions, 0, count);
+            lookupSources[partition].getJoinPositions(lookupPositions, count, hashChannelsPage, allChannelsPage, rawHashes, lookupJoinPositions);
+            for (int i = 0; i < count; i++) {
+                long joinPosition = lookupJoinPositions[i];
+                joinPositions[partitionIndexes[start + i]] = joinPosition < 0 ? joinPosition : encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
+            }
+        }
+    }
+
     @Override
     public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
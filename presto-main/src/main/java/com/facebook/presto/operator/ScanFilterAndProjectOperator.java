@@ -41,6 +41,7 @@ import com.facebook.presto.split.EmptySplitPageSource;
 import com.facebook.presto.split.PageSourceProvider;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.units.DataSize;
@@ -56,10 +57,12 @@ import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 import static com.facebook.airlift.concurrent.MoreFutures.toListenableFuture;
+import static com.facebook.presto.common.RuntimeMetricName.DYNAMIC_FILTER_BLOOM_FILTERED_ROWS;
 import static com.facebook.presto.common.RuntimeMetricName.STORAGE_READ_DATA_BYTES;
 import static com.facebook.presto.common.RuntimeMetricName.STORAGE_READ_TIME_NANOS;
 import static com.facebook.presto.common.RuntimeUnit.BYTE;
 import static com.facebook.presto.common.RuntimeUnit.NANO;
+import static com.facebook.presto.common.RuntimeUnit.NONE;
 import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
@@ -81,6 +84,8 @@ public class ScanFilterAndProjectOperator
     private final LocalMemoryContext outputMemoryContext;
     private final SettableFuture<?> blocked = SettableFuture.create();
     private final Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier;
+    // Bloom filters of the dynamic filters, by source page channel
+    private final Optional<Supplier<ListMultimap<Integer, BlockedBloomFilter>>> dynamicBloomFilterSupplier;
     private final MergingPageOutput mergingOutput;
 
     private RecordCursor cursor;
@@ -104,6 +109,7 @@ public class ScanFilterAndProjectOperator
             Iterable<ColumnHandle> columns,
             Iterable<Type> types,
             Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier,
+            Optional<Supplier<ListMultimap<Integer, BlockedBloomFilter>>> dynamicBloomFilterSupplier,
             MergingPageOutput mergingOutput)
     {
         this.cursorProcessor = requireNonNull(cursorProcessor, "cursorProcessor is null");
@@ -118,6 +124,7 @@ public class ScanFilterAndProjectOperator
         this.pageProcessorMemoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext(ScanFilterAndProjectOperator.class.getSimpleName());
         this.outputMemoryContext = operatorContext.newLocalSystemMemoryContext(ScanFilterAndProjectOperator.class.getSimpleName());
         this.dynamicFilterSupplier = requireNonNull(dynamicFilterSupplier, "dynamicFilterSupplier is null");
+        this.dynamicBloomFilterSupplier = requireNonNull(dynamicBloomFilterSupplier, "dynamicBloomFilterSupplier is null");
         this.mergingOutput = requireNonNull(mergingOutput, "mergingOutput is null");
 
         this.pageBuilder = new PageBuilder(ImmutableList.copyOf(requireNonNull(types, "types is null")));
@@ -300,6 +307,7 @@ public class ScanFilterAndProjectOperator
             if (page != null) {
                 // update operator stats
                 page = recordProcessedInput(page);
+                page = filterWithBloomFilters(page);
 
                 Iterator<Optional<Page>> output = pageProcessor.process(sqlFunctionProperties, yieldSignal, pageProcessorMemoryContext, page);
                 mergingOutput.addInput(output);
@@ -395,6 +403,53 @@ public class ScanFilterAndProjectOperator
         return (blocks == null) ? page : new Page(page.getPositionCount(), blocks);
     }
 
+    private Page filterWithBloomFilters(Page page)
+    {
+        if (!dynamicBloomFilterSupplier.isPresent()) {
+            return page;
+        }
+        ListMultimap<Integer, BlockedBloomFilter> bloomFilters = dynamicBloomFilterSupplier.get().get();
+        if (bloomFilters.isEmpty()) {
+            return page;
+        }
+
+        int[] retainedPositions = new int[page.getPositionCount()];
+        int retainedPositionCount = 0;
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            if (mightMatch(bloomFilters, page, position)) {
+                retainedPositions[retainedPositionCount++] = position;
+            }
+        }
+        if (retainedPositionCount == page.getPositionCount()) {
+            return page;
+        }
+        operatorContext.getRuntimeStats().addMetricValue(DYNAMIC_FILTER_BLOOM_FILTERED_ROWS, NONE, page.getPositionCount() - retainedPositionCount);
+
+        // keep the blocks that were not needed for filtering lazy
+        Block[] blocks = new Block[page.getChannelCount()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            Block block = page.getBlock(channel);
+            if (block instanceof LazyBlock && !((LazyBlock) block).isLoaded()) {
+                int length = retainedPositionCount;
+                blocks[channel] = new LazyBlock(length, lazyBlock -> lazyBlock.setBlock(block.getPositions(retainedPositions, 0, length)));
+            }
+            else {
+                blocks[channel] = block.getPositions(retainedPositions, 0, retainedPositionCount);
+            }
+        }
+        return new Page(retainedPositionCount, blocks);
+    }
+
+    private static boolean mightMatch(ListMultimap<Integer, BlockedBloomFilter> bloomFilters, Page page, int position)
+    {
+        for (Map.Entry<Integer, BlockedBloomFilter> entry : bloomFilters.entries()) {
+            if (!entry.getValue().mightContain(page.getBlock(entry.getKey()), position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static Block[] copyOfPageBlocks(Page page)
     {
         Block[] blocks = new Block[page.getChannelCount()];
@@ -417,6 +472,7 @@ public class ScanFilterAndProjectOperator
         private final List<ColumnHandle> columns;
         private final List<Type> types;
         private final Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier;
+        private final Optional<Supplier<ListMultimap<Integer, BlockedBloomFilter>>> dynamicBloomFilterSupplier;
         private final DataSize minOutputPageSize;
         private final int minOutputPageRowCount;
         private boolean closed;
@@ -434,6 +490,24 @@ public class ScanFilterAndProjectOperator
                 Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier,
                 DataSize minOutputPageSize,
                 int minOutputPageRowCount)
+        {
+            this(operatorId, planNodeId, sourceId, pageSourceProvider, cursorProcessor, pageProcessor, table, columns, types, dynamicFilterSupplier, Optional.empty(), minOutputPageSize, minOutputPageRowCount);
+        }
+
+        public ScanFilterAndProjectOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                PlanNodeId sourceId,
+                PageSourceProvider pageSourceProvider,
+                Supplier<CursorProcessor> cursorProcessor,
+                Supplier<PageProcessor> pageProcessor,
+                TableHandle table,
+                Iterable<ColumnHandle> columns,
+                List<Type> types,
+                Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier,
+                Optional<Supplier<ListMultimap<Integer, BlockedBloomFilter>>> dynamicBloomFilterSupplier,
+                DataSize minOutputPageSize,
+                int minOutputPageRowCount)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -445,6 +519,7 @@ public class ScanFilterAndProjectOperator
             this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
             this.types = requireNonNull(types, "types is null");
             this.dynamicFilterSupplier = requireNonNull(dynamicFilterSupplier, "dynamicFilterSupplier is null");
+            this.dynamicBloomFilterSupplier = requireNonNull(dynamicBloomFilterSupplier, "dynamicBloomFilterSupplier is null");
             this.minOutputPageSize = requireNonNull(minOutputPageSize, "minOutputPageSize is null");
             this.minOutputPageRowCount = minOutputPageRowCount;
         }
@@ -470,6 +545,7 @@ public class ScanFilterAndProjectOperator
                     columns,
                     types,
                     dynamicFilterSupplier,
+                    dynamicBloomFilterSupplier,
                     new MergingPageOutput(types, minOutputPageSize.toBytes(), minOutputPageRowCount));
         }
 
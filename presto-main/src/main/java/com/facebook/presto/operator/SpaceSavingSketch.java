@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Space-Saving summary of the most frequent keys of a stream, using a fixed number of counters.
+ * When a key without a counter arrives, it takes over the counter of the least frequent key and
+ * inherits its count, so the count of a key is never underestimated, and it is overestimated by at most
+ * the number of keys added divided by the capacity. The counters form a min heap on the count.
+ */
+@NotThreadSafe
+public final class SpaceSavingSketch
+{
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    // how much of the count of the key was inherited from the key it replaced
+    private final long[] errors;
+    private final Long2IntOpenHashMap keyToSlot;
+    private int size;
+    private long totalCount;
+
+    public SpaceSavingSketch(int capacity)
+    {
+        checkArgument(capacity > 0, "capacity must be positive");
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.keyToSlot = new Long2IntOpenHashMap(capacity);
+        keyToSlot.defaultReturnValue(-1);
+    }
+
+    public void add(long key)
+    {
+        totalCount++;
+        int slot = keyToSlot.get(key);
+        if (slot >= 0) {
+            counts[slot]++;
+            siftDown(slot);
+            return;
+        }
+
+        if (size < capacity) {
+            slot = size;
+            size++;
+            keys[slot] = key;
+            counts[slot] = 1;
+            errors[slot] = 0;
+            keyToSlot.put(key, slot);
+            siftUp(slot);
+            return;
+        }
+
+        // replace the least frequent key, which is at the root of the heap
+        keyToSlot.remove(keys[0]);
+        keys[0] = key;
+        errors[0] = counts[0];
+        counts[0]++;
+        keyToSlot.put(key, 0);
+        siftDown(0);
+    }
+
+    public long getTotalCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Returns an upper bound of the number of times the key was added.
+     */
+    public long getEstimatedCount(long key)
+    {
+        int slot = keyToSlot.get(key);
+        if (slot >= 0) {
+            return counts[slot];
+        }
+        // a key without a counter was added at most as many times as the least frequent tracked key
+        return size < capacity ? 0 : counts[0];
+    }
+
+    /**
+     * Returns a lower bound of the number of times the key was added.
+     */
+    public long getGuaranteedCount(long key)
+    {
+        int slot = keyToSlot.get(key);
+        if (slot >= 0) {
+            return counts[slot] - errors[slot];
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the keys that may make up at least {@code minFraction} of all added keys.
+     * Every key that does is included.
+     */
+    public LongSet getHeavyHitters(double minFraction)
+    {
+        checkArgument(minFraction > 0 && minFraction <= 1, "minFraction must be in (0, 1]");
+        LongSet heavyHitters = new LongOpenHashSet();
+        double minCount = minFraction * totalCount;
+        for (int slot = 0; slot < size; slot++) {
+            if (counts[slot] >= minCount) {
+                heavyHitters.add(keys[slot]);
+            }
+        }
+        return heavyHitters;
+    }
+
+    private void siftUp(int slot)
+    {
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (counts[parent] <= counts[slot]) {
+                return;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot)
+    {
+        while (true) {
+            int smallest = slot;
+            int left = 2 * slot + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == slot) {
+                return;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+
+    private void swap(int first, int second)
+    {
+        long key = keys[first];
+        long count = counts[first];
+        long error = errors[first];
+        keys[first] = keys[second];
+        counts[first] = counts[second];
+        errors[first] = errors[second];
+        keys[second] = key;
+        counts[second] = count;
+        errors[second] = error;
+        keyToSlot.put(keys[first], first);
+        keyToSlot.put(keys[second], second);
+    }
+}
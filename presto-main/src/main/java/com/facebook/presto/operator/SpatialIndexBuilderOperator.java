@@ -169,7 +169,7 @@ public class SpatialIndexBuilderOperator
         this.filterFunctionFactory = filterFunctionFactory;
 
         this.pagesSpatialIndexFactory = requireNonNull(pagesSpatialIndexFactory, "pagesSpatialIndexFactory is null");
-        this.index = pagesIndexFactory.newPagesIndex(pagesSpatialIndexFactory.getTypes(), expectedPositions);
+        this.index = pagesIndexFactory.newUnsortedPagesIndex(pagesSpatialIndexFactory.getTypes(), expectedPositions);
 
         this.outputChannels = requireNonNull(outputChannels, "outputChannels is null");
         this.indexChannel = indexChannel;
@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.buffer.ExternalShuffleFile;
+import com.facebook.presto.operator.PageBufferClient.PagesResponse;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.spi.storage.TempStorage;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.slice.InputStreamSliceInput;
+import io.airlift.slice.SliceInput;
+import io.airlift.units.DataSize;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static com.facebook.presto.operator.PageBufferClient.PagesResponse.createPagesResponse;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Iterators.peekingIterator;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads one partition of the shuffle files written by {@link com.facebook.presto.execution.buffer.ExternalShuffleWriter}
+ * directly from the {@link TempStorage}, without going through the producing task.
+ * The token of a request is the number of pages of the partition returned before it.
+ */
+@ThreadSafe
+public final class TempStorageRpcShuffleClient
+        implements RpcShuffleClient
+{
+    // the files do not change, so all responses come from the same instance
+    private static final String TASK_INSTANCE_ID = "external-shuffle";
+
+    private final TempStorage tempStorage;
+    private final TempDataOperationContext context;
+    private final List<ExternalShuffleFile> files;
+    private final int partition;
+    private final ListeningExecutorService executor;
+
+    @GuardedBy("this")
+    private long nextToken;
+    @GuardedBy("this")
+    private int nextFileIndex;
+    @GuardedBy("this")
+    private SliceInput input;
+    @GuardedBy("this")
+    private PeekingIterator<SerializedPage> pages;
+
+    public TempStorageRpcShuffleClient(TempStorage tempStorage, TempDataOperationContext context, List<ExternalShuffleFile> files, int partition, ListeningExecutorService executor)
+    {
+        this.tempStorage = requireNonNull(tempStorage, "tempStorage is null");
+        this.context = requireNonNull(context, "context is null");
+        this.files = ImmutableList.copyOf(requireNonNull(files, "files is null"));
+        this.partition = partition;
+        this.executor = requireNonNull(executor, "executor is null");
+        for (ExternalShuffleFile file : files) {
+            checkArgument(partition >= 0 && partition < file.getPartitionCount(), "invalid partition %s for %s", partition, file);
+        }
+    }
+
+    @Override
+    public ListenableFuture<PagesResponse> getResults(long token, DataSize maxResponseSize)
+    {
+        requireNonNull(maxResponseSize, "maxResponseSize is null");
+        return executor.submit(() -> readPages(token, maxResponseSize.toBytes()));
+    }
+
+    private synchronized PagesResponse readPages(long token, long maxResponseSize)
+            throws IOException
+    {
+        checkArgument(token <= nextToken, "token %s is after the next token %s", token, nextToken);
+        if (token < nextToken) {
+            // a response was lost, so read the partition again from the start
+            reset();
+            for (long i = 0; i < token; i++) {
+                checkArgument(hasNextPage(), "token %s is after the end of the partition", token);
+                pages.next();
+            }
+            nextToken = token;
+        }
+
+        ImmutableList.Builder<SerializedPage> result = ImmutableList.builder();
+        long responseSize = 0;
+        long pageCount = 0;
+        while (hasNextPage()) {
+            long pageSize = pages.peek().getSizeInBytes();
+            if (pageCount > 0 && responseSize + pageSize > maxResponseSize) {
+                break;
+            }
+            result.add(pages.next());
+            responseSize += pageSize;
+            pageCount++;
+        }
+        nextToken = token + pageCount;
+        return createPagesResponse(TASK_INSTANCE_ID, token, nextToken, result.build(), !hasNextPage());
+    }
+
+    @GuardedBy("this")
+    private boolean hasNextPage()
+            throws IOException
+    {
+        while (pages == null || !pages.hasNext()) {
+            closeInput();
+            if (nextFileIndex == files.size()) {
+                return false;
+            }
+            openPartition(files.get(nextFileIndex));
+            nextFileIndex++;
+        }
+        return true;
+    }
+
+    @GuardedBy("this")
+    private void openPartition(ExternalShuffleFile file)
+            throws IOException
+    {
+        if (file.getPartitionPageCount(partition) == 0) {
+            return;
+        }
+        InputStream stream = tempStorage.open(context, tempStorage.deserialize(file.getStorageHandle()));
+        try {
+            ByteStreams.skipFully(stream, file.getPartitionOffset(partition));
+        }
+        catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        input = new InputStreamSliceInput(ByteStreams.limit(stream, file.getPartitionSizeInBytes(partition)));
+        pages = peekingIterator(readSerializedPages(input));
+    }
+
+    @GuardedBy("this")
+    private void reset()
+            throws IOException
+    {
+        closeInput();
+        nextFileIndex = 0;
+    }
+
+    @GuardedBy("this")
+    private void closeInput()
+            throws IOException
+    {
+        pages = null;
+        if (input != null) {
+            input.close();
+            input = null;
+        }
+    }
+
+    @Override
+    public void acknowledgeResultsAsync(long nextToken)
+    {
+        // the files are kept until the query finishes, so there is nothing to release
+    }
+
+    @Override
+    public ListenableFuture<?> abortResults()
+    {
+        synchronized (this) {
+            try {
+                closeInput();
+            }
+            catch (IOException e) {
+                // ignored, the files are only read
+            }
+        }
+        return immediateFuture(null);
+    }
+
+    @Override
+    public Throwable rewriteException(Throwable throwable)
+    {
+        // storage failures are retried like network failures
+        return throwable;
+    }
+}
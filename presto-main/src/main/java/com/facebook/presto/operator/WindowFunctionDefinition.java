@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
 import com.facebook.presto.operator.window.FrameInfo;
 import com.facebook.presto.operator.window.WindowFunctionSupplier;
 import com.facebook.presto.spi.function.WindowFunction;
@@ -76,8 +77,8 @@ public class WindowFunctionDefinition
         return type;
     }
 
-    public WindowFunction createWindowFunction()
+    public WindowFunction createWindowFunction(AggregatedMemoryContext memoryContext)
     {
-        return functionSupplier.createWindowFunction(argumentChannels, ignoreNulls);
+        return functionSupplier.createWindowFunction(argumentChannels, ignoreNulls, memoryContext);
     }
 }
@@ -36,6 +36,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
 
 import javax.annotation.Nullable;
 
@@ -87,6 +88,7 @@ public class WindowOperator
         private final PagesIndex.Factory pagesIndexFactory;
         private final boolean spillEnabled;
         private final SpillerFactory spillerFactory;
+        private final DataSize unspillMemoryLimit;
         private final OrderingCompiler orderingCompiler;
 
         public WindowOperatorFactory(
@@ -104,6 +106,7 @@ public class WindowOperator
                 PagesIndex.Factory pagesIndexFactory,
                 boolean spillEnabled,
                 SpillerFactory spillerFactory,
+                DataSize unspillMemoryLimit,
                 OrderingCompiler orderingCompiler)
         {
             requireNonNull(sourceTypes, "sourceTypes is null");
@@ -117,6 +120,7 @@ public class WindowOperator
             requireNonNull(sortOrder, "sortOrder is null");
             requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
             requireNonNull(spillerFactory, "spillerFactory is null");
+            requireNonNull(unspillMemoryLimit, "unspillMemoryLimit is null");
             requireNonNull(orderingCompiler, "orderingCompiler is null");
             checkArgument(sortChannels.size() == sortOrder.size(), "Must have same number of sort channels as sort orders");
             checkArgument(preSortedChannelPrefix <= sortChannels.size(), "Cannot have more pre-sorted channels than specified sorted channels");
@@ -136,6 +140,7 @@ public class WindowOperator
             this.expectedPositions = expectedPositions;
             this.spillEnabled = spillEnabled;
             this.spillerFactory = spillerFactory;
+            this.unspillMemoryLimit = unspillMemoryLimit;
             this.orderingCompiler = orderingCompiler;
         }
 
@@ -159,6 +164,7 @@ public class WindowOperator
                     pagesIndexFactory,
                     spillEnabled,
                     spillerFactory,
+                    unspillMemoryLimit,
                     orderingCompiler);
         }
 
@@ -186,6 +192,7 @@ public class WindowOperator
                     pagesIndexFactory,
                     spillEnabled,
                     spillerFactory,
+                    unspillMemoryLimit,
                     orderingCompiler);
         }
     }
@@ -218,6 +225,7 @@ public class WindowOperator
             PagesIndex.Factory pagesIndexFactory,
             boolean spillEnabled,
             SpillerFactory spillerFactory,
+            DataSize unspillMemoryLimit,
             OrderingCompiler orderingCompiler)
     {
         requireNonNull(operatorContext, "operatorContext is null");
@@ -230,6 +238,7 @@ public class WindowOperator
         requireNonNull(sortOrder, "sortOrder is null");
         requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
         requireNonNull(spillerFactory, "spillerFactory is null");
+        requireNonNull(unspillMemoryLimit, "unspillMemoryLimit is null");
         checkArgument(sortChannels.size() == sortOrder.size(), "Must have same number of sort channels as sort orders");
         checkArgument(preSortedChannelPrefix <= sortChannels.size(), "Cannot have more pre-sorted channels than specified sorted channels");
         checkArgument(preSortedChannelPrefix == 0 || ImmutableSet.copyOf(preGroupedChannels).equals(ImmutableSet.copyOf(partitionChannels)), "preSortedChannelPrefix can only be greater than zero if all partition channels are pre-grouped");
@@ -237,7 +246,7 @@ public class WindowOperator
         this.operatorContext = operatorContext;
         this.outputChannels = Ints.toArray(outputChannels);
         this.windowFunctions = windowFunctionDefinitions.stream()
-                .map(functionDefinition -> new FramedWindowFunction(functionDefinition.createWindowFunction(), functionDefinition.getFrameInfo()))
+                .map(functionDefinition -> new FramedWindowFunction(functionDefinition.createWindowFunction(operatorContext.aggregateUserMemoryContext()), functionDefinition.getFrameInfo()))
                 .collect(toImmutableList());
 
         this.outputTypes = Stream.concat(
@@ -302,6 +311,7 @@ public class WindowOperator
                     orderChannels,
                     ordering,
                     spillerFactory,
+                    unspillMemoryLimit.toBytes(),
                     orderingCompiler.compilePageWithPositionComparator(sourceTypes, unGroupedOrderChannels, unGroupedOrdering)));
 
             this.outputPages = WorkProcessor.create(new PagesSource())
@@ -653,6 +663,7 @@ public class WindowOperator
         final LocalMemoryContext localRevocableMemoryContext;
         final LocalMemoryContext localUserMemoryContext;
         final SpillerFactory spillerFactory;
+        final long unspillMemoryLimit;
         final PageWithPositionComparator pageWithPositionComparator;
 
         boolean spillingWhenConvertingRevocableMemory;
@@ -671,6 +682,7 @@ public class WindowOperator
                 List<Integer> orderChannels,
                 List<SortOrder> ordering,
                 SpillerFactory spillerFactory,
+                long unspillMemoryLimit,
                 PageWithPositionComparator pageWithPositionComparator)
         {
             this.inMemoryPagesIndexWithHashStrategies = inMemoryPagesIndexWithHashStrategies;
@@ -681,6 +693,7 @@ public class WindowOperator
             this.localUserMemoryContext = operatorContext.aggregateUserMemoryContext().newLocalMemoryContext(SpillablePagesToPagesIndexes.class.getSimpleName());
             this.localRevocableMemoryContext = operatorContext.aggregateRevocableMemoryContext().newLocalMemoryContext(SpillablePagesToPagesIndexes.class.getSimpleName());
             this.spillerFactory = spillerFactory;
+            this.unspillMemoryLimit = unspillMemoryLimit;
             this.pageWithPositionComparator = pageWithPositionComparator;
 
             this.currentSpillGroupRowPage = Optional.empty();
@@ -738,6 +751,15 @@ public class WindowOperator
 
         TransformationState<WorkProcessor<PagesIndexWithHashStrategies>> fullGroupBuffered()
         {
+            // Once rows were spilled, the merge only needs to keep the current partition in memory,
+            // so spill the remaining rows too instead of holding them while merging, unless they are small
+            PagesIndex pagesIndex = inMemoryPagesIndexWithHashStrategies.pagesIndex;
+            if (spiller.isPresent() && pagesIndex.getPositionCount() > 0 && pagesIndex.getEstimatedSize().toBytes() >= unspillMemoryLimit) {
+                updateMemoryUsage(true);
+                spillingWhenConvertingRevocableMemory = true;
+                return TransformationState.blocked(spill());
+            }
+
             // Convert revocable memory to user memory as inMemoryPagesIndexWithHashStrategies holds on to memory so we no longer can revoke
             if (localRevocableMemoryContext.getBytes() > 0) {
                 long currentRevocableBytes = localRevocableMemoryContext.getBytes();
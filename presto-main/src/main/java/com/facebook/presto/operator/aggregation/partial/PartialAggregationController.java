@@ -32,6 +32,16 @@ public class PartialAggregationController
      * Re-enable partial aggregation periodically, in case later data can be partially aggregated more effectively.
      */
     private static final double ENABLE_AGGREGATION_BUFFER_SIZE_TO_INPUT_BYTES_RATIO = DISABLE_AGGREGATION_BUFFER_SIZE_TO_INPUT_BYTES_RATIO * 200;
+    /**
+     * Flush a partial aggregation buffer that barely reduces its input once it has seen this fraction of the buffer size,
+     * instead of waiting for it to fill up. With many drivers per task, waiting for every buffer to fill up before the
+     * first flush means hashing several times the input needed to make the decision.
+     */
+    private static final double EARLY_FLUSH_BUFFER_SIZE_TO_INPUT_BYTES_RATIO = 0.25;
+    /**
+     * Minimum number of rows a buffer must have seen before its rows reduction ratio is trusted for an early flush.
+     */
+    private static final long EARLY_FLUSH_MIN_INPUT_ROWS = 10_000;
 
     private final DataSize maxPartialAggregationMemorySize;
     private final double uniqueRowsRatioThreshold;
@@ -52,6 +62,21 @@ public class PartialAggregationController
         return partialAggregationDisabled;
     }
 
+    /**
+     * Whether a partial aggregation buffer that has not reached its memory limit should be flushed now,
+     * either because partial aggregation has been disabled in the meantime, or because the buffer
+     * has a poor rows reduction ratio so far.
+     */
+    public boolean shouldFlushEarly(long bytesProcessed, long rowsProcessed, long uniqueRows)
+    {
+        if (partialAggregationDisabled) {
+            return true;
+        }
+        return rowsProcessed >= EARLY_FLUSH_MIN_INPUT_ROWS
+                && bytesProcessed >= maxPartialAggregationMemorySize.toBytes() * EARLY_FLUSH_BUFFER_SIZE_TO_INPUT_BYTES_RATIO
+                && ((double) uniqueRows / rowsProcessed) > uniqueRowsRatioThreshold;
+    }
+
     public synchronized void onFlush(long bytesProcessed, long rowsProcessed, OptionalLong uniqueRowsProduced)
     {
         if (!partialAggregationDisabled && !uniqueRowsProduced.isPresent()) {
@@ -20,52 +20,79 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Buffers the pages of one consumer of a local exchange. When lock free, producers add pages to
+ * a {@link PageRingBuffer}, which spills into an unbounded lock-free queue when full, and readers
+ * are woken up without taking the lock of the source, so many producers do not contend on it.
+ */
 @ThreadSafe
 public class LocalExchangeSource
 {
     private static final ListenableFuture<?> NOT_BLOCKED = immediateFuture(null);
+    private static final int RING_BUFFER_CAPACITY = 256;
 
     private final Consumer<LocalExchangeSource> onFinish;
 
     private final BlockingQueue<PageReference> buffer = new LinkedBlockingDeque<>();
     private final AtomicLong bufferedBytes = new AtomicLong();
 
+    private final boolean lockFree;
     @Nullable
-    @GuardedBy("this")
-    private SettableFuture<?> notEmptyFuture; // null indicates no callback present
+    private final PageRingBuffer ringBuffer;
+    // pages that did not fit in the ring buffer
+    private final Queue<PageReference> overflow = new ConcurrentLinkedQueue<>();
+
+    // null indicates no callback present
+    // when not lock free, it is only changed while holding the lock
+    private final AtomicReference<SettableFuture<?>> notEmptyFuture = new AtomicReference<>();
 
     private volatile boolean finishing;
+    private volatile boolean closed;
 
     public LocalExchangeSource(Consumer<LocalExchangeSource> onFinish)
+    {
+        this(onFinish, false);
+    }
+
+    public LocalExchangeSource(Consumer<LocalExchangeSource> onFinish, boolean lockFree)
     {
         this.onFinish = requireNonNull(onFinish, "onFinish is null");
+        this.lockFree = lockFree;
+        this.ringBuffer = lockFree ? new PageRingBuffer(RING_BUFFER_CAPACITY) : null;
     }
 
     public LocalExchangeBufferInfo getBufferInfo()
     {
         // This must be lock free to assure task info creation is fast
         // Note: the stats my be internally inconsistent
-        return new LocalExchangeBufferInfo(bufferedBytes.get(), buffer.size());
+        return new LocalExchangeBufferInfo(bufferedBytes.get(), getBufferedPageCount());
     }
 
     void addPage(PageReference pageReference)
     {
         checkNotHoldsLock();
 
+        if (lockFree) {
+            addPageLockFree(pageReference);
+            return;
+        }
+
         boolean added = false;
         SettableFuture<?> notEmptyFuture = null;
         long retainedSizeInBytes = pageReference.getRetainedSizeInBytes();
@@ -80,10 +107,7 @@ public class LocalExchangeSource
             }
 
             // we just added a page (or we are finishing) so we are not empty
-            if (this.notEmptyFuture != null) {
-                notEmptyFuture = this.notEmptyFuture;
-                this.notEmptyFuture = null;
-            }
+            notEmptyFuture = this.notEmptyFuture.getAndSet(null);
         }
 
         if (!added) {
@@ -97,6 +121,42 @@ public class LocalExchangeSource
         }
     }
 
+    private void addPageLockFree(PageReference pageReference)
+    {
+        // ignore pages after finish
+        if (finishing) {
+            pageReference.removePage();
+            notifyNotEmpty();
+            return;
+        }
+
+        // buffered bytes must be updated before adding to the buffer to assure
+        // the count does not go negative
+        bufferedBytes.addAndGet(pageReference.getRetainedSizeInBytes());
+        // the ring is read before the overflow, so once pages overflow, the following pages also go to the
+        // overflow until it is drained, to keep the pages of a producer in order
+        if (!overflow.isEmpty() || !ringBuffer.offer(pageReference)) {
+            overflow.add(pageReference);
+        }
+
+        // a close that drained the buffer before the page was added has not freed it
+        if (closed) {
+            freeBufferedPages();
+        }
+
+        // the reader publishes its future before checking the buffer again, so either it sees the page or we see the future
+        notifyNotEmpty();
+    }
+
+    private void notifyNotEmpty()
+    {
+        // notify readers outside of lock since this may result in a callback
+        SettableFuture<?> notEmptyFuture = this.notEmptyFuture.getAndSet(null);
+        if (notEmptyFuture != null) {
+            notEmptyFuture.set(null);
+        }
+    }
+
     public WorkProcessor<Page> pages()
     {
         return WorkProcessor.create(() -> {
@@ -125,7 +185,7 @@ public class LocalExchangeSource
         // NOTE: there is no need to acquire a lock here. The buffer is concurrent
         // and buffered bytes is not expected to be consistent with the buffer (only
         // best effort).
-        PageReference pageReference = buffer.poll();
+        PageReference pageReference = pollBuffer();
         if (pageReference == null) {
             return null;
         }
@@ -144,21 +204,47 @@ public class LocalExchangeSource
         checkNotHoldsLock();
 
         //  Fast path, definitely not blocked
-        if (finishing || !buffer.isEmpty()) {
+        if (finishing || !isBufferEmpty()) {
             return NOT_BLOCKED;
         }
 
+        if (lockFree) {
+            return waitForReadingLockFree();
+        }
+
         synchronized (this) {
             // re-check after synchronizing
-            if (finishing || !buffer.isEmpty()) {
+            if (finishing || !isBufferEmpty()) {
                 return NOT_BLOCKED;
             }
             // if we need to block readers, and the current future is complete, create a new one
-            if (notEmptyFuture == null) {
-                notEmptyFuture = SettableFuture.create();
+            SettableFuture<?> future = notEmptyFuture.get();
+            if (future == null) {
+                future = SettableFuture.create();
+                notEmptyFuture.set(future);
+            }
+            return future;
+        }
+    }
+
+    private ListenableFuture<?> waitForReadingLockFree()
+    {
+        SettableFuture<?> future = notEmptyFuture.get();
+        if (future == null) {
+            notEmptyFuture.compareAndSet(null, SettableFuture.create());
+            future = notEmptyFuture.get();
+            if (future == null) {
+                // a producer just completed the new future
+                return NOT_BLOCKED;
             }
-            return notEmptyFuture;
         }
+
+        // re-check after publishing the future, since a producer that added a page before did not see it
+        if (finishing || !isBufferEmpty()) {
+            notifyNotEmpty();
+            return NOT_BLOCKED;
+        }
+        return future;
     }
 
     public boolean isFinished()
@@ -169,7 +255,7 @@ public class LocalExchangeSource
         }
         synchronized (this) {
             // Synchronize to ensure effects of an in-flight close() or finish() are observed
-            return finishing && buffer.isEmpty();
+            return finishing && isBufferEmpty();
         }
     }
 
@@ -184,8 +270,7 @@ public class LocalExchangeSource
             }
             finishing = true;
 
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = null;
+            notEmptyFuture = this.notEmptyFuture.getAndSet(null);
         }
 
         // notify readers outside of lock since this may result in a callback
@@ -200,6 +285,11 @@ public class LocalExchangeSource
     {
         checkNotHoldsLock();
 
+        if (lockFree) {
+            closeLockFree();
+            return;
+        }
+
         List<PageReference> remainingPages = new ArrayList<>();
         SettableFuture<?> notEmptyFuture;
         synchronized (this) {
@@ -208,8 +298,7 @@ public class LocalExchangeSource
             buffer.drainTo(remainingPages);
             bufferedBytes.addAndGet(-remainingPages.stream().mapToLong(PageReference::getRetainedSizeInBytes).sum());
 
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = null;
+            notEmptyFuture = this.notEmptyFuture.getAndSet(null);
         }
 
         // free all the remaining pages
@@ -225,6 +314,55 @@ public class LocalExchangeSource
         checkFinished();
     }
 
+    private void closeLockFree()
+    {
+        finishing = true;
+        // producers check this after adding a page, so pages added while draining are freed by them
+        closed = true;
+        freeBufferedPages();
+        notifyNotEmpty();
+        checkFinished();
+    }
+
+    private void freeBufferedPages()
+    {
+        PageReference pageReference = pollBuffer();
+        while (pageReference != null) {
+            bufferedBytes.addAndGet(-pageReference.getRetainedSizeInBytes());
+            pageReference.removePage();
+            pageReference = pollBuffer();
+        }
+    }
+
+    @Nullable
+    private PageReference pollBuffer()
+    {
+        if (!lockFree) {
+            return buffer.poll();
+        }
+        PageReference pageReference = ringBuffer.poll();
+        if (pageReference == null) {
+            pageReference = overflow.poll();
+        }
+        return pageReference;
+    }
+
+    private boolean isBufferEmpty()
+    {
+        if (!lockFree) {
+            return buffer.isEmpty();
+        }
+        return ringBuffer.isEmpty() && overflow.isEmpty();
+    }
+
+    private int getBufferedPageCount()
+    {
+        if (!lockFree) {
+            return buffer.size();
+        }
+        return ringBuffer.size() + (overflow.isEmpty() ? 0 : overflow.size());
+    }
+
     private void checkFinished()
     {
         checkNotHoldsLock();
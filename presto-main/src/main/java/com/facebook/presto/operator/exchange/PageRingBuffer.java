@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.exchange;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+
+/**
+ * Bounded lock-free queue of pages for any number of producers and consumers, backed by a ring of slots.
+ * Every slot has a sequence number that tells whether it is ready to be written or read for the current
+ * lap of the ring, so producers and consumers only contend on the positions they claim with a CAS.
+ */
+@ThreadSafe
+final class PageRingBuffer
+{
+    private final int mask;
+    private final AtomicReferenceArray<PageReference> slots;
+    // slot i can be written for position p when its sequence is p, and read when it is p + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+
+    public PageRingBuffer(int capacity)
+    {
+        checkArgument(Integer.bitCount(capacity) == 1, "capacity must be a power of 2");
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Returns false if the ring is full.
+     */
+    public boolean offer(PageReference pageReference)
+    {
+        long position = writePosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (writePosition.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, pageReference);
+                    // publishes the page to the consumer that reads this sequence
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = writePosition.get();
+            }
+            else if (difference < 0) {
+                // the slot still holds the page of the previous lap
+                return false;
+            }
+            else {
+                position = writePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Returns null if the ring is empty, or if the next page is claimed but not yet written by its producer.
+     */
+    @Nullable
+    public PageReference poll()
+    {
+        long position = readPosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (readPosition.compareAndSet(position, position + 1)) {
+                    PageReference pageReference = slots.get(index);
+                    slots.lazySet(index, null);
+                    // hands the slot back to the producers of the next lap
+                    sequences.set(index, position + mask + 1);
+                    return pageReference;
+                }
+                position = readPosition.get();
+            }
+            else if (difference < 0) {
+                return null;
+            }
+            else {
+                position = readPosition.get();
+            }
+        }
+    }
+
+    /**
+     * Includes the pages that are claimed but not yet written.
+     */
+    public int size()
+    {
+        // read the consumer position first, so the size is never negative when both move
+        long readPosition = this.readPosition.get();
+        return (int) max(0, writePosition.get() - readPosition);
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+}
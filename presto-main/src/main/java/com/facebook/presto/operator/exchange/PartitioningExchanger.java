@@ -37,6 +37,7 @@ class PartitioningExchanger
     private final int[] partitioningChannels;
     private final Optional<Integer> hashChannel;
     private final IntArrayList[] partitionAssignments;
+    private final Page[] partitionPages;
     private final PageReleasedListener onPageReleased;
 
     public PartitioningExchanger(
@@ -53,6 +54,7 @@ class PartitioningExchanger
         this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
         this.onPageReleased = PageReleasedListener.forLocalExchangeMemoryManager(memoryManager);
 
+        partitionPages = new Page[partitions.size()];
         partitionAssignments = new IntArrayList[partitions.size()];
         for (int i = 0; i < partitionAssignments.length; i++) {
             partitionAssignments[i] = new IntArrayList();
@@ -74,12 +76,22 @@ class PartitioningExchanger
             partitionAssignments[partition].add(position);
         }
 
-        // build a page for each partition
+        // build a page for each partition, and account for the memory of all of them at once
+        long retainedSizeInBytes = 0;
         for (int partition = 0; partition < buffers.size(); partition++) {
             IntArrayList positions = partitionAssignments[partition];
             if (!positions.isEmpty()) {
                 Page pageSplit = page.copyPositions(positions.elements(), 0, positions.size());
-                memoryManager.updateMemoryUsage(pageSplit.getRetainedSizeInBytes());
+                partitionPages[partition] = pageSplit;
+                retainedSizeInBytes += pageSplit.getRetainedSizeInBytes();
+            }
+        }
+        memoryManager.updateMemoryUsage(retainedSizeInBytes);
+
+        for (int partition = 0; partition < buffers.size(); partition++) {
+            Page pageSplit = partitionPages[partition];
+            if (pageSplit != null) {
+                partitionPages[partition] = null;
                 buffers.get(partition).accept(new PageReference(pageSplit, 1, onPageReleased));
             }
         }
@@ -90,8 +90,8 @@ public class IndexSnapshotBuilder
         this.missingKeysTypes = missingKeysTypes.build();
         this.missingKeysChannels = missingKeysChannels.build();
 
-        this.outputPagesIndex = pagesIndexFactory.newPagesIndex(outputTypes, expectedPositions);
-        this.missingKeysIndex = pagesIndexFactory.newPagesIndex(missingKeysTypes.build(), expectedPositions);
+        this.outputPagesIndex = pagesIndexFactory.newUnsortedPagesIndex(outputTypes, expectedPositions);
+        this.missingKeysIndex = pagesIndexFactory.newUnsortedPagesIndex(missingKeysTypes.build(), expectedPositions);
         this.missingKeys = missingKeysIndex.createLookupSourceSupplier(session, this.missingKeysChannels).get();
 
         this.missingKeysPageBuilder = new PageBuilder(missingKeysIndex.getTypes());
@@ -171,7 +171,7 @@ public class IndexSnapshotBuilder
     {
         memoryInBytes = 0;
         pages.clear();
-        outputPagesIndex = pagesIndexFactory.newPagesIndex(outputTypes, expectedPositions);
-        missingKeysIndex = pagesIndexFactory.newPagesIndex(missingKeysTypes, expectedPositions);
+        outputPagesIndex = pagesIndexFactory.newUnsortedPagesIndex(outputTypes, expectedPositions);
+        missingKeysIndex = pagesIndexFactory.newUnsortedPagesIndex(missingKeysTypes, expectedPositions);
     }
 }
@@ -136,6 +136,14 @@ public abstract class AbstractBlockEncodingBuffer
     }
 
     public static BlockEncodingBuffer createBlockEncodingBuffers(DecodedBlockNode decodedBlockNode, ArrayAllocator bufferAllocator, boolean isNested)
+    {
+        return createBlockEncodingBuffers(decodedBlockNode, bufferAllocator, isNested, false);
+    }
+
+    /**
+     * @param bitPackingEnabled whether long values are written with {@link com.facebook.presto.common.block.BitPackedLongArrayBlockEncoding} when that is smaller
+     */
+    public static BlockEncodingBuffer createBlockEncodingBuffers(DecodedBlockNode decodedBlockNode, ArrayAllocator bufferAllocator, boolean isNested, boolean bitPackingEnabled)
     {
         requireNonNull(decodedBlockNode, "decodedBlockNode is null");
         requireNonNull(bufferAllocator, "bufferAllocator is null");
@@ -159,7 +167,7 @@ public abstract class AbstractBlockEncodingBuffer
         verify(!(decodedBlock instanceof RunLengthEncodedBlock), "Nested RLEs and dictionaries are not supported");
 
         if (decodedBlock instanceof LongArrayBlock) {
-            return new LongArrayBlockEncodingBuffer(bufferAllocator, isNested);
+            return new LongArrayBlockEncodingBuffer(bufferAllocator, isNested, bitPackingEnabled);
         }
 
         if (decodedBlock instanceof Int128ArrayBlock) {
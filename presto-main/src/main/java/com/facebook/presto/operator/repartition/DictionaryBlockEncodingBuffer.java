@@ -0,0 +1,278 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.block.ArrayAllocator;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryId;
+import com.facebook.presto.common.block.VariableWidthBlock;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+
+import static com.facebook.presto.common.array.Arrays.ExpansionFactor.MEDIUM;
+import static com.facebook.presto.common.array.Arrays.ExpansionOption.NONE;
+import static com.facebook.presto.common.array.Arrays.ExpansionOption.PRESERVE;
+import static com.facebook.presto.common.array.Arrays.ensureCapacity;
+import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps a top level variable width column dictionary encoded across the shuffle. Every flushed page
+ * gets a compacted dictionary with only the values its rows use, so each distinct value is copied
+ * once per page instead of once per row. The values are buffered by a {@link VariableWidthBlockEncodingBuffer},
+ * and the page is written as a flat block when every row has its own value.
+ */
+public class DictionaryBlockEncodingBuffer
+        extends AbstractBlockEncodingBuffer
+{
+    private static final String NAME = "DICTIONARY";
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(DictionaryBlockEncodingBuffer.class).instanceSize();
+
+    private static final int UNMAPPED = -1;
+    private static final int PENDING = -2;
+
+    private final VariableWidthBlockEncodingBuffer dictionaryBuffer;
+
+    // The dictionary of the current page, whose values are mapped to the compacted dictionary by dictionaryIdMap
+    private Block dictionary;
+    private DecodedBlockNode dictionaryNode;
+    private int[] dictionaryIdMap = new int[0];
+    // The positions in the current dictionary that are mapped, so that only they need to be cleared
+    private int[] mappedDictionaryPositions = new int[0];
+    private int mappedDictionaryPositionCount;
+
+    // The ids of the buffered rows in the compacted dictionary
+    private int[] ids = new int[0];
+    private int compactedDictionarySize;
+
+    // The positions in the current dictionary that are new to the compacted dictionary in the current batch
+    private int[] newDictionaryPositions = new int[0];
+
+    private int partitionBufferCapacity;
+    private long estimatedSerializedPageSize;
+
+    public DictionaryBlockEncodingBuffer(ArrayAllocator bufferAllocator)
+    {
+        super(bufferAllocator, false);
+        this.dictionaryBuffer = new VariableWidthBlockEncodingBuffer(bufferAllocator, false);
+    }
+
+    /**
+     * Returns true if the decoded block is a dictionary of variable width values, which this buffer can keep encoded.
+     */
+    public static boolean isSupported(DecodedBlockNode decodedBlockNode)
+    {
+        return decodedBlockNode.getDecodedBlock() instanceof DictionaryBlock &&
+                decodedBlockNode.getChildren().get(0).getDecodedBlock() instanceof VariableWidthBlock;
+    }
+
+    @Override
+    public void setupDecodedBlocksAndPositions(DecodedBlockNode decodedBlockNode, int[] positions, int positionCount, int partitionBufferCapacity, long estimatedSerializedPageSize)
+    {
+        this.partitionBufferCapacity = partitionBufferCapacity;
+        this.estimatedSerializedPageSize = estimatedSerializedPageSize;
+        super.setupDecodedBlocksAndPositions(decodedBlockNode, positions, positionCount, partitionBufferCapacity, estimatedSerializedPageSize);
+    }
+
+    @Override
+    public void accumulateSerializedRowSizes(int[] serializedRowSizes)
+    {
+        // A row pays for its id, and for its value only if the value is not in the compacted dictionary yet
+        int[] positions = getPositions();
+        for (int i = 0; i < positionCount; i++) {
+            int position = positions[i];
+            serializedRowSizes[i] += SIZE_OF_INT;
+            if (dictionaryIdMap[position] == UNMAPPED) {
+                dictionaryIdMap[position] = PENDING;
+                serializedRowSizes[i] += VariableWidthBlockEncodingBuffer.POSITION_SIZE + decodedBlock.getSliceLength(position);
+            }
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            if (dictionaryIdMap[positions[i]] == PENDING) {
+                dictionaryIdMap[positions[i]] = UNMAPPED;
+            }
+        }
+    }
+
+    @Override
+    public void appendDataInBatch()
+    {
+        if (batchSize == 0) {
+            return;
+        }
+
+        ids = ensureCapacity(ids, bufferedPositionCount + batchSize, MEDIUM, PRESERVE);
+        newDictionaryPositions = ensureCapacity(newDictionaryPositions, batchSize, MEDIUM, NONE);
+
+        mappedDictionaryPositions = ensureCapacity(mappedDictionaryPositions, mappedDictionaryPositionCount + batchSize, MEDIUM, PRESERVE);
+
+        int[] positions = getPositions();
+        int newDictionaryPositionCount = 0;
+        for (int i = positionsOffset; i < positionsOffset + batchSize; i++) {
+            int position = positions[i];
+            int id = dictionaryIdMap[position];
+            if (id == UNMAPPED) {
+                id = compactedDictionarySize++;
+                dictionaryIdMap[position] = id;
+                newDictionaryPositions[newDictionaryPositionCount++] = position;
+                mappedDictionaryPositions[mappedDictionaryPositionCount++] = position;
+            }
+            ids[bufferedPositionCount++] = id;
+        }
+
+        if (newDictionaryPositionCount > 0) {
+            dictionaryBuffer.setupDecodedBlocksAndPositions(dictionaryNode, newDictionaryPositions, newDictionaryPositionCount, partitionBufferCapacity, estimatedSerializedPageSize);
+            dictionaryBuffer.setNextBatch(0, newDictionaryPositionCount);
+            dictionaryBuffer.appendDataInBatch();
+        }
+    }
+
+    @Override
+    public void serializeTo(SliceOutput output)
+    {
+        if (isFlat()) {
+            dictionaryBuffer.serializeTo(output);
+            return;
+        }
+
+        writeLengthPrefixedString(output, NAME);
+
+        output.writeInt(bufferedPositionCount);
+
+        dictionaryBuffer.serializeTo(output);
+
+        output.writeBytes(Slices.wrappedIntArray(ids, 0, bufferedPositionCount));
+
+        // Every page has its own dictionary
+        DictionaryId dictionaryId = randomDictionaryId();
+        output.appendLong(dictionaryId.getMostSignificantBits());
+        output.appendLong(dictionaryId.getLeastSignificantBits());
+        output.appendLong(dictionaryId.getSequenceId());
+    }
+
+    @Override
+    public void resetBuffers()
+    {
+        bufferedPositionCount = 0;
+        compactedDictionarySize = 0;
+        flushed = true;
+        dictionaryBuffer.resetBuffers();
+
+        // The compacted dictionary starts over, so the values of the current dictionary need to be added again
+        clearDictionaryIdMap();
+    }
+
+    @Override
+    public void noMoreBatches()
+    {
+        super.noMoreBatches();
+        dictionaryBuffer.noMoreBatches();
+        dictionaryNode = null;
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE +
+                dictionaryBuffer.getRetainedSizeInBytes() +
+                sizeOf(dictionaryIdMap) +
+                sizeOf(mappedDictionaryPositions) +
+                sizeOf(ids) +
+                sizeOf(newDictionaryPositions);
+    }
+
+    @Override
+    public long getSerializedSizeInBytes()
+    {
+        if (isFlat()) {
+            return dictionaryBuffer.getSerializedSizeInBytes();
+        }
+
+        return NAME.length() + SIZE_OF_INT +                // NAME
+                SIZE_OF_INT +                               // positionCount
+                dictionaryBuffer.getSerializedSizeInBytes() +   // dictionary
+                (long) bufferedPositionCount * SIZE_OF_INT +    // ids
+                SIZE_OF_LONG * 3;                           // dictionary id
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("super", super.toString())
+                .add("compactedDictionarySize", compactedDictionarySize)
+                .add("dictionaryIdMapCapacity", dictionaryIdMap.length)
+                .add("idsCapacity", ids.length)
+                .add("dictionaryBuffer", dictionaryBuffer)
+                .toString();
+    }
+
+    @Override
+    int getEstimatedValueBufferMaxCapacity()
+    {
+        throw new UnsupportedOperationException("DictionaryBlockEncodingBuffer does not have value buffer");
+    }
+
+    @Override
+    protected void setupDecodedBlockAndMapPositions(DecodedBlockNode decodedBlockNode, int partitionBufferCapacity, double decodedBlockPageSizeFraction)
+    {
+        requireNonNull(decodedBlockNode, "decodedBlockNode is null");
+
+        // Flat and RLE pages are handled too, with the block or the RLE value as the dictionary
+        dictionaryNode = mapPositionsToNestedBlock(decodedBlockNode);
+        decodedBlock = (Block) dictionaryNode.getDecodedBlock();
+
+        if (decodedBlock != dictionary) {
+            // The ids into a dictionary can only be reused while the same dictionary is seen
+            dictionary = decodedBlock;
+            if (dictionaryIdMap.length < dictionary.getPositionCount()) {
+                dictionaryIdMap = new int[dictionary.getPositionCount()];
+                Arrays.fill(dictionaryIdMap, UNMAPPED);
+                mappedDictionaryPositionCount = 0;
+            }
+            else {
+                clearDictionaryIdMap();
+            }
+        }
+    }
+
+    @Override
+    protected void accumulateSerializedRowSizes(int[] positionOffsets, int positionCount, int[] serializedRowSizes)
+    {
+        throw new UnsupportedOperationException("DictionaryBlockEncodingBuffer is only used for top level columns");
+    }
+
+    private void clearDictionaryIdMap()
+    {
+        for (int i = 0; i < mappedDictionaryPositionCount; i++) {
+            dictionaryIdMap[mappedDictionaryPositions[i]] = UNMAPPED;
+        }
+        mappedDictionaryPositionCount = 0;
+    }
+
+    // When every buffered row has its own value, the ids are 0, 1, 2, ... and the values alone are smaller
+    private boolean isFlat()
+    {
+        return compactedDictionarySize == bufferedPositionCount;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.InterpretedHashGenerator;
+import com.facebook.presto.operator.OperatorContext;
+import com.facebook.presto.operator.SpaceSavingSketch;
+import com.facebook.presto.spi.relation.ConstantExpression;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.common.RuntimeMetricName.PARTITIONED_OUTPUT_HOT_KEY_COUNT;
+import static com.facebook.presto.common.RuntimeMetricName.PARTITIONED_OUTPUT_HOT_KEY_ROWS;
+import static com.facebook.presto.common.RuntimeUnit.NONE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Finds the partitioning keys that make up a large share of the rows of a partitioned output,
+ * from a sample of the rows, and reports them in the runtime stats of the operator.
+ * The detected keys are only reported. They do not change the partition a row is sent to.
+ */
+final class HotKeyDetector
+{
+    static final int SAMPLE_INTERVAL = 16;
+    static final double HOT_KEY_MIN_FRACTION = 0.01;
+    private static final int SKETCH_CAPACITY = 256;
+
+    private final InterpretedHashGenerator keyHashGenerator;
+    private final SpaceSavingSketch sketch = new SpaceSavingSketch(SKETCH_CAPACITY);
+    private int nextSampledPosition;
+
+    HotKeyDetector(List<Type> partitionArgumentTypes)
+    {
+        this.keyHashGenerator = InterpretedHashGenerator.createPositionalWithTypes(requireNonNull(partitionArgumentTypes, "partitionArgumentTypes is null"));
+    }
+
+    static List<Type> getPartitionArgumentTypes(List<Type> sourceTypes, int[] partitionChannels, List<Optional<ConstantExpression>> partitionConstants)
+    {
+        ImmutableList.Builder<Type> types = ImmutableList.builder();
+        for (int i = 0; i < partitionChannels.length; i++) {
+            if (partitionChannels[i] >= 0) {
+                types.add(sourceTypes.get(partitionChannels[i]));
+            }
+            else {
+                types.add(partitionConstants.get(i).get().getType());
+            }
+        }
+        return types.build();
+    }
+
+    public void addPage(Page partitionFunctionArgs)
+    {
+        // the sampled positions continue across pages, so that small pages are sampled as well
+        int position = nextSampledPosition;
+        for (; position < partitionFunctionArgs.getPositionCount(); position += SAMPLE_INTERVAL) {
+            sketch.add(keyHashGenerator.hashPosition(position, partitionFunctionArgs));
+        }
+        nextSampledPosition = position - partitionFunctionArgs.getPositionCount();
+    }
+
+    /**
+     * Returns the hashes of the keys that may make up at least {@link #HOT_KEY_MIN_FRACTION} of the sampled rows.
+     */
+    public LongSet getHotKeyHashes()
+    {
+        return sketch.getHeavyHitters(HOT_KEY_MIN_FRACTION);
+    }
+
+    public void recordRuntimeStats(OperatorContext operatorContext)
+    {
+        LongSet hotKeyHashes = getHotKeyHashes();
+        long hotKeySampledRows = 0;
+        for (long hotKeyHash : hotKeyHashes) {
+            hotKeySampledRows += sketch.getGuaranteedCount(hotKeyHash);
+        }
+        operatorContext.getRuntimeStats().addMetricValue(PARTITIONED_OUTPUT_HOT_KEY_COUNT, NONE, hotKeyHashes.size());
+        operatorContext.getRuntimeStats().addMetricValue(PARTITIONED_OUTPUT_HOT_KEY_ROWS, NONE, hotKeySampledRows * SAMPLE_INTERVAL);
+    }
+}
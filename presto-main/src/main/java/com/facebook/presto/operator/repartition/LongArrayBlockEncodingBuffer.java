@@ -14,14 +14,19 @@
 package com.facebook.presto.operator.repartition;
 
 import com.facebook.presto.common.block.ArrayAllocator;
+import com.facebook.presto.common.block.BitPackedLongArrayBlockEncoding;
 import com.facebook.presto.common.block.Block;
 import com.google.common.annotations.VisibleForTesting;
+import io.airlift.slice.Slice;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
 import org.openjdk.jol.info.ClassLayout;
 
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.LARGE;
 import static com.facebook.presto.common.array.Arrays.ExpansionOption.PRESERVE;
 import static com.facebook.presto.common.array.Arrays.ensureCapacity;
+import static com.facebook.presto.common.block.BitPackedLongArrayBlockEncoding.getSerializedValuesSizeInBytes;
+import static com.facebook.presto.common.block.BitPackedLongArrayBlockEncoding.writeValues;
 import static com.facebook.presto.operator.UncheckedByteArrays.setLongUnchecked;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static io.airlift.slice.SizeOf.SIZE_OF_INT;
@@ -35,15 +40,24 @@ public class LongArrayBlockEncodingBuffer
     static final int POSITION_SIZE = Long.BYTES + Byte.BYTES;
 
     private static final String NAME = "LONG_ARRAY";
+    private static final String BIT_PACKED_NAME = BitPackedLongArrayBlockEncoding.NAME;
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(LongArrayBlockEncodingBuffer.class).instanceSize();
 
+    private final boolean bitPackingEnabled;
+
     private byte[] valuesBuffer;
     private int valuesBufferIndex;
     private int estimatedValueBufferMaxCapacity;
 
     public LongArrayBlockEncodingBuffer(ArrayAllocator bufferAllocator, boolean isNested)
+    {
+        this(bufferAllocator, isNested, false);
+    }
+
+    public LongArrayBlockEncodingBuffer(ArrayAllocator bufferAllocator, boolean isNested, boolean bitPackingEnabled)
     {
         super(bufferAllocator, isNested);
+        this.bitPackingEnabled = bitPackingEnabled;
     }
 
     @Override
@@ -68,6 +82,19 @@ public class LongArrayBlockEncodingBuffer
     @Override
     public void serializeTo(SliceOutput output)
     {
+        if (bitPackingEnabled && valuesBufferIndex > 0) {
+            Slice values = Slices.wrappedBuffer(valuesBuffer, 0, valuesBufferIndex);
+            int valueCount = valuesBufferIndex / ARRAY_LONG_INDEX_SCALE;
+            // the longer name is paid once per block
+            if (BIT_PACKED_NAME.length() - NAME.length() + getSerializedValuesSizeInBytes(values, valueCount) < valuesBufferIndex) {
+                writeLengthPrefixedString(output, BIT_PACKED_NAME);
+                output.writeInt(bufferedPositionCount);
+                serializeNullsTo(output);
+                writeValues(output, values, valueCount);
+                return;
+            }
+        }
+
         writeLengthPrefixedString(output, NAME);
 
         output.writeInt(bufferedPositionCount);
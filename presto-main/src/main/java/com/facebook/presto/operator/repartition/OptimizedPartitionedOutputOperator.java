@@ -67,6 +67,9 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningBitPackingEnabled;
+import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningDictionaryEncodingEnabled;
+import static com.facebook.presto.SystemSessionProperties.isPartitionedOutputHotKeyDetectionEnabled;
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.MEDIUM;
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.SMALL;
 import static com.facebook.presto.common.array.Arrays.ExpansionOption.INITIALIZE;
@@ -74,6 +77,7 @@ import static com.facebook.presto.common.array.Arrays.ExpansionOption.PRESERVE;
 import static com.facebook.presto.common.array.Arrays.ensureCapacity;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.operator.repartition.AbstractBlockEncodingBuffer.createBlockEncodingBuffers;
+import static com.facebook.presto.operator.repartition.HotKeyDetector.getPartitionArgumentTypes;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
 import static io.airlift.slice.SizeOf.SIZE_OF_INT;
@@ -137,6 +141,7 @@ public class OptimizedPartitionedOutputOperator
     {
         finished = true;
         pagePartitioner.flush();
+        pagePartitioner.recordRuntimeStats();
     }
 
     @Override
@@ -411,6 +416,9 @@ public class OptimizedPartitionedOutputOperator
         private final DecodedBlockNode[] decodedBlocks;
 
         private boolean hasAnyRowBeenReplicated;
+        @Nullable
+        private final HotKeyDetector hotKeyDetector;
+        private final OperatorContext operatorContext;
 
         public PagePartitioner(
                 PartitionFunction partitionFunction,
@@ -447,6 +455,13 @@ public class OptimizedPartitionedOutputOperator
             this.nullChannel = requireNonNull(nullChannel, "nullChannel is null").orElse(-1);
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde();
+            this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+            if (isPartitionedOutputHotKeyDetectionEnabled(operatorContext.getSession())) {
+                this.hotKeyDetector = new HotKeyDetector(getPartitionArgumentTypes(sourceTypes, this.partitionChannels, partitionConstants));
+            }
+            else {
+                this.hotKeyDetector = null;
+            }
 
             int partitionCount = partitionFunction.getPartitionCount();
 
@@ -479,6 +494,13 @@ public class OptimizedPartitionedOutputOperator
             return outputBuffer.isFull();
         }
 
+        public void recordRuntimeStats()
+        {
+            if (hotKeyDetector != null) {
+                hotKeyDetector.recordRuntimeStats(operatorContext);
+            }
+        }
+
         public Supplier<PartitionedOutputInfo> getPartitionedOutputInfoSupplier()
         {
             // Must be a separate static method to avoid embedding references to "this" in the supplier
@@ -535,6 +557,9 @@ public class OptimizedPartitionedOutputOperator
                     partitionBuffers[partition].addPosition(position);
                 }
             }
+            if (hotKeyDetector != null) {
+                hotKeyDetector.addPage(partitionFunctionArgs);
+            }
 
             // Decode the page just once. The decoded blocks will be fed to each PartitionBuffer object to set up AbstractBlockEncodingBuffer.
             long estimatedSerializedPageSize = 0;
@@ -628,6 +653,8 @@ public class OptimizedPartitionedOutputOperator
         private final int capacity;
         private final int channelCount;
         private final ArrayAllocator bufferAllocator;
+        private final boolean bitPackingEnabled;
+        private final boolean dictionaryEncodingEnabled;
 
         private int[] positions;   // the default positions array for top level BlockEncodingBuffer
         private int positionCount;  // number of positions to be copied for this partition
@@ -648,6 +675,8 @@ public class OptimizedPartitionedOutputOperator
             this.bufferAllocator = requireNonNull(bufferAllocator, "bufferAllocator is null");
             this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
             this.lifespan = operatorContext.getDriverContext().getLifespan();
+            this.bitPackingEnabled = isOptimizedRepartitioningBitPackingEnabled(operatorContext.getSession());
+            this.dictionaryEncodingEnabled = isOptimizedRepartitioningDictionaryEncodingEnabled(operatorContext.getSession());
         }
 
         private void resetPositions(int estimatedPositionCount)
@@ -722,7 +751,12 @@ public class OptimizedPartitionedOutputOperator
             if (blockEncodingBuffers == null) {
                 BlockEncodingBuffer[] buffers = new BlockEncodingBuffer[channelCount];
                 for (int i = 0; i < channelCount; i++) {
-                    buffers[i] = createBlockEncodingBuffers(decodedBlocks[i], bufferAllocator, false);
+                    if (dictionaryEncodingEnabled && DictionaryBlockEncodingBuffer.isSupported(decodedBlocks[i])) {
+                        buffers[i] = new DictionaryBlockEncodingBuffer(bufferAllocator);
+                    }
+                    else {
+                        buffers[i] = createBlockEncodingBuffers(decodedBlocks[i], bufferAllocator, false, bitPackingEnabled);
+                    }
                 }
                 blockEncodingBuffers = buffers;
             }
@@ -48,8 +48,10 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static com.facebook.presto.SystemSessionProperties.isPartitionedOutputHotKeyDetectionEnabled;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
+import static com.facebook.presto.operator.repartition.HotKeyDetector.getPartitionArgumentTypes;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -229,6 +231,7 @@ public class PartitionedOutputOperator
     {
         finished = true;
         partitionFunction.flush(true);
+        partitionFunction.recordRuntimeStats();
     }
 
     @Override
@@ -296,6 +299,8 @@ public class PartitionedOutputOperator
         private final AtomicLong rowsAdded = new AtomicLong();
         private final AtomicLong pagesAdded = new AtomicLong();
         private boolean hasAnyRowBeenReplicated;
+        @Nullable
+        private final HotKeyDetector hotKeyDetector;
         private final OperatorContext operatorContext;
         private final LocalMemoryContext systemMemoryContext;
 
@@ -339,6 +344,13 @@ public class PartitionedOutputOperator
                 }
             }
 
+            if (isPartitionedOutputHotKeyDetectionEnabled(operatorContext.getSession())) {
+                this.hotKeyDetector = new HotKeyDetector(getPartitionArgumentTypes(sourceTypes, this.partitionChannels, partitionConstants));
+            }
+            else {
+                this.hotKeyDetector = null;
+            }
+
             int partitionCount = partitionFunction.getPartitionCount();
             int pageSize = min(DEFAULT_MAX_PAGE_SIZE_IN_BYTES, ((int) maxMemory.toBytes()) / partitionCount);
             pageSize = max(1, pageSize);
@@ -359,6 +371,13 @@ public class PartitionedOutputOperator
             return outputBuffer.isFull();
         }
 
+        public void recordRuntimeStats()
+        {
+            if (hotKeyDetector != null) {
+                hotKeyDetector.recordRuntimeStats(operatorContext);
+            }
+        }
+
         public long getSizeInBytes()
         {
             // We use a foreach loop instead of streams
@@ -434,6 +453,9 @@ public class PartitionedOutputOperator
                     appendRow(pageBuilders[partition], page, position);
                 }
             }
+            if (hotKeyDetector != null) {
+                hotKeyDetector.addPage(partitionFunctionArgs);
+            }
 
             // We track the memory before it's flushed to avoid under counting when the page size is large.
             systemMemoryContext.setBytes(getRetainedSizeInBytes());
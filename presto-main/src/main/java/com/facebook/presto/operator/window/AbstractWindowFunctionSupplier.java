@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.operator.window;
 
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
 import com.facebook.presto.spi.function.Signature;
 import com.facebook.presto.spi.function.WindowFunction;
 
@@ -46,21 +47,23 @@ public abstract class AbstractWindowFunctionSupplier
     }
 
     @Override
-    public final WindowFunction createWindowFunction(List<Integer> argumentChannels, boolean ignoreNulls)
+    public final WindowFunction createWindowFunction(List<Integer> argumentChannels, boolean ignoreNulls, AggregatedMemoryContext memoryContext)
     {
         requireNonNull(argumentChannels, "inputs is null");
+        requireNonNull(memoryContext, "memoryContext is null");
         checkArgument(argumentChannels.size() == signature.getArgumentTypes().size(),
                 "Expected %s arguments for function %s, but got %s",
                 signature.getArgumentTypes().size(),
                 signature.getNameSuffix(),
                 argumentChannels.size());
 
-        return newWindowFunction(argumentChannels, ignoreNulls);
+        return newWindowFunction(argumentChannels, ignoreNulls, memoryContext);
     }
 
     /**
      * Create window function instance using the supplied arguments.  The
-     * inputs have already validated.
+     * inputs have already validated.  Memory the function keeps between
+     * rows is accounted in the supplied memory context.
      */
-    protected abstract WindowFunction newWindowFunction(List<Integer> inputs, boolean ignoreNulls);
+    protected abstract WindowFunction newWindowFunction(List<Integer> inputs, boolean ignoreNulls, AggregatedMemoryContext memoryContext);
 }
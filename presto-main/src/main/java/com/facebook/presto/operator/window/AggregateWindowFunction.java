@@ -14,6 +14,8 @@
 package com.facebook.presto.operator.window;
 
 import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.UpdateMemory;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
 import com.facebook.presto.operator.aggregation.BuiltInAggregationFunctionImplementation;
@@ -24,6 +26,8 @@ import com.facebook.presto.spi.function.WindowIndex;
 import com.facebook.presto.spi.function.aggregation.Accumulator;
 import com.google.common.collect.ImmutableList;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
 import java.util.Optional;
 
@@ -34,32 +38,60 @@ import static java.util.Objects.requireNonNull;
 public class AggregateWindowFunction
         implements WindowFunction
 {
+    private static final int MIN_SEGMENT_TREE_FRAME_SIZE = 4 * WindowSegmentTree.FANOUT;
+
     private final List<Integer> argumentChannels;
     private final AccumulatorFactory accumulatorFactory;
+    private final boolean segmentTreeSupported;
+    private final Optional<WindowAccumulator> windowAccumulator;
+    private final LocalMemoryContext segmentTreeMemoryContext;
 
     private WindowIndex windowIndex;
     private Accumulator accumulator;
     private int currentStart;
     private int currentEnd;
 
-    private AggregateWindowFunction(AggregationFunctionImplementation function, List<Integer> argumentChannels)
+    // built on first use for each partition
+    private boolean segmentTreeBuilt;
+    @Nullable
+    private WindowSegmentTree segmentTree;
+
+    private AggregateWindowFunction(Signature signature, AggregationFunctionImplementation function, List<Integer> argumentChannels, AggregatedMemoryContext memoryContext)
     {
         checkState(function instanceof BuiltInAggregationFunctionImplementation);
         BuiltInAggregationFunctionImplementation builtinFunction = (BuiltInAggregationFunctionImplementation) function;
         this.argumentChannels = ImmutableList.copyOf(argumentChannels);
         this.accumulatorFactory = generateAccumulatorFactory(builtinFunction, createArgs(builtinFunction), Optional.empty());
+        this.segmentTreeSupported = WindowSegmentTree.isSupported(signature);
+        this.windowAccumulator = WindowAccumulators.createWindowAccumulator(signature, builtinFunction, this.argumentChannels);
+        this.segmentTreeMemoryContext = memoryContext.newLocalMemoryContext(AggregateWindowFunction.class.getSimpleName());
     }
 
     @Override
     public void reset(WindowIndex windowIndex)
     {
         this.windowIndex = windowIndex;
-        resetAccumulator();
+        segmentTreeBuilt = false;
+        segmentTree = null;
+        segmentTreeMemoryContext.setBytes(0);
+        if (windowAccumulator.isPresent()) {
+            windowAccumulator.get().reset(windowIndex);
+            currentStart = -1;
+            currentEnd = -1;
+        }
+        else {
+            resetAccumulator();
+        }
     }
 
     @Override
     public void processRow(BlockBuilder output, int peerGroupStart, int peerGroupEnd, int frameStart, int frameEnd)
     {
+        if (windowAccumulator.isPresent()) {
+            processRow(windowAccumulator.get(), output, frameStart, frameEnd);
+            return;
+        }
+
         if (frameStart < 0) {
             // empty frame
             resetAccumulator();
@@ -72,7 +104,13 @@ public class AggregateWindowFunction
         else {
             // different frame
             resetAccumulator();
-            accumulate(frameStart, frameEnd);
+            WindowSegmentTree segmentTree = getSegmentTree(frameEnd - frameStart + 1);
+            if (segmentTree != null) {
+                segmentTree.aggregate(accumulator, frameStart, frameEnd);
+            }
+            else {
+                accumulate(frameStart, frameEnd);
+            }
             currentStart = frameStart;
             currentEnd = frameEnd;
         }
@@ -80,6 +118,51 @@ public class AggregateWindowFunction
         accumulator.evaluateFinal(output);
     }
 
+    private void processRow(WindowAccumulator windowAccumulator, BlockBuilder output, int frameStart, int frameEnd)
+    {
+        if (frameStart < 0) {
+            // empty frame
+            windowAccumulator.reset(windowIndex);
+            currentStart = -1;
+            currentEnd = -1;
+        }
+        else if (currentStart >= 0 && frameStart >= currentStart && frameEnd >= currentEnd) {
+            // frame moving forward: remove the rows that left it and add the rows that entered it
+            if (frameStart > currentStart) {
+                windowAccumulator.removeInput(currentStart, Math.min(frameStart - 1, currentEnd));
+            }
+            int addStart = Math.max(currentEnd + 1, frameStart);
+            if (addStart <= frameEnd) {
+                windowAccumulator.addInput(addStart, frameEnd);
+            }
+            currentStart = frameStart;
+            currentEnd = frameEnd;
+        }
+        else {
+            // different frame
+            windowAccumulator.reset(windowIndex);
+            windowAccumulator.addInput(frameStart, frameEnd);
+            currentStart = frameStart;
+            currentEnd = frameEnd;
+        }
+
+        windowAccumulator.evaluateFinal(output);
+    }
+
+    @Nullable
+    private WindowSegmentTree getSegmentTree(int frameSize)
+    {
+        // small frames are cheaper to aggregate from the rows
+        if (!segmentTreeSupported || frameSize < MIN_SEGMENT_TREE_FRAME_SIZE) {
+            return null;
+        }
+        if (!segmentTreeBuilt) {
+            segmentTree = WindowSegmentTree.create(accumulatorFactory, windowIndex, argumentChannels, segmentTreeMemoryContext).orElse(null);
+            segmentTreeBuilt = true;
+        }
+        return segmentTree;
+    }
+
     private void accumulate(int start, int end)
     {
         accumulator.addInput(windowIndex, argumentChannels, start, end);
@@ -103,9 +186,9 @@ public class AggregateWindowFunction
         return new AbstractWindowFunctionSupplier(signature, null)
         {
             @Override
-            protected WindowFunction newWindowFunction(List<Integer> inputs, boolean ignoreNulls)
+            protected WindowFunction newWindowFunction(List<Integer> inputs, boolean ignoreNulls, AggregatedMemoryContext memoryContext)
             {
-                return new AggregateWindowFunction(function, inputs);
+                return new AggregateWindowFunction(signature, function, inputs, memoryContext);
             }
         };
     }
@@ -15,6 +15,7 @@ package com.facebook.presto.operator.window;
 
 import com.facebook.presto.common.QualifiedObjectName;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
 import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.Signature;
 import com.facebook.presto.spi.function.ValueWindowFunction;
@@ -56,7 +57,7 @@ public class ReflectionWindowFunctionSupplier<T extends WindowFunction>
     }
 
     @Override
-    protected T newWindowFunction(List<Integer> inputs, boolean ignoreNulls)
+    protected T newWindowFunction(List<Integer> inputs, boolean ignoreNulls, AggregatedMemoryContext memoryContext)
     {
         try {
             T windowFunction;
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.window;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.spi.function.WindowIndex;
+
+/**
+ * Aggregation over a window frame that can also remove rows, so that a frame sliding forward
+ * is updated with the rows that enter and leave it instead of being aggregated again.
+ * Rows are always removed in the order they were added.
+ */
+interface WindowAccumulator
+{
+    /**
+     * Removes all rows and starts aggregating rows of the given index.
+     */
+    void reset(WindowIndex windowIndex);
+
+    /**
+     * Adds the rows from {@code startPosition} to {@code endPosition}, both inclusive.
+     */
+    void addInput(int startPosition, int endPosition);
+
+    /**
+     * Removes the rows from {@code startPosition} to {@code endPosition}, both inclusive,
+     * which must be the oldest rows that were added and not removed yet.
+     */
+    void removeInput(int startPosition, int endPosition);
+
+    void evaluateFinal(BlockBuilder output);
+}
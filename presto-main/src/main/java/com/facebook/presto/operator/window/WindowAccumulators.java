@@ -0,0 +1,329 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.window;
+
+import com.facebook.presto.common.QualifiedObjectName;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.aggregation.BuiltInAggregationFunctionImplementation;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.Signature;
+import com.facebook.presto.spi.function.WindowIndex;
+import com.google.common.collect.ImmutableSet;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.metadata.BuiltInTypeAndFunctionNamespaceManager.DEFAULT_NAMESPACE;
+import static com.facebook.presto.operator.aggregation.CountColumn.COUNT_COLUMN;
+import static com.facebook.presto.operator.aggregation.MaxAggregationFunction.MAX_AGGREGATION;
+import static com.facebook.presto.operator.aggregation.MinAggregationFunction.MIN_AGGREGATION;
+import static com.facebook.presto.spi.StandardErrorCode.NUMERIC_VALUE_OUT_OF_RANGE;
+import static com.facebook.presto.spi.function.FunctionKind.AGGREGATE;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Window accumulators for the built-in aggregations whose state can be updated when rows leave the frame.
+ * Floating point sums are not included, since removing values would change the rounding of the result.
+ */
+final class WindowAccumulators
+{
+    // types whose order is the order of the long values they are stored as
+    private static final Set<Type> MIN_MAX_TYPES = ImmutableSet.of(BIGINT, INTEGER, SMALLINT, TINYINT, DATE);
+    private static final Signature COUNT = aggregation("count", BIGINT);
+    private static final Signature LONG_SUM = aggregation("sum", BIGINT, BIGINT);
+    private static final Signature LONG_AVERAGE = aggregation("avg", DOUBLE, BIGINT);
+    private static final double TWO_TO_THE_64 = 0x1p64;
+
+    private WindowAccumulators() {}
+
+    /**
+     * @param signature the signature the aggregation is registered with, which is generic for {@code count(T)}, {@code min(T)} and {@code max(T)}
+     */
+    public static Optional<WindowAccumulator> createWindowAccumulator(Signature signature, BuiltInAggregationFunctionImplementation function, List<Integer> argumentChannels)
+    {
+        requireNonNull(signature, "signature is null");
+        requireNonNull(function, "function is null");
+        requireNonNull(argumentChannels, "argumentChannels is null");
+
+        if (signature.equals(COUNT)) {
+            return Optional.of(new CountAccumulator());
+        }
+        if (signature.equals(COUNT_COLUMN.getSignature())) {
+            return Optional.of(new CountColumnAccumulator(getOnlyElement(argumentChannels)));
+        }
+        if (signature.equals(LONG_SUM)) {
+            return Optional.of(new LongSumAccumulator(getOnlyElement(argumentChannels), false));
+        }
+        if (signature.equals(LONG_AVERAGE)) {
+            return Optional.of(new LongSumAccumulator(getOnlyElement(argumentChannels), true));
+        }
+        boolean max = signature.equals(MAX_AGGREGATION.getSignature());
+        if (max || signature.equals(MIN_AGGREGATION.getSignature())) {
+            Type type = getOnlyElement(function.getParameterTypes());
+            if (MIN_MAX_TYPES.contains(type)) {
+                return Optional.of(new MinMaxAccumulator(type, getOnlyElement(argumentChannels), max));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Signature aggregation(String name, Type returnType, Type... argumentTypes)
+    {
+        return new Signature(
+                QualifiedObjectName.valueOf(DEFAULT_NAMESPACE, name),
+                AGGREGATE,
+                returnType.getTypeSignature(),
+                Stream.of(argumentTypes).map(Type::getTypeSignature).collect(toImmutableList()));
+    }
+
+    private static class CountAccumulator
+            implements WindowAccumulator
+    {
+        private long count;
+
+        @Override
+        public void reset(WindowIndex windowIndex)
+        {
+            count = 0;
+        }
+
+        @Override
+        public void addInput(int startPosition, int endPosition)
+        {
+            count += endPosition - startPosition + 1;
+        }
+
+        @Override
+        public void removeInput(int startPosition, int endPosition)
+        {
+            count -= endPosition - startPosition + 1;
+        }
+
+        @Override
+        public void evaluateFinal(BlockBuilder output)
+        {
+            BIGINT.writeLong(output, count);
+        }
+    }
+
+    private static class CountColumnAccumulator
+            implements WindowAccumulator
+    {
+        private final int channel;
+
+        private WindowIndex windowIndex;
+        private long count;
+
+        CountColumnAccumulator(int channel)
+        {
+            this.channel = channel;
+        }
+
+        @Override
+        public void reset(WindowIndex windowIndex)
+        {
+            this.windowIndex = windowIndex;
+            count = 0;
+        }
+
+        @Override
+        public void addInput(int startPosition, int endPosition)
+        {
+            count += countNonNull(startPosition, endPosition);
+        }
+
+        @Override
+        public void removeInput(int startPosition, int endPosition)
+        {
+            count -= countNonNull(startPosition, endPosition);
+        }
+
+        private long countNonNull(int startPosition, int endPosition)
+        {
+            long nonNull = 0;
+            for (int position = startPosition; position <= endPosition; position++) {
+                if (!windowIndex.isNull(channel, position)) {
+                    nonNull++;
+                }
+            }
+            return nonNull;
+        }
+
+        @Override
+        public void evaluateFinal(BlockBuilder output)
+        {
+            BIGINT.writeLong(output, count);
+        }
+    }
+
+    /**
+     * Sum or average of bigint values. The sum is kept exactly as {@code sum + overflows * 2^64},
+     * so that intermediate overflows are undone when rows are removed, and it only fails when the sum of the frame overflows.
+     */
+    private static class LongSumAccumulator
+            implements WindowAccumulator
+    {
+        private final int channel;
+        private final boolean average;
+
+        private WindowIndex windowIndex;
+        private long sum;
+        private long overflows;
+        private long count;
+
+        LongSumAccumulator(int channel, boolean average)
+        {
+            this.channel = channel;
+            this.average = average;
+        }
+
+        @Override
+        public void reset(WindowIndex windowIndex)
+        {
+            this.windowIndex = windowIndex;
+            sum = 0;
+            overflows = 0;
+            count = 0;
+        }
+
+        @Override
+        public void addInput(int startPosition, int endPosition)
+        {
+            for (int position = startPosition; position <= endPosition; position++) {
+                if (!windowIndex.isNull(channel, position)) {
+                    long value = windowIndex.getLong(channel, position);
+                    long result = sum + value;
+                    if (((sum ^ result) & (value ^ result)) < 0) {
+                        overflows += value < 0 ? -1 : 1;
+                    }
+                    sum = result;
+                    count++;
+                }
+            }
+        }
+
+        @Override
+        public void removeInput(int startPosition, int endPosition)
+        {
+            for (int position = startPosition; position <= endPosition; position++) {
+                if (!windowIndex.isNull(channel, position)) {
+                    long value = windowIndex.getLong(channel, position);
+                    long result = sum - value;
+                    if (((sum ^ value) & (sum ^ result)) < 0) {
+                        overflows += value < 0 ? 1 : -1;
+                    }
+                    sum = result;
+                    count--;
+                }
+            }
+        }
+
+        @Override
+        public void evaluateFinal(BlockBuilder output)
+        {
+            if (count == 0) {
+                output.appendNull();
+            }
+            else if (average) {
+                DOUBLE.writeDouble(output, (sum + overflows * TWO_TO_THE_64) / count);
+            }
+            else {
+                if (overflows != 0) {
+                    throw new PrestoException(NUMERIC_VALUE_OUT_OF_RANGE, "bigint addition overflow");
+                }
+                BIGINT.writeLong(output, sum);
+            }
+        }
+    }
+
+    /**
+     * Keeps the positions of the rows that can still become the minimum or maximum of the frame,
+     * with the value of the current result first.
+     */
+    private static class MinMaxAccumulator
+            implements WindowAccumulator
+    {
+        private final Type type;
+        private final int channel;
+        private final boolean max;
+        private final IntArrayFIFOQueue candidates = new IntArrayFIFOQueue();
+
+        private WindowIndex windowIndex;
+
+        MinMaxAccumulator(Type type, int channel, boolean max)
+        {
+            this.type = requireNonNull(type, "type is null");
+            this.channel = channel;
+            this.max = max;
+        }
+
+        @Override
+        public void reset(WindowIndex windowIndex)
+        {
+            this.windowIndex = windowIndex;
+            candidates.clear();
+        }
+
+        @Override
+        public void addInput(int startPosition, int endPosition)
+        {
+            for (int position = startPosition; position <= endPosition; position++) {
+                if (windowIndex.isNull(channel, position)) {
+                    continue;
+                }
+                long value = windowIndex.getLong(channel, position);
+                while (!candidates.isEmpty() && !isBetter(windowIndex.getLong(channel, candidates.lastInt()), value)) {
+                    candidates.dequeueLastInt();
+                }
+                candidates.enqueue(position);
+            }
+        }
+
+        private boolean isBetter(long candidate, long value)
+        {
+            return max ? candidate > value : candidate < value;
+        }
+
+        @Override
+        public void removeInput(int startPosition, int endPosition)
+        {
+            while (!candidates.isEmpty() && candidates.firstInt() <= endPosition) {
+                candidates.dequeueInt();
+            }
+        }
+
+        @Override
+        public void evaluateFinal(BlockBuilder output)
+        {
+            if (candidates.isEmpty()) {
+                output.appendNull();
+            }
+            else {
+                type.writeLong(output, windowIndex.getLong(channel, candidates.firstInt()));
+            }
+        }
+    }
+}
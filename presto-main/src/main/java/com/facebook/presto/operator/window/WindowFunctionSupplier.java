@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.operator.window;
 
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
 import com.facebook.presto.spi.function.Signature;
 import com.facebook.presto.spi.function.WindowFunction;
 
@@ -24,5 +25,5 @@ public interface WindowFunctionSupplier
 
     String getDescription();
 
-    WindowFunction createWindowFunction(List<Integer> argumentChannels, boolean ignoreNulls);
+    WindowFunction createWindowFunction(List<Integer> argumentChannels, boolean ignoreNulls, AggregatedMemoryContext memoryContext);
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.window;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.UpdateMemory;
+import com.facebook.presto.operator.aggregation.AccumulatorFactory;
+import com.facebook.presto.spi.function.Signature;
+import com.facebook.presto.spi.function.WindowIndex;
+import com.facebook.presto.spi.function.aggregation.Accumulator;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.operator.aggregation.MaxAggregationFunction.MAX_AGGREGATION;
+import static com.facebook.presto.operator.aggregation.MinAggregationFunction.MIN_AGGREGATION;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Intermediate states of a decomposable aggregation over fixed groups of rows of a partition,
+ * used to aggregate frames that move in ways that cannot be updated incrementally.
+ * Level 0 holds the state of every {@link #FANOUT} consecutive rows and each following level
+ * combines {@link #FANOUT} consecutive states of the level below, so a frame is aggregated
+ * from at most {@code 2 * FANOUT} rows or states per level, in row order.
+ */
+final class WindowSegmentTree
+{
+    static final int FANOUT = 16;
+    private static final long MAX_RETAINED_SIZE_IN_BYTES = 64L * 1024 * 1024;
+
+    private final WindowIndex windowIndex;
+    private final List<Integer> argumentChannels;
+    // levels.get(i) position n holds the state of rows [n * FANOUT^(i + 1), (n + 1) * FANOUT^(i + 1))
+    private final List<Block> levels;
+
+    private WindowSegmentTree(WindowIndex windowIndex, List<Integer> argumentChannels, List<Block> levels)
+    {
+        this.windowIndex = requireNonNull(windowIndex, "windowIndex is null");
+        this.argumentChannels = requireNonNull(argumentChannels, "argumentChannels is null");
+        this.levels = requireNonNull(levels, "levels is null");
+    }
+
+    /**
+     * Returns whether the result of the aggregation does not depend on how the rows are grouped into
+     * intermediate states. This excludes floating point sums, which round differently, and integer sums,
+     * which overflow at different rows.
+     */
+    public static boolean isSupported(Signature signature)
+    {
+        return signature.equals(MIN_AGGREGATION.getSignature()) || signature.equals(MAX_AGGREGATION.getSignature());
+    }
+
+    /**
+     * Returns empty if the states of the partition would use too much memory.
+     * The memory of the returned tree is reserved in the given memory context.
+     */
+    public static Optional<WindowSegmentTree> create(AccumulatorFactory accumulatorFactory, WindowIndex windowIndex, List<Integer> argumentChannels, LocalMemoryContext memoryContext)
+    {
+        ImmutableList.Builder<Block> levels = ImmutableList.builder();
+        long retainedSizeInBytes = 0;
+
+        Block level = buildLeafLevel(accumulatorFactory, windowIndex, argumentChannels);
+        while (level.getPositionCount() > 0) {
+            retainedSizeInBytes += level.getRetainedSizeInBytes();
+            if (retainedSizeInBytes > MAX_RETAINED_SIZE_IN_BYTES || !memoryContext.trySetBytes(retainedSizeInBytes)) {
+                memoryContext.setBytes(0);
+                return Optional.empty();
+            }
+            levels.add(level);
+            level = buildParentLevel(accumulatorFactory, level);
+        }
+        return Optional.of(new WindowSegmentTree(windowIndex, argumentChannels, levels.build()));
+    }
+
+    private static Block buildLeafLevel(AccumulatorFactory accumulatorFactory, WindowIndex windowIndex, List<Integer> argumentChannels)
+    {
+        int count = windowIndex.size() / FANOUT;
+        Type intermediateType = accumulatorFactory.createAccumulator(UpdateMemory.NOOP).getIntermediateType();
+        BlockBuilder builder = intermediateType.createBlockBuilder(null, count);
+        for (int node = 0; node < count; node++) {
+            Accumulator accumulator = accumulatorFactory.createAccumulator(UpdateMemory.NOOP);
+            accumulator.addInput(windowIndex, argumentChannels, node * FANOUT, (node + 1) * FANOUT - 1);
+            accumulator.evaluateIntermediate(builder);
+        }
+        return builder.build();
+    }
+
+    private static Block buildParentLevel(AccumulatorFactory accumulatorFactory, Block children)
+    {
+        int count = children.getPositionCount() / FANOUT;
+        Type intermediateType = accumulatorFactory.createAccumulator(UpdateMemory.NOOP).getIntermediateType();
+        BlockBuilder builder = intermediateType.createBlockBuilder(null, count);
+        for (int node = 0; node < count; node++) {
+            Accumulator accumulator = accumulatorFactory.createAccumulator(UpdateMemory.NOOP);
+            accumulator.addIntermediate(children.getRegion(node * FANOUT, FANOUT));
+            accumulator.evaluateIntermediate(builder);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Adds the rows from {@code startPosition} to {@code endPosition}, both inclusive, to the accumulator.
+     */
+    public void aggregate(Accumulator accumulator, int startPosition, int endPosition)
+    {
+        aggregate(accumulator, 0, 1, startPosition, endPosition + 1);
+    }
+
+    // adds rows [start, end) using the levels from levelIndex up, where rowsPerNode is the number of rows
+    // covered by a node one level below levelIndex, and start and end are multiples of it
+    private void aggregate(Accumulator accumulator, int levelIndex, int rowsPerNode, int start, int end)
+    {
+        int childRowsPerNode = rowsPerNode * FANOUT;
+        int firstNode = (start + childRowsPerNode - 1) / childRowsPerNode;
+        int endNode = end / childRowsPerNode;
+        if (levelIndex >= levels.size() || firstNode >= endNode) {
+            addRange(accumulator, levelIndex - 1, rowsPerNode, start, end);
+            return;
+        }
+
+        int nodesStart = firstNode * childRowsPerNode;
+        int nodesEnd = endNode * childRowsPerNode;
+        addRange(accumulator, levelIndex - 1, rowsPerNode, start, nodesStart);
+        aggregate(accumulator, levelIndex + 1, childRowsPerNode, nodesStart, nodesEnd);
+        addRange(accumulator, levelIndex - 1, rowsPerNode, nodesEnd, end);
+    }
+
+    // adds rows [start, end) using the nodes of the given level, or the raw rows for level -1
+    private void addRange(Accumulator accumulator, int levelIndex, int rowsPerNode, int start, int end)
+    {
+        if (start >= end) {
+            return;
+        }
+        if (levelIndex < 0) {
+            accumulator.addInput(windowIndex, argumentChannels, start, end - 1);
+        }
+        else {
+            accumulator.addIntermediate(levels.get(levelIndex).getRegion(start / rowsPerNode, (end - start) / rowsPerNode));
+        }
+    }
+}
@@ -44,6 +44,7 @@ public class InternalCommunicationConfig
     private boolean taskInfoThriftTransportEnabled;
     private Protocol thriftProtocol = Protocol.BINARY;
     private DataSize maxTaskUpdateSize = new DataSize(16, MEGABYTE);
+    private boolean taskSplitUpdateEnabled;
     private CommunicationProtocol taskCommunicationProtocol = CommunicationProtocol.HTTP;
     private CommunicationProtocol serverInfoCommunicationProtocol = CommunicationProtocol.HTTP;
     private boolean memoizeDeadNodesEnabled;
@@ -225,6 +226,19 @@ public class InternalCommunicationConfig
         return this;
     }
 
+    public boolean isTaskSplitUpdateEnabled()
+    {
+        return taskSplitUpdateEnabled;
+    }
+
+    @Config("experimental.internal-communication.task-split-update-enabled")
+    @ConfigDescription("Send only new splits to tasks whose plan and output buffers are already delivered")
+    public InternalCommunicationConfig setTaskSplitUpdateEnabled(boolean taskSplitUpdateEnabled)
+    {
+        this.taskSplitUpdateEnabled = taskSplitUpdateEnabled;
+        return this;
+    }
+
     public enum CommunicationProtocol
     {
         HTTP,
@@ -150,6 +150,23 @@ public class TaskResource
         return Response.ok().entity(taskInfo).build();
     }
 
+    @POST
+    @Path("{taskId}/splits")
+    @Consumes({APPLICATION_JSON, APPLICATION_JACKSON_SMILE})
+    @Produces({APPLICATION_JSON, APPLICATION_JACKSON_SMILE})
+    public Response addSplits(@PathParam("taskId") TaskId taskId, TaskSplitUpdateRequest taskSplitUpdateRequest, @Context UriInfo uriInfo)
+    {
+        requireNonNull(taskSplitUpdateRequest, "taskSplitUpdateRequest is null");
+
+        TaskInfo taskInfo = taskManager.addSources(taskId, taskSplitUpdateRequest.getSources());
+
+        if (shouldSummarize(uriInfo)) {
+            taskInfo = taskInfo.summarize();
+        }
+
+        return Response.ok().entity(taskInfo).build();
+    }
+
     @GET
     @Path("{taskId}")
     @Consumes({APPLICATION_JSON, APPLICATION_JACKSON_SMILE, APPLICATION_THRIFT_BINARY, APPLICATION_THRIFT_COMPACT, APPLICATION_THRIFT_FB_COMPACT})
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.facebook.presto.execution.TaskSource;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Update of a task whose plan and current output buffers have already been delivered,
+ * which only carries the splits and no more splits markers that are not acknowledged yet.
+ */
+public class TaskSplitUpdateRequest
+{
+    private final List<TaskSource> sources;
+
+    @JsonCreator
+    public TaskSplitUpdateRequest(@JsonProperty("sources") List<TaskSource> sources)
+    {
+        this.sources = ImmutableList.copyOf(requireNonNull(sources, "sources is null"));
+    }
+
+    @JsonProperty
+    public List<TaskSource> getSources()
+    {
+        return sources;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("sources", sources)
+                .toString();
+    }
+}
@@ -56,6 +56,7 @@ import com.facebook.presto.operator.TaskStats;
 import com.facebook.presto.server.RequestErrorTracker;
 import com.facebook.presto.server.SimpleHttpResponseCallback;
 import com.facebook.presto.server.SimpleHttpResponseHandler;
+import com.facebook.presto.server.TaskSplitUpdateRequest;
 import com.facebook.presto.server.TaskUpdateRequest;
 import com.facebook.presto.server.smile.BaseResponse;
 import com.facebook.presto.spi.PrestoException;
@@ -191,6 +192,9 @@ public final class HttpRemoteTask
     private final Map<PlanNodeId, Boolean> noMoreSplits = new HashMap<>();
     @GuardedBy("this")
     private final AtomicReference<OutputBuffers> outputBuffers = new AtomicReference<>();
+    // version of the output buffers the task has acknowledged, or -1 if none has been acknowledged yet
+    @GuardedBy("this")
+    private long acknowledgedOutputBuffersVersion = -1;
     private final FutureStateChange<?> whenSplitQueueHasSpace = new FutureStateChange<>();
     @GuardedBy("this")
     private boolean splitQueueHasSpace = true;
@@ -207,6 +211,7 @@ public final class HttpRemoteTask
     //Json codec required for TaskUpdateRequest endpoint which uses JSON and returns a TaskInfo
     private final Codec<TaskInfo> taskInfoJsonCodec;
     private final Codec<TaskUpdateRequest> taskUpdateRequestCodec;
+    private final Codec<TaskSplitUpdateRequest> taskSplitUpdateRequestCodec;
     private final Codec<PlanFragment> planFragmentCodec;
 
     private final RequestErrorTracker updateErrorTracker;
@@ -222,6 +227,7 @@ public final class HttpRemoteTask
     private final boolean binaryTransportEnabled;
     private final boolean thriftTransportEnabled;
     private final boolean taskInfoThriftTransportEnabled;
+    private final boolean taskSplitUpdateEnabled;
     private final Protocol thriftProtocol;
     private final ConnectorTypeSerdeManager connectorTypeSerdeManager;
     private final HandleResolver handleResolver;
@@ -256,6 +262,7 @@ public final class HttpRemoteTask
             Codec<TaskInfo> taskInfoCodec,
             Codec<TaskInfo> taskInfoJsonCodec,
             Codec<TaskUpdateRequest> taskUpdateRequestCodec,
+            Codec<TaskSplitUpdateRequest> taskSplitUpdateRequestCodec,
             Codec<PlanFragment> planFragmentCodec,
             Codec<MetadataUpdates> metadataUpdatesCodec,
             NodeStatsTracker nodeStatsTracker,
@@ -263,6 +270,7 @@ public final class HttpRemoteTask
             boolean binaryTransportEnabled,
             boolean thriftTransportEnabled,
             boolean taskInfoThriftTransportEnabled,
+            boolean taskSplitUpdateEnabled,
             Protocol thriftProtocol,
             TableWriteInfo tableWriteInfo,
             int maxTaskUpdateSizeInBytes,
@@ -285,6 +293,7 @@ public final class HttpRemoteTask
         requireNonNull(taskStatusCodec, "taskStatusCodec is null");
         requireNonNull(taskInfoCodec, "taskInfoCodec is null");
         requireNonNull(taskUpdateRequestCodec, "taskUpdateRequestCodec is null");
+        requireNonNull(taskSplitUpdateRequestCodec, "taskSplitUpdateRequestCodec is null");
         requireNonNull(planFragmentCodec, "planFragmentCodec is null");
         requireNonNull(nodeStatsTracker, "nodeStatsTracker is null");
         requireNonNull(maxErrorDuration, "maxErrorDuration is null");
@@ -314,6 +323,7 @@ public final class HttpRemoteTask
             this.taskInfoCodec = taskInfoCodec;
             this.taskInfoJsonCodec = taskInfoJsonCodec;
             this.taskUpdateRequestCodec = taskUpdateRequestCodec;
+            this.taskSplitUpdateRequestCodec = taskSplitUpdateRequestCodec;
             this.planFragmentCodec = planFragmentCodec;
             this.updateErrorTracker = taskRequestErrorTracker(taskId, location, maxErrorDuration, errorScheduledExecutor, "updating task");
             this.nodeStatsTracker = requireNonNull(nodeStatsTracker, "nodeStatsTracker is null");
@@ -322,6 +332,7 @@ public final class HttpRemoteTask
             this.binaryTransportEnabled = binaryTransportEnabled;
             this.thriftTransportEnabled = thriftTransportEnabled;
             this.taskInfoThriftTransportEnabled = taskInfoThriftTransportEnabled;
+            this.taskSplitUpdateEnabled = taskSplitUpdateEnabled;
             this.thriftProtocol = thriftProtocol;
             this.connectorTypeSerdeManager = connectorTypeSerdeManager;
             this.handleResolver = handleResolver;
@@ -863,24 +874,37 @@ public final class HttpRemoteTask
         }
 
         List<TaskSource> sources = getSources();
+        OutputBuffers outputBuffers = this.outputBuffers.get();
+
+        // once the task has the plan and the current output buffers, only the new splits need to be sent,
+        // which avoids serializing the session and the output buffers for every batch of splits
+        boolean splitUpdate = taskSplitUpdateEnabled && !sendPlan.get() && outputBuffers.getVersion() == acknowledgedOutputBuffersVersion;
 
         Optional<byte[]> fragment = Optional.empty();
-        if (sendPlan.get()) {
-            long start = THREAD_MX_BEAN.getCurrentThreadCpuTime();
-            fragment = Optional.of(planFragment.bytesForTaskSerialization(planFragmentCodec));
-            schedulerStatsTracker.recordTaskPlanSerializedCpuTime(THREAD_MX_BEAN.getCurrentThreadCpuTime() - start);
-        }
-        Optional<TableWriteInfo> writeInfo = sendPlan.get() ? Optional.of(tableWriteInfo) : Optional.empty();
-        TaskUpdateRequest updateRequest = new TaskUpdateRequest(
-                session.toSessionRepresentation(),
-                session.getIdentity().getExtraCredentials(),
-                fragment,
-                sources,
-                outputBuffers.get(),
-                writeInfo);
-        long serializeStartCpuTimeNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime();
-        byte[] taskUpdateRequestJson = taskUpdateRequestCodec.toBytes(updateRequest);
-        schedulerStatsTracker.recordTaskUpdateSerializedCpuTime(THREAD_MX_BEAN.getCurrentThreadCpuTime() - serializeStartCpuTimeNanos);
+        byte[] taskUpdateRequestJson;
+        if (splitUpdate) {
+            long serializeStartCpuTimeNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            taskUpdateRequestJson = taskSplitUpdateRequestCodec.toBytes(new TaskSplitUpdateRequest(sources));
+            schedulerStatsTracker.recordTaskUpdateSerializedCpuTime(THREAD_MX_BEAN.getCurrentThreadCpuTime() - serializeStartCpuTimeNanos);
+        }
+        else {
+            if (sendPlan.get()) {
+                long start = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+                fragment = Optional.of(planFragment.bytesForTaskSerialization(planFragmentCodec));
+                schedulerStatsTracker.recordTaskPlanSerializedCpuTime(THREAD_MX_BEAN.getCurrentThreadCpuTime() - start);
+            }
+            Optional<TableWriteInfo> writeInfo = sendPlan.get() ? Optional.of(tableWriteInfo) : Optional.empty();
+            TaskUpdateRequest updateRequest = new TaskUpdateRequest(
+                    session.toSessionRepresentation(),
+                    session.getIdentity().getExtraCredentials(),
+                    fragment,
+                    sources,
+                    outputBuffers,
+                    writeInfo);
+            long serializeStartCpuTimeNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+            taskUpdateRequestJson = taskUpdateRequestCodec.toBytes(updateRequest);
+            schedulerStatsTracker.recordTaskUpdateSerializedCpuTime(THREAD_MX_BEAN.getCurrentThreadCpuTime() - serializeStartCpuTimeNanos);
+        }
 
         taskUpdateRequestSize.add(taskUpdateRequestJson.length);
 
@@ -899,6 +923,9 @@ public final class HttpRemoteTask
         }
 
         HttpUriBuilder uriBuilder = getHttpUriBuilder(taskStatus);
+        if (splitUpdate) {
+            uriBuilder.appendPath("splits");
+        }
         Request request = setContentTypeHeaders(binaryTransportEnabled, preparePost())
                 .setUri(uriBuilder.build())
                 .setBodyGenerator(createStaticBodyGenerator(taskUpdateRequestJson))
@@ -927,7 +954,7 @@ public final class HttpRemoteTask
 
         Futures.addCallback(
                 future,
-                new SimpleHttpResponseHandler<>(new UpdateResponseHandler(sources), request.getUri(), stats.getHttpResponseStats(), REMOTE_TASK_ERROR),
+                new SimpleHttpResponseHandler<>(new UpdateResponseHandler(sources, outputBuffers.getVersion(), splitUpdate), request.getUri(), stats.getHttpResponseStats(), REMOTE_TASK_ERROR),
                 executor);
     }
 
@@ -1132,10 +1159,14 @@ public final class HttpRemoteTask
             implements SimpleHttpResponseCallback<TaskInfo>
     {
         private final List<TaskSource> sources;
+        private final long outputBuffersVersion;
+        private final boolean splitUpdate;
 
-        private UpdateResponseHandler(List<TaskSource> sources)
+        private UpdateResponseHandler(List<TaskSource> sources, long outputBuffersVersion, boolean splitUpdate)
         {
             this.sources = ImmutableList.copyOf(requireNonNull(sources, "sources is null"));
+            this.outputBuffersVersion = outputBuffersVersion;
+            this.splitUpdate = splitUpdate;
         }
 
         @Override
@@ -1145,21 +1176,33 @@ public final class HttpRemoteTask
                 try {
                     long oldestTaskUpdateTime = 0;
                     long currentRequestStartNanos;
+                    // a task that needs the plan after a split update, for example because the worker restarted,
+                    // did not take the splits, so they are sent again in a full update with the plan
+                    boolean sourcesRejected = splitUpdate && value.isNeedsPlan();
                     synchronized (HttpRemoteTask.this) {
                         currentRequest = null;
                         sendPlan.set(value.isNeedsPlan());
                         currentRequestStartNanos = HttpRemoteTask.this.currentRequestStartNanos;
-                        if (!taskUpdateTimeline.isEmpty()) {
-                            oldestTaskUpdateTime = taskUpdateTimeline.getLong(0);
-                        }
-                        int deliveredUpdates = taskUpdateTimeline.size();
-                        while (deliveredUpdates > 0 && taskUpdateTimeline.getLong(deliveredUpdates - 1) > currentRequestLastTaskUpdate) {
-                            deliveredUpdates--;
+                        if (!sourcesRejected) {
+                            acknowledgedOutputBuffersVersion = outputBuffersVersion;
+                            if (!taskUpdateTimeline.isEmpty()) {
+                                oldestTaskUpdateTime = taskUpdateTimeline.getLong(0);
+                            }
+                            int deliveredUpdates = taskUpdateTimeline.size();
+                            while (deliveredUpdates > 0 && taskUpdateTimeline.getLong(deliveredUpdates - 1) > currentRequestLastTaskUpdate) {
+                                deliveredUpdates--;
+                            }
+                            taskUpdateTimeline.removeElements(0, deliveredUpdates);
                         }
-                        taskUpdateTimeline.removeElements(0, deliveredUpdates);
                     }
                     updateStats(currentRequestStartNanos);
-                    processTaskUpdate(value, sources);
+                    if (sourcesRejected) {
+                        updateTaskInfo(value, false);
+                        needsUpdate.set(true);
+                    }
+                    else {
+                        processTaskUpdate(value, sources);
+                    }
                     updateErrorTracker.requestSucceeded();
                     if (oldestTaskUpdateTime != 0) {
                         schedulerStatsTracker.recordTaskUpdateDeliveredTime(System.nanoTime() - oldestTaskUpdateTime);
@@ -45,6 +45,7 @@ import com.facebook.presto.metadata.MetadataUpdates;
 import com.facebook.presto.metadata.Split;
 import com.facebook.presto.operator.ForScheduler;
 import com.facebook.presto.server.InternalCommunicationConfig;
+import com.facebook.presto.server.TaskSplitUpdateRequest;
 import com.facebook.presto.server.TaskUpdateRequest;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.PlanFragment;
@@ -78,6 +79,7 @@ public class HttpRemoteTaskFactory
     //Json codec required for TaskUpdateRequest endpoint which uses JSON and returns a TaskInfo
     private final Codec<TaskInfo> taskInfoJsonCodec;
     private final Codec<TaskUpdateRequest> taskUpdateRequestCodec;
+    private final Codec<TaskSplitUpdateRequest> taskSplitUpdateRequestCodec;
     private final Codec<PlanFragment> planFragmentCodec;
     private final Codec<MetadataUpdates> metadataUpdatesCodec;
     private final Duration maxErrorDuration;
@@ -96,6 +98,7 @@ public class HttpRemoteTaskFactory
     private final boolean binaryTransportEnabled;
     private final boolean thriftTransportEnabled;
     private final boolean taskInfoThriftTransportEnabled;
+    private final boolean taskSplitUpdateEnabled;
     private final Protocol thriftProtocol;
     private final int maxTaskUpdateSizeInBytes;
     private final MetadataManager metadataManager;
@@ -116,6 +119,8 @@ public class HttpRemoteTaskFactory
             ThriftCodec<TaskInfo> taskInfoThriftCodec,
             JsonCodec<TaskUpdateRequest> taskUpdateRequestJsonCodec,
             SmileCodec<TaskUpdateRequest> taskUpdateRequestSmileCodec,
+            JsonCodec<TaskSplitUpdateRequest> taskSplitUpdateRequestJsonCodec,
+            SmileCodec<TaskSplitUpdateRequest> taskSplitUpdateRequestSmileCodec,
             JsonCodec<PlanFragment> planFragmentJsonCodec,
             SmileCodec<PlanFragment> planFragmentSmileCodec,
             JsonCodec<MetadataUpdates> metadataUpdatesJsonCodec,
@@ -144,6 +149,7 @@ public class HttpRemoteTaskFactory
         binaryTransportEnabled = communicationConfig.isBinaryTransportEnabled();
         thriftTransportEnabled = communicationConfig.isThriftTransportEnabled();
         taskInfoThriftTransportEnabled = communicationConfig.isTaskInfoThriftTransportEnabled();
+        taskSplitUpdateEnabled = communicationConfig.isTaskSplitUpdateEnabled();
         thriftProtocol = communicationConfig.getThriftProtocol();
         this.maxTaskUpdateSizeInBytes = toIntExact(requireNonNull(communicationConfig, "communicationConfig is null").getMaxTaskUpdateSize().toBytes());
 
@@ -170,10 +176,12 @@ public class HttpRemoteTaskFactory
         this.taskInfoJsonCodec = taskInfoJsonCodec;
         if (binaryTransportEnabled) {
             this.taskUpdateRequestCodec = taskUpdateRequestSmileCodec;
+            this.taskSplitUpdateRequestCodec = taskSplitUpdateRequestSmileCodec;
             this.metadataUpdatesCodec = metadataUpdatesSmileCodec;
         }
         else {
             this.taskUpdateRequestCodec = taskUpdateRequestJsonCodec;
+            this.taskSplitUpdateRequestCodec = taskSplitUpdateRequestJsonCodec;
             this.metadataUpdatesCodec = metadataUpdatesJsonCodec;
         }
         this.planFragmentCodec = planFragmentJsonCodec;
@@ -242,6 +250,7 @@ public class HttpRemoteTaskFactory
                 taskInfoCodec,
                 taskInfoJsonCodec,
                 taskUpdateRequestCodec,
+                taskSplitUpdateRequestCodec,
                 planFragmentCodec,
                 metadataUpdatesCodec,
                 nodeStatsTracker,
@@ -249,6 +258,7 @@ public class HttpRemoteTaskFactory
                 binaryTransportEnabled,
                 thriftTransportEnabled,
                 taskInfoThriftTransportEnabled,
+                taskSplitUpdateEnabled,
                 thriftProtocol,
                 tableWriteInfo,
                 maxTaskUpdateSizeInBytes,
@@ -43,8 +43,10 @@ public class JavaWorkerSessionPropertyProvider
     public static final String ORDER_BY_AGGREGATION_SPILL_ENABLED = "order_by_aggregation_spill_enabled";
     public static final String WINDOW_SPILL_ENABLED = "window_spill_enabled";
     public static final String ORDER_BY_SPILL_ENABLED = "order_by_spill_enabled";
+    public static final String ORDER_BY_REVOKE_COMPRESSION_ENABLED = "order_by_revoke_compression_enabled";
     public static final String AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT = "aggregation_operator_unspill_memory_limit";
     public static final String TOPN_OPERATOR_UNSPILL_MEMORY_LIMIT = "topn_operator_unspill_memory_limit";
+    public static final String WINDOW_OPERATOR_UNSPILL_MEMORY_LIMIT = "window_operator_unspill_memory_limit";
     public static final String TEMP_STORAGE_SPILLER_BUFFER_SIZE = "temp_storage_spiller_buffer_size";
     private final List<PropertyMetadata<?>> sessionProperties;
 
@@ -102,6 +104,11 @@ public class JavaWorkerSessionPropertyProvider
                         "Enable order by spilling if spill_enabled",
                         javaFeaturesConfig.isOrderBySpillEnabled(),
                         nativeExecution),
+                booleanProperty(
+                        ORDER_BY_REVOKE_COMPRESSION_ENABLED,
+                        "Compress the rows of order by in memory on the first memory revoke, and only spill on the next ones",
+                        javaFeaturesConfig.isOrderByRevokeCompressionEnabled(),
+                        nativeExecution),
                 new PropertyMetadata<>(
                         AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT,
                         "Experimental: How much memory can should be allocated per aggregation operator in unspilling process",
@@ -120,6 +127,15 @@ public class JavaWorkerSessionPropertyProvider
                         nativeExecution,
                         value -> DataSize.valueOf((String) value),
                         DataSize::toString),
+                new PropertyMetadata<>(
+                        WINDOW_OPERATOR_UNSPILL_MEMORY_LIMIT,
+                        "How much memory a window operator that has spilled can keep in memory when merging its spilled rows",
+                        VARCHAR,
+                        DataSize.class,
+                        javaFeaturesConfig.getWindowOperatorUnspillMemoryLimit(),
+                        nativeExecution,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
                 new PropertyMetadata<>(
                         TEMP_STORAGE_SPILLER_BUFFER_SIZE,
                         "Experimental: Buffer size used by TempStorageSingleStreamSpiller",
@@ -182,6 +198,11 @@ public class JavaWorkerSessionPropertyProvider
         return session.getSystemProperty(ORDER_BY_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
     }
 
+    public static boolean isOrderByRevokeCompressionEnabled(Session session)
+    {
+        return session.getSystemProperty(ORDER_BY_REVOKE_COMPRESSION_ENABLED, Boolean.class) && isOrderBySpillEnabled(session);
+    }
+
     public static DataSize getAggregationOperatorUnspillMemoryLimit(Session session)
     {
         DataSize memoryLimitForMerge = session.getSystemProperty(AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT, DataSize.class);
@@ -196,6 +217,13 @@ public class JavaWorkerSessionPropertyProvider
         return unspillMemoryLimit;
     }
 
+    public static DataSize getWindowOperatorUnspillMemoryLimit(Session session)
+    {
+        DataSize unspillMemoryLimit = session.getSystemProperty(WINDOW_OPERATOR_UNSPILL_MEMORY_LIMIT, DataSize.class);
+        checkArgument(unspillMemoryLimit.toBytes() >= 0, "%s must be positive", WINDOW_OPERATOR_UNSPILL_MEMORY_LIMIT);
+        return unspillMemoryLimit;
+    }
+
     public static DataSize getTempStorageSpillerBufferSize(Session session)
     {
         DataSize tempStorageSpillerBufferSize = session.getSystemProperty(TEMP_STORAGE_SPILLER_BUFFER_SIZE, DataSize.class);
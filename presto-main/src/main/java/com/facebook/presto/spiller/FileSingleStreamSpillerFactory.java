@@ -27,6 +27,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
+import io.airlift.units.DataSize;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -40,7 +41,12 @@ import java.util.Optional;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.spi.StandardErrorCode.OUT_OF_SPILL_SPACE;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.lang.Math.max;
+import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.delete;
@@ -61,11 +67,14 @@ public class FileSingleStreamSpillerFactory
     private static final String SPILL_FILE_GLOB = "spill*.bin";
 
     private final ListeningExecutorService executor;
+    private final Optional<ListeningExecutorService> ioExecutor;
     private final PagesSerdeFactory serdeFactory;
     private final List<Path> spillPaths;
     private final SpillerStats spillerStats;
     private final double maxUsedSpaceThreshold;
     private final boolean spillEncryptionEnabled;
+    private final boolean spillStripingEnabled;
+    private final int spillStripeSizeInBytes;
     private int roundRobinIndex;
 
     @Inject
@@ -75,12 +84,25 @@ public class FileSingleStreamSpillerFactory
                 listeningDecorator(newFixedThreadPool(
                         requireNonNull(featuresConfig, "featuresConfig is null").getSpillerThreads(),
                         daemonThreadsNamed("binary-spiller-%s"))),
+                createIoExecutor(featuresConfig, nodeSpillConfig),
                 blockEncodingSerde,
                 spillerStats,
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillerSpillPaths(),
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillMaxUsedSpaceThreshold(),
                 requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillCompressionEnabled(),
-                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillEncryptionEnabled());
+                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillEncryptionEnabled(),
+                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillStripingEnabled(),
+                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").getSpillStripeSize());
+    }
+
+    private static Optional<ListeningExecutorService> createIoExecutor(FeaturesConfig featuresConfig, NodeSpillConfig nodeSpillConfig)
+    {
+        if (!nodeSpillConfig.isSpillStripingEnabled()) {
+            return Optional.empty();
+        }
+        // a few outstanding reads or writes per spill disk
+        int threads = max(1, featuresConfig.getSpillerSpillPaths().size() * 4);
+        return Optional.of(listeningDecorator(newFixedThreadPool(threads, daemonThreadsNamed("striped-spiller-io-%s"))));
     }
 
     @VisibleForTesting
@@ -92,9 +114,30 @@ public class FileSingleStreamSpillerFactory
             double maxUsedSpaceThreshold,
             boolean spillCompressionEnabled,
             boolean spillEncryptionEnabled)
+    {
+        this(executor, Optional.empty(), blockEncodingSerde, spillerStats, spillPaths, maxUsedSpaceThreshold, spillCompressionEnabled, spillEncryptionEnabled, false, new DataSize(1, MEGABYTE));
+    }
+
+    /**
+     * @param ioExecutor executor of the stripe reads and writes of striped spills, required when striping is enabled
+     */
+    @VisibleForTesting
+    public FileSingleStreamSpillerFactory(
+            ListeningExecutorService executor,
+            Optional<ListeningExecutorService> ioExecutor,
+            BlockEncodingSerde blockEncodingSerde,
+            SpillerStats spillerStats,
+            List<Path> spillPaths,
+            double maxUsedSpaceThreshold,
+            boolean spillCompressionEnabled,
+            boolean spillEncryptionEnabled,
+            boolean spillStripingEnabled,
+            DataSize spillStripeSize)
     {
         this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), spillCompressionEnabled);
         this.executor = requireNonNull(executor, "executor is null");
+        this.ioExecutor = requireNonNull(ioExecutor, "ioExecutor is null");
+        checkArgument(!spillStripingEnabled || ioExecutor.isPresent(), "ioExecutor is required when spill striping is enabled");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats can not be null");
         requireNonNull(spillPaths, "spillPaths is null");
         this.spillPaths = ImmutableList.copyOf(spillPaths);
@@ -113,6 +156,8 @@ public class FileSingleStreamSpillerFactory
         });
         this.maxUsedSpaceThreshold = maxUsedSpaceThreshold;
         this.spillEncryptionEnabled = spillEncryptionEnabled;
+        this.spillStripingEnabled = spillStripingEnabled;
+        this.spillStripeSizeInBytes = toIntExact(requireNonNull(spillStripeSize, "spillStripeSize is null").toBytes());
         this.roundRobinIndex = 0;
     }
 
@@ -126,6 +171,7 @@ public class FileSingleStreamSpillerFactory
     public void destroy()
     {
         executor.shutdownNow();
+        ioExecutor.ifPresent(ListeningExecutorService::shutdownNow);
     }
 
     private static void cleanupOldSpillFiles(Path path)
@@ -154,6 +200,14 @@ public class FileSingleStreamSpillerFactory
             spillCipher = Optional.of(new AesSpillCipher());
         }
         PagesSerde serde = serdeFactory.createPagesSerdeForSpill(spillCipher);
+        if (spillStripingEnabled) {
+            List<Path> paths = spillPaths.stream()
+                    .filter(this::hasEnoughDiskSpace)
+                    .collect(toImmutableList());
+            if (paths.size() > 1) {
+                return new StripedFileSingleStreamSpiller(serde, executor, ioExecutor.get(), paths, spillStripeSizeInBytes, spillerStats, spillContext, memoryContext, spillCipher);
+            }
+        }
         return new FileSingleStreamSpiller(serde, executor, getNextSpillPath(), spillerStats, spillContext, memoryContext, spillCipher);
     }
 
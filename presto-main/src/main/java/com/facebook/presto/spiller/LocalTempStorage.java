@@ -43,6 +43,7 @@ import java.util.List;
 import java.util.Map;
 
 import static com.facebook.presto.spi.StandardErrorCode.OUT_OF_SPILL_SPACE;
+import static com.facebook.presto.spi.storage.StorageCapabilities.REMOTELY_ACCESSIBLE;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.lang.String.format;
@@ -59,6 +60,10 @@ public class LocalTempStorage
 {
     public static final String NAME = "local";
     public static final String TEMP_STORAGE_PATH = "temp-storage.path";
+    // set when the paths are on a file system shared by all nodes, so that files can be read by other nodes
+    public static final String TEMP_STORAGE_REMOTELY_ACCESSIBLE = "temp-storage.remotely-accessible";
+    // unset when the paths are shared with other running nodes, whose files must survive a restart of this node
+    public static final String TEMP_STORAGE_CLEANUP_ON_STARTUP = "temp-storage.cleanup-on-startup";
 
     private static final Logger log = Logger.get(LocalTempStorage.class);
 
@@ -68,14 +73,23 @@ public class LocalTempStorage
 
     private final List<Path> spillPaths;
     private final double maxUsedSpaceThreshold;
+    private final boolean remotelyAccessible;
+    private final boolean cleanupOnStartup;
 
     @GuardedBy("this")
     private int roundRobinIndex;
 
     public LocalTempStorage(List<Path> spillPaths, double maxUsedSpaceThreshold)
+    {
+        this(spillPaths, maxUsedSpaceThreshold, false, true);
+    }
+
+    public LocalTempStorage(List<Path> spillPaths, double maxUsedSpaceThreshold, boolean remotelyAccessible, boolean cleanupOnStartup)
     {
         this.spillPaths = ImmutableList.copyOf(requireNonNull(spillPaths, "spillPaths is null"));
         this.maxUsedSpaceThreshold = maxUsedSpaceThreshold;
+        this.remotelyAccessible = remotelyAccessible;
+        this.cleanupOnStartup = cleanupOnStartup;
         initialize();
     }
 
@@ -97,7 +111,9 @@ public class LocalTempStorage
         });
 
         // From FileSingleStreamSpillerFactory#cleanupOldSpillFiles
-        spillPaths.forEach(LocalTempStorage::cleanupOldSpillFiles);
+        if (cleanupOnStartup) {
+            spillPaths.forEach(LocalTempStorage::cleanupOldSpillFiles);
+        }
     }
 
     @Override
@@ -144,6 +160,9 @@ public class LocalTempStorage
     @Override
     public List<StorageCapabilities> getStorageCapabilities()
     {
+        if (remotelyAccessible) {
+            return ImmutableList.of(REMOTELY_ACCESSIBLE);
+        }
         return ImmutableList.of();
     }
 
@@ -291,8 +310,11 @@ public class LocalTempStorage
                     .map(Paths::get)
                     .collect(toImmutableList());
 
+            boolean remotelyAccessible = Boolean.parseBoolean(config.getOrDefault(TEMP_STORAGE_REMOTELY_ACCESSIBLE, "false"));
+            boolean cleanupOnStartup = Boolean.parseBoolean(config.getOrDefault(TEMP_STORAGE_CLEANUP_ON_STARTUP, "true"));
+
             // TODO: make maxUsedSpaceThreshold configurable
-            return new LocalTempStorage(tempStoragePaths, 1.0);
+            return new LocalTempStorage(tempStoragePaths, 1.0, remotelyAccessible, cleanupOnStartup);
         }
     }
 }
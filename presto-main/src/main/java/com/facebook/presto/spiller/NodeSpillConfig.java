@@ -14,8 +14,12 @@
 package com.facebook.presto.spiller;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
+import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
 
+import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.NotNull;
 
 public class NodeSpillConfig
@@ -27,6 +31,8 @@ public class NodeSpillConfig
 
     private boolean spillCompressionEnabled;
     private boolean spillEncryptionEnabled;
+    private boolean spillStripingEnabled;
+    private DataSize spillStripeSize = new DataSize(1, DataSize.Unit.MEGABYTE);
 
     @NotNull
     public DataSize getMaxSpillPerNode()
@@ -91,6 +97,41 @@ public class NodeSpillConfig
         return this;
     }
 
+    public boolean isSpillStripingEnabled()
+    {
+        return spillStripingEnabled;
+    }
+
+    @Config("experimental.spill-striping-enabled")
+    @ConfigDescription("Stripe each spill file over all spill paths, so that spills are written and read by all spill disks at once")
+    public NodeSpillConfig setSpillStripingEnabled(boolean spillStripingEnabled)
+    {
+        this.spillStripingEnabled = spillStripingEnabled;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("4kB")
+    @MaxDataSize("64MB")
+    public DataSize getSpillStripeSize()
+    {
+        return spillStripeSize;
+    }
+
+    @Config("experimental.spill-stripe-size")
+    @ConfigDescription("Size of the writes and reads of striped spill files")
+    public NodeSpillConfig setSpillStripeSize(DataSize spillStripeSize)
+    {
+        this.spillStripeSize = spillStripeSize;
+        return this;
+    }
+
+    @AssertTrue(message = "experimental.spill-stripe-size must be a multiple of 4kB")
+    public boolean isSpillStripeSizeAligned()
+    {
+        return spillStripeSize == null || spillStripeSize.toBytes() % StripedFileSingleStreamSpiller.ALIGNMENT == 0;
+    }
+
     @NotNull
     public DataSize getTempStorageBufferSize()
     {
@@ -0,0 +1,512 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.SpillContext;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.PagesSerdeUtil;
+import com.facebook.presto.spi.spiller.SpillCipher;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.slice.InputStreamSliceInput;
+import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
+import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_SPILL_FAILURE;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPage;
+import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
+import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Iterators.transform;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spills a single stream of pages to one file on each of several spill paths. The serialized pages are
+ * cut into stripes of up to {@code stripeSize} bytes, which are written to the files in turn, at offsets
+ * aligned to {@link #ALIGNMENT}, so that all spill disks write and read a spill at the same time.
+ * There is one stripe buffer per file plus one more: pages are serialized into one buffer while the
+ * previous stripes are written by the I/O executor, one write per file, and reads fetch up to one
+ * stripe per file ahead of the deserialization. The buffers are direct and aligned to {@link #ALIGNMENT},
+ * so the file channels use them without copying, and the reads reuse the buffers of the writes.
+ */
+@NotThreadSafe
+public class StripedFileSingleStreamSpiller
+        implements SingleStreamSpiller
+{
+    @VisibleForTesting
+    static final int ALIGNMENT = 4 * 1024;
+
+    private final List<FileHolder> targetFiles;
+    private final List<FileChannel> channels;
+    private final int stripeSize;
+    private final Closer closer = Closer.create();
+    private final PagesSerde serde;
+    private final SpillerStats spillerStats;
+    private final SpillContext localSpillContext;
+    private final LocalMemoryContext memoryContext;
+    private final Optional<SpillCipher> spillCipher;
+
+    private final ListeningExecutorService executor;
+    private final ListeningExecutorService ioExecutor;
+
+    // written stripes in stream order, and the end of the last stripe of each file
+    private final List<Stripe> stripes = new ArrayList<>();
+    private final long[] fileSizes;
+    // allocated on first use, and shared by the writes and then the reads
+    private final ByteBuffer[] stripeBuffers;
+    private final StripeOutputStream stripeOutput;
+
+    private boolean writable = true;
+    private boolean committed;
+    private volatile long spilledPagesInMemorySize;
+    private ListenableFuture<?> spillInProgress = Futures.immediateFuture(null);
+
+    public StripedFileSingleStreamSpiller(
+            PagesSerde serde,
+            ListeningExecutorService executor,
+            ListeningExecutorService ioExecutor,
+            List<Path> spillPaths,
+            int stripeSize,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext,
+            Optional<SpillCipher> spillCipher)
+    {
+        requireNonNull(spillPaths, "spillPaths is null");
+        checkArgument(!spillPaths.isEmpty(), "spillPaths is empty");
+        checkArgument(stripeSize > 0 && stripeSize % ALIGNMENT == 0, "stripeSize must be a positive multiple of %s", ALIGNMENT);
+        this.serde = requireNonNull(serde, "serde is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        this.ioExecutor = requireNonNull(ioExecutor, "ioExecutor is null");
+        this.stripeSize = stripeSize;
+        this.spillerStats = requireNonNull(spillerStats, "spillerStats is null");
+        this.localSpillContext = spillContext.newLocalSpillContext();
+        this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+        this.spillCipher = requireNonNull(spillCipher, "spillCipher is null");
+        checkState(!spillCipher.isPresent() || !spillCipher.get().isDestroyed(), "spillCipher is already destroyed");
+        this.spillCipher.ifPresent(cipher -> closer.register(cipher::destroy));
+        // As in FileSingleStreamSpiller, the memory of the buffers is reserved up front and released in close(),
+        // since the buffers are used by the spill and I/O threads, which can run concurrently with close()
+        this.memoryContext.setBytes(getBufferSizeInBytes(spillPaths.size(), stripeSize));
+
+        ImmutableList.Builder<FileHolder> targetFiles = ImmutableList.builder();
+        ImmutableList.Builder<FileChannel> channels = ImmutableList.builder();
+        try {
+            for (Path spillPath : spillPaths) {
+                FileHolder targetFile = closer.register(new FileHolder(Files.createTempFile(spillPath, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX)));
+                targetFiles.add(targetFile);
+                // registered after the file, so that it is closed before the file is deleted
+                channels.add(closer.register(targetFile.newFileChannel(READ, WRITE)));
+            }
+        }
+        catch (IOException e) {
+            close();
+            throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to create spill file: %s", e.getMessage()), e);
+        }
+        this.targetFiles = targetFiles.build();
+        this.channels = channels.build();
+        this.fileSizes = new long[spillPaths.size()];
+        this.stripeBuffers = new ByteBuffer[getStripeBufferCount(spillPaths.size())];
+        this.stripeOutput = new StripeOutputStream();
+    }
+
+    @VisibleForTesting
+    static long getBufferSizeInBytes(int fileCount, int stripeSize)
+    {
+        // the stripe buffers, each with room to be aligned, and the buffer of the slice output or input
+        return getStripeBufferCount(fileCount) * (long) (stripeSize + ALIGNMENT) + FileSingleStreamSpiller.BUFFER_SIZE;
+    }
+
+    private static int getStripeBufferCount(int fileCount)
+    {
+        return fileCount + 1;
+    }
+
+    @Override
+    public ListenableFuture<?> spill(Iterator<Page> pageIterator)
+    {
+        requireNonNull(pageIterator, "pageIterator is null");
+        checkNoSpillInProgress();
+        spillInProgress = executor.submit(() -> writePages(pageIterator));
+        return spillInProgress;
+    }
+
+    @Override
+    public long getSpilledPagesInMemorySize()
+    {
+        return spilledPagesInMemorySize;
+    }
+
+    @Override
+    public Iterator<Page> getSpilledPages()
+    {
+        checkNoSpillInProgress();
+        return readPages();
+    }
+
+    @Override
+    public ListenableFuture<List<Page>> getAllSpilledPages()
+    {
+        return executor.submit(() -> ImmutableList.copyOf(getSpilledPages()));
+    }
+
+    @Override
+    public void commit()
+    {
+        committed = true;
+    }
+
+    @VisibleForTesting
+    int getFileCount()
+    {
+        return targetFiles.size();
+    }
+
+    private void writePages(Iterator<Page> pageIterator)
+    {
+        checkState(writable, "Spilling no longer allowed. The spiller has been made non-writable on first read for subsequent reads to be consistent");
+        checkState(!committed, "Spilling no longer allowed. Spill file is already committed");
+        // closing the output writes the last partial stripe and waits for all writes
+        try (SliceOutput output = new OutputStreamSliceOutput(stripeOutput, FileSingleStreamSpiller.BUFFER_SIZE)) {
+            while (pageIterator.hasNext()) {
+                Page page = pageIterator.next();
+                spilledPagesInMemorySize += page.getSizeInBytes();
+                // page serialization requires  page.getSizeInBytes() + Integer.BYTES to fit in an integer
+                splitPage(page, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).stream()
+                        .map(serde::serialize)
+                        .forEach(serializedPage -> {
+                            long pageSize = serializedPage.getSizeInBytes();
+                            localSpillContext.updateBytes(pageSize);
+                            spillerStats.addToTotalSpilledBytes(pageSize);
+                            writeSerializedPage(output, serializedPage);
+                        });
+            }
+        }
+        catch (UncheckedIOException | IOException e) {
+            throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to spill pages: %s", e.getMessage()), e);
+        }
+    }
+
+    private Iterator<Page> readPages()
+    {
+        checkState(writable, "Repeated reads are disallowed to prevent potential resource leaks");
+        writable = false;
+
+        if (!committed) {
+            commit();
+        }
+
+        checkState(committed, "Cannot read pages since spill file is not committed");
+        StripeInputStream input = closer.register(new StripeInputStream());
+        Iterator<Page> deserializedPages = PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input, FileSingleStreamSpiller.BUFFER_SIZE));
+        Iterator<Page> compactPages = transform(deserializedPages, Page::compact);
+        spillerStats.addToTotalSpilledBytesRead(getSpilledPagesInMemorySize());
+        return compactPages;
+    }
+
+    @Override
+    public void close()
+    {
+        closer.register(localSpillContext);
+        closer.register(() -> memoryContext.setBytes(0));
+        try {
+            closer.close();
+        }
+        catch (IOException e) {
+            throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to close spiller: %s", e.getMessage()), e);
+        }
+    }
+
+    private void checkNoSpillInProgress()
+    {
+        checkState(spillInProgress.isDone(), "spill in progress");
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, Stripe stripe, ByteBuffer buffer)
+            throws IOException
+    {
+        buffer.clear();
+        buffer.limit(stripe.getLength());
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, stripe.getPosition() + buffer.position());
+            if (read < 0) {
+                throw new EOFException(format("Spill file ended before stripe at %s", stripe.getPosition()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private ByteBuffer getStripeBuffer(int index)
+    {
+        if (stripeBuffers[index] == null) {
+            stripeBuffers[index] = allocateAligned(stripeSize);
+        }
+        return stripeBuffers[index];
+    }
+
+    @VisibleForTesting
+    static ByteBuffer allocateAligned(int size)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size + ALIGNMENT);
+        long address = Slices.wrappedBuffer(buffer).getAddress();
+        int offset = toIntExact((ALIGNMENT - address % ALIGNMENT) % ALIGNMENT);
+        buffer.position(offset);
+        buffer.limit(offset + size);
+        return buffer.slice();
+    }
+
+    private static final class Stripe
+    {
+        private final int file;
+        private final long position;
+        private final int length;
+
+        private Stripe(int file, long position, int length)
+        {
+            this.file = file;
+            this.position = position;
+            this.length = length;
+        }
+
+        public int getFile()
+        {
+            return file;
+        }
+
+        public long getPosition()
+        {
+            return position;
+        }
+
+        public int getLength()
+        {
+            return length;
+        }
+    }
+
+    /**
+     * Fills a stripe buffer and writes it to the next file on the I/O executor, while the next stripe is
+     * filled in another buffer. Closing writes the partial stripe and waits for the writes, and the
+     * stream can be written again afterwards.
+     */
+    private class StripeOutputStream
+            extends OutputStream
+    {
+        private final List<ListenableFuture<?>> writes = new ArrayList<>(stripeBuffers.length);
+        private int currentBuffer;
+        private int nextFile;
+
+        private StripeOutputStream()
+        {
+            for (int i = 0; i < stripeBuffers.length; i++) {
+                writes.add(Futures.immediateFuture(null));
+            }
+        }
+
+        @Override
+        public void write(int value)
+                throws IOException
+        {
+            ByteBuffer buffer = getCurrentBuffer();
+            buffer.put((byte) value);
+            if (!buffer.hasRemaining()) {
+                writeStripe();
+            }
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length)
+                throws IOException
+        {
+            while (length > 0) {
+                ByteBuffer buffer = getCurrentBuffer();
+                int chunk = min(length, buffer.remaining());
+                buffer.put(source, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+                if (!buffer.hasRemaining()) {
+                    writeStripe();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            writeStripe();
+            for (ListenableFuture<?> write : writes) {
+                getFutureValue(write, IOException.class);
+            }
+        }
+
+        private ByteBuffer getCurrentBuffer()
+        {
+            return getStripeBuffer(currentBuffer);
+        }
+
+        private void writeStripe()
+                throws IOException
+        {
+            ByteBuffer buffer = getCurrentBuffer();
+            if (buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            int file = nextFile;
+            nextFile = (nextFile + 1) % channels.size();
+            long position = fileSizes[file];
+            stripes.add(new Stripe(file, position, buffer.remaining()));
+            fileSizes[file] = (position + buffer.remaining() + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+
+            FileChannel channel = channels.get(file);
+            writes.set(currentBuffer, ioExecutor.submit(() -> {
+                writeFully(channel, buffer, position);
+                return null;
+            }));
+
+            // wait until the oldest buffer is written before filling it. The files are written in turn
+            // and there is one buffer more than files, so the writes in flight go to different files.
+            currentBuffer = (currentBuffer + 1) % stripeBuffers.length;
+            getFutureValue(writes.get(currentBuffer), IOException.class);
+            getCurrentBuffer().clear();
+        }
+    }
+
+    /**
+     * Reads the stripes in order, with reads of the next stripes running ahead on the I/O executor.
+     */
+    private class StripeInputStream
+            extends InputStream
+    {
+        private final Iterator<Stripe> remainingStripes = stripes.iterator();
+        private final Deque<ListenableFuture<ByteBuffer>> readAhead = new ArrayDeque<>();
+        private final int readAheadStripes = channels.size();
+        // the buffers that are neither read into nor consumed
+        private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+        private ByteBuffer current;
+
+        private StripeInputStream()
+        {
+            for (int i = 0; i < stripeBuffers.length; i++) {
+                freeBuffers.add(getStripeBuffer(i));
+            }
+            scheduleReads();
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            if (!advance()) {
+                return -1;
+            }
+            return current.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] destination, int offset, int length)
+                throws IOException
+        {
+            if (length == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int chunk = min(length, current.remaining());
+            current.get(destination, offset, chunk);
+            return chunk;
+        }
+
+        @Override
+        public void close()
+        {
+            readAhead.forEach(read -> read.cancel(true));
+            readAhead.clear();
+        }
+
+        private boolean advance()
+                throws IOException
+        {
+            while (current == null || !current.hasRemaining()) {
+                if (current != null) {
+                    freeBuffers.add(current);
+                    current = null;
+                }
+                ListenableFuture<ByteBuffer> read = readAhead.poll();
+                if (read == null) {
+                    return false;
+                }
+                current = getFutureValue(read, IOException.class);
+                scheduleReads();
+            }
+            return true;
+        }
+
+        private void scheduleReads()
+        {
+            while (readAhead.size() < readAheadStripes && remainingStripes.hasNext()) {
+                Stripe stripe = remainingStripes.next();
+                FileChannel channel = channels.get(stripe.getFile());
+                ByteBuffer buffer = freeBuffers.remove();
+                readAhead.add(ioExecutor.submit(() -> readFully(channel, stripe, buffer)));
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableList;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
 
 import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.DecimalMax;
@@ -42,6 +43,7 @@ import static com.facebook.presto.sql.analyzer.FeaturesConfig.JoinNotNullInferen
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrategy.ORDER_BY_CREATE_TIME;
 import static com.facebook.presto.sql.tree.CreateView.Security.DEFINER;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
@@ -120,12 +122,14 @@ public class FeaturesConfig
     private boolean optimizeMixedDistinctAggregations;
     private boolean forceSingleNodeOutput = true;
     private boolean pagesIndexEagerCompactionEnabled;
+    private boolean pagesIndexPrefixSortEnabled = true;
     private boolean distributedSort = true;
     private boolean optimizeJoinsWithEmptySources;
     private boolean logFormattedQueryEnabled;
     private boolean logInvokedFunctionNamesEnabled;
 
     private boolean dictionaryAggregation;
+    private boolean fixedWidthGroupByHashEnabled;
     private boolean spillEnabled;
     private boolean joinSpillingEnabled = true;
     private List<Path> spillerSpillPaths = ImmutableList.of();
@@ -162,6 +166,7 @@ public class FeaturesConfig
     private int dynamicFilteringMaxPerDriverRowCount = 100;
     private DataSize dynamicFilteringMaxPerDriverSize = new DataSize(10, KILOBYTE);
     private int dynamicFilteringRangeRowLimitPerDriver;
+    private DataSize dynamicFilteringMaxBloomFilterSizePerDriver = new DataSize(0, BYTE);
 
     private boolean fragmentResultCachingEnabled;
 
@@ -174,6 +179,14 @@ public class FeaturesConfig
     private boolean jsonSerdeCodeGenerationEnabled;
     private int maxConcurrentMaterializations = 3;
     private boolean optimizedRepartitioningEnabled;
+    private boolean optimizedRepartitioningBitPackingEnabled;
+    private boolean partitionedOutputHotKeyDetectionEnabled;
+    private boolean lockFreeLocalExchangeEnabled;
+    private boolean optimizedRepartitioningDictionaryEncodingEnabled;
+    private boolean exchangePageCoalescingEnabled;
+    private DataSize exchangeMinOutputPageSize = new DataSize(500, KILOBYTE);
+    private int exchangeMinOutputPageRowCount = 256;
+    private DataSize exchangeMaxOutputPageSize = new DataSize(4, MEGABYTE);
 
     private boolean pushdownSubfieldsEnabled;
     private boolean pushdownSubfieldsFromLambdaEnabled;
@@ -291,6 +304,9 @@ public class FeaturesConfig
 
     private boolean prestoSparkExecutionEnvironment;
     private boolean singleNodeExecutionEnabled;
+    private boolean joinHashTableOffHeapEnabled;
+    private int joinHashBuildParallelism = 1;
+    private int joinHashBuildThreads = Runtime.getRuntime().availableProcessors();
 
     public enum PartitioningPrecisionStrategy
     {
@@ -1119,6 +1135,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isFixedWidthGroupByHashEnabled()
+    {
+        return fixedWidthGroupByHashEnabled;
+    }
+
+    @Config("fixed-width-group-by-hash-enabled")
+    @ConfigDescription("Use a specialized group by hash for two to four fixed width keys")
+    public FeaturesConfig setFixedWidthGroupByHashEnabled(boolean fixedWidthGroupByHashEnabled)
+    {
+        this.fixedWidthGroupByHashEnabled = fixedWidthGroupByHashEnabled;
+        return this;
+    }
+
     public boolean isConfidenceBasedBroadcastEnabled()
     {
         return confidenceBasedBroadcastEnabled;
@@ -1445,6 +1474,20 @@ public class FeaturesConfig
         return this;
     }
 
+    @MaxDataSize("16MB")
+    public DataSize getDynamicFilteringMaxBloomFilterSizePerDriver()
+    {
+        return dynamicFilteringMaxBloomFilterSizePerDriver;
+    }
+
+    @Config("dynamic-filtering-max-bloom-filter-size-per-driver")
+    @ConfigDescription("Maximum size of the Bloom filter collected per build-side column and driver once there are too many values for an exact dynamic filter, 0 disables Bloom filters")
+    public FeaturesConfig setDynamicFilteringMaxBloomFilterSizePerDriver(DataSize dynamicFilteringMaxBloomFilterSizePerDriver)
+    {
+        this.dynamicFilteringMaxBloomFilterSizePerDriver = dynamicFilteringMaxBloomFilterSizePerDriver;
+        return this;
+    }
+
     public boolean isFragmentResultCachingEnabled()
     {
         return fragmentResultCachingEnabled;
@@ -1543,6 +1586,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isPagesIndexPrefixSortEnabled()
+    {
+        return pagesIndexPrefixSortEnabled;
+    }
+
+    @Config("pages-index.prefix-sort-enabled")
+    @ConfigDescription("Sort on normalized prefixes of the first sort key before comparing the full rows")
+    public FeaturesConfig setPagesIndexPrefixSortEnabled(boolean pagesIndexPrefixSortEnabled)
+    {
+        this.pagesIndexPrefixSortEnabled = pagesIndexPrefixSortEnabled;
+        return this;
+    }
+
     @MaxDataSize("1MB")
     public DataSize getFilterAndProjectMinOutputPageSize()
     {
@@ -1721,6 +1777,113 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isOptimizedRepartitioningBitPackingEnabled()
+    {
+        return optimizedRepartitioningBitPackingEnabled;
+    }
+
+    @Config("experimental.optimized-repartitioning-bit-packing-enabled")
+    @ConfigDescription("Experimental: Bit pack bigint columns in pages written by optimized repartitioning")
+    public FeaturesConfig setOptimizedRepartitioningBitPackingEnabled(boolean optimizedRepartitioningBitPackingEnabled)
+    {
+        this.optimizedRepartitioningBitPackingEnabled = optimizedRepartitioningBitPackingEnabled;
+        return this;
+    }
+
+    public boolean isPartitionedOutputHotKeyDetectionEnabled()
+    {
+        return partitionedOutputHotKeyDetectionEnabled;
+    }
+
+    @Config("experimental.partitioned-output-hot-key-detection-enabled")
+    @ConfigDescription("Experimental: Sample the partitioning keys of partitioned outputs and report the keys that make up a large share of the rows")
+    public FeaturesConfig setPartitionedOutputHotKeyDetectionEnabled(boolean partitionedOutputHotKeyDetectionEnabled)
+    {
+        this.partitionedOutputHotKeyDetectionEnabled = partitionedOutputHotKeyDetectionEnabled;
+        return this;
+    }
+
+    public boolean isLockFreeLocalExchangeEnabled()
+    {
+        return lockFreeLocalExchangeEnabled;
+    }
+
+    @Config("experimental.lock-free-local-exchange-enabled")
+    @ConfigDescription("Experimental: Hand pages between the pipelines of a local exchange through lock-free ring buffers")
+    public FeaturesConfig setLockFreeLocalExchangeEnabled(boolean lockFreeLocalExchangeEnabled)
+    {
+        this.lockFreeLocalExchangeEnabled = lockFreeLocalExchangeEnabled;
+        return this;
+    }
+
+    public boolean isOptimizedRepartitioningDictionaryEncodingEnabled()
+    {
+        return optimizedRepartitioningDictionaryEncodingEnabled;
+    }
+
+    @Config("experimental.optimized-repartitioning-dictionary-encoding-enabled")
+    @ConfigDescription("Experimental: Keep dictionary encoded variable width columns dictionary encoded in optimized repartitioning")
+    public FeaturesConfig setOptimizedRepartitioningDictionaryEncodingEnabled(boolean optimizedRepartitioningDictionaryEncodingEnabled)
+    {
+        this.optimizedRepartitioningDictionaryEncodingEnabled = optimizedRepartitioningDictionaryEncodingEnabled;
+        return this;
+    }
+
+    public boolean isExchangePageCoalescingEnabled()
+    {
+        return exchangePageCoalescingEnabled;
+    }
+
+    @Config("experimental.exchange-page-coalescing-enabled")
+    @ConfigDescription("Experimental: Merge small pages and split large pages received by exchanges")
+    public FeaturesConfig setExchangePageCoalescingEnabled(boolean exchangePageCoalescingEnabled)
+    {
+        this.exchangePageCoalescingEnabled = exchangePageCoalescingEnabled;
+        return this;
+    }
+
+    @MaxDataSize("1MB")
+    public DataSize getExchangeMinOutputPageSize()
+    {
+        return exchangeMinOutputPageSize;
+    }
+
+    @Config("experimental.exchange-min-output-page-size")
+    @ConfigDescription("Experimental: Pages received by exchanges that are smaller than this and have fewer rows than the minimum row count are merged")
+    public FeaturesConfig setExchangeMinOutputPageSize(DataSize exchangeMinOutputPageSize)
+    {
+        this.exchangeMinOutputPageSize = exchangeMinOutputPageSize;
+        return this;
+    }
+
+    @Min(0)
+    public int getExchangeMinOutputPageRowCount()
+    {
+        return exchangeMinOutputPageRowCount;
+    }
+
+    @Config("experimental.exchange-min-output-page-row-count")
+    @ConfigDescription("Experimental: Pages received by exchanges that have fewer rows than this and are smaller than the minimum size are merged")
+    public FeaturesConfig setExchangeMinOutputPageRowCount(int exchangeMinOutputPageRowCount)
+    {
+        this.exchangeMinOutputPageRowCount = exchangeMinOutputPageRowCount;
+        return this;
+    }
+
+    @MinDataSize("1MB")
+    public DataSize getExchangeMaxOutputPageSize()
+    {
+        return exchangeMaxOutputPageSize;
+    }
+
+    @Config("experimental.exchange-max-output-page-size")
+    @ConfigDescription("Experimental: Pages received by exchanges that are larger than this are split")
+    public FeaturesConfig setExchangeMaxOutputPageSize(DataSize exchangeMaxOutputPageSize)
+    {
+        this.exchangeMaxOutputPageSize = exchangeMaxOutputPageSize;
+        return this;
+    }
+
     public boolean isListBuiltInFunctionsOnly()
     {
         return listBuiltInFunctionsOnly;
@@ -2889,4 +3052,45 @@ public class FeaturesConfig
         this.singleNodeExecutionEnabled = singleNodeExecutionEnabled;
         return this;
     }
+
+    public boolean isJoinHashTableOffHeapEnabled()
+    {
+        return joinHashTableOffHeapEnabled;
+    }
+
+    @Config("join-hash-table-off-heap-enabled")
+    @ConfigDescription("Keep the hash table of join build sides in off-heap memory")
+    public FeaturesConfig setJoinHashTableOffHeapEnabled(boolean joinHashTableOffHeapEnabled)
+    {
+        this.joinHashTableOffHeapEnabled = joinHashTableOffHeapEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getJoinHashBuildParallelism()
+    {
+        return joinHashBuildParallelism;
+    }
+
+    @Config("join-hash-build-parallelism")
+    @ConfigDescription("Maximum number of threads used to build the hash table of one join build partition")
+    public FeaturesConfig setJoinHashBuildParallelism(int joinHashBuildParallelism)
+    {
+        this.joinHashBuildParallelism = joinHashBuildParallelism;
+        return this;
+    }
+
+    @Min(1)
+    public int getJoinHashBuildThreads()
+    {
+        return joinHashBuildThreads;
+    }
+
+    @Config("join-hash-build-threads")
+    @ConfigDescription("Number of threads shared by all parallel builds of join hash tables")
+    public FeaturesConfig setJoinHashBuildThreads(int joinHashBuildThreads)
+    {
+        this.joinHashBuildThreads = joinHashBuildThreads;
+        return this;
+    }
 }
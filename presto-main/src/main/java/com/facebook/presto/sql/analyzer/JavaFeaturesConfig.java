@@ -28,10 +28,12 @@ public class JavaFeaturesConfig
     private boolean distinctAggregationLargeBlockSpillEnabled;
     private boolean orderByAggregationSpillEnabled = true;
     private boolean orderBySpillEnabled = true;
+    private boolean orderByRevokeCompressionEnabled;
     private boolean windowSpillEnabled = true;
     private DataSize distinctAggregationLargeBlockSizeThreshold = new DataSize(50, MEGABYTE);
     private DataSize topNOperatorUnspillMemoryLimit = new DataSize(4, MEGABYTE);
     private DataSize aggregationOperatorUnspillMemoryLimit = new DataSize(4, MEGABYTE);
+    private DataSize windowOperatorUnspillMemoryLimit = new DataSize(4, MEGABYTE);
 
     public boolean isOrderBySpillEnabled()
     {
@@ -46,6 +48,19 @@ public class JavaFeaturesConfig
         return this;
     }
 
+    public boolean isOrderByRevokeCompressionEnabled()
+    {
+        return orderByRevokeCompressionEnabled;
+    }
+
+    @Config("experimental.order-by-revoke-compression-enabled")
+    @ConfigDescription("Compress the rows of Order-by Operator in memory on the first memory revoke, and only spill on the next ones")
+    public JavaFeaturesConfig setOrderByRevokeCompressionEnabled(boolean orderByRevokeCompressionEnabled)
+    {
+        this.orderByRevokeCompressionEnabled = orderByRevokeCompressionEnabled;
+        return this;
+    }
+
     public boolean isWindowSpillEnabled()
     {
         return windowSpillEnabled;
@@ -173,4 +188,17 @@ public class JavaFeaturesConfig
         this.topNOperatorUnspillMemoryLimit = aggregationOperatorUnspillMemoryLimit;
         return this;
     }
+
+    public DataSize getWindowOperatorUnspillMemoryLimit()
+    {
+        return windowOperatorUnspillMemoryLimit;
+    }
+
+    @Config("experimental.window-operator-unspill-memory-limit")
+    @ConfigDescription("Rows buffered by a window operator that has spilled are spilled too before merging if they take more memory than this")
+    public JavaFeaturesConfig setWindowOperatorUnspillMemoryLimit(DataSize windowOperatorUnspillMemoryLimit)
+    {
+        this.windowOperatorUnspillMemoryLimit = windowOperatorUnspillMemoryLimit;
+        return this;
+    }
 }
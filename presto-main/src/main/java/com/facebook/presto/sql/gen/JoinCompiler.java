@@ -40,11 +40,16 @@ import com.facebook.presto.common.type.StandardTypes;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.metadata.FunctionAndTypeManager;
 import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.operator.FixedWidthGroupByHash;
+import com.facebook.presto.operator.GroupByHash;
+import com.facebook.presto.operator.HeapPagesHashStorage;
 import com.facebook.presto.operator.JoinHash;
 import com.facebook.presto.operator.JoinHashSupplier;
 import com.facebook.presto.operator.LookupSourceSupplier;
+import com.facebook.presto.operator.OffHeapPagesHashStorage;
 import com.facebook.presto.operator.PagesHash;
 import com.facebook.presto.operator.PagesHashStrategy;
+import com.facebook.presto.operator.UpdateMemory;
 import com.facebook.presto.spi.function.JavaScalarFunctionImplementation;
 import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
 import com.google.common.cache.CacheBuilder;
@@ -60,10 +65,12 @@ import javax.inject.Inject;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.Executor;
 import java.util.stream.IntStream;
 
 import static com.facebook.presto.bytecode.Access.FINAL;
@@ -105,6 +112,11 @@ public class JoinCompiler
             .build(CacheLoader.from(key ->
                     internalCompileHashStrategy(key.getTypes(), key.getOutputChannels(), key.getJoinChannels(), key.getSortChannel())));
 
+    private final LoadingCache<List<Type>, FixedWidthGroupByHashFactory> fixedWidthGroupByHashFactories = CacheBuilder.newBuilder()
+            .recordStats()
+            .maximumSize(1000)
+            .build(CacheLoader.from(this::internalCompileFixedWidthGroupByHashFactory));
+
     public LookupSourceSupplierFactory compileLookupSourceFactory(List<? extends Type> types, List<Integer> joinChannels, Optional<Integer> sortChannel)
     {
         return compileLookupSourceFactory(types, joinChannels, sortChannel, Optional.empty());
@@ -130,6 +142,13 @@ public class JoinCompiler
         return new CacheStatsMBean(hashStrategies);
     }
 
+    @Managed
+    @Nested
+    public CacheStatsMBean getFixedWidthGroupByHashStats()
+    {
+        return new CacheStatsMBean(fixedWidthGroupByHashFactories);
+    }
+
     public LookupSourceSupplierFactory compileLookupSourceFactory(List<? extends Type> types, List<Integer> joinChannels, Optional<Integer> sortChannel, Optional<List<Integer>> outputChannels)
     {
         return lookupSourceFactories.getUnchecked(new CacheKey(
@@ -157,6 +176,12 @@ public class JoinCompiler
                 Optional.empty())));
     }
 
+    public FixedWidthGroupByHashFactory compileFixedWidthGroupByHashFactory(List<? extends Type> hashTypes)
+    {
+        requireNonNull(hashTypes, "hashTypes is null");
+        return fixedWidthGroupByHashFactories.getUnchecked(ImmutableList.copyOf(hashTypes));
+    }
+
     private List<Integer> rangeList(int endExclusive)
     {
         return IntStream.range(0, endExclusive)
@@ -173,11 +198,25 @@ public class JoinCompiler
                 LookupSourceSupplier.class,
                 JoinHashSupplier.class,
                 JoinHash.class,
-                PagesHash.class);
+                PagesHash.class,
+                HeapPagesHashStorage.class,
+                OffHeapPagesHashStorage.class);
 
         return new LookupSourceSupplierFactory(joinHashSupplierClass, new PagesHashStrategyFactory(pagesHashStrategyClass));
     }
 
+    private FixedWidthGroupByHashFactory internalCompileFixedWidthGroupByHashFactory(List<Type> hashTypes)
+    {
+        // a private copy of the class per key types, so that the JIT profile of one key shape does not pollute another
+        Class<? extends GroupByHash> groupByHashClass = IsolatedClass.isolateClass(
+                new DynamicClassLoader(getClass().getClassLoader()),
+                GroupByHash.class,
+                FixedWidthGroupByHash.class,
+                Arrays.stream(FixedWidthGroupByHash.class.getDeclaredClasses()).toArray(Class[]::new));
+
+        return new FixedWidthGroupByHashFactory(groupByHashClass, hashTypes);
+    }
+
     private static FieldDefinition generateInstanceSize(ClassDefinition definition)
     {
         // Store instance size in static field
@@ -892,7 +931,7 @@ public class JoinCompiler
         {
             this.pagesHashStrategyFactory = pagesHashStrategyFactory;
             try {
-                constructor = joinHashSupplierClass.getConstructor(Session.class, PagesHashStrategy.class, AdaptiveLongBigArray.class, int.class, List.class, Optional.class, Optional.class, List.class);
+                constructor = joinHashSupplierClass.getConstructor(Session.class, PagesHashStrategy.class, AdaptiveLongBigArray.class, int.class, List.class, Optional.class, Optional.class, List.class, Executor.class, boolean.class);
             }
             catch (NoSuchMethodException e) {
                 throw new RuntimeException(e);
@@ -907,11 +946,40 @@ public class JoinCompiler
                 OptionalInt hashChannel,
                 Optional<JoinFilterFunctionFactory> filterFunctionFactory,
                 Optional<Integer> sortChannel,
-                List<JoinFilterFunctionFactory> searchFunctionFactories)
+                List<JoinFilterFunctionFactory> searchFunctionFactories,
+                Executor buildExecutor,
+                boolean offHeap)
         {
             PagesHashStrategy pagesHashStrategy = pagesHashStrategyFactory.createPagesHashStrategy(channels, hashChannel);
             try {
-                return constructor.newInstance(session, pagesHashStrategy, addresses, positionCount, channels, filterFunctionFactory, sortChannel, searchFunctionFactories);
+                return constructor.newInstance(session, pagesHashStrategy, addresses, positionCount, channels, filterFunctionFactory, sortChannel, searchFunctionFactories, buildExecutor, offHeap);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public static class FixedWidthGroupByHashFactory
+    {
+        private final Constructor<? extends GroupByHash> constructor;
+        private final List<Type> hashTypes;
+
+        public FixedWidthGroupByHashFactory(Class<? extends GroupByHash> groupByHashClass, List<Type> hashTypes)
+        {
+            this.hashTypes = ImmutableList.copyOf(requireNonNull(hashTypes, "hashTypes is null"));
+            try {
+                constructor = groupByHashClass.getConstructor(List.class, int[].class, Optional.class, int.class, UpdateMemory.class);
+            }
+            catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public GroupByHash createGroupByHash(int[] hashChannels, Optional<Integer> inputHashChannel, int expectedSize, UpdateMemory updateMemory)
+        {
+            try {
+                return constructor.newInstance(hashTypes, hashChannels, inputHashChannel, expectedSize, updateMemory);
             }
             catch (ReflectiveOperationException e) {
                 throw new RuntimeException(e);
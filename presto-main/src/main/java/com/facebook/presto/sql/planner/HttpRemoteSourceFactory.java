@@ -19,6 +19,7 @@ import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.operator.ExchangeOperator.ExchangeOperatorFactory;
+import com.facebook.presto.operator.ExchangePageCompactor;
 import com.facebook.presto.operator.MergeOperator.MergeOperatorFactory;
 import com.facebook.presto.operator.SourceOperatorFactory;
 import com.facebook.presto.operator.TaskExchangeClientManager;
@@ -26,9 +27,15 @@ import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.gen.OrderingCompiler;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
+import static com.facebook.presto.SystemSessionProperties.getExchangeMaxOutputPageSize;
+import static com.facebook.presto.SystemSessionProperties.getExchangeMinOutputPageRowCount;
+import static com.facebook.presto.SystemSessionProperties.getExchangeMinOutputPageSize;
 import static com.facebook.presto.SystemSessionProperties.isExchangeChecksumEnabled;
 import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
+import static com.facebook.presto.SystemSessionProperties.isExchangePageCoalescingEnabled;
 import static java.util.Objects.requireNonNull;
 
 public class HttpRemoteSourceFactory
@@ -48,11 +55,19 @@ public class HttpRemoteSourceFactory
     @Override
     public SourceOperatorFactory createRemoteSource(Session session, int operatorId, PlanNodeId planNodeId, List<Type> types)
     {
+        Optional<Supplier<ExchangePageCompactor>> pageCompactorFactory = Optional.empty();
+        if (isExchangePageCoalescingEnabled(session)) {
+            long minOutputPageSize = getExchangeMinOutputPageSize(session).toBytes();
+            int minOutputPageRowCount = getExchangeMinOutputPageRowCount(session);
+            long maxOutputPageSize = getExchangeMaxOutputPageSize(session).toBytes();
+            pageCompactorFactory = Optional.of(() -> new ExchangePageCompactor(types, minOutputPageSize, minOutputPageRowCount, maxOutputPageSize));
+        }
         return new ExchangeOperatorFactory(
                 operatorId,
                 planNodeId,
                 taskExchangeClientManager,
-                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session), isExchangeChecksumEnabled(session)));
+                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session), isExchangeChecksumEnabled(session)),
+                pageCompactorFactory);
     }
 
     @Override
@@ -14,9 +14,11 @@
 package com.facebook.presto.sql.planner;
 
 import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterExtractResult;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
+import com.facebook.presto.operator.BlockedBloomFilter;
 import com.facebook.presto.spi.plan.AbstractJoinNode;
 import com.facebook.presto.spi.plan.FilterNode;
 import com.facebook.presto.spi.plan.PlanNode;
@@ -31,10 +33,13 @@ import com.google.common.util.concurrent.SettableFuture;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import static com.facebook.presto.common.function.OperatorType.EQUAL;
 import static com.facebook.presto.expressions.DynamicFilters.extractDynamicFilters;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Verify.verify;
@@ -51,12 +56,18 @@ public class LocalDynamicFilter
 
     private final SettableFuture<TupleDomain<VariableReferenceExpression>> resultFuture;
 
+    // Bloom filters of the probe variables, set before resultFuture.
+    private final SettableFuture<Map<VariableReferenceExpression, BlockedBloomFilter>> bloomFiltersFuture;
+
     // Number of build-side partitions to be collected.
     private final int partitionCount;
 
     // The resulting predicates from each build-side partition.
     private final List<TupleDomain<String>> partitions;
 
+    // The Bloom filters from each build-side partition, by dynamic filter ID.
+    private final List<Map<String, BlockedBloomFilter>> partitionBloomFilters;
+
     public LocalDynamicFilter(Multimap<String, DynamicFilterPlaceholder> probeVariables, Map<String, Integer> buildChannels, int partitionCount)
     {
         this.probeVariables = requireNonNull(probeVariables, "probeVariables is null");
@@ -64,25 +75,91 @@ public class LocalDynamicFilter
         verify(probeVariables.keySet().equals(buildChannels.keySet()), "probeVariables and buildChannels must have same keys");
 
         this.resultFuture = SettableFuture.create();
+        this.bloomFiltersFuture = SettableFuture.create();
 
         this.partitionCount = partitionCount;
         this.partitions = new ArrayList<>(partitionCount);
+        this.partitionBloomFilters = new ArrayList<>(partitionCount);
     }
 
-    private synchronized void addPartition(TupleDomain<String> tupleDomain)
+    private synchronized void addPartition(TupleDomain<String> tupleDomain, Map<String, BlockedBloomFilter> bloomFilters)
     {
         // Called concurrently by each DynamicFilterSourceOperator instance (when collection is over).
         verify(partitions.size() < partitionCount);
         // NOTE: may result in a bit more relaxed constraint if there are multiple columns and multiple rows.
         // See the comment at TupleDomain::columnWiseUnion() for more details.
         partitions.add(tupleDomain);
+        partitionBloomFilters.add(bloomFilters);
         if (partitions.size() == partitionCount) {
             // No more partitions are left to be processed.
-            TupleDomain<VariableReferenceExpression> result = convertTupleDomain(TupleDomain.columnWiseUnion(partitions));
+            TupleDomain<String> union = TupleDomain.columnWiseUnion(partitions);
+            verify(bloomFiltersFuture.set(union.isNone() ? ImmutableMap.of() : convertBloomFilters(unionBloomFilters())), "dynamic filter Bloom filters are provided more than once");
+            TupleDomain<VariableReferenceExpression> result = convertTupleDomain(union);
             verify(resultFuture.set(result), "dynamic filter result is provided more than once");
         }
     }
 
+    private Map<String, BlockedBloomFilter> unionBloomFilters()
+    {
+        ImmutableMap.Builder<String, BlockedBloomFilter> result = ImmutableMap.builder();
+        for (String filterId : buildChannels.keySet()) {
+            Optional<BlockedBloomFilter> first = partitionBloomFilters.stream()
+                    .map(bloomFilters -> bloomFilters.get(filterId))
+                    .filter(Objects::nonNull)
+                    .findFirst();
+            if (!first.isPresent()) {
+                continue;
+            }
+            BlockedBloomFilter union = new BlockedBloomFilter(first.get().getType(), first.get().getBlockCount());
+            if (addPartitionsToBloomFilter(filterId, union)) {
+                result.put(filterId, union);
+            }
+        }
+        return result.build();
+    }
+
+    private boolean addPartitionsToBloomFilter(String filterId, BlockedBloomFilter union)
+    {
+        for (int i = 0; i < partitions.size(); i++) {
+            BlockedBloomFilter bloomFilter = partitionBloomFilters.get(i).get(filterId);
+            if (bloomFilter != null) {
+                union.merge(bloomFilter);
+                continue;
+            }
+            TupleDomain<String> partition = partitions.get(i);
+            if (partition.isNone()) {
+                continue;
+            }
+            // partitions that stayed small enough collected the exact values instead
+            Domain domain = partition.getDomains().get().get(filterId);
+            if (domain == null) {
+                // the partition gave up on this filter, so any value may match
+                return false;
+            }
+            for (Range range : domain.getValues().getRanges().getOrderedRanges()) {
+                if (!range.isSingleValue()) {
+                    return false;
+                }
+                union.add((long) range.getSingleValue());
+            }
+        }
+        return true;
+    }
+
+    private Map<VariableReferenceExpression, BlockedBloomFilter> convertBloomFilters(Map<String, BlockedBloomFilter> bloomFilters)
+    {
+        ImmutableMap.Builder<VariableReferenceExpression, BlockedBloomFilter> builder = ImmutableMap.builder();
+        for (Map.Entry<String, BlockedBloomFilter> entry : bloomFilters.entrySet()) {
+            for (DynamicFilterPlaceholder placeholder : probeVariables.get(entry.getKey())) {
+                // only equality comparisons can be answered with set membership
+                if (placeholder.getOperator() == EQUAL) {
+                    builder.put((VariableReferenceExpression) placeholder.getInput(), entry.getValue());
+                }
+            }
+        }
+        return builder.build();
+    }
+
     private TupleDomain<VariableReferenceExpression> convertTupleDomain(TupleDomain<String> result)
     {
         if (result.isNone()) {
@@ -156,7 +233,17 @@ public class LocalDynamicFilter
         return resultFuture;
     }
 
+    public ListenableFuture<Map<VariableReferenceExpression, BlockedBloomFilter>> getBloomFiltersFuture()
+    {
+        return bloomFiltersFuture;
+    }
+
     public Consumer<TupleDomain<String>> getTupleDomainConsumer()
+    {
+        return tupleDomain -> addPartition(tupleDomain, ImmutableMap.of());
+    }
+
+    public BiConsumer<TupleDomain<String>, Map<String, BlockedBloomFilter>> getPartitionConsumer()
     {
         return this::addPartition;
     }
@@ -14,11 +14,16 @@
 package com.facebook.presto.sql.planner;
 
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.operator.BlockedBloomFilter;
 import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
 
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.util.Map;
+
 @ThreadSafe
 public class LocalDynamicFiltersCollector
 {
@@ -29,9 +34,16 @@ public class LocalDynamicFiltersCollector
     @GuardedBy ("this")
     private TupleDomain<VariableReferenceExpression> predicate;
 
+    /**
+     * Bloom filters that every matching row must pass in addition to the predicate.
+     */
+    @GuardedBy ("this")
+    private ListMultimap<VariableReferenceExpression, BlockedBloomFilter> bloomFilters;
+
     public LocalDynamicFiltersCollector()
     {
         this.predicate = TupleDomain.all();
+        this.bloomFilters = ImmutableListMultimap.of();
     }
 
     public synchronized TupleDomain<VariableReferenceExpression> getPredicate()
@@ -43,4 +55,20 @@ public class LocalDynamicFiltersCollector
     {
         this.predicate = this.predicate.intersect(predicate);
     }
+
+    public synchronized ListMultimap<VariableReferenceExpression, BlockedBloomFilter> getBloomFilters()
+    {
+        return bloomFilters;
+    }
+
+    public synchronized void addBloomFilters(Map<VariableReferenceExpression, BlockedBloomFilter> bloomFilters)
+    {
+        if (bloomFilters.isEmpty()) {
+            return;
+        }
+        ImmutableListMultimap.Builder<VariableReferenceExpression, BlockedBloomFilter> builder = ImmutableListMultimap.builder();
+        builder.putAll(this.bloomFilters);
+        bloomFilters.forEach(builder::put);
+        this.bloomFilters = builder.build();
+    }
 }
@@ -53,6 +53,7 @@ import com.facebook.presto.metadata.FunctionAndTypeManager;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.operator.AggregationOperator.AggregationOperatorFactory;
 import com.facebook.presto.operator.AssignUniqueIdOperator;
+import com.facebook.presto.operator.BlockedBloomFilter;
 import com.facebook.presto.operator.DeleteOperator.DeleteOperatorFactory;
 import com.facebook.presto.operator.DevNullOperator.DevNullOperatorFactory;
 import com.facebook.presto.operator.DriverFactory;
@@ -74,6 +75,7 @@ import com.facebook.presto.operator.LookupJoinOperators;
 import com.facebook.presto.operator.LookupOuterOperator.LookupOuterOperatorFactory;
 import com.facebook.presto.operator.LookupSourceFactory;
 import com.facebook.presto.operator.MarkDistinctOperator.MarkDistinctOperatorFactory;
+import com.facebook.presto.operator.MergeJoinOperator.MergeJoinOperatorFactory;
 import com.facebook.presto.operator.MetadataDeleteOperator.MetadataDeleteOperatorFactory;
 import com.facebook.presto.operator.NestedLoopJoinBridge;
 import com.facebook.presto.operator.NestedLoopJoinPagesSupplier;
@@ -153,6 +155,7 @@ import com.facebook.presto.spi.plan.JoinDistributionType;
 import com.facebook.presto.spi.plan.JoinNode;
 import com.facebook.presto.spi.plan.LimitNode;
 import com.facebook.presto.spi.plan.MarkDistinctNode;
+import com.facebook.presto.spi.plan.MergeJoinNode;
 import com.facebook.presto.spi.plan.OrderingScheme;
 import com.facebook.presto.spi.plan.OutputNode;
 import com.facebook.presto.spi.plan.PartitioningScheme;
@@ -223,11 +226,13 @@ import com.google.common.collect.ContiguousSet;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
@@ -255,6 +260,7 @@ import java.util.stream.IntStream;
 
 import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
 import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationRowsReductionRatioThreshold;
+import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxBloomFilterSizePerDriver;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverRowCount;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverSize;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringRangeRowLimitPerDriver;
@@ -302,9 +308,11 @@ import static com.facebook.presto.operator.aggregation.GenericAccumulatorFactory
 import static com.facebook.presto.operator.unnest.UnnestOperator.UnnestOperatorFactory;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.getAggregationOperatorUnspillMemoryLimit;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.getTopNOperatorUnspillMemoryLimit;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.getWindowOperatorUnspillMemoryLimit;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isAggregationSpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isDistinctAggregationSpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isOrderByAggregationSpillEnabled;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isOrderByRevokeCompressionEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isOrderBySpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isTopNSpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isWindowSpillEnabled;
@@ -325,6 +333,7 @@ import static com.facebook.presto.sql.analyzer.ExpressionTreeUtils.createSymbolR
 import static com.facebook.presto.sql.gen.LambdaBytecodeGenerator.compileLambdaProvider;
 import static com.facebook.presto.sql.planner.RowExpressionInterpreter.rowExpressionInterpreter;
 import static com.facebook.presto.sql.planner.SortExpressionExtractor.getSortExpressionContext;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.plan.AssignmentUtils.identityAssignments;
 import static com.facebook.presto.sql.relational.Expressions.constant;
 import static com.facebook.presto.sql.tree.SortItem.Ordering.ASCENDING;
@@ -1204,6 +1213,7 @@ public class LocalExecutionPlanner
                     pagesIndexFactory,
                     isWindowSpillEnabled(session),
                     spillerFactory,
+                    getWindowOperatorUnspillMemoryLimit(session),
                     orderingCompiler);
 
             return new PhysicalOperation(operatorFactory, outputMappings.build(), context, source);
@@ -1254,6 +1264,10 @@ public class LocalExecutionPlanner
             }
 
             boolean spillEnabled = isOrderBySpillEnabled(context.getSession());
+            Optional<PagesSerdeFactory> revokeCompressionSerdeFactory = Optional.empty();
+            if (isOrderByRevokeCompressionEnabled(context.getSession())) {
+                revokeCompressionSerdeFactory = Optional.of(new PagesSerdeFactory(blockEncodingSerde, true));
+            }
 
             OperatorFactory operator = new OrderByOperatorFactory(
                     context.getNextOperatorId(),
@@ -1266,7 +1280,8 @@ public class LocalExecutionPlanner
                     pagesIndexFactory,
                     spillEnabled,
                     Optional.of(spillerFactory),
-                    orderingCompiler);
+                    orderingCompiler,
+                    revokeCompressionSerdeFactory);
 
             return new PhysicalOperation(operator, source.getLayout(), context, source);
         }
@@ -1500,6 +1515,7 @@ public class LocalExecutionPlanner
 
             Optional<List<DynamicFilterPlaceholder>> dynamicFilters = extractDynamicFilterResult.map(DynamicFilterExtractResult::getDynamicConjuncts);
             Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier = Optional.empty();
+            Optional<Supplier<ListMultimap<Integer, BlockedBloomFilter>>> dynamicBloomFilterSupplier = Optional.empty();
             if (dynamicFilters.isPresent() && !dynamicFilters.get().isEmpty() && sourceNode instanceof TableScanNode) {
                 TableScanNode tableScanNode = (TableScanNode) sourceNode;
                 LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
@@ -1507,6 +1523,14 @@ public class LocalExecutionPlanner
                     TupleDomain<VariableReferenceExpression> predicate = collector.getPredicate();
                     return predicate.transform(tableScanNode.getAssignments()::get);
                 });
+                Map<VariableReferenceExpression, Integer> scanLayout = sourceLayout;
+                dynamicBloomFilterSupplier = Optional.of(() -> {
+                    ImmutableListMultimap.Builder<Integer, BlockedBloomFilter> bloomFilters = ImmutableListMultimap.builder();
+                    collector.getBloomFilters().entries().stream()
+                            .filter(entry -> scanLayout.containsKey(entry.getKey()))
+                            .forEach(entry -> bloomFilters.put(scanLayout.get(entry.getKey()), entry.getValue()));
+                    return bloomFilters.build();
+                });
             }
 
             // compiler uses inputs instead of variables, so rewrite the expressions first
@@ -1543,6 +1567,7 @@ public class LocalExecutionPlanner
                             columns,
                             projections.stream().map(RowExpression::getType).collect(toImmutableList()),
                             dynamicFilterSupplier,
+                            dynamicBloomFilterSupplier,
                             getFilterAndProjectMinOutputPageSize(session),
                             getFilterAndProjectMinOutputPageRowCount(session));
 
@@ -2187,6 +2212,87 @@ public class LocalExecutionPlanner
             return new PhysicalOperation(operatorFactory, outputMappings.build(), context, probeSource);
         }
 
+        @Override
+        public PhysicalOperation visitMergeJoin(MergeJoinNode node, LocalExecutionPlanContext context)
+        {
+            if (node.getFilter().isPresent()) {
+                throw new PrestoException(NOT_SUPPORTED, "Merge join with a filter is not supported");
+            }
+
+            // each side must be a single sorted stream per lifespan, so both sides run a single driver per lifespan
+            if (context.getDriverInstanceCount().orElse(1) != 1) {
+                throw new PrestoException(NOT_SUPPORTED, "Merge join requires a single driver per lifespan");
+            }
+            context.setDriverInstanceCount(1);
+            PhysicalOperation leftSource = node.getLeft().accept(this, context);
+
+            // the right side is streamed to the join through a single buffer, so its order is preserved
+            LocalExecutionPlanContext rightContext = context.createSubContext();
+            rightContext.setDriverInstanceCount(1);
+            PhysicalOperation rightSource = node.getRight().accept(this, rightContext);
+
+            // splits of a lifespan are read by separate drivers, so only grouped execution over sorted buckets
+            // gives a single split per lifespan
+            if (leftSource.getPipelineExecutionStrategy() != GROUPED_EXECUTION || rightSource.getPipelineExecutionStrategy() != GROUPED_EXECUTION) {
+                throw new PrestoException(NOT_SUPPORTED, "Merge join requires grouped execution on both sides");
+            }
+
+            LocalExchangeFactory rightExchangeFactory = new LocalExchangeFactory(
+                    partitioningProviderManager,
+                    session,
+                    SINGLE_DISTRIBUTION,
+                    1,
+                    rightSource.getTypes(),
+                    ImmutableList.of(),
+                    Optional.empty(),
+                    rightSource.getPipelineExecutionStrategy(),
+                    maxLocalExchangeBufferSize);
+
+            List<OperatorFactory> rightFactories = new ArrayList<>(rightSource.getOperatorFactories());
+            rightFactories.add(new LocalExchangeSinkOperatorFactory(
+                    rightExchangeFactory,
+                    rightContext.getNextOperatorId(),
+                    node.getId(),
+                    rightExchangeFactory.newSinkFactoryId(),
+                    Function.identity()));
+            context.addDriverFactory(
+                    rightContext.isInputDriver(),
+                    false,
+                    rightFactories,
+                    rightContext.getDriverInstanceCount(),
+                    rightSource.getPipelineExecutionStrategy(),
+                    Optional.empty());
+
+            List<VariableReferenceExpression> leftOutputVariables = node.getOutputVariables().stream()
+                    .filter(variable -> node.getLeft().getOutputVariables().contains(variable))
+                    .collect(toImmutableList());
+            List<VariableReferenceExpression> rightOutputVariables = node.getOutputVariables().stream()
+                    .filter(variable -> node.getRight().getOutputVariables().contains(variable))
+                    .collect(toImmutableList());
+
+            ImmutableMap.Builder<VariableReferenceExpression, Integer> outputMappings = ImmutableMap.builder();
+            int channel = 0;
+            for (VariableReferenceExpression variable : leftOutputVariables) {
+                outputMappings.put(variable, channel++);
+            }
+            for (VariableReferenceExpression variable : rightOutputVariables) {
+                outputMappings.put(variable, channel++);
+            }
+
+            OperatorFactory operatorFactory = new MergeJoinOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    node.getType(),
+                    rightExchangeFactory,
+                    leftSource.getTypes(),
+                    getChannelsForVariables(Lists.transform(node.getCriteria(), EquiJoinClause::getLeft), leftSource.getLayout()),
+                    getChannelsForVariables(leftOutputVariables, leftSource.getLayout()),
+                    rightSource.getTypes(),
+                    getChannelsForVariables(Lists.transform(node.getCriteria(), EquiJoinClause::getRight), rightSource.getLayout()),
+                    getChannelsForVariables(rightOutputVariables, rightSource.getLayout()));
+            return new PhysicalOperation(operatorFactory, outputMappings.build(), context, leftSource);
+        }
+
         private PhysicalOperation createSpatialLookupJoin(
                 SpatialJoinNode node,
                 PlanNode probeNode,
@@ -2474,11 +2580,12 @@ public class LocalExecutionPlanner
             return new DynamicFilterSourceOperator.DynamicFilterSourceOperatorFactory(
                     context.getNextOperatorId(),
                     planNodeId,
-                    dynamicFilter.getTupleDomainConsumer(),
+                    dynamicFilter.getPartitionConsumer(),
                     filterBuildChannels,
                     getDynamicFilteringMaxPerDriverRowCount(context.getSession()),
                     getDynamicFilteringMaxPerDriverSize(context.getSession()),
                     getDynamicFilteringRangeRowLimitPerDriver(context.getSession()),
+                    getDynamicFilteringMaxBloomFilterSizePerDriver(context.getSession()),
                     useNewNanDefinition);
         }
 
@@ -2499,6 +2606,7 @@ public class LocalExecutionPlanner
                     .map(filter -> {
                         // Intersect dynamic filters' predicates when they become ready,
                         // in order to support multiple join nodes in the same plan fragment.
+                        addSuccessCallback(filter.getBloomFiltersFuture(), collector::addBloomFilters);
                         addSuccessCallback(filter.getResultFuture(), collector::intersect);
                         return filter;
                     });
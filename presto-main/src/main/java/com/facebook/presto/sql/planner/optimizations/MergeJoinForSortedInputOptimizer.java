@@ -32,7 +32,6 @@ import static com.facebook.presto.SystemSessionProperties.isGroupedExecutionEnab
 import static com.facebook.presto.SystemSessionProperties.isSingleNodeExecutionEnabled;
 import static com.facebook.presto.SystemSessionProperties.preferMergeJoinForSortedInputs;
 import static com.facebook.presto.common.block.SortOrder.ASC_NULLS_FIRST;
-import static com.facebook.presto.spi.plan.JoinType.INNER;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Objects.requireNonNull;
 
@@ -100,8 +99,8 @@ public class MergeJoinForSortedInputOptimizer
         @Override
         public PlanNode visitJoin(JoinNode node, RewriteContext<Void> context)
         {
-            // As of now, we only support inner join for merge join
-            if (node.getType() != INNER) {
+            // As of now, we only support joins without a filter for merge join
+            if (node.getFilter().isPresent()) {
                 return node;
             }
 
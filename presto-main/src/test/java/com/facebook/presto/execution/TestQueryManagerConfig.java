@@ -45,6 +45,9 @@ public class TestQueryManagerConfig
                 .setMaxTotalRunningTaskCountToKillQuery(Integer.MAX_VALUE)
                 .setMaxQueryRunningTaskCount(Integer.MAX_VALUE)
                 .setMaxTotalRunningTaskCountToNotExecuteNewQuery(Integer.MAX_VALUE)
+                .setPredictiveMemoryAdmissionEnabled(false)
+                .setPredictiveMemoryAdmissionTargetWatermark(0.9)
+                .setPredictiveMemoryAdmissionMaxWait(new Duration(5, TimeUnit.MINUTES))
                 .setConcurrencyThresholdToEnableResourceGroupRefresh(1)
                 .setResourceGroupRunTimeInfoRefreshInterval(new Duration(100, MILLISECONDS))
                 .setClientTimeout(new Duration(5, TimeUnit.MINUTES))
@@ -100,6 +103,9 @@ public class TestQueryManagerConfig
                 .put("max-total-running-task-count-to-kill-query", "60000")
                 .put("max-query-running-task-count", "10000")
                 .put("experimental.max-total-running-task-count-to-not-execute-new-query", "50000")
+                .put("experimental.predictive-memory-admission-enabled", "true")
+                .put("experimental.predictive-memory-admission-target-watermark", "0.8")
+                .put("experimental.predictive-memory-admission-max-wait", "1m")
                 .put("concurrency-threshold-to-enable-resource-group-refresh", "2")
                 .put("resource-group-runtimeinfo-refresh-interval", "10ms")
                 .put("query.schedule-split-batch-size", "99")
@@ -150,6 +156,9 @@ public class TestQueryManagerConfig
                 .setMaxTotalRunningTaskCountToKillQuery(60000)
                 .setMaxQueryRunningTaskCount(10000)
                 .setMaxTotalRunningTaskCountToNotExecuteNewQuery(50000)
+                .setPredictiveMemoryAdmissionEnabled(true)
+                .setPredictiveMemoryAdmissionTargetWatermark(0.8)
+                .setPredictiveMemoryAdmissionMaxWait(new Duration(1, TimeUnit.MINUTES))
                 .setConcurrencyThresholdToEnableResourceGroupRefresh(2)
                 .setResourceGroupRunTimeInfoRefreshInterval(new Duration(10, MILLISECONDS))
                 .setClientTimeout(new Duration(10, TimeUnit.SECONDS))
@@ -143,6 +143,25 @@ public class TestSqlTask
         assertEquals(taskInfo.getTaskStatus().getState(), TaskState.FINISHED);
     }
 
+    @Test
+    public void testAddSourcesBeforePlan()
+    {
+        SqlTask sqlTask = createInitialTask();
+
+        TaskInfo taskInfo = sqlTask.addSources(ImmutableList.of(new TaskSource(TABLE_SCAN_NODE_ID, ImmutableSet.of(), true)));
+        assertTrue(taskInfo.isNeedsPlan());
+        assertFalse(taskInfo.getTaskStatus().getState().isDone());
+
+        taskInfo = sqlTask.updateTask(TEST_SESSION,
+                Optional.of(PLAN_FRAGMENT),
+                ImmutableList.of(new TaskSource(TABLE_SCAN_NODE_ID, ImmutableSet.of(), true)),
+                createInitialEmptyOutputBuffers(PARTITIONED)
+                        .withNoMoreBufferIds(),
+                Optional.of(new TableWriteInfo(Optional.empty(), Optional.empty(), Optional.empty())));
+        assertFalse(taskInfo.isNeedsPlan());
+        assertEquals(taskInfo.getTaskStatus().getState(), TaskState.FINISHED);
+    }
+
     @Test
     public void testSimpleQuery()
             throws Exception
@@ -47,6 +47,8 @@ public class TestTaskManagerConfig
                 .setPerOperatorAllocationTrackingEnabled(false)
                 .setTaskAllocationTrackingEnabled(false)
                 .setMaxWorkerThreads("2C")
+                .setBlockingIoWorkerThreads(0)
+                .setRunnerThreadAffinityGroups(1)
                 .setMinDrivers(Runtime.getRuntime().availableProcessors() * 2 * 2)
                 .setMinDriversPerTask(3)
                 .setMaxDriversPerTask(Integer.MAX_VALUE)
@@ -98,6 +100,8 @@ public class TestTaskManagerConfig
                 .put("task.max-partial-aggregation-memory", "32MB")
                 .put("task.max-local-exchange-buffer-size", "33MB")
                 .put("task.max-worker-threads", "3")
+                .put("task.blocking-io-worker-threads", "8")
+                .put("task.runner-thread-affinity-groups", "2")
                 .put("task.min-drivers", "2")
                 .put("task.min-drivers-per-task", "5")
                 .put("task.max-drivers-per-task", "13")
@@ -142,6 +146,8 @@ public class TestTaskManagerConfig
                 .setMaxPartialAggregationMemoryUsage(new DataSize(32, Unit.MEGABYTE))
                 .setMaxLocalExchangeBufferSize(new DataSize(33, Unit.MEGABYTE))
                 .setMaxWorkerThreads("3")
+                .setBlockingIoWorkerThreads(8)
+                .setRunnerThreadAffinityGroups(2)
                 .setMinDrivers(2)
                 .setMinDriversPerTask(5)
                 .setMaxDriversPerTask(13)
@@ -0,0 +1,210 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.operator.PageBufferClient.PagesResponse;
+import com.facebook.presto.operator.TempStorageRpcShuffleClient;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.security.Identity;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.spi.storage.TempStorage;
+import com.facebook.presto.spiller.LocalTempStorage;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.json.JsonCodec.jsonCodec;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.PAGES_SERDE;
+import static com.facebook.presto.execution.buffer.BufferTestUtils.createPage;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.io.Files.createTempDir;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestExternalShuffle
+{
+    private static final int PARTITION_COUNT = 3;
+    private static final TempDataOperationContext CONTEXT = new TempDataOperationContext(Optional.empty(), "query", Optional.empty(), Optional.empty(), new Identity("user", Optional.empty()));
+
+    private File tempDirectory;
+    private TempStorage tempStorage;
+    private ListeningExecutorService executor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        tempDirectory = createTempDir();
+        tempStorage = new LocalTempStorage(ImmutableList.of(tempDirectory.toPath()), 1.0, true, false);
+        executor = listeningDecorator(newCachedThreadPool(daemonThreadsNamed("test-external-shuffle-%s")));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws IOException
+    {
+        executor.shutdownNow();
+        deleteRecursively(tempDirectory.toPath(), ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testReadPartitionsAfterWriterIsGone()
+            throws Exception
+    {
+        List<ExternalShuffleFile> files = writeShuffleFiles();
+        assertEquals(files.size(), 2);
+
+        // the consumers only need the file descriptions, which are sent through JSON,
+        // and read through their own storage instance on the shared path
+        files = roundTrip(files);
+        TempStorage consumerStorage = new LocalTempStorage(ImmutableList.of(tempDirectory.toPath()), 1.0, true, false);
+
+        for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+            TempStorageRpcShuffleClient client = new TempStorageRpcShuffleClient(consumerStorage, CONTEXT, files, partition, executor);
+            assertPages(readAll(client, new DataSize(1, BYTE)), expectedPages(partition));
+        }
+    }
+
+    @Test
+    public void testRetryReadsSamePages()
+            throws Exception
+    {
+        List<ExternalShuffleFile> files = writeShuffleFiles();
+        TempStorageRpcShuffleClient client = new TempStorageRpcShuffleClient(tempStorage, CONTEXT, files, 1, executor);
+
+        PagesResponse first = client.getResults(0, new DataSize(1, BYTE)).get();
+        PagesResponse second = client.getResults(first.getNextToken(), new DataSize(1, BYTE)).get();
+        // the response to the second request was lost
+        PagesResponse retry = client.getResults(first.getNextToken(), new DataSize(1, BYTE)).get();
+        assertEquals(retry.getToken(), second.getToken());
+        assertEquals(retry.getNextToken(), second.getNextToken());
+        assertPages(retry.getPages(), second.getPages().stream().map(PAGES_SERDE::deserialize).collect(toImmutableList()));
+
+        // reading from an earlier token starts over
+        PagesResponse restart = client.getResults(0, new DataSize(1, MEGABYTE)).get();
+        assertPages(restart.getPages(), expectedPages(1));
+        assertTrue(restart.isClientComplete());
+    }
+
+    @Test
+    public void testEmptyPartition()
+            throws Exception
+    {
+        ExternalShuffleWriter writer = new ExternalShuffleWriter(tempStorage, CONTEXT, PARTITION_COUNT);
+        writer.addPages(0, ImmutableList.of(PAGES_SERDE.serialize(createPage(1))));
+        List<ExternalShuffleFile> files = writer.finish();
+
+        TempStorageRpcShuffleClient client = new TempStorageRpcShuffleClient(tempStorage, CONTEXT, files, 2, executor);
+        PagesResponse response = client.getResults(0, new DataSize(1, MEGABYTE)).get();
+        assertTrue(response.getPages().isEmpty());
+        assertTrue(response.isClientComplete());
+    }
+
+    @Test
+    public void testAbortRemovesFiles()
+    {
+        ExternalShuffleWriter writer = new ExternalShuffleWriter(tempStorage, CONTEXT, PARTITION_COUNT);
+        writer.addPages(0, ImmutableList.of(PAGES_SERDE.serialize(createPage(1))));
+        ExternalShuffleFile file = writer.flush().get();
+        assertFalse(writer.flush().isPresent());
+        assertTrue(new File(tempStorage.deserialize(file.getStorageHandle()).toString()).exists());
+
+        writer.abort();
+        assertFalse(new File(tempStorage.deserialize(file.getStorageHandle()).toString()).exists());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "shuffle files must be written to a remotely accessible temp storage")
+    public void testRequiresRemotelyAccessibleStorage()
+    {
+        // a storage that is not remotely accessible cleans up its paths when it starts, so it gets its own path
+        new ExternalShuffleWriter(new LocalTempStorage(ImmutableList.of(new File(tempDirectory, "local").toPath()), 1.0), CONTEXT, PARTITION_COUNT);
+    }
+
+    private List<ExternalShuffleFile> writeShuffleFiles()
+    {
+        ExternalShuffleWriter writer = new ExternalShuffleWriter(tempStorage, CONTEXT, PARTITION_COUNT);
+        // pages are added in an order that interleaves the partitions
+        for (int i = 0; i < 10; i++) {
+            writer.addPages(i % PARTITION_COUNT, ImmutableList.of(PAGES_SERDE.serialize(createPage(i))));
+            if (i == 4) {
+                assertTrue(writer.getBufferedBytes() > 0);
+                writer.flush();
+                assertEquals(writer.getBufferedBytes(), 0);
+            }
+        }
+        return writer.finish();
+    }
+
+    private static List<Page> expectedPages(int partition)
+    {
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        for (int i = partition; i < 10; i += PARTITION_COUNT) {
+            pages.add(createPage(i));
+        }
+        return pages.build();
+    }
+
+    private static List<ExternalShuffleFile> roundTrip(List<ExternalShuffleFile> files)
+    {
+        ImmutableList.Builder<ExternalShuffleFile> result = ImmutableList.builder();
+        for (ExternalShuffleFile file : files) {
+            result.add(jsonCodec(ExternalShuffleFile.class).fromJson(jsonCodec(ExternalShuffleFile.class).toJson(file)));
+        }
+        return result.build();
+    }
+
+    private static List<SerializedPage> readAll(TempStorageRpcShuffleClient client, DataSize maxResponseSize)
+            throws ExecutionException, InterruptedException
+    {
+        List<SerializedPage> pages = new ArrayList<>();
+        long token = 0;
+        while (true) {
+            PagesResponse response = client.getResults(token, maxResponseSize).get();
+            assertEquals(response.getToken(), token);
+            pages.addAll(response.getPages());
+            token = response.getNextToken();
+            if (response.isClientComplete()) {
+                return pages;
+            }
+        }
+    }
+
+    private static void assertPages(List<SerializedPage> actual, List<Page> expected)
+    {
+        assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            Page actualPage = PAGES_SERDE.deserialize(actual.get(i));
+            assertEquals(BIGINT.getLong(actualPage.getBlock(0), 0), BIGINT.getLong(expected.get(i).getBlock(0), 0));
+        }
+    }
+}
@@ -18,6 +18,7 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
@@ -31,6 +32,7 @@ import java.util.stream.LongStream;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static com.facebook.presto.spi.page.PageCodecMarker.COMPRESSED;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.readPages;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writePages;
 import static org.testng.Assert.assertEquals;
@@ -63,6 +65,40 @@ public class TestPagesSerde
         assertFalse(pageIterator.hasNext());
     }
 
+    @Test
+    public void testDecompressionBufferReuse()
+    {
+        PagesSerde serde = new TestingPagesSerdeFactory().createPagesSerde();
+        BlockBuilder bigintBlockBuilder = BIGINT.createBlockBuilder(null, 1000);
+        BlockBuilder varcharBlockBuilder = VARCHAR.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            if (i % 7 == 0) {
+                bigintBlockBuilder.appendNull();
+            }
+            else {
+                BIGINT.writeLong(bigintBlockBuilder, i % 10);
+            }
+            VARCHAR.writeString(varcharBlockBuilder, "value" + (i % 10));
+        }
+        Page bigintPage = new Page(bigintBlockBuilder.build());
+        Page varcharPage = new Page(varcharBlockBuilder.build(), bigintPage.getBlock(0));
+        SerializedPage serializedBigintPage = serde.serialize(bigintPage);
+        SerializedPage serializedVarcharPage = serde.serialize(varcharPage);
+        assertTrue(COMPRESSED.isSet(serializedBigintPage.getPageCodecMarkers()));
+        assertTrue(COMPRESSED.isSet(serializedVarcharPage.getPageCodecMarkers()));
+
+        // the varchar page shares the buffer it was decompressed into, so it must not be overwritten by the following pages
+        Page first = serde.deserialize(serializedBigintPage);
+        Page second = serde.deserialize(serializedVarcharPage);
+        Page third = serde.deserialize(serializedBigintPage);
+        Page fourth = serde.deserialize(serializedBigintPage);
+        assertPageEquals(ImmutableList.of(BIGINT), first, bigintPage);
+        assertPageEquals(ImmutableList.of(VARCHAR, BIGINT), second, varcharPage);
+        assertPageEquals(ImmutableList.of(BIGINT), third, bigintPage);
+        assertPageEquals(ImmutableList.of(BIGINT), fourth, bigintPage);
+        assertTrue(serde.getRetainedSizeInBytes() >= serializedBigintPage.getUncompressedSizeInBytes());
+    }
+
     @Test
     public void testBigintSerializedSize()
     {
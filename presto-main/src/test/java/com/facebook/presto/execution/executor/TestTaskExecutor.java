@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.execution.executor;
 
+import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.TimeStat;
 import com.facebook.airlift.testing.TestingTicker;
 import com.facebook.presto.execution.SplitRunner;
 import com.facebook.presto.execution.TaskId;
@@ -44,6 +46,7 @@ import static com.facebook.presto.execution.executor.MultilevelSplitQueue.LEVEL_
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -376,6 +379,57 @@ public class TestTaskExecutor
         }
     }
 
+    @Test
+    public void testAffinityGroups()
+            throws Exception
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 2);
+        TaskHandle handle0 = createTaskHandle(splitQueue, 0);
+        TaskHandle handle1 = createTaskHandle(splitQueue, 1);
+
+        PrioritizedSplitRunner split0 = createSplit(handle0);
+        PrioritizedSplitRunner split1 = createSplit(handle1);
+        PrioritizedSplitRunner split2 = createSplit(handle1);
+        splitQueue.offer(split0);
+        splitQueue.offer(split1);
+        splitQueue.offer(split2);
+        assertEquals(split0.getAffinityGroup(), 0);
+        assertEquals(split1.getAffinityGroup(), 1);
+        assertEquals(split2.getAffinityGroup(), 1);
+
+        // runners take the splits of their own group first
+        assertEquals(splitQueue.take(1), split1);
+        assertEquals(splitQueue.take(0), split0);
+        assertEquals(splitQueue.getStolenSplits(0), 0);
+
+        // and take splits of other groups when their group has none
+        assertEquals(splitQueue.take(0), split2);
+        assertEquals(split2.getAffinityGroup(), 0);
+        assertEquals(splitQueue.getStolenSplits(0), 1);
+        assertEquals(splitQueue.getStolenSplits(1), 0);
+
+        // the split stays in the group it was moved to
+        splitQueue.offer(split2);
+        assertEquals(splitQueue.take(0), split2);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 1);
+    }
+
+    private static TaskHandle createTaskHandle(MultilevelSplitQueue splitQueue, int affinityGroup)
+    {
+        for (int id = 0; ; id++) {
+            TaskId taskId = new TaskId("test" + id, 0, 0, 0, 0);
+            if (Math.floorMod(taskId.hashCode(), splitQueue.getAffinityGroups()) == affinityGroup) {
+                return new TaskHandle(taskId, new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+            }
+        }
+    }
+
+    private static PrioritizedSplitRunner createSplit(TaskHandle taskHandle)
+    {
+        TestingJob job = new TestingJob(new TestingTicker(), new Phaser(), new Phaser(), new Phaser(), 1, 0);
+        return new PrioritizedSplitRunner(taskHandle, job, Ticker.systemTicker(), new CounterStat(), new CounterStat(), new TimeStat(), new TimeStat());
+    }
+
     @Test(timeOut = 30_000)
     public void testMinMaxDriversPerTask()
     {
@@ -490,6 +544,58 @@ public class TestTaskExecutor
         }
     }
 
+    @Test(timeOut = 30_000)
+    public void testBlockingIoSplitsRunOnSeparateThreads()
+            throws Exception
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2);
+        TaskExecutor taskExecutor = new TaskExecutor(
+                1,
+                1,
+                2,
+                3,
+                4,
+                TASK_FAIR,
+                new Duration(10, MINUTES),
+                elements -> false,
+                new Duration(1, MINUTES),
+                new EmbedVersion(new ServerConfig()),
+                splitQueue,
+                Ticker.systemTicker());
+        taskExecutor.start();
+
+        try {
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("test", 0, 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty());
+
+            // the blocking I/O split holds its runner thread until it is released
+            BlockingIoSplitRunner blockingIoSplit = new BlockingIoSplitRunner();
+            ListenableFuture<?> blockingIoFuture = getOnlyElement(taskExecutor.enqueueSplits(taskHandle, false, ImmutableList.of(blockingIoSplit)));
+            blockingIoSplit.started.get(10, SECONDS);
+            assertEquals(taskExecutor.getBlockingIoSplits(), 1);
+
+            // splits that do not block on I/O still run on the only worker thread
+            TestingJob split = new TestingJob(new TestingTicker(), new Phaser(), new Phaser(), new Phaser(), 1, 0);
+            getOnlyElement(taskExecutor.enqueueSplits(taskHandle, false, ImmutableList.of(split))).get(10, SECONDS);
+            assertFalse(blockingIoFuture.isDone());
+
+            long blockedNanos = MILLISECONDS.toNanos(200);
+            Thread.sleep(NANOSECONDS.toMillis(blockedNanos));
+            blockingIoSplit.release.set(null);
+            blockingIoFuture.get(10, SECONDS);
+
+            // the time of the blocking I/O split is charged to its own queue, not to the levels of the worker threads
+            assertTrue(taskHandle.getPriority(true).getLevelPriority() >= blockedNanos);
+            assertTrue(splitQueue.getLevelScheduledTime(0) < blockedNanos);
+            // the split is untracked by the runner thread after its future completes
+            while (taskExecutor.getBlockingIoSplits() > 0) {
+                Thread.sleep(10);
+            }
+        }
+        finally {
+            taskExecutor.stop();
+        }
+    }
+
     private void assertSplitStates(int endIndex, TestingJob[] splits)
     {
         // assert that splits up to and including endIndex are all started
@@ -613,6 +719,44 @@ public class TestTaskExecutor
         }
     }
 
+    private static class BlockingIoSplitRunner
+            implements SplitRunner
+    {
+        private final SettableFuture<?> started = SettableFuture.create();
+        private final SettableFuture<?> release = SettableFuture.create();
+
+        @Override
+        public boolean isFinished()
+        {
+            return release.isDone();
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            started.set(null);
+            Futures.getUnchecked(release);
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public boolean isBlockingIo()
+        {
+            return true;
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return "blocking-io-split";
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
     private static class MockSplitRunner
             implements SplitRunner
     {
@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.execution.resourceGroups;
 
+import com.facebook.airlift.testing.TestingTicker;
+import com.facebook.presto.Session;
 import com.facebook.presto.execution.MockManagedQueryExecution;
 import com.facebook.presto.execution.resourceGroups.InternalResourceGroup.RootInternalResourceGroup;
 import com.facebook.presto.metadata.InMemoryNodeManager;
@@ -21,6 +23,8 @@ import com.facebook.presto.metadata.InternalNodeManager;
 import com.facebook.presto.server.QueryStateInfo;
 import com.facebook.presto.server.ResourceGroupInfo;
 import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.spi.memory.MemoryPoolInfo;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
@@ -52,12 +56,15 @@ import static com.facebook.presto.spi.resourceGroups.SchedulingPolicy.FAIR;
 import static com.facebook.presto.spi.resourceGroups.SchedulingPolicy.QUERY_PRIORITY;
 import static com.facebook.presto.spi.resourceGroups.SchedulingPolicy.WEIGHTED;
 import static com.facebook.presto.spi.resourceGroups.SchedulingPolicy.WEIGHTED_FAIR;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Collections.reverse;
+import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -88,6 +95,118 @@ public class TestResourceGroups
         assertEquals(query3.getThrowable().getMessage(), "Too many queued queries for \"root\"");
     }
 
+    @Test(timeOut = 10_000)
+    public void testPredictiveMemoryAdmission()
+    {
+        RootInternalResourceGroup root = new RootInternalResourceGroup("root", (group, export) -> {}, directExecutor(), ignored -> Optional.empty(), rg -> false, createNodeManager());
+        root.setSoftMemoryLimit(new DataSize(1, MEGABYTE));
+        root.setMaxQueuedQueries(10);
+        root.setHardConcurrencyLimit(10);
+        MemoryAdmissionController memoryAdmissionController = new MemoryAdmissionController(0.5, new Duration(1, HOURS));
+        memoryAdmissionController.updateGeneralPool(createMemoryPoolInfo(100, 0));
+        root.setMemoryAdmissionController(memoryAdmissionController);
+
+        // the first run has no history and records a peak of 20 bytes
+        MockManagedQueryExecution query1 = new MockManagedQueryExecution(0);
+        query1.startWaitingForPrerequisites();
+        root.run(query1);
+        assertEquals(query1.getState(), RUNNING);
+        query1.complete();
+
+        memoryAdmissionController.updateGeneralPool(createMemoryPoolInfo(100, 40));
+        MockManagedQueryExecution query2 = new MockManagedQueryExecution(0);
+        query2.startWaitingForPrerequisites();
+        root.run(query2);
+        assertEquals(query2.getState(), QUEUED);
+        root.processQueuedQueries();
+        assertEquals(query2.getState(), QUEUED);
+
+        memoryAdmissionController.updateGeneralPool(createMemoryPoolInfo(100, 20));
+        root.processQueuedQueries();
+        assertEquals(query2.getState(), RUNNING);
+
+        // the predicted memory of query2 counts as reserved until query2 reserves it
+        MockManagedQueryExecution query3 = new MockManagedQueryExecution(0);
+        query3.startWaitingForPrerequisites();
+        root.run(query3);
+        assertEquals(query3.getState(), QUEUED);
+        query2.complete();
+        root.processQueuedQueries();
+        assertEquals(query3.getState(), RUNNING);
+    }
+
+    @Test(timeOut = 10_000)
+    public void testPredictiveMemoryAdmissionSkipsBlockedGroups()
+    {
+        RootInternalResourceGroup root = new RootInternalResourceGroup("root", (group, export) -> {}, directExecutor(), ignored -> Optional.empty(), rg -> false, createNodeManager());
+        root.setSoftMemoryLimit(new DataSize(1, MEGABYTE));
+        root.setMaxQueuedQueries(10);
+        root.setHardConcurrencyLimit(1);
+        InternalResourceGroup groupA = root.getOrCreateSubGroup("a", true);
+        groupA.setSoftMemoryLimit(new DataSize(1, MEGABYTE));
+        groupA.setMaxQueuedQueries(10);
+        groupA.setHardConcurrencyLimit(1);
+        InternalResourceGroup groupB = root.getOrCreateSubGroup("b", true);
+        groupB.setSoftMemoryLimit(new DataSize(1, MEGABYTE));
+        groupB.setMaxQueuedQueries(10);
+        groupB.setHardConcurrencyLimit(1);
+        TestingTicker ticker = new TestingTicker();
+        MemoryAdmissionController memoryAdmissionController = new MemoryAdmissionController(0.5, new Duration(1, MINUTES), ticker);
+        memoryAdmissionController.updateGeneralPool(createMemoryPoolInfo(100, 0));
+        root.setMemoryAdmissionController(memoryAdmissionController);
+        // record a peak of 20 bytes for the query of the default session
+        memoryAdmissionController.queryFinished(new MockManagedQueryExecution(0));
+
+        MockManagedQueryExecution query1 = createQueryWithoutHistory("schema1");
+        query1.startWaitingForPrerequisites();
+        groupB.run(query1);
+        assertEquals(query1.getState(), RUNNING);
+        MockManagedQueryExecution queryA = new MockManagedQueryExecution(0);
+        queryA.startWaitingForPrerequisites();
+        groupA.run(queryA);
+        assertEquals(queryA.getState(), QUEUED);
+        MockManagedQueryExecution queryB = createQueryWithoutHistory("schema2");
+        queryB.startWaitingForPrerequisites();
+        groupB.run(queryB);
+        assertEquals(queryB.getState(), QUEUED);
+
+        // queryA does not fit, but it does not keep queryB of the other group from starting
+        memoryAdmissionController.updateGeneralPool(createMemoryPoolInfo(100, 40));
+        query1.complete();
+        root.processQueuedQueries();
+        assertEquals(queryA.getState(), QUEUED);
+        assertEquals(queryB.getState(), RUNNING);
+
+        queryB.complete();
+        root.processQueuedQueries();
+        assertEquals(queryA.getState(), QUEUED);
+
+        // queryA starts once it has waited for the maximum wait
+        ticker.increment(1, MINUTES);
+        root.processQueuedQueries();
+        assertEquals(queryA.getState(), RUNNING);
+    }
+
+    private static MockManagedQueryExecution createQueryWithoutHistory(String schema)
+    {
+        Session session = testSessionBuilder()
+                .setSchema(schema)
+                .build();
+        return new MockManagedQueryExecution(0)
+        {
+            @Override
+            public Session getSession()
+            {
+                return session;
+            }
+        };
+    }
+
+    private static MemoryPoolInfo createMemoryPoolInfo(long maxBytes, long reservedBytes)
+    {
+        return new MemoryPoolInfo(maxBytes, reservedBytes, 0, ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of());
+    }
+
     @Test(timeOut = 10_000)
     public void testFairEligibility()
     {
@@ -24,6 +24,7 @@ import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.airlift.units.DataSize;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -32,6 +33,7 @@ import org.testng.annotations.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.IntStream;
@@ -48,6 +50,7 @@ import static com.facebook.presto.block.BlockAssertions.createLongRepeatBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createSequenceBlockOfReal;
+import static com.facebook.presto.block.BlockAssertions.createStringSequenceBlock;
 import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.common.predicate.Range.range;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
@@ -71,6 +74,7 @@ import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static java.lang.Float.floatToRawIntBits;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestDynamicFilterSourceOperator
@@ -555,6 +559,79 @@ public class TestDynamicFilterSourceOperator
                         Domain.create(ValueSet.of(BIGINT, 7L), false)))));
     }
 
+    @Test
+    public void testCollectBloomFilterWhenTooManyPositions()
+    {
+        int maxPositionsCount = 100;
+        ImmutableList.Builder<Map<String, BlockedBloomFilter>> bloomFilterPartitions = ImmutableList.builder();
+        OperatorFactory operatorFactory = new DynamicFilterSourceOperator.DynamicFilterSourceOperatorFactory(
+                0,
+                new PlanNodeId("PLAN_NODE_ID"),
+                (tupleDomain, bloomFilters) -> {
+                    partitions.add(tupleDomain);
+                    bloomFilterPartitions.add(bloomFilters);
+                },
+                ImmutableList.of(channel(0, BIGINT), channel(1, VARCHAR)),
+                maxPositionsCount,
+                new DataSize(10, KILOBYTE),
+                maxPositionsCount,
+                new DataSize(64, KILOBYTE),
+                true);
+        // exceeds both the exact values and the min/max limits
+        List<Page> pages = ImmutableList.of(
+                new Page(createLongSequenceBlock(0, maxPositionsCount + 1), createStringSequenceBlock(0, maxPositionsCount + 1)),
+                new Page(createLongSequenceBlock(1000, 1000 + maxPositionsCount), createStringSequenceBlock(1000, 1000 + maxPositionsCount)));
+        verifyPassthrough(createOperator(operatorFactory), ImmutableList.of(BIGINT, VARCHAR), pages);
+        operatorFactory.noMoreOperators();
+
+        assertEquals(partitions.build(), ImmutableList.of(TupleDomain.all()));
+        List<Map<String, BlockedBloomFilter>> bloomFilters = bloomFilterPartitions.build();
+        assertEquals(bloomFilters.size(), 1);
+        assertEquals(bloomFilters.get(0).keySet(), ImmutableSet.of("0"));
+        BlockedBloomFilter bloomFilter = bloomFilters.get(0).get("0");
+        for (Page page : pages) {
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                assertTrue(bloomFilter.mightContain(page.getBlock(0), position));
+            }
+        }
+        int falsePositives = 0;
+        for (long value = 10_000; value < 20_000; value++) {
+            if (bloomFilter.mightContain(value)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 100, "too many false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testBloomFilterMemoryIsReserved()
+            throws Exception
+    {
+        int maxPositionsCount = 100;
+        OperatorFactory operatorFactory = new DynamicFilterSourceOperator.DynamicFilterSourceOperatorFactory(
+                0,
+                new PlanNodeId("PLAN_NODE_ID"),
+                (tupleDomain, bloomFilters) -> partitions.add(tupleDomain),
+                ImmutableList.of(channel(0, BIGINT), channel(1, BIGINT)),
+                maxPositionsCount,
+                new DataSize(10, KILOBYTE),
+                maxPositionsCount,
+                new DataSize(64, KILOBYTE),
+                true);
+        Operator operator = createOperator(operatorFactory);
+        assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getUserMemory(), 0);
+
+        operator.addInput(new Page(createLongSequenceBlock(0, maxPositionsCount + 1), createLongSequenceBlock(0, maxPositionsCount + 1)));
+        assertTrue(operator.getOperatorContext().getOperatorMemoryContext().getUserMemory() >= 2 * new DataSize(64, KILOBYTE).toBytes());
+
+        // the Bloom filters are handed over to the consumer
+        operator.getOutput();
+        operator.finish();
+        assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getUserMemory(), 0);
+        operator.close();
+        operatorFactory.noMoreOperators();
+    }
+
     @Test
     public void testCollectMinMaxLimitSinglePage()
     {
@@ -290,6 +290,44 @@ public class TestExchangeClient
         assertStatus(exchangeClient.getStatus().getPageBufferClientStatuses().get(0), location, "closed", 3, 5, 5, "not scheduled");
     }
 
+    @Test(timeOut = 30000)
+    public void testAdaptiveRequestControl()
+    {
+        DataSize bufferCapacity = new DataSize(1, MEGABYTE);
+        DataSize maxResponseSize = new DataSize(1, MEGABYTE);
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(maxResponseSize);
+
+        int locationCount = 50;
+        int pagesPerLocation = 5;
+        ExchangeClient exchangeClient = createExchangeClient(processor, bufferCapacity, maxResponseSize, true);
+        for (int i = 0; i < locationCount; i++) {
+            URI location = URI.create("http://localhost:" + (8080 + i));
+            for (int page = 0; page < pagesPerLocation; page++) {
+                processor.addPage(location, createPage(1000));
+            }
+            processor.setComplete(location);
+            exchangeClient.addLocation(location, TaskId.valueOf("taskid.0.0." + i + ".0"));
+        }
+        exchangeClient.noMoreLocations();
+
+        int pages = 0;
+        while (true) {
+            SerializedPage page = getNextPage(exchangeClient);
+            if (page == null) {
+                break;
+            }
+            assertPageEquals(page, createPage(1000));
+            assertLessThan(exchangeClient.getStatus().getMaxBufferedBytes(), 2 * bufferCapacity.toBytes() + maxResponseSize.toBytes());
+            pages++;
+        }
+        assertEquals(pages, locationCount * pagesPerLocation);
+        assertTrue(exchangeClient.isClosed());
+        for (PageBufferClientStatus status : exchangeClient.getStatus().getPageBufferClientStatuses()) {
+            assertEquals(status.getPagesReceived(), pagesPerLocation);
+            assertEquals(status.getState(), "closed");
+        }
+    }
+
     @Test
     public void testClose()
             throws Exception
@@ -551,6 +589,11 @@ public class TestExchangeClient
     }
 
     private ExchangeClient createExchangeClient(MockExchangeRequestProcessor processor, DataSize bufferCapacity, DataSize maxResponseSize)
+    {
+        return createExchangeClient(processor, bufferCapacity, maxResponseSize, false);
+    }
+
+    private ExchangeClient createExchangeClient(MockExchangeRequestProcessor processor, DataSize bufferCapacity, DataSize maxResponseSize, boolean adaptiveRequestControlEnabled)
     {
         return new ExchangeClient(
                 bufferCapacity,
@@ -559,6 +602,7 @@ public class TestExchangeClient
                 new Duration(1, MINUTES),
                 true,
                 0.2,
+                adaptiveRequestControlEnabled,
                 new TestingHttpClient(processor, testingHttpClientExecutor),
                 new TestingDriftClient<>(),
                 scheduler,
@@ -40,10 +40,12 @@ import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
@@ -93,6 +95,7 @@ public class TestExchangeOperator
                 new Duration(1, TimeUnit.MINUTES),
                 true,
                 0.2,
+                false,
                 httpClient,
                 new TestingDriftClient<>(),
                 scheduler,
@@ -145,6 +148,42 @@ public class TestExchangeOperator
         waitForFinished(operator);
     }
 
+    @Test
+    public void testPageCoalescing()
+            throws Exception
+    {
+        SourceOperator operator = createExchangeOperator(Optional.of(() -> new ExchangePageCompactor(TYPES, new DataSize(1, MEGABYTE).toBytes(), 256, new DataSize(4, MEGABYTE).toBytes())));
+
+        operator.addSplit(new ScheduledSplit(0, operator.getSourceId(), newRemoteSplit(TASK_1_ID)));
+        operator.addSplit(new ScheduledSplit(1, operator.getSourceId(), newRemoteSplit(TASK_2_ID)));
+        operator.addSplit(new ScheduledSplit(2, operator.getSourceId(), newRemoteSplit(TASK_3_ID)));
+        operator.noMoreSplits();
+
+        taskBuffers.getUnchecked(TASK_1_ID).addPages(10, true);
+        taskBuffers.getUnchecked(TASK_2_ID).addPages(10, true);
+        taskBuffers.getUnchecked(TASK_3_ID).addPages(10, true);
+
+        // the 30 pages of 10 rows are merged into pages of at least 256 rows, except for the last one
+        long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        List<Page> outputPages = new ArrayList<>();
+        while (!operator.isFinished() && System.nanoTime() - endTime < 0) {
+            Page outputPage = operator.getOutput();
+            if (outputPage != null) {
+                outputPages.add(outputPage);
+            }
+            else {
+                Thread.sleep(10);
+            }
+        }
+
+        assertTrue(operator.isFinished());
+        assertEquals(outputPages.stream().mapToInt(Page::getPositionCount).sum(), 30 * PAGE.getPositionCount());
+        for (int i = 0; i < outputPages.size() - 1; i++) {
+            assertTrue(outputPages.get(i).getPositionCount() >= 256);
+        }
+        assertEquals(operator.getOperatorContext().getOperatorStats().getSystemMemoryReservation().toBytes(), 0);
+    }
+
     private static Split newRemoteSplit(String taskId)
     {
         return new Split(REMOTE_CONNECTOR_ID, new RemoteTransactionHandle(), new RemoteSplit(new Location("http://localhost/" + taskId), TaskId.valueOf(taskId)));
@@ -251,12 +290,18 @@ public class TestExchangeOperator
     }
 
     private SourceOperator createExchangeOperator()
+    {
+        return createExchangeOperator(Optional.empty());
+    }
+
+    private SourceOperator createExchangeOperator(Optional<Supplier<ExchangePageCompactor>> pageCompactorFactory)
     {
         ExchangeOperatorFactory operatorFactory = new ExchangeOperatorFactory(
                 0,
                 new PlanNodeId("test"),
                 new TaskExchangeClientManager(exchangeClientSupplier),
-                SERDE_FACTORY);
+                SERDE_FACTORY,
+                pageCompactorFactory);
 
         DriverContext driverContext = createTaskContext(scheduler, scheduledExecutor, TEST_SESSION)
                 .addPipelineContext(0, true, true, false)
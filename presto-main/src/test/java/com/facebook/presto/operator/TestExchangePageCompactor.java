@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestExchangePageCompactor
+{
+    @Test
+    public void testMergeSmallPages()
+    {
+        ExchangePageCompactor compactor = new ExchangePageCompactor(ImmutableList.of(BIGINT), 1024 * 1024, 100, 4 * 1024 * 1024);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(compactor.needsInput());
+            compactor.addInput(new Page(createLongSequenceBlock(i * 10, (i + 1) * 10)));
+            assertNull(compactor.getOutput());
+        }
+        compactor.finish();
+
+        Page output = compactor.getOutput();
+        assertPageEquals(ImmutableList.of(BIGINT), output, new Page(createLongSequenceBlock(0, 50)));
+        assertTrue(compactor.isFinished());
+    }
+
+    @Test
+    public void testPassLargePages()
+    {
+        ExchangePageCompactor compactor = new ExchangePageCompactor(ImmutableList.of(BIGINT), 1024, 100, 1024 * 1024);
+        Page page = new Page(createLongSequenceBlock(0, 1000));
+        compactor.addInput(page);
+        assertSame(compactor.getOutput(), page);
+    }
+
+    @Test
+    public void testSplitLargePages()
+    {
+        Page page = new Page(createLongSequenceBlock(0, 10_000));
+        List<Page> pages = ExchangePageCompactor.split(page, page.getSizeInBytes() / 4);
+
+        assertEquals(pages.size(), 4);
+        int position = 0;
+        for (Page split : pages) {
+            assertTrue(split.getSizeInBytes() <= page.getSizeInBytes() / 4);
+            assertPageEquals(ImmutableList.of(BIGINT), split, page.getRegion(position, split.getPositionCount()));
+            position += split.getPositionCount();
+        }
+        assertEquals(position, page.getPositionCount());
+
+        assertEquals(ExchangePageCompactor.split(page, page.getSizeInBytes()), ImmutableList.of(page));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.operator.ExchangeRequestController.SourceState;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
+import static com.facebook.presto.operator.ExchangeRequestController.INITIAL_CONCURRENCY;
+import static com.facebook.presto.operator.ExchangeRequestController.MIN_REQUEST_SIZE_IN_BYTES;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestExchangeRequestController
+{
+    private static final long BUFFER_CAPACITY = 32L * 1024 * 1024;
+    private static final long MAX_REQUEST_SIZE = 8L * 1024 * 1024;
+
+    @Test
+    public void testSlowStartAndCongestionAvoidance()
+    {
+        ExchangeRequestController controller = new ExchangeRequestController(BUFFER_CAPACITY, MAX_REQUEST_SIZE);
+        SourceState source = controller.createSourceState();
+        assertEquals(controller.getConcurrencyLimit(), INITIAL_CONCURRENCY);
+
+        // one round of responses doubles the concurrency while the buffer is mostly empty
+        for (int i = 0; i < INITIAL_CONCURRENCY; i++) {
+            respond(controller, source, 1000, 0);
+        }
+        assertEquals(controller.getConcurrencyLimit(), 2 * INITIAL_CONCURRENCY);
+
+        // overflowing the buffer halves it once per round
+        respond(controller, source, 1000, BUFFER_CAPACITY + 1);
+        assertEquals(controller.getConcurrencyLimit(), INITIAL_CONCURRENCY);
+        respond(controller, source, 1000, BUFFER_CAPACITY + 1);
+        assertEquals(controller.getConcurrencyLimit(), INITIAL_CONCURRENCY);
+
+        // after that it grows by one per round
+        for (int i = 0; i < INITIAL_CONCURRENCY + 1; i++) {
+            respond(controller, source, 1000, 0);
+        }
+        assertEquals(controller.getConcurrencyLimit(), INITIAL_CONCURRENCY + 1);
+
+        // a buffer that is more than half full neither grows nor shrinks it
+        for (int i = 0; i < 100; i++) {
+            respond(controller, source, 1000, BUFFER_CAPACITY / 2);
+        }
+        assertEquals(controller.getConcurrencyLimit(), INITIAL_CONCURRENCY + 1);
+    }
+
+    @Test
+    public void testSlowResponses()
+    {
+        ExchangeRequestController controller = new ExchangeRequestController(BUFFER_CAPACITY, MAX_REQUEST_SIZE);
+        SourceState source = controller.createSourceState();
+        for (int i = 0; i < 2 * INITIAL_CONCURRENCY; i++) {
+            long requestSize = controller.getRequestSize(source);
+            controller.requestStarted(source, requestSize, 0);
+            controller.responseReceived(source, requestSize, requestSize, 0);
+        }
+        int concurrency = controller.getConcurrencyLimit();
+
+        // a full response that is much slower per byte than the fastest one signals congestion
+        long requestSize = controller.getRequestSize(source);
+        controller.requestStarted(source, requestSize, 0);
+        controller.responseReceived(source, requestSize, 10 * requestSize, 0);
+        assertEquals(controller.getConcurrencyLimit(), concurrency / 2);
+
+        // responses that do not fill the request include the time the source needed to produce data
+        for (int i = 0; i < 100; i++) {
+            controller.requestStarted(source, controller.getRequestSize(source), 0);
+            controller.responseReceived(source, MIN_REQUEST_SIZE_IN_BYTES / 2, MILLISECONDS.toNanos(1000), 0);
+        }
+        assertTrue(controller.getConcurrencyLimit() > concurrency / 2);
+    }
+
+    @Test
+    public void testRequestSize()
+    {
+        ExchangeRequestController controller = new ExchangeRequestController(BUFFER_CAPACITY, MAX_REQUEST_SIZE);
+        SourceState source = controller.createSourceState();
+        assertEquals(controller.getRequestSize(source), DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+
+        // full responses double the request size up to the maximum
+        respond(controller, source, DEFAULT_MAX_PAGE_SIZE_IN_BYTES, BUFFER_CAPACITY / 2);
+        assertEquals(controller.getRequestSize(source), 2 * DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        for (int i = 0; i < 10; i++) {
+            respond(controller, source, controller.getRequestSize(source), BUFFER_CAPACITY / 2);
+        }
+        assertEquals(controller.getRequestSize(source), MAX_REQUEST_SIZE);
+
+        // small responses shrink it to twice the response
+        respond(controller, source, 100_000, BUFFER_CAPACITY / 2);
+        assertEquals(controller.getRequestSize(source), 200_000);
+        respond(controller, source, 1, BUFFER_CAPACITY / 2);
+        assertEquals(controller.getRequestSize(source), MIN_REQUEST_SIZE_IN_BYTES);
+
+        // empty responses keep it
+        respond(controller, source, 0, BUFFER_CAPACITY / 2);
+        assertEquals(controller.getRequestSize(source), MIN_REQUEST_SIZE_IN_BYTES);
+    }
+
+    @Test
+    public void testRequestSizeLimitedByBufferShare()
+    {
+        long bufferCapacity = 4L * 1024 * 1024;
+        ExchangeRequestController controller = new ExchangeRequestController(bufferCapacity, MAX_REQUEST_SIZE);
+        SourceState source = controller.createSourceState();
+        for (int i = 0; i < 10; i++) {
+            respond(controller, source, controller.getRequestSize(source), 0);
+        }
+        assertEquals(controller.getRequestSize(source), Math.max(MIN_REQUEST_SIZE_IN_BYTES, bufferCapacity / controller.getConcurrencyLimit()));
+    }
+
+    private static void respond(ExchangeRequestController controller, SourceState source, long responseSize, long bufferedBytes)
+    {
+        controller.requestStarted(source, controller.getRequestSize(source), 0);
+        controller.responseReceived(source, responseSize, MILLISECONDS.toNanos(10), bufferedBytes);
+    }
+}
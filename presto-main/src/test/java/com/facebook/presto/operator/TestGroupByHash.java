@@ -18,6 +18,7 @@ import com.facebook.presto.block.BlockAssertions;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.DictionaryBlock;
 import com.facebook.presto.common.block.DictionaryId;
 import com.facebook.presto.common.type.Type;
@@ -42,13 +43,19 @@ import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createStringSequenceBlock;
 import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.DecimalType.createDecimalType;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static com.facebook.presto.operator.UpdateMemory.NOOP;
 import static com.facebook.presto.type.TypeUtils.getHashBlock;
 import static com.google.common.math.DoubleMath.log2;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertTrue;
 
 public class TestGroupByHash
@@ -232,6 +239,117 @@ public class TestGroupByHash
         assertTrue(groupByHash.contains(0, new Page(testValuesBlock, testStringValuesBlock, testHashBlock), hashChannels));
     }
 
+    @DataProvider
+    public Object[][] hashEnabled()
+    {
+        return new Object[][] {{true}, {false}};
+    }
+
+    @Test(dataProvider = "hashEnabled")
+    public void testFixedWidthKeysMatchMultiChannel(boolean hashEnabled)
+    {
+        List<Type> types = ImmutableList.of(DATE, INTEGER, BIGINT, createDecimalType(10, 2));
+        int[] hashChannels = {0, 1, 2, 3};
+        Optional<Integer> inputHashChannel = hashEnabled ? Optional.of(4) : Optional.empty();
+
+        // 60 distinct non null keys, plus rows with a null in one of the columns
+        int positionCount = 1000;
+        List<Block> blocks = new ArrayList<>();
+        for (int channel = 0; channel < types.size(); channel++) {
+            Type type = types.get(channel);
+            int modulus = new int[] {10, 4, 6, 3}[channel];
+            BlockBuilder blockBuilder = type.createBlockBuilder(null, positionCount);
+            for (int position = 0; position < positionCount; position++) {
+                if (position % 17 == channel) {
+                    blockBuilder.appendNull();
+                }
+                else {
+                    type.writeLong(blockBuilder, position % modulus - 1);
+                }
+            }
+            blocks.add(blockBuilder.build());
+        }
+        if (hashEnabled) {
+            blocks.add(getHashBlock(types, blocks.toArray(new Block[0])));
+        }
+        Page page = new Page(blocks.toArray(new Block[0]));
+
+        // start small to force rehashes
+        GroupByHash fixedWidthHash = createGroupByHash(types, hashChannels, inputHashChannel, 4, false, true, JOIN_COMPILER, NOOP);
+        assertEquals(fixedWidthHash.getClass().getName(), FixedWidthGroupByHash.class.getName());
+        assertNotEquals(fixedWidthHash.getClass(), FixedWidthGroupByHash.class);
+        // disabled by default, and never used when dictionaries are processed
+        assertEquals(createGroupByHash(types, hashChannels, inputHashChannel, 4, false, JOIN_COMPILER, NOOP).getClass(), MultiChannelGroupByHash.class);
+        assertEquals(createGroupByHash(types, hashChannels, inputHashChannel, 4, true, true, JOIN_COMPILER, NOOP).getClass(), MultiChannelGroupByHash.class);
+        GroupByHash multiChannelHash = new MultiChannelGroupByHash(types, hashChannels, inputHashChannel, 4, false, JOIN_COMPILER, NOOP);
+
+        Work<GroupByIdBlock> fixedWidthWork = fixedWidthHash.getGroupIds(page);
+        assertTrue(fixedWidthWork.process());
+        Work<GroupByIdBlock> multiChannelWork = multiChannelHash.getGroupIds(page);
+        assertTrue(multiChannelWork.process());
+        GroupByIdBlock fixedWidthGroupIds = fixedWidthWork.getResult();
+        GroupByIdBlock multiChannelGroupIds = multiChannelWork.getResult();
+
+        assertEquals(fixedWidthHash.getGroupCount(), multiChannelHash.getGroupCount());
+        assertTrue(fixedWidthHash.getGroupCount() > 60);
+        assertEquals(fixedWidthHash.getTypes(), multiChannelHash.getTypes());
+        for (int position = 0; position < positionCount; position++) {
+            assertEquals(fixedWidthGroupIds.getGroupId(position), multiChannelGroupIds.getGroupId(position));
+            assertTrue(fixedWidthHash.contains(position, page, hashChannels));
+        }
+
+        PageBuilder fixedWidthOutput = new PageBuilder(fixedWidthHash.getTypes());
+        PageBuilder multiChannelOutput = new PageBuilder(multiChannelHash.getTypes());
+        for (int groupId = 0; groupId < fixedWidthHash.getGroupCount(); groupId++) {
+            assertEquals(fixedWidthHash.getRawHash(groupId), multiChannelHash.getRawHash(groupId));
+            fixedWidthOutput.declarePosition();
+            fixedWidthHash.appendValuesTo(groupId, fixedWidthOutput, 0);
+            multiChannelOutput.declarePosition();
+            multiChannelHash.appendValuesTo(groupId, multiChannelOutput, 0);
+        }
+        assertPageEquals(fixedWidthHash.getTypes(), fixedWidthOutput.build(), multiChannelOutput.build());
+
+        List<Page> fixedWidthPages = fixedWidthHash.getBufferedPages();
+        List<Page> multiChannelPages = multiChannelHash.getBufferedPages();
+        assertEquals(fixedWidthPages.size(), 1);
+        assertEquals(multiChannelPages.size(), 1);
+        assertPageEquals(types, fixedWidthPages.get(0), multiChannelPages.get(0));
+
+        Page missing = new Page(
+                BlockAssertions.createIntsBlock(100),
+                BlockAssertions.createIntsBlock(0),
+                createLongsBlock(0),
+                createLongsBlock(0));
+        assertFalse(fixedWidthHash.contains(0, missing, hashChannels));
+    }
+
+    @Test
+    public void testFixedWidthPageKeysMemory()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, BIGINT);
+        int positionCount = 1000;
+        Page page = new Page(createLongSequenceBlock(0, positionCount), createLongSequenceBlock(0, positionCount));
+
+        AtomicInteger allowRehash = new AtomicInteger();
+        GroupByHash groupByHash = createGroupByHash(types, new int[] {0, 1}, Optional.empty(), 4, false, true, JOIN_COMPILER, () -> allowRehash.get() > 0);
+        long emptySize = groupByHash.getEstimatedSize();
+
+        // the work yields on the first rehash while it holds the keys of the page
+        Work<?> work = groupByHash.addPage(page);
+        assertFalse(work.process());
+        long pageKeysSize = (long) positionCount * (types.size() * Long.BYTES + Byte.BYTES + Long.BYTES);
+        assertTrue(groupByHash.getEstimatedSize() - emptySize >= pageKeysSize);
+
+        allowRehash.set(1);
+        assertTrue(work.process());
+        long finishedSize = groupByHash.getEstimatedSize();
+        assertEquals(groupByHash.getGroupCount(), positionCount);
+
+        // the keys of the page are released once the page is processed
+        assertTrue(groupByHash.addPage(new Page(createLongSequenceBlock(0, 1), createLongSequenceBlock(0, 1))).process());
+        assertEquals(groupByHash.getEstimatedSize(), finishedSize);
+    }
+
     @Test
     public void testForceRehash()
     {
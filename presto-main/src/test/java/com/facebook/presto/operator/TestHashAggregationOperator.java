@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.RowPagesBuilder;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.ByteArrayBlock;
@@ -63,6 +64,9 @@ import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.block.BlockAssertions.createLongRepeatBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.common.RuntimeMetricName.PARTIAL_AGGREGATION_DISABLED_COUNT;
+import static com.facebook.presto.common.RuntimeMetricName.PARTIAL_AGGREGATION_EARLY_FLUSH_COUNT;
+import static com.facebook.presto.common.RuntimeMetricName.PARTIAL_AGGREGATION_SKIPPED_INPUT_ROWS;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
@@ -944,6 +948,50 @@ public class TestHashAggregationOperator
         assertTrue(partialAggregationController.isPartialAggregationDisabled());
     }
 
+    @Test
+    public void testAdaptivePartialAggregationFlushesEarly()
+    {
+        List<Integer> hashChannels = Ints.asList(0);
+        PartialAggregationController partialAggregationController = new PartialAggregationController(succinctDataSize(64, KILOBYTE), 0.8);
+        HashAggregationOperatorFactory operatorFactory = new HashAggregationOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT),
+                hashChannels,
+                ImmutableList.of(),
+                ImmutableList.of(),
+                Step.PARTIAL,
+                false,
+                ImmutableList.of(generateAccumulatorFactory(LONG_SUM, ImmutableList.of(0), Optional.empty())),
+                Optional.empty(),
+                Optional.empty(),
+                100,
+                Optional.of(succinctDataSize(16, MEGABYTE)), // large enough that the buffer never fills up
+                false,
+                Optional.of(partialAggregationController),
+                new DataSize(0, MEGABYTE),
+                new DataSize(0, MEGABYTE),
+                new FailingSpillerFactory(),
+                joinCompiler,
+                false);
+
+        List<Page> input = rowPagesBuilder(false, hashChannels, BIGINT)
+                .addSequencePage(20_000, 0)
+                .addBlocksPage(createLongRepeatBlock(1, 10))
+                .build();
+
+        // the unique first page is flushed right away, which disables partial aggregation for the second page
+        DriverContext driverContext = createDriverContext();
+        List<Page> output = toPages(operatorFactory, driverContext, input);
+        assertEquals(output.stream().mapToInt(Page::getPositionCount).sum(), 20_010);
+        assertTrue(partialAggregationController.isPartialAggregationDisabled());
+
+        RuntimeStats runtimeStats = getOnlyElement(driverContext.getDriverStats().getOperatorStats()).getRuntimeStats();
+        assertEquals(runtimeStats.getMetric(PARTIAL_AGGREGATION_EARLY_FLUSH_COUNT).getSum(), 1);
+        assertEquals(runtimeStats.getMetric(PARTIAL_AGGREGATION_DISABLED_COUNT).getSum(), 1);
+        assertEquals(runtimeStats.getMetric(PARTIAL_AGGREGATION_SKIPPED_INPUT_ROWS).getSum(), 10);
+    }
+
     private void assertOperatorEquals(OperatorFactory operatorFactory, List<Page> inputPages, List<Page> expectedPages)
     {
         DriverContext driverContext = createDriverContext(1024);
@@ -23,6 +23,7 @@ import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.HashBuilderOperator.HashBuilderOperatorFactory;
+import com.facebook.presto.operator.LookupSourceProvider.LookupSourceLease;
 import com.facebook.presto.operator.ValuesOperator.ValuesOperatorFactory;
 import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeFactory;
 import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeSinkFactoryId;
@@ -75,6 +76,7 @@ import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.SystemSessionProperties.JOIN_HASH_TABLE_OFF_HEAP_ENABLED;
 import static com.facebook.presto.SystemSessionProperties.QUERY_MAX_MEMORY_PER_NODE;
 import static com.facebook.presto.SystemSessionProperties.getQueryMaxMemoryPerNode;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
@@ -708,6 +710,53 @@ public class TestHashJoinOperator
         assertTrue(hashBuilderOperator.isFinished());
     }
 
+    @Test
+    public void testOffHeapLookupSourceFreedAfterSpillAndClose()
+            throws Exception
+    {
+        Session session = testSessionBuilder().setSystemProperty(JOIN_HASH_TABLE_OFF_HEAP_ENABLED, "true").build();
+        TaskContext taskContext = TestingTaskContext.createTaskContext(executor, scheduledExecutor, session);
+
+        RowPagesBuilder buildPages = rowPagesBuilder(ImmutableList.of(VARCHAR, BIGINT))
+                .addSequencePage(1000, 20, 200);
+        BuildSideSetup buildSideSetup = setupBuildSide(true, taskContext, Ints.asList(0), buildPages, Optional.empty(), true, new DummySpillerFactory());
+        // the probe keeps the lookup source factory from being destroyed once the build finishes
+        innerJoinOperatorFactory(buildSideSetup.getLookupSourceFactoryManager(), rowPagesBuilder(ImmutableList.of(VARCHAR)), PARTITIONING_SPILLER_FACTORY);
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+
+        PartitionedLookupSourceFactory lookupSourceFactory = buildSideSetup.getLookupSourceFactoryManager().getJoinBridge(Lifespan.taskWide());
+        ListenableFuture<LookupSourceProvider> lookupSourceProvider = lookupSourceFactory.createLookupSourceProvider();
+        while (!lookupSourceProvider.isDone()) {
+            for (Driver buildDriver : buildSideSetup.getBuildDrivers()) {
+                buildDriver.process();
+            }
+        }
+        LookupSource lookupSource;
+        try (LookupSourceProvider provider = getFutureValue(lookupSourceProvider)) {
+            lookupSource = provider.withLease(LookupSourceLease::getLookupSource);
+        }
+        long builtSize = lookupSource.getInMemorySizeInBytes();
+
+        // spilling a partition frees its hash table as soon as the factory no longer lends it
+        HashBuilderOperator spilledOperator = buildSideSetup.getBuildOperators().get(0);
+        spilledOperator.startMemoryRevoke().get();
+        spilledOperator.finishMemoryRevoke();
+        long spilledSize = lookupSource.getInMemorySizeInBytes();
+        assertTrue(builtSize - spilledSize >= 1 << OffHeapArena.MIN_SEGMENT_SHIFT, format("%s bytes before spill, %s bytes after spill", builtSize, spilledSize));
+
+        // closing an operator early keeps the hash table while the probes may still use it
+        buildSideSetup.getBuildOperators().get(1).close();
+        assertEquals(lookupSource.getInMemorySizeInBytes(), spilledSize);
+
+        lookupSourceFactory.destroy();
+        long destroyedSize = lookupSource.getInMemorySizeInBytes();
+        assertTrue(spilledSize - destroyedSize >= 1 << OffHeapArena.MIN_SEGMENT_SHIFT, format("%s bytes before destroy, %s bytes after destroy", spilledSize, destroyedSize));
+
+        for (HashBuilderOperator operator : buildSideSetup.getBuildOperators()) {
+            operator.close();
+        }
+    }
+
     @Test(dataProvider = "hashJoinTestValues")
     public void testInnerJoinWithNullProbe(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
     {
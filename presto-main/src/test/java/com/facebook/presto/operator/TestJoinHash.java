@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Supplier;
+
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.SystemSessionProperties.JOIN_HASH_BUILD_PARALLELISM;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.operator.PartitionedLookupSource.createPartitionedLookupSourceSupplier;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestJoinHash
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, VARCHAR);
+
+    @DataProvider
+    public static Object[][] offHeap()
+    {
+        return new Object[][] {{false}, {true}};
+    }
+
+    @Test(dataProvider = "offHeap")
+    public void testBatchLookupMatchesSingleLookup(boolean offHeap)
+    {
+        LookupSourceSupplier supplier = createLookupSourceSupplier(offHeap, 0);
+        try {
+            LookupSource lookupSource = supplier.get();
+            assertTrue(lookupSource.isBatchLookupSupported());
+            assertBatchLookupMatchesSingleLookup(lookupSource);
+        }
+        finally {
+            supplier.close();
+        }
+    }
+
+    @Test(dataProvider = "offHeap")
+    public void testPartitionedBatchLookupMatchesSingleLookup(boolean offHeap)
+    {
+        LookupSourceSupplier first = createLookupSourceSupplier(offHeap, 0);
+        LookupSourceSupplier second = createLookupSourceSupplier(offHeap, 2000);
+        try {
+            List<Supplier<LookupSource>> partitions = ImmutableList.of(first, second);
+            LookupSource lookupSource = createPartitionedLookupSourceSupplier(partitions, ImmutableList.of(BIGINT), false).getLookupSource();
+            assertTrue(lookupSource.isBatchLookupSupported());
+            assertBatchLookupMatchesSingleLookup(lookupSource);
+        }
+        finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void testParallelBuildMatchesSequentialBuild()
+    {
+        // enough positions for three build tasks, with every key present three times
+        List<Page> buildPages = rowPagesBuilder(TYPES)
+                .addSequencePage(70_000, 0, 0)
+                .addSequencePage(70_000, 0, 100)
+                .addSequencePage(70_000, 0, 200)
+                .row(null, "null key")
+                .build();
+        LookupSourceSupplier sequential = createLookupSourceSupplier(TEST_SESSION, buildPages);
+        LookupSourceSupplier parallel = createLookupSourceSupplier(testSessionBuilder().setSystemProperty(JOIN_HASH_BUILD_PARALLELISM, "4").build(), buildPages);
+        // PagesIndex falls back to the interpreted JoinHashSupplier when the compiled one fails
+        assertNotEquals(parallel.getClass(), JoinHashSupplier.class);
+        assertEquals(parallel.checksum(), sequential.checksum());
+
+        LookupSource sequentialLookupSource = sequential.get();
+        LookupSource parallelLookupSource = parallel.get();
+        assertEquals(parallelLookupSource.getJoinPositionCount(), sequentialLookupSource.getJoinPositionCount());
+
+        Page probePage = rowPagesBuilder(TYPES)
+                .addSequencePage(70_020, -10, 0)
+                .build()
+                .get(0);
+        Page hashChannelsPage = new Page(probePage.getBlock(0));
+        int matches = 0;
+        for (int position = 0; position < probePage.getPositionCount(); position++) {
+            long sequentialPosition = sequentialLookupSource.getJoinPosition(position, hashChannelsPage, probePage);
+            long parallelPosition = parallelLookupSource.getJoinPosition(position, hashChannelsPage, probePage);
+            while (sequentialPosition >= 0) {
+                assertEquals(parallelPosition, sequentialPosition);
+                matches++;
+                sequentialPosition = sequentialLookupSource.getNextJoinPosition(sequentialPosition, position, probePage);
+                parallelPosition = parallelLookupSource.getNextJoinPosition(parallelPosition, position, probePage);
+            }
+            assertEquals(parallelPosition, -1);
+        }
+        assertEquals(matches, 210_000);
+    }
+
+    private static LookupSourceSupplier createLookupSourceSupplier(Session session, List<Page> pages)
+    {
+        PagesIndex pagesIndex = new PagesIndex.TestingFactory(false).newUnsortedPagesIndex(TYPES, 100);
+        pages.forEach(pagesIndex::addPage);
+        return pagesIndex.createLookupSourceSupplier(session, ImmutableList.of(0), OptionalInt.empty(), Optional.empty(), Optional.empty(), ImmutableList.of());
+    }
+
+    private static void assertBatchLookupMatchesSingleLookup(LookupSource lookupSource)
+    {
+        Page probePage = rowPagesBuilder(TYPES)
+                .addSequencePage(5000, -500, 0)
+                .build()
+                .get(0);
+        Page hashChannelsPage = new Page(probePage.getBlock(0));
+
+        // every third position, to make sure gaps in the batch are handled
+        int[] positions = new int[probePage.getPositionCount()];
+        int positionCount = 0;
+        for (int position = 0; position < probePage.getPositionCount(); position += 3) {
+            positions[positionCount++] = position;
+        }
+
+        long[] joinPositions = new long[positionCount];
+        lookupSource.getJoinPositions(positions, positionCount, hashChannelsPage, probePage, null, joinPositions);
+
+        int matches = 0;
+        for (int i = 0; i < positionCount; i++) {
+            assertEquals(joinPositions[i], lookupSource.getJoinPosition(positions[i], hashChannelsPage, probePage));
+            if (joinPositions[i] >= 0) {
+                matches++;
+            }
+        }
+        assertTrue(matches > 0);
+    }
+
+    private static LookupSourceSupplier createLookupSourceSupplier(boolean offHeap, int firstKey)
+    {
+        PagesIndex pagesIndex = new PagesIndex.TestingFactory(false).newUnsortedPagesIndex(TYPES, 100);
+        rowPagesBuilder(TYPES)
+                .addSequencePage(1000, firstKey, 0)
+                .addSequencePage(1000, firstKey + 500, 0)
+                .row(null, "null key")
+                .build()
+                .forEach(pagesIndex::addPage);
+        return pagesIndex.createLookupSourceSupplier(TEST_SESSION, ImmutableList.of(0), OptionalInt.empty(), Optional.empty(), Optional.empty(), ImmutableList.of(), Optional.empty(), offHeap);
+    }
+}
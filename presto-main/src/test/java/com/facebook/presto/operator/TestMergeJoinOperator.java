@@ -0,0 +1,306 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.Lifespan;
+import com.facebook.presto.operator.MergeJoinOperator.MergeJoinOperatorFactory;
+import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeFactory;
+import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeSinkFactory;
+import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeSinkFactoryId;
+import com.facebook.presto.operator.exchange.LocalExchangeSink;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.plan.JoinType;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.sql.planner.PartitioningProviderManager;
+import com.facebook.presto.testing.MaterializedResult;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqualsIgnoreOrder;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorIsBlocked;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorIsUnblocked;
+import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
+import static com.facebook.presto.spi.plan.JoinType.FULL;
+import static com.facebook.presto.spi.plan.JoinType.INNER;
+import static com.facebook.presto.spi.plan.JoinType.LEFT;
+import static com.facebook.presto.spi.plan.JoinType.RIGHT;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
+import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
+import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestMergeJoinOperator
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, VARCHAR);
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-executor-%s"));
+        scheduledExecutor = newScheduledThreadPool(2, daemonThreadsNamed("test-scheduledExecutor-%s"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        executor.shutdownNow();
+        scheduledExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testInnerJoin()
+    {
+        assertJoin(INNER, innerRows().build());
+    }
+
+    @Test
+    public void testLeftJoin()
+    {
+        assertJoin(LEFT, innerRows()
+                .row(null, "l0", null, null)
+                .row(1L, "l1", null, null)
+                .row(5L, "l5", null, null)
+                .build());
+    }
+
+    @Test
+    public void testRightJoin()
+    {
+        assertJoin(RIGHT, innerRows()
+                .row(null, null, null, "r0")
+                .row(null, null, 3L, "r3")
+                .row(null, null, 6L, "r5")
+                .build());
+    }
+
+    @Test
+    public void testFullJoin()
+    {
+        assertJoin(FULL, innerRows()
+                .row(null, "l0", null, null)
+                .row(1L, "l1", null, null)
+                .row(5L, "l5", null, null)
+                .row(null, null, null, "r0")
+                .row(null, null, 3L, "r3")
+                .row(null, null, 6L, "r5")
+                .build());
+    }
+
+    @Test
+    public void testEmptyLeft()
+    {
+        assertJoin(INNER, ImmutableList.of(), rightPages(), resultBuilder(TEST_SESSION, BIGINT, VARCHAR, BIGINT, VARCHAR).build());
+        assertJoin(RIGHT, ImmutableList.of(), rightPages(), resultBuilder(TEST_SESSION, BIGINT, VARCHAR, BIGINT, VARCHAR)
+                .row(null, null, null, "r0")
+                .row(null, null, 2L, "r1")
+                .row(null, null, 2L, "r2")
+                .row(null, null, 3L, "r3")
+                .row(null, null, 4L, "r4")
+                .row(null, null, 6L, "r5")
+                .build());
+    }
+
+    @Test
+    public void testBlockedOnRight()
+    {
+        DriverContext driverContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION)
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+        LocalExchangeFactory exchangeFactory = createExchangeFactory();
+        LocalExchangeSinkFactoryId sinkFactoryId = exchangeFactory.newSinkFactoryId();
+        exchangeFactory.noMoreSinkFactories();
+        LocalExchangeSinkFactory sinkFactory = exchangeFactory.getLocalExchange(Lifespan.taskWide()).getSinkFactory(sinkFactoryId);
+        LocalExchangeSink sink = sinkFactory.createSink();
+        sinkFactory.close();
+        sinkFactory.noMoreSinkFactories();
+
+        try (Operator operator = createOperatorFactory(INNER, exchangeFactory).createOperator(driverContext)) {
+            operator.addInput(rowPagesBuilder(TYPES).row(2L, "l2").build().get(0));
+            assertNull(operator.getOutput());
+            assertOperatorIsBlocked(operator);
+
+            // the group of key 2 is not complete until a larger key or the end of the right input is seen
+            sink.addPage(rowPagesBuilder(TYPES).row(2L, "r1").build().get(0));
+            assertOperatorIsUnblocked(operator);
+            assertNull(operator.getOutput());
+            assertOperatorIsBlocked(operator);
+
+            sink.finish();
+            assertOperatorIsUnblocked(operator);
+            operator.finish();
+            Page output = operator.getOutput();
+            assertEquals(output.getPositionCount(), 1);
+            assertTrue(operator.isFinished());
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Right input of merge join is not sorted on the join keys")
+    public void testUnsortedRightInput()
+    {
+        // the pages of two right drivers interleave in the exchange
+        List<Page> rightPages = rowPagesBuilder(TYPES)
+                .row(1L, "r0")
+                .row(3L, "r1")
+                .pageBreak()
+                .row(2L, "r2")
+                .row(4L, "r3")
+                .build();
+        assertJoin(INNER, leftPages(), rightPages, innerRows().build());
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Left input of merge join is not sorted on the join keys")
+    public void testUnsortedLeftInput()
+    {
+        // the pages of two left drivers interleave
+        List<Page> leftPages = rowPagesBuilder(TYPES)
+                .row(2L, "l0")
+                .row(4L, "l1")
+                .pageBreak()
+                .row(3L, "l2")
+                .build();
+        assertJoin(INNER, leftPages, rightPages(), innerRows().build());
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Merge join requires a single driver per lifespan.*")
+    public void testSingleDriverPerLifespan()
+    {
+        PipelineContext pipelineContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION)
+                .addPipelineContext(0, true, true, false);
+        LocalExchangeFactory exchangeFactory = createExchangeFactory();
+        exchangeFactory.newSinkFactoryId();
+        exchangeFactory.noMoreSinkFactories();
+
+        MergeJoinOperatorFactory operatorFactory = createOperatorFactory(INNER, exchangeFactory);
+        operatorFactory.createOperator(pipelineContext.addDriverContext());
+        operatorFactory.createOperator(pipelineContext.addDriverContext());
+    }
+
+    private static MaterializedResult.Builder innerRows()
+    {
+        return resultBuilder(TEST_SESSION, BIGINT, VARCHAR, BIGINT, VARCHAR)
+                .row(2L, "l2", 2L, "r1")
+                .row(2L, "l2", 2L, "r2")
+                .row(2L, "l3", 2L, "r1")
+                .row(2L, "l3", 2L, "r2")
+                .row(4L, "l4", 4L, "r4");
+    }
+
+    private static List<Page> leftPages()
+    {
+        return rowPagesBuilder(TYPES)
+                .row(null, "l0")
+                .row(1L, "l1")
+                .row(2L, "l2")
+                .row(2L, "l3")
+                .pageBreak()
+                .row(4L, "l4")
+                .row(5L, "l5")
+                .build();
+    }
+
+    // the rows of key 2 span two pages
+    private static List<Page> rightPages()
+    {
+        return rowPagesBuilder(TYPES)
+                .row(null, "r0")
+                .row(2L, "r1")
+                .pageBreak()
+                .row(2L, "r2")
+                .row(3L, "r3")
+                .pageBreak()
+                .row(4L, "r4")
+                .pageBreak()
+                .row(6L, "r5")
+                .build();
+    }
+
+    private void assertJoin(JoinType joinType, MaterializedResult expected)
+    {
+        assertJoin(joinType, leftPages(), rightPages(), expected);
+    }
+
+    private void assertJoin(JoinType joinType, List<Page> leftPages, List<Page> rightPages, MaterializedResult expected)
+    {
+        DriverContext driverContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION)
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+        LocalExchangeFactory exchangeFactory = createExchangeFactory();
+        LocalExchangeSinkFactoryId sinkFactoryId = exchangeFactory.newSinkFactoryId();
+        exchangeFactory.noMoreSinkFactories();
+        LocalExchangeSinkFactory sinkFactory = exchangeFactory.getLocalExchange(Lifespan.taskWide()).getSinkFactory(sinkFactoryId);
+        LocalExchangeSink sink = sinkFactory.createSink();
+        sinkFactory.close();
+        sinkFactory.noMoreSinkFactories();
+        rightPages.forEach(sink::addPage);
+        sink.finish();
+
+        assertOperatorEqualsIgnoreOrder(createOperatorFactory(joinType, exchangeFactory), driverContext, leftPages, expected);
+    }
+
+    private static MergeJoinOperatorFactory createOperatorFactory(JoinType joinType, LocalExchangeFactory exchangeFactory)
+    {
+        return new MergeJoinOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                joinType,
+                exchangeFactory,
+                TYPES,
+                ImmutableList.of(0),
+                ImmutableList.of(0, 1),
+                TYPES,
+                ImmutableList.of(0),
+                ImmutableList.of(0, 1));
+    }
+
+    private static LocalExchangeFactory createExchangeFactory()
+    {
+        return new LocalExchangeFactory(
+                new PartitioningProviderManager(),
+                TEST_SESSION,
+                SINGLE_DISTRIBUTION,
+                1,
+                TYPES,
+                ImmutableList.of(),
+                Optional.empty(),
+                UNGROUPED_EXECUTION,
+                new DataSize(32, MEGABYTE));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.type.Type;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class TestOffHeapPagesHashStorage
+{
+    @Test
+    public void testArena()
+    {
+        OffHeapArena arena = new OffHeapArena(0);
+        long bytes = arena.allocate(3, Byte.BYTES);
+        long ints = arena.allocate(1 << OffHeapArena.MIN_SEGMENT_SHIFT, Integer.BYTES);
+        long longs = arena.allocate(10, Long.BYTES);
+
+        assertEquals(ints % Integer.BYTES, 0);
+        assertEquals(longs % Long.BYTES, 0);
+        assertTrue(arena.getRetainedSizeInBytes() >= arena.getAllocatedBytes());
+
+        arena.fill(ints, (1L << OffHeapArena.MIN_SEGMENT_SHIFT) * Integer.BYTES, (byte) -1);
+        for (int i = 0; i < 1 << OffHeapArena.MIN_SEGMENT_SHIFT; i++) {
+            assertEquals(arena.getInt(ints + (long) i * Integer.BYTES), -1);
+            arena.setInt(ints + (long) i * Integer.BYTES, i);
+        }
+        for (int i = 0; i < 10; i++) {
+            arena.setLong(longs + (long) i * Long.BYTES, Long.MAX_VALUE - i);
+        }
+        arena.setByte(bytes + 2, (byte) 42);
+
+        for (int i = 0; i < 1 << OffHeapArena.MIN_SEGMENT_SHIFT; i++) {
+            assertEquals(arena.getInt(ints + (long) i * Integer.BYTES), i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(arena.getLong(longs + (long) i * Long.BYTES), Long.MAX_VALUE - i);
+        }
+        assertEquals(arena.getByte(bytes + 2), 42);
+
+        arena.close();
+        assertEquals(arena.getRetainedSizeInBytes(), new OffHeapArena(0).getRetainedSizeInBytes());
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> arena.getInt(ints));
+    }
+
+    @Test
+    public void testMatchesOnHeapLookupSource()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        RowPagesBuilder buildPages = rowPagesBuilder(types)
+                .addSequencePage(1000, 0, 100)
+                .addSequencePage(1000, 500, 600)
+                .row(null, "null key")
+                .row(7L, null);
+        Page probePage = rowPagesBuilder(types)
+                .addSequencePage(2000, -100, 0)
+                .build()
+                .get(0);
+
+        LookupSourceSupplier onHeapSupplier = createLookupSourceSupplier(false, types, buildPages.build());
+        LookupSourceSupplier offHeapSupplier = createLookupSourceSupplier(true, types, buildPages.build());
+        LookupSource onHeap = onHeapSupplier.get();
+        LookupSource offHeap = offHeapSupplier.get();
+
+        assertEquals(offHeap.getJoinPositionCount(), onHeap.getJoinPositionCount());
+
+        Page hashChannelsPage = new Page(probePage.getBlock(0));
+        PageBuilder onHeapOutput = new PageBuilder(types);
+        PageBuilder offHeapOutput = new PageBuilder(types);
+        for (int position = 0; position < probePage.getPositionCount(); position++) {
+            long onHeapPosition = onHeap.getJoinPosition(position, hashChannelsPage, probePage);
+            long offHeapPosition = offHeap.getJoinPosition(position, hashChannelsPage, probePage);
+            while (onHeapPosition >= 0) {
+                assertEquals(offHeapPosition, onHeapPosition);
+                onHeapOutput.declarePosition();
+                onHeap.appendTo(onHeapPosition, onHeapOutput, 0);
+                offHeapOutput.declarePosition();
+                offHeap.appendTo(offHeapPosition, offHeapOutput, 0);
+
+                onHeapPosition = onHeap.getNextJoinPosition(onHeapPosition, position, probePage);
+                offHeapPosition = offHeap.getNextJoinPosition(offHeapPosition, position, probePage);
+            }
+            assertEquals(offHeapPosition, -1);
+        }
+
+        assertEquals(offHeapOutput.getPositionCount(), 2001);
+        assertPageEquals(types, offHeapOutput.build(), onHeapOutput.build());
+
+        onHeapSupplier.close();
+        offHeapSupplier.close();
+    }
+
+    private static LookupSourceSupplier createLookupSourceSupplier(boolean offHeap, List<Type> types, List<Page> pages)
+    {
+        PagesIndex pagesIndex = new PagesIndex.TestingFactory(false).newUnsortedPagesIndex(types, 100);
+        pages.forEach(pagesIndex::addPage);
+        return pagesIndex.createLookupSourceSupplier(TEST_SESSION, ImmutableList.of(0), OptionalInt.empty(), Optional.empty(), Optional.empty(), ImmutableList.of(), Optional.empty(), offHeap);
+    }
+}
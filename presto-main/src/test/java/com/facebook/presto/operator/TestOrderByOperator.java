@@ -15,6 +15,8 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.operator.OrderByOperator.OrderByOperatorFactory;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.gen.OrderingCompiler;
@@ -35,6 +37,7 @@ import java.util.concurrent.ScheduledExecutorService;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
+import static com.facebook.airlift.testing.Assertions.assertLessThan;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.common.block.SortOrder.ASC_NULLS_LAST;
@@ -264,6 +267,125 @@ public class TestOrderByOperator
         toPages(operatorFactory, driverContext, input);
     }
 
+    @Test
+    public void testRevokeCompressionBeforeSpill()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(BIGINT, DOUBLE)
+                .addSequencePage(1000, 2000, 2000)
+                .addSequencePage(1000, 0, 0)
+                .addSequencePage(1000, 1000, 1000)
+                .build();
+
+        OrderByOperatorFactory operatorFactory = new OrderByOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                ImmutableList.of(1),
+                10,
+                ImmutableList.of(0),
+                ImmutableList.of(ASC_NULLS_LAST),
+                new PagesIndex.TestingFactory(false),
+                true,
+                Optional.of(spillerFactory),
+                new OrderingCompiler(),
+                Optional.of(new PagesSerdeFactory(new BlockEncodingManager(), true)));
+
+        DriverContext driverContext = createDriverContext(0);
+        Operator operator = operatorFactory.createOperator(driverContext);
+        OperatorContext operatorContext = operator.getOperatorContext();
+
+        // the first revoke compresses the rows in memory
+        operator.addInput(input.get(0));
+        long uncompressedBytes = operatorContext.getReservedRevocableBytes();
+        operator.startMemoryRevoke().get();
+        operator.finishMemoryRevoke();
+        assertEquals(spillerFactory.getSpillsCount(), 0);
+        assertGreaterThan(operatorContext.getReservedRevocableBytes(), 0L);
+        assertLessThan(operatorContext.getReservedRevocableBytes(), uncompressedBytes);
+
+        // the next one spills the compressed rows together with the new ones
+        operator.addInput(input.get(1));
+        operator.startMemoryRevoke().get();
+        operator.finishMemoryRevoke();
+        assertEquals(spillerFactory.getSpillsCount(), 1);
+        assertEquals(operatorContext.getReservedRevocableBytes(), 0);
+
+        // and the one after that compresses again
+        operator.addInput(input.get(2));
+        operator.startMemoryRevoke().get();
+        operator.finishMemoryRevoke();
+        assertEquals(spillerFactory.getSpillsCount(), 1);
+
+        operator.finish();
+        ImmutableList.Builder<Page> output = ImmutableList.builder();
+        while (!operator.isFinished()) {
+            Page page = operator.getOutput();
+            if (page != null) {
+                output.add(page);
+            }
+        }
+        operator.close();
+
+        MaterializedResult.Builder expected = resultBuilder(driverContext.getSession(), DOUBLE);
+        for (int i = 0; i < 3000; i++) {
+            expected.row((double) i);
+        }
+        MaterializedResult actual = toMaterializedResult(driverContext.getSession(), ImmutableList.of(DOUBLE), output.build());
+        assertEquals(actual.getMaterializedRows(), expected.build().getMaterializedRows());
+    }
+
+    @Test
+    public void testRevokeCompressionWhileProducingOutput()
+            throws Exception
+    {
+        OrderByOperatorFactory operatorFactory = new OrderByOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                ImmutableList.of(1),
+                10,
+                ImmutableList.of(0),
+                ImmutableList.of(ASC_NULLS_LAST),
+                new PagesIndex.TestingFactory(false),
+                true,
+                Optional.of(spillerFactory),
+                new OrderingCompiler(),
+                Optional.of(new PagesSerdeFactory(new BlockEncodingManager(), true)));
+
+        DriverContext driverContext = createDriverContext(new DataSize(16, Unit.MEGABYTE).toBytes());
+        Operator operator = operatorFactory.createOperator(driverContext);
+        operator.addInput(rowPagesBuilder(BIGINT, DOUBLE).addSequencePage(3000, 0, 0).build().get(0));
+        operator.finish();
+
+        ImmutableList.Builder<Page> output = ImmutableList.builder();
+        Page page = null;
+        while (page == null) {
+            page = operator.getOutput();
+        }
+        output.add(page);
+
+        // the rows being returned are neither compressed nor spilled
+        operator.startMemoryRevoke().get();
+        operator.finishMemoryRevoke();
+        assertEquals(spillerFactory.getSpillsCount(), 0);
+
+        while (!operator.isFinished()) {
+            page = operator.getOutput();
+            if (page != null) {
+                output.add(page);
+            }
+        }
+        operator.close();
+
+        MaterializedResult.Builder expected = resultBuilder(driverContext.getSession(), DOUBLE);
+        for (int i = 0; i < 3000; i++) {
+            expected.row((double) i);
+        }
+        MaterializedResult actual = toMaterializedResult(driverContext.getSession(), ImmutableList.of(DOUBLE), output.build());
+        assertEquals(actual.getMaterializedRows(), expected.build().getMaterializedRows());
+    }
+
     private DriverContext createDriverContext(long memoryLimit)
     {
         return TestingTaskContext.builder(executor, scheduledExecutor, TEST_SESSION)
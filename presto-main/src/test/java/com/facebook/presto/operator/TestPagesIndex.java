@@ -13,17 +13,25 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.RowPagesBuilder;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
 import com.google.common.collect.ImmutableList;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SequencePageBuilder.createSequencePage;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.lang.String.format;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -82,6 +90,124 @@ public class TestPagesIndex
         assertEquals(lazyCompactPagesIndex.getEstimatedSize(), eagerCompactPagesIndex.getEstimatedSize());
     }
 
+    @Test
+    public void testPrefixSort()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, DOUBLE, VARCHAR, INTEGER);
+        Random random = new Random(42);
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(types);
+        for (int i = 0; i < 2000; i++) {
+            if (i % 500 == 0) {
+                rowPagesBuilder.pageBreak();
+            }
+            rowPagesBuilder.row(
+                    random.nextInt(10) == 0 ? null : (long) random.nextInt(100) - 50,
+                    random.nextInt(10) == 0 ? null : randomDouble(random),
+                    random.nextInt(10) == 0 ? null : "prefix" + random.nextInt(30),
+                    i);
+        }
+        List<Page> pages = rowPagesBuilder.build();
+
+        for (List<Integer> sortChannels : ImmutableList.of(ImmutableList.of(0), ImmutableList.of(0, 3), ImmutableList.of(1), ImmutableList.of(1, 3), ImmutableList.of(2), ImmutableList.of(2, 3))) {
+            for (SortOrder sortOrder : SortOrder.values()) {
+                List<SortOrder> sortOrders = sortChannels.stream()
+                        .map(channel -> sortOrder)
+                        .collect(toImmutableList());
+                PagesIndex prefixSorted = new PagesIndex.TestingFactory(false, true).newPagesIndex(types, 2000);
+                PagesIndex comparatorSorted = new PagesIndex.TestingFactory(false, false).newPagesIndex(types, 2000);
+                pages.forEach(prefixSorted::addPage);
+                pages.forEach(comparatorSorted::addPage);
+                // sort a range that does not start at 0
+                prefixSorted.sort(sortChannels, sortOrders, 100, 1900);
+                comparatorSorted.sort(sortChannels, sortOrders, 100, 1900);
+
+                for (int position = 0; position < 2000; position++) {
+                    if (sortChannels.size() > 1) {
+                        // the rows are fully ordered by the last channel
+                        assertEquals(prefixSorted.getLong(3, position), comparatorSorted.getLong(3, position), format("%s %s %s", sortChannels, sortOrder, position));
+                    }
+                    for (int channel : sortChannels) {
+                        // the comparator does not order +0 and -0
+                        assertEquals(
+                                normalizeZero(types.get(channel).getObjectValue(null, prefixSorted.getSingleValueBlock(channel, position), 0)),
+                                normalizeZero(types.get(channel).getObjectValue(null, comparatorSorted.getSingleValueBlock(channel, position), 0)),
+                                format("%s %s %s", sortChannels, sortOrder, position));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEstimatedSizeIncludesPrefixSort()
+    {
+        List<Type> types = ImmutableList.of(BIGINT);
+        Page page = somePage(types);
+
+        PagesIndex prefixSorted = new PagesIndex.TestingFactory(false, true).newPagesIndex(types, 100);
+        PagesIndex comparatorSorted = new PagesIndex.TestingFactory(false, false).newPagesIndex(types, 100);
+        PagesIndex unsorted = new PagesIndex.TestingFactory(false, true).newUnsortedPagesIndex(types, 100);
+        prefixSorted.addPage(page);
+        comparatorSorted.addPage(page);
+        unsorted.addPage(page);
+
+        assertEquals(
+                prefixSorted.getEstimatedSize().toBytes() - comparatorSorted.getEstimatedSize().toBytes(),
+                (long) page.getPositionCount() * (Integer.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES));
+        assertEquals(unsorted.getEstimatedSize(), comparatorSorted.getEstimatedSize());
+
+        // no type of the index can be prefix sorted
+        PagesIndex booleans = new PagesIndex.TestingFactory(false, true).newPagesIndex(ImmutableList.of(BOOLEAN), 100);
+        booleans.addPage(somePage(ImmutableList.of(BOOLEAN)));
+        PagesIndex comparatorSortedBooleans = new PagesIndex.TestingFactory(false, false).newPagesIndex(ImmutableList.of(BOOLEAN), 100);
+        comparatorSortedBooleans.addPage(somePage(ImmutableList.of(BOOLEAN)));
+        assertEquals(booleans.getEstimatedSize(), comparatorSortedBooleans.getEstimatedSize());
+    }
+
+    @Test
+    public void testPrefixSortOrdersNegativeZeroFirst()
+    {
+        List<Type> types = ImmutableList.of(DOUBLE);
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(types);
+        for (int i = 0; i < 200; i++) {
+            rowPagesBuilder.row(i % 2 == 0 ? 0.0 : -0.0);
+        }
+        List<Page> pages = rowPagesBuilder.build();
+
+        for (SortOrder sortOrder : SortOrder.values()) {
+            PagesIndex pagesIndex = new PagesIndex.TestingFactory(false, true).newPagesIndex(types, 200);
+            pages.forEach(pagesIndex::addPage);
+            pagesIndex.sort(ImmutableList.of(0), ImmutableList.of(sortOrder));
+
+            for (int position = 0; position < 200; position++) {
+                boolean negativeZero = (position < 100) == sortOrder.isAscending();
+                assertEquals(Double.doubleToRawLongBits(pagesIndex.getDouble(0, position)), Double.doubleToRawLongBits(negativeZero ? -0.0 : 0.0), format("%s %s", sortOrder, position));
+            }
+        }
+    }
+
+    private static Object normalizeZero(Object value)
+    {
+        if (value instanceof Double && (Double) value == 0) {
+            return 0.0;
+        }
+        return value;
+    }
+
+    private static Double randomDouble(Random random)
+    {
+        switch (random.nextInt(20)) {
+            case 0:
+                return Double.NaN;
+            case 1:
+                return -0.0;
+            case 2:
+                return 0.0;
+            default:
+                return (double) random.nextInt(100) - 50;
+        }
+    }
+
     private static PagesIndex newPagesIndex(List<Type> types, int expectedPositions, boolean eagerCompact)
     {
         return new PagesIndex.TestingFactory(eagerCompact).newPagesIndex(types, expectedPositions);
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestSpaceSavingSketch
+{
+    @Test
+    public void testExactWhileUnderCapacity()
+    {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+        for (long key = 0; key < 5; key++) {
+            for (int i = 0; i <= key; i++) {
+                sketch.add(key);
+            }
+        }
+        assertEquals(sketch.getTotalCount(), 15);
+        for (long key = 0; key < 5; key++) {
+            assertEquals(sketch.getEstimatedCount(key), key + 1);
+            assertEquals(sketch.getGuaranteedCount(key), key + 1);
+        }
+        assertEquals(sketch.getEstimatedCount(100), 0);
+        assertEquals(sketch.getHeavyHitters(0.25), new LongOpenHashSet(new long[] {3, 4}));
+    }
+
+    @Test
+    public void testHeavyHittersAmongManyKeys()
+    {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(32);
+        long rareKey = 1000;
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 10 == 0) {
+                sketch.add(-1);
+            }
+            else if (i % 10 == 1) {
+                sketch.add(-2);
+            }
+            else {
+                sketch.add(rareKey++);
+            }
+        }
+
+        LongSet heavyHitters = sketch.getHeavyHitters(0.05);
+        assertEquals(heavyHitters.size(), 2);
+        assertTrue(heavyHitters.contains(-1));
+        assertTrue(heavyHitters.contains(-2));
+
+        // the error of a count is at most the total count divided by the capacity
+        for (long key : new long[] {-1, -2}) {
+            assertTrue(sketch.getEstimatedCount(key) >= 1000);
+            assertTrue(sketch.getGuaranteedCount(key) <= 1000);
+            assertTrue(sketch.getGuaranteedCount(key) >= 1000 - sketch.getTotalCount() / 32);
+        }
+        assertTrue(sketch.getEstimatedCount(rareKey - 1) <= sketch.getTotalCount() / 32);
+    }
+}
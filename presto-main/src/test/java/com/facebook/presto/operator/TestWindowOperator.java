@@ -45,6 +45,7 @@ import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
@@ -55,6 +56,7 @@ import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqualsIgnoreOrder;
+import static com.facebook.presto.operator.OperatorAssertion.finishOperator;
 import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.OperatorAssertion.toPages;
 import static com.facebook.presto.operator.WindowFunctionDefinition.window;
@@ -93,6 +95,8 @@ public class TestWindowOperator
     private static final List<WindowFunctionDefinition> LEAD = ImmutableList.of(
             window(new ReflectionWindowFunctionSupplier<>("lead", VARCHAR, ImmutableList.of(VARCHAR, BIGINT, VARCHAR), LeadFunction.class), VARCHAR, UNBOUNDED_FRAME, 1, 3, 4));
 
+    private static final DataSize DEFAULT_UNSPILL_MEMORY_LIMIT = new DataSize(4, Unit.MEGABYTE);
+
     private ExecutorService executor;
     private ScheduledExecutorService scheduledExecutor;
     private DummySpillerFactory spillerFactory;
@@ -302,6 +306,52 @@ public class TestWindowOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected);
     }
 
+    @DataProvider
+    public static Object[][] unspillMemoryLimit()
+    {
+        return new Object[][] {{new DataSize(0, Unit.BYTE), 2}, {DEFAULT_UNSPILL_MEMORY_LIMIT, 1}};
+    }
+
+    @Test(dataProvider = "unspillMemoryLimit")
+    public void testSpillBufferedRowsBeforeMerge(DataSize unspillMemoryLimit, int expectedSpillsCount)
+            throws Exception
+    {
+        WindowOperatorFactory operatorFactory = createFactoryUnbounded(
+                ImmutableList.of(BIGINT),
+                Ints.asList(0),
+                ROW_NUMBER,
+                Ints.asList(),
+                ImmutableList.of(),
+                Ints.asList(0),
+                ImmutableList.copyOf(new SortOrder[] {SortOrder.ASC_NULLS_LAST}),
+                0,
+                true,
+                unspillMemoryLimit);
+
+        DriverContext driverContext = createDriverContext();
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT, BIGINT)
+                .row(1L, 1L)
+                .row(2L, 2L)
+                .row(3L, 3L)
+                .row(4L, 4L)
+                .build();
+
+        try (Operator operator = operatorFactory.createOperator(driverContext)) {
+            // spill the first page, and keep the second one in memory
+            operator.addInput(rowPagesBuilder(BIGINT).row(3L).row(1L).build().get(0));
+            assertEquals(operator.getOutput(), null);
+            getFutureValue(operator.startMemoryRevoke());
+            operator.finishMemoryRevoke();
+            operator.addInput(rowPagesBuilder(BIGINT).row(4L).row(2L).build().get(0));
+            assertEquals(operator.getOutput(), null);
+
+            List<Page> pages = finishOperator(operator);
+            MaterializedResult actual = toMaterializedResult(driverContext.getSession(), expected.getTypes(), pages);
+            assertEquals(actual.getMaterializedRows(), expected.getMaterializedRows());
+        }
+        assertEquals(spillerFactory.getSpillsCount(), expectedSpillsCount);
+    }
+
     @Test(expectedExceptions = ExceededMemoryLimitException.class, expectedExceptionsMessageRegExp = "Query exceeded per-node user memory limit of 10B.*")
     public void testMemoryLimit()
     {
@@ -763,6 +813,31 @@ public class TestWindowOperator
             List<SortOrder> sortOrder,
             int preSortedChannelPrefix,
             boolean spillEnabled)
+    {
+        return createFactoryUnbounded(
+                sourceTypes,
+                outputChannels,
+                functions,
+                partitionChannels,
+                preGroupedChannels,
+                sortChannels,
+                sortOrder,
+                preSortedChannelPrefix,
+                spillEnabled,
+                DEFAULT_UNSPILL_MEMORY_LIMIT);
+    }
+
+    public WindowOperatorFactory createFactoryUnbounded(
+            List<? extends Type> sourceTypes,
+            List<Integer> outputChannels,
+            List<WindowFunctionDefinition> functions,
+            List<Integer> partitionChannels,
+            List<Integer> preGroupedChannels,
+            List<Integer> sortChannels,
+            List<SortOrder> sortOrder,
+            int preSortedChannelPrefix,
+            boolean spillEnabled,
+            DataSize unspillMemoryLimit)
     {
         return new WindowOperatorFactory(
                 0,
@@ -779,6 +854,7 @@ public class TestWindowOperator
                 new PagesIndex.TestingFactory(false),
                 spillEnabled,
                 spillerFactory,
+                unspillMemoryLimit,
                 new OrderingCompiler());
     }
 
@@ -809,6 +885,7 @@ public class TestWindowOperator
                 new PagesIndex.TestingFactory(false),
                 spillEnabled,
                 spillerFactory,
+                DEFAULT_UNSPILL_MEMORY_LIMIT,
                 new OrderingCompiler());
     }
 
@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.exchange;
+
+import com.facebook.presto.SequencePageBuilder;
+import com.facebook.presto.Session;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.Lifespan;
+import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeFactory;
+import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeSinkFactory;
+import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeSinkFactoryId;
+import com.facebook.presto.sql.planner.PartitioningProviderManager;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.SystemSessionProperties.LOCK_FREE_LOCAL_EXCHANGE_ENABLED;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Hands pages from several producer threads through a partitioned local exchange to several consumer threads,
+ * with the locked and the lock-free buffers of {@link LocalExchangeSource}.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MILLISECONDS)
+@Fork(3)
+@Warmup(iterations = 10, time = 500, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkLocalExchange
+{
+    @Benchmark
+    public long exchange(BenchmarkData data)
+            throws ExecutionException, InterruptedException
+    {
+        LocalExchangeFactory localExchangeFactory = new LocalExchangeFactory(
+                new PartitioningProviderManager(),
+                data.session,
+                FIXED_HASH_DISTRIBUTION,
+                data.consumerCount,
+                data.types,
+                ImmutableList.of(0),
+                Optional.empty(),
+                UNGROUPED_EXECUTION,
+                new DataSize(32, MEGABYTE));
+        LocalExchangeSinkFactoryId sinkFactoryId = localExchangeFactory.newSinkFactoryId();
+        localExchangeFactory.noMoreSinkFactories();
+        LocalExchange exchange = localExchangeFactory.getLocalExchange(Lifespan.taskWide());
+
+        LocalExchangeSinkFactory sinkFactory = exchange.getSinkFactory(sinkFactoryId);
+        ImmutableList.Builder<LocalExchangeSink> sinks = ImmutableList.builder();
+        for (int i = 0; i < data.producerCount; i++) {
+            sinks.add(sinkFactory.createSink());
+        }
+        sinkFactory.close();
+        sinkFactory.noMoreSinkFactories();
+
+        ImmutableList.Builder<Future<?>> producers = ImmutableList.builder();
+        for (LocalExchangeSink sink : sinks.build()) {
+            producers.add(data.executor.submit(() -> {
+                for (int i = 0; i < data.pagesPerProducer; i++) {
+                    sink.waitForWriting().get();
+                    sink.addPage(data.page);
+                }
+                sink.finish();
+                return null;
+            }));
+        }
+
+        ImmutableList.Builder<Future<Long>> consumers = ImmutableList.builder();
+        for (int i = 0; i < data.consumerCount; i++) {
+            LocalExchangeSource source = exchange.getSource(i);
+            consumers.add(data.executor.submit(() -> {
+                long positionCount = 0;
+                while (!source.isFinished()) {
+                    Page page = source.removePage();
+                    if (page == null) {
+                        source.waitForReading().get();
+                    }
+                    else {
+                        positionCount += page.getPositionCount();
+                    }
+                }
+                return positionCount;
+            }));
+        }
+
+        for (Future<?> producer : producers.build()) {
+            producer.get();
+        }
+        long positionCount = 0;
+        for (Future<Long> consumer : consumers.build()) {
+            positionCount += consumer.get();
+        }
+        return positionCount;
+    }
+
+    @Test
+    public void verifyExchange()
+            throws ExecutionException, InterruptedException
+    {
+        for (String lockFree : new String[] {"false", "true"}) {
+            BenchmarkData data = new BenchmarkData();
+            data.lockFree = lockFree;
+            data.setup();
+            try {
+                assertEquals(new BenchmarkLocalExchange().exchange(data), (long) data.producerCount * data.pagesPerProducer * data.page.getPositionCount());
+            }
+            finally {
+                data.tearDown();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"false", "true"})
+        private String lockFree = "false";
+
+        @Param({"4", "16"})
+        private int producerCount = 4;
+
+        @Param({"4", "16"})
+        private int consumerCount = 4;
+
+        @Param("1024")
+        private int positionsPerPage = 1024;
+
+        private final int pagesPerProducer = 500;
+        private final List<Type> types = ImmutableList.of(BIGINT);
+        private Session session;
+        private Page page;
+        private ExecutorService executor;
+
+        @Setup
+        public void setup()
+        {
+            session = testSessionBuilder()
+                    .setSystemProperty(LOCK_FREE_LOCAL_EXCHANGE_ENABLED, lockFree)
+                    .build();
+            page = SequencePageBuilder.createSequencePage(types, positionsPerPage);
+            executor = newCachedThreadPool(daemonThreadsNamed("benchmark-local-exchange-%s"));
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkLocalExchange.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
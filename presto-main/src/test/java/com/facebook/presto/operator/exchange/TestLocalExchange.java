@@ -85,7 +85,12 @@ public class TestLocalExchange
     public void setUp()
     {
         partitioningProviderManager = new PartitioningProviderManager();
-        session = testSessionBuilder().build();
+        session = createSession();
+    }
+
+    protected Session createSession()
+    {
+        return testSessionBuilder().build();
     }
 
     @AfterClass
@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.exchange;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.common.Page;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.SystemSessionProperties.LOCK_FREE_LOCAL_EXCHANGE_ENABLED;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class TestLockFreeLocalExchange
+        extends TestLocalExchange
+{
+    @Override
+    protected Session createSession()
+    {
+        return testSessionBuilder()
+                .setSystemProperty(LOCK_FREE_LOCAL_EXCHANGE_ENABLED, "true")
+                .build();
+    }
+
+    @Test
+    public void testPagesAfterOverflowKeepTheirOrder()
+    {
+        LocalExchangeSource source = new LocalExchangeSource(ignored -> {}, true);
+
+        // more pages than the ring buffer holds
+        long nextAdded = 0;
+        while (nextAdded < 300) {
+            source.addPage(createPageReference(nextAdded++));
+        }
+
+        // frees slots in the ring while the overflow still holds pages
+        long nextRemoved = 0;
+        while (nextRemoved < 10) {
+            assertEquals(BIGINT.getLong(source.removePage().getBlock(0), 0), nextRemoved++);
+        }
+        while (nextAdded < 310) {
+            source.addPage(createPageReference(nextAdded++));
+        }
+
+        while (nextRemoved < nextAdded) {
+            assertEquals(BIGINT.getLong(source.removePage().getBlock(0), 0), nextRemoved++);
+        }
+        assertNull(source.removePage());
+    }
+
+    private static PageReference createPageReference(long value)
+    {
+        return new PageReference(new Page(createLongsBlock(value)), 1, releasedSizeInBytes -> {});
+    }
+}
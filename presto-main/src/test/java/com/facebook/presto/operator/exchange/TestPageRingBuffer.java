@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.exchange;
+
+import com.facebook.presto.common.Page;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestPageRingBuffer
+{
+    private final ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("test-page-ring-buffer-%s"));
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testFifo()
+    {
+        PageRingBuffer ringBuffer = new PageRingBuffer(4);
+        assertTrue(ringBuffer.isEmpty());
+        assertNull(ringBuffer.poll());
+
+        // go around the ring several times
+        for (int lap = 0; lap < 3; lap++) {
+            List<PageReference> pages = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                PageReference page = createPageReference(i);
+                pages.add(page);
+                assertTrue(ringBuffer.offer(page));
+            }
+            assertEquals(ringBuffer.size(), 4);
+            assertFalse(ringBuffer.offer(createPageReference(4)));
+
+            for (PageReference page : pages) {
+                assertSame(ringBuffer.poll(), page);
+            }
+            assertTrue(ringBuffer.isEmpty());
+            assertNull(ringBuffer.poll());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers()
+            throws Exception
+    {
+        int producerCount = 4;
+        int consumerCount = 4;
+        int pagesPerProducer = 10_000;
+        PageRingBuffer ringBuffer = new PageRingBuffer(16);
+        AtomicInteger remainingPages = new AtomicInteger(producerCount * pagesPerProducer);
+        AtomicLong consumedSum = new AtomicLong();
+
+        ImmutableList.Builder<Future<?>> futures = ImmutableList.builder();
+        for (int producer = 0; producer < producerCount; producer++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < pagesPerProducer; i++) {
+                    PageReference page = createPageReference(i);
+                    while (!ringBuffer.offer(page)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int consumer = 0; consumer < consumerCount; consumer++) {
+            futures.add(executor.submit(() -> {
+                while (remainingPages.get() > 0) {
+                    PageReference page = ringBuffer.poll();
+                    if (page == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    consumedSum.addAndGet(page.removePage().getBlock(0).getLong(0));
+                    remainingPages.decrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures.build()) {
+            future.get();
+        }
+
+        // every page is consumed exactly once
+        assertEquals(consumedSum.get(), producerCount * ((long) pagesPerProducer * (pagesPerProducer - 1) / 2));
+        assertTrue(ringBuffer.isEmpty());
+    }
+
+    private static PageReference createPageReference(long value)
+    {
+        return new PageReference(new Page(createLongsBlock(value)), 1, releasedSizeInBytes -> {});
+    }
+}
@@ -15,7 +15,9 @@ package com.facebook.presto.operator.repartition;
 
 import com.facebook.presto.block.BlockAssertions.Encoding;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BitPackedLongArrayBlockEncoding;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.block.BlockFlattener;
 import com.facebook.presto.common.block.DictionaryBlock;
@@ -28,6 +30,7 @@ import com.facebook.presto.operator.UncheckedStackArrayAllocator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closer;
 import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
 import org.testng.annotations.Test;
 
@@ -81,6 +84,7 @@ import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestBlockEncodingBuffers
 {
@@ -93,6 +97,22 @@ public class TestBlockEncodingBuffers
         testBlock(BIGINT, createRandomLongsBlock(POSITIONS_PER_BLOCK, 0.2f));
     }
 
+    @Test
+    public void testBitPackedBigint()
+    {
+        assertBitPacked(createBigintBlock(0, 1000, 0.2f), true);
+        assertBitPacked(createBigintBlock(-5, 0, 0.0f), true);
+        assertBitPacked(createBigintBlock(1L << 40, 1L << 20, 0.5f), true);
+        assertBitPacked(createBigintBlock(Long.MIN_VALUE, Long.MAX_VALUE, 0.2f), false);
+        assertBitPacked(createAllNullsBlock(BIGINT, POSITIONS_PER_BLOCK), false);
+
+        BlockBuilder extremes = BIGINT.createBlockBuilder(null, 3);
+        BIGINT.writeLong(extremes, Long.MIN_VALUE);
+        extremes.appendNull();
+        BIGINT.writeLong(extremes, Long.MAX_VALUE);
+        assertBitPacked(extremes.build(), false);
+    }
+
     @Test
     public void testLongDecimal()
     {
@@ -525,6 +545,48 @@ public class TestBlockEncodingBuffers
         return readBlock(blockEncodingSerde, output.slice().getInput());
     }
 
+    private static void assertBitPacked(Block block, boolean expectBitPacked)
+    {
+        Closer blockLeaseCloser = Closer.create();
+        DecodedBlockNode decodedBlock = decodeBlock(new BlockFlattener(new UncheckedStackArrayAllocator()), blockLeaseCloser, block);
+        BlockEncodingBuffer buffer = createBlockEncodingBuffers(decodedBlock, new UncheckedStackArrayAllocator(1000), false, true);
+        copyPositions(decodedBlock, buffer, IntStream.range(0, block.getPositionCount()).toArray(), null);
+
+        SliceOutput output = new DynamicSliceOutput(toIntExact(buffer.getSerializedSizeInBytes()));
+        buffer.serializeTo(output);
+        SliceInput input = output.slice().getInput();
+        assertEquals(readLengthPrefixedString(input).equals(BitPackedLongArrayBlockEncoding.NAME), expectBitPacked);
+
+        input.setPosition(0);
+        assertBlockEquals(BIGINT, readBlock(new BlockEncodingManager(), input), block);
+        if (expectBitPacked) {
+            assertTrue(output.size() < buffer.getSerializedSizeInBytes());
+        }
+    }
+
+    private static String readLengthPrefixedString(SliceInput input)
+    {
+        int length = input.readInt();
+        return input.readSlice(length).toStringUtf8();
+    }
+
+    private static Block createBigintBlock(long minValue, long range, float nullRate)
+    {
+        BlockBuilder builder = BIGINT.createBlockBuilder(null, POSITIONS_PER_BLOCK);
+        for (int i = 0; i < POSITIONS_PER_BLOCK; i++) {
+            if (ThreadLocalRandom.current().nextFloat() < nullRate) {
+                builder.appendNull();
+            }
+            else if (range == Long.MAX_VALUE) {
+                BIGINT.writeLong(builder, ThreadLocalRandom.current().nextLong());
+            }
+            else {
+                BIGINT.writeLong(builder, minValue + ThreadLocalRandom.current().nextLong(range + 1));
+            }
+        }
+        return builder.build();
+    }
+
     private BlockStatus buildBlockStatusWithType(Type type, int positionCount, boolean isView, List<Encoding> wrappings)
     {
         return buildBlockStatusWithType(type, positionCount, isView, 0.2f, 0.2f, wrappings);
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.Page;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createRLEBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.InterpretedHashGenerator.createPositionalWithTypes;
+import static com.facebook.presto.operator.repartition.HotKeyDetector.SAMPLE_INTERVAL;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestHotKeyDetector
+{
+    @Test
+    public void testDetectsHotKey()
+    {
+        HotKeyDetector detector = new HotKeyDetector(ImmutableList.of(BIGINT));
+        for (int i = 0; i < 100; i++) {
+            detector.addPage(new Page(createLongSequenceBlock(i * 1000, (i + 1) * 1000)));
+            // pages smaller than the sample interval are still sampled
+            detector.addPage(new Page(createRLEBlock(-1L, SAMPLE_INTERVAL / 2)));
+            detector.addPage(new Page(createRLEBlock(-1L, 100)));
+        }
+
+        Page hotKeyPage = new Page(createRLEBlock(-1L, 1));
+        long hotKeyHash = createPositionalWithTypes(ImmutableList.of(BIGINT)).hashPosition(0, hotKeyPage);
+        assertTrue(detector.getHotKeyHashes().contains(hotKeyHash));
+        assertEquals(detector.getHotKeyHashes().size(), 1);
+    }
+}
@@ -17,6 +17,7 @@ import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.common.block.DictionaryBlock;
 import com.facebook.presto.common.block.RunLengthEncodedBlock;
 import com.facebook.presto.common.block.VariableWidthBlock;
 import com.facebook.presto.common.type.ArrayType;
@@ -66,6 +67,7 @@ import java.util.stream.IntStream;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertBetweenInclusive;
+import static com.facebook.presto.SystemSessionProperties.OPTIMIZED_REPARTITIONING_DICTIONARY_ENCODING_ENABLED;
 import static com.facebook.presto.block.BlockAssertions.Encoding.DICTIONARY;
 import static com.facebook.presto.block.BlockAssertions.Encoding.RUN_LENGTH;
 import static com.facebook.presto.block.BlockAssertions.createLongDictionaryBlock;
@@ -74,6 +76,7 @@ import static com.facebook.presto.block.BlockAssertions.createMapType;
 import static com.facebook.presto.block.BlockAssertions.createRLEBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomStringBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.block.BlockAssertions.wrapBlock;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
@@ -101,6 +104,7 @@ import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestOptimizedPartitionedOutputOperator
 {
@@ -128,6 +132,64 @@ public class TestOptimizedPartitionedOutputOperator
 
     private static final double OUTPUT_SIZE_ESTIMATION_ERROR_ALLOWANCE = 1.2;
 
+    private static final Session TEST_SESSION = testSessionBuilder()
+            .setCatalog("tpch")
+            .setSchema(TINY_SCHEMA_NAME)
+            .build();
+    private static final Session DICTIONARY_ENCODING_SESSION = testSessionBuilder()
+            .setCatalog("tpch")
+            .setSchema(TINY_SCHEMA_NAME)
+            .setSystemProperty(OPTIMIZED_REPARTITIONING_DICTIONARY_ENCODING_ENABLED, "true")
+            .build();
+
+    @Test
+    public void testDictionaryEncodedOutput()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        int[] ids = new int[POSITION_COUNT];
+        for (int i = 0; i < POSITION_COUNT; i++) {
+            ids[i] = i % 3;
+        }
+        Page page = new Page(createLongSequenceBlock(0, POSITION_COUNT), new DictionaryBlock(createStringsBlock("US", "CA", "MX"), ids));
+
+        TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
+        OptimizedPartitionedOutputOperator operator = createOptimizedPartitionedOutputOperator(types, ImmutableList.of(0), new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT), outputBuffer, OptionalInt.empty(), MAX_MEMORY, TEST_SESSION);
+        processPages(operator, page);
+
+        TestingPartitionedOutputBuffer dictionaryOutputBuffer = createPartitionedOutputBuffer();
+        OptimizedPartitionedOutputOperator dictionaryOperator = createOptimizedPartitionedOutputOperator(types, ImmutableList.of(0), new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT), dictionaryOutputBuffer, OptionalInt.empty(), MAX_MEMORY, DICTIONARY_ENCODING_SESSION);
+        processPages(dictionaryOperator, page);
+
+        assertEquals(dictionaryOutputBuffer.getPages().keySet(), outputBuffer.getPages().keySet());
+        for (Map.Entry<Integer, List<Page>> entry : dictionaryOutputBuffer.getPages().entrySet()) {
+            for (Page outputPage : entry.getValue()) {
+                Block block = outputPage.getBlock(1);
+                assertTrue(block instanceof DictionaryBlock);
+                assertTrue(((DictionaryBlock) block).getDictionary().getPositionCount() <= 3);
+            }
+            assertPageEquals(types, mergePages(types, entry.getValue()), mergePages(types, outputBuffer.getPages().get(entry.getKey())));
+        }
+        assertTrue(dictionaryOperator.getOperatorContext().getOutputDataSize().getTotalCount() < operator.getOperatorContext().getOutputDataSize().getTotalCount());
+    }
+
+    @Test
+    public void testPartitionedWithDictionaryEncoding()
+    {
+        List<Type> targetTypes = ImmutableList.of(VARCHAR, BIGINT, VARCHAR);
+        List<Type> types = updateBlockTypesWithHashBlockAndNullBlock(targetTypes, true, false);
+
+        // The first page decides the encoding, and later pages of other encodings are kept dictionary encoded too
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < PAGE_COUNT / 5; i++) {
+            pages.add(PageAssertions.createPageWithRandomData(targetTypes, POSITION_COUNT + RANDOM.nextInt(POSITION_COUNT), true, false, 0.2f, 0.2f, true, ImmutableList.of(DICTIONARY)));
+            pages.add(PageAssertions.createPageWithRandomData(targetTypes, POSITION_COUNT + RANDOM.nextInt(POSITION_COUNT), true, false, 0.2f, 0.2f, false, ImmutableList.of()));
+            pages.add(PageAssertions.createPageWithRandomData(targetTypes, POSITION_COUNT + RANDOM.nextInt(POSITION_COUNT), true, false, 0.2f, 0.2f, true, ImmutableList.of(RUN_LENGTH, DICTIONARY)));
+        }
+
+        testPartitioned(types, pages, new DataSize(128, MEGABYTE), ImmutableList.of(0), new PrecomputedHashGenerator(0), DICTIONARY_ENCODING_SESSION);
+        testPartitioned(types, pages, new DataSize(1, KILOBYTE), ImmutableList.of(0), new PrecomputedHashGenerator(0), DICTIONARY_ENCODING_SESSION);
+    }
+
     @Test
     public void testPartitionedSinglePagePrimitiveTypes()
     {
@@ -697,6 +759,11 @@ public class TestOptimizedPartitionedOutputOperator
     }
 
     private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator)
+    {
+        testPartitioned(types, pages, maxMemory, partitionChannel, hashGenerator, TEST_SESSION);
+    }
+
+    private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator, Session session)
     {
         TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
         PartitionFunction partitionFunction = new LocalPartitionGenerator(hashGenerator, PARTITION_COUNT);
@@ -706,7 +773,8 @@ public class TestOptimizedPartitionedOutputOperator
                 partitionFunction,
                 outputBuffer,
                 OptionalInt.empty(),
-                maxMemory);
+                maxMemory,
+                session);
 
         Map<Integer, List<Page>> expectedPageList = new HashMap<>();
 
@@ -896,6 +964,18 @@ public class TestOptimizedPartitionedOutputOperator
             PartitionedOutputBuffer buffer,
             OptionalInt nullChannel,
             DataSize maxMemory)
+    {
+        return createOptimizedPartitionedOutputOperator(types, partitionChannel, partitionFunction, buffer, nullChannel, maxMemory, TEST_SESSION);
+    }
+
+    private OptimizedPartitionedOutputOperator createOptimizedPartitionedOutputOperator(
+            List<Type> types,
+            List<Integer> partitionChannel,
+            PartitionFunction partitionFunction,
+            PartitionedOutputBuffer buffer,
+            OptionalInt nullChannel,
+            DataSize maxMemory,
+            Session session)
     {
         PagesSerdeFactory serdeFactory = new PagesSerdeFactory(new BlockEncodingManager(), false);
 
@@ -910,17 +990,12 @@ public class TestOptimizedPartitionedOutputOperator
 
         return (OptimizedPartitionedOutputOperator) operatorFactory
                 .createOutputOperator(0, new PlanNodeId("plan-node-0"), types, Function.identity(), Optional.of(outputPartitioning), serdeFactory)
-                .createOperator(createDriverContext());
+                .createOperator(createDriverContext(session));
     }
 
-    private DriverContext createDriverContext()
+    private DriverContext createDriverContext(Session session)
     {
-        Session testSession = testSessionBuilder()
-                .setCatalog("tpch")
-                .setSchema(TINY_SCHEMA_NAME)
-                .build();
-
-        return TestingTaskContext.builder(EXECUTOR, SCHEDULER, testSession)
+        return TestingTaskContext.builder(EXECUTOR, SCHEDULER, session)
                 .setMemoryPoolSize(MAX_MEMORY)
                 .build()
                 .addPipelineContext(0, true, true, false)
@@ -13,15 +13,22 @@
  */
 package com.facebook.presto.operator.window;
 
+import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.testing.MaterializedRow;
 import org.intellij.lang.annotations.Language;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
+import static org.testng.Assert.assertEquals;
 
 public class TestAggregateWindowFunction
         extends AbstractTestWindowFunction
@@ -530,4 +537,87 @@ public class TestAggregateWindowFunction
                         .row(null, null, null)
                         .build());
     }
+
+    @Test
+    public void testSlidingFrames()
+    {
+        // three partitions of 333 or 334 rows, with some null values
+        MaterializedResult actual = queryRunner.execute("" +
+                "SELECT i, " +
+                "sum(x) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND CURRENT ROW), " +
+                "count(x) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND CURRENT ROW), " +
+                "count(*) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 5 FOLLOWING AND 10 FOLLOWING), " +
+                "avg(x) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND CURRENT ROW), " +
+                "min(x) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND 50 FOLLOWING), " +
+                "max(x) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND 50 FOLLOWING), " +
+                "sum(CAST(x AS DOUBLE)) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND 50 FOLLOWING), " +
+                "cardinality(array_agg(x) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND 50 FOLLOWING)), " +
+                "min(CAST(x AS DOUBLE)) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND 50 FOLLOWING), " +
+                "max(CAST(x AS DOUBLE)) OVER (PARTITION BY i % 3 ORDER BY i ROWS BETWEEN 99 PRECEDING AND 50 FOLLOWING) " +
+                "FROM (SELECT i, IF(i % 11 = 0, NULL, (i * 7919) % 1000) x FROM UNNEST(sequence(1, 1000)) t(i)) " +
+                "ORDER BY i");
+
+        assertEquals(actual.getRowCount(), 1000);
+        for (MaterializedRow row : actual.getMaterializedRows()) {
+            long i = (long) row.getField(0);
+            assertEquals(row.getField(1), sum(i, -99, 0), "sum " + i);
+            assertEquals(row.getField(2), count(i, -99, 0, false), "count " + i);
+            assertEquals(row.getField(3), count(i, 5, 10, true), "count(*) " + i);
+            Long sum = sum(i, -99, 0);
+            assertEquals(row.getField(4), sum == null ? null : (double) sum / count(i, -99, 0, false), "avg " + i);
+            assertEquals(row.getField(5), minMax(i, -99, 50, false), "min " + i);
+            assertEquals(row.getField(6), minMax(i, -99, 50, true), "max " + i);
+            Long doubleSum = sum(i, -99, 50);
+            assertEquals(row.getField(7), doubleSum == null ? null : (double) doubleSum, "double sum " + i);
+            assertEquals(row.getField(8), count(i, -99, 50, true), "array_agg " + i);
+            Long min = minMax(i, -99, 50, false);
+            assertEquals(row.getField(9), min == null ? null : (double) min, "double min " + i);
+            Long max = minMax(i, -99, 50, true);
+            assertEquals(row.getField(10), max == null ? null : (double) max, "double max " + i);
+        }
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "bigint addition overflow.*")
+    public void testSlidingSumOverflow()
+    {
+        queryRunner.execute("" +
+                "SELECT sum(x) OVER (ORDER BY i ROWS BETWEEN 1 PRECEDING AND CURRENT ROW) " +
+                "FROM (VALUES (1, BIGINT '1'), (2, BIGINT '9223372036854775807'), (3, BIGINT '1')) t(i, x)");
+    }
+
+    // rows of the frame [i + startOffset, i + endOffset] in the partition of row i of testSlidingFrames
+    private static List<Long> frameValues(long i, int startOffset, int endOffset, boolean includeNulls)
+    {
+        List<Long> values = new ArrayList<>();
+        for (long row = i + 3L * startOffset; row <= i + 3L * endOffset; row += 3) {
+            if (row < 1 || row > 1000) {
+                continue;
+            }
+            Long value = row % 11 == 0 ? null : (row * 7919) % 1000;
+            if (value != null || includeNulls) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private static Long sum(long i, int startOffset, int endOffset)
+    {
+        List<Long> values = frameValues(i, startOffset, endOffset, false);
+        return values.isEmpty() ? null : values.stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static long count(long i, int startOffset, int endOffset, boolean includeNulls)
+    {
+        return frameValues(i, startOffset, endOffset, includeNulls).size();
+    }
+
+    private static Long minMax(long i, int startOffset, int endOffset, boolean max)
+    {
+        List<Long> values = frameValues(i, startOffset, endOffset, false);
+        if (values.isEmpty()) {
+            return null;
+        }
+        return max ? Collections.max(values) : Collections.min(values);
+    }
 }
@@ -43,6 +43,7 @@ public class TestInternalCommunicationConfig
                 .setKerberosUseCanonicalHostname(true)
                 .setBinaryTransportEnabled(false)
                 .setMaxTaskUpdateSize(new DataSize(16, MEGABYTE))
+                .setTaskSplitUpdateEnabled(false)
                 .setTaskCommunicationProtocol(CommunicationProtocol.HTTP)
                 .setServerInfoCommunicationProtocol(CommunicationProtocol.HTTP)
                 .setThriftTransportEnabled(false)
@@ -68,6 +69,7 @@ public class TestInternalCommunicationConfig
                 .put("internal-communication.kerberos.use-canonical-hostname", "false")
                 .put("experimental.internal-communication.binary-transport-enabled", "true")
                 .put("experimental.internal-communication.max-task-update-size", "512MB")
+                .put("experimental.internal-communication.task-split-update-enabled", "true")
                 .put("internal-communication.task-communication-protocol", "THRIFT")
                 .put("internal-communication.server-info-communication-protocol", "THRIFT")
                 .put("experimental.internal-communication.thrift-transport-enabled", "true")
@@ -90,6 +92,7 @@ public class TestInternalCommunicationConfig
                 .setKerberosUseCanonicalHostname(false)
                 .setBinaryTransportEnabled(true)
                 .setMaxTaskUpdateSize(new DataSize(512, MEGABYTE))
+                .setTaskSplitUpdateEnabled(true)
                 .setTaskCommunicationProtocol(CommunicationProtocol.THRIFT)
                 .setServerInfoCommunicationProtocol(CommunicationProtocol.THRIFT)
                 .setThriftTransportEnabled(true)
@@ -199,6 +199,12 @@ public class TestThriftServerInfoIntegration
                     throw new UnsupportedOperationException();
                 }
 
+                @Override
+                public TaskInfo addSources(TaskId taskId, List<TaskSource> sources)
+                {
+                    throw new UnsupportedOperationException();
+                }
+
                 @Override
                 public TaskInfo cancelTask(TaskId taskId)
                 {
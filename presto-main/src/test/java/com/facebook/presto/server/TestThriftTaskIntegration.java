@@ -228,6 +228,12 @@ public class TestThriftTaskIntegration
                     throw new UnsupportedOperationException();
                 }
 
+                @Override
+                public TaskInfo addSources(TaskId taskId, List<TaskSource> sources)
+                {
+                    throw new UnsupportedOperationException();
+                }
+
                 @Override
                 public TaskInfo cancelTask(TaskId taskId)
                 {
@@ -55,6 +55,7 @@ import com.facebook.presto.metadata.MetadataUpdates;
 import com.facebook.presto.metadata.Split;
 import com.facebook.presto.server.ConnectorMetadataUpdateHandleJsonSerde;
 import com.facebook.presto.server.InternalCommunicationConfig;
+import com.facebook.presto.server.TaskSplitUpdateRequest;
 import com.facebook.presto.server.TaskUpdateRequest;
 import com.facebook.presto.spi.ConnectorId;
 import com.facebook.presto.spi.plan.PlanNodeId;
@@ -94,6 +95,7 @@ import javax.ws.rs.core.UriInfo;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -205,6 +207,69 @@ public class TestHttpRemoteTask
         httpRemoteTaskFactory.stop();
     }
 
+    @Test(timeOut = 60000)
+    public void testSplitUpdate()
+            throws Exception
+    {
+        AtomicLong lastActivityNanos = new AtomicLong(System.nanoTime());
+        TestingTaskResource testingTaskResource = new TestingTaskResource(lastActivityNanos, FailureScenario.NO_FAILURE);
+        InternalCommunicationConfig internalCommunicationConfig = new InternalCommunicationConfig().setTaskSplitUpdateEnabled(true);
+
+        HttpRemoteTaskFactory httpRemoteTaskFactory = createHttpRemoteTaskFactory(testingTaskResource, false, internalCommunicationConfig);
+
+        RemoteTask remoteTask = createRemoteTask(httpRemoteTaskFactory);
+
+        testingTaskResource.setInitialTaskInfo(remoteTask.getTaskInfo());
+        remoteTask.start();
+        poll(() -> !remoteTask.getTaskInfo().isNeedsPlan());
+
+        Lifespan lifespan = Lifespan.driverGroup(3);
+        remoteTask.addSplits(ImmutableMultimap.of(TABLE_SCAN_NODE_ID, new Split(new ConnectorId("test"), TestingTransactionHandle.create(), TestingSplit.createLocalSplit(), lifespan, NON_CACHEABLE)));
+        poll(() -> testingTaskResource.getTaskSource(TABLE_SCAN_NODE_ID) != null);
+        remoteTask.addSplits(ImmutableMultimap.of(TABLE_SCAN_NODE_ID, new Split(new ConnectorId("test"), TestingTransactionHandle.create(), TestingSplit.createLocalSplit(), lifespan, NON_CACHEABLE)));
+        poll(() -> testingTaskResource.getTaskSource(TABLE_SCAN_NODE_ID).getSplits().size() == 2);
+
+        remoteTask.noMoreSplits(TABLE_SCAN_NODE_ID);
+        poll(() -> testingTaskResource.getTaskSource(TABLE_SCAN_NODE_ID).isNoMoreSplits());
+        assertTrue(testingTaskResource.getSplitUpdateCount() > 0);
+
+        remoteTask.cancel();
+        poll(() -> remoteTask.getTaskStatus().getState().isDone());
+
+        httpRemoteTaskFactory.stop();
+    }
+
+    @Test(timeOut = 60000)
+    public void testSplitUpdateResentWithPlan()
+            throws Exception
+    {
+        AtomicLong lastActivityNanos = new AtomicLong(System.nanoTime());
+        TestingTaskResource testingTaskResource = new TestingTaskResource(lastActivityNanos, FailureScenario.NO_FAILURE);
+        InternalCommunicationConfig internalCommunicationConfig = new InternalCommunicationConfig().setTaskSplitUpdateEnabled(true);
+
+        HttpRemoteTaskFactory httpRemoteTaskFactory = createHttpRemoteTaskFactory(testingTaskResource, false, internalCommunicationConfig);
+
+        RemoteTask remoteTask = createRemoteTask(httpRemoteTaskFactory);
+
+        testingTaskResource.setInitialTaskInfo(remoteTask.getTaskInfo());
+        remoteTask.start();
+        poll(() -> !remoteTask.getTaskInfo().isNeedsPlan());
+
+        // the worker loses the plan, so it rejects the next split update and the splits are sent again with the plan
+        testingTaskResource.losePlan();
+        Lifespan lifespan = Lifespan.driverGroup(3);
+        remoteTask.addSplits(ImmutableMultimap.of(TABLE_SCAN_NODE_ID, new Split(new ConnectorId("test"), TestingTransactionHandle.create(), TestingSplit.createLocalSplit(), lifespan, NON_CACHEABLE)));
+        poll(() -> testingTaskResource.getTaskSource(TABLE_SCAN_NODE_ID) != null);
+        assertEquals(testingTaskResource.getTaskSource(TABLE_SCAN_NODE_ID).getSplits().size(), 1);
+        assertTrue(testingTaskResource.getRejectedSplitUpdateCount() > 0);
+        poll(() -> !remoteTask.getTaskInfo().isNeedsPlan());
+
+        remoteTask.cancel();
+        poll(() -> remoteTask.getTaskStatus().getState().isDone());
+
+        httpRemoteTaskFactory.stop();
+    }
+
     @Test(timeOut = 50000)
     public void testHTTPRemoteTaskSize()
             throws Exception
@@ -365,11 +430,13 @@ public class TestHttpRemoteTask
                         smileCodecBinder(binder).bindSmileCodec(TaskStatus.class);
                         smileCodecBinder(binder).bindSmileCodec(TaskInfo.class);
                         smileCodecBinder(binder).bindSmileCodec(TaskUpdateRequest.class);
+                        smileCodecBinder(binder).bindSmileCodec(TaskSplitUpdateRequest.class);
                         smileCodecBinder(binder).bindSmileCodec(PlanFragment.class);
                         smileCodecBinder(binder).bindSmileCodec(MetadataUpdates.class);
                         jsonCodecBinder(binder).bindJsonCodec(TaskStatus.class);
                         jsonCodecBinder(binder).bindJsonCodec(TaskInfo.class);
                         jsonCodecBinder(binder).bindJsonCodec(TaskUpdateRequest.class);
+                        jsonCodecBinder(binder).bindJsonCodec(TaskSplitUpdateRequest.class);
                         jsonCodecBinder(binder).bindJsonCodec(PlanFragment.class);
                         jsonCodecBinder(binder).bindJsonCodec(MetadataUpdates.class);
                         jsonBinder(binder).addKeySerializerBinding(VariableReferenceExpression.class).to(Serialization.VariableReferenceExpressionSerializer.class);
@@ -393,6 +460,8 @@ public class TestHttpRemoteTask
                             SmileCodec<TaskInfo> taskInfoSmileCodec,
                             JsonCodec<TaskUpdateRequest> taskUpdateRequestJsonCodec,
                             SmileCodec<TaskUpdateRequest> taskUpdateRequestSmileCodec,
+                            JsonCodec<TaskSplitUpdateRequest> taskSplitUpdateRequestJsonCodec,
+                            SmileCodec<TaskSplitUpdateRequest> taskSplitUpdateRequestSmileCodec,
                             JsonCodec<PlanFragment> planFragmentJsonCodec,
                             SmileCodec<PlanFragment> planFragmentSmileCodec,
                             JsonCodec<MetadataUpdates> metadataUpdatesJsonCodec,
@@ -414,6 +483,8 @@ public class TestHttpRemoteTask
                                 taskInfoThriftCodec,
                                 taskUpdateRequestJsonCodec,
                                 taskUpdateRequestSmileCodec,
+                                taskSplitUpdateRequestJsonCodec,
+                                taskSplitUpdateRequestSmileCodec,
                                 planFragmentJsonCodec,
                                 planFragmentSmileCodec,
                                 metadataUpdatesJsonCodec,
@@ -496,6 +567,9 @@ public class TestHttpRemoteTask
         private long taskInstanceIdMostSignificantBits = INITIAL_TASK_INSTANCE_ID.getMostSignificantBits();
 
         private long statusFetchCounter;
+        private boolean needsPlan;
+        private int splitUpdateCount;
+        private int rejectedSplitUpdateCount;
 
         public TestingTaskResource(AtomicLong lastActivityNanos, FailureScenario failureScenario)
         {
@@ -532,13 +606,61 @@ public class TestHttpRemoteTask
                 TaskUpdateRequest taskUpdateRequest,
                 @Context UriInfo uriInfo)
         {
-            for (TaskSource source : taskUpdateRequest.getSources()) {
-                taskSourceMap.compute(source.getPlanNodeId(), (planNodeId, taskSource) -> taskSource == null ? source : taskSource.update(source));
+            if (taskUpdateRequest.getFragment().isPresent()) {
+                needsPlan = false;
+            }
+            addSources(taskUpdateRequest.getSources());
+            lastActivityNanos.set(System.nanoTime());
+            return buildTaskInfo();
+        }
+
+        @POST
+        @Path("{taskId}/splits")
+        @Consumes(MediaType.APPLICATION_JSON)
+        @Produces(MediaType.APPLICATION_JSON)
+        public synchronized TaskInfo addSplits(
+                @PathParam("taskId") TaskId taskId,
+                TaskSplitUpdateRequest taskSplitUpdateRequest,
+                @Context UriInfo uriInfo)
+        {
+            splitUpdateCount++;
+            if (needsPlan) {
+                // like SqlTask, a task without a plan does not take the sources
+                rejectedSplitUpdateCount++;
+                lastActivityNanos.set(System.nanoTime());
+                return buildTaskInfo();
             }
+            addSources(taskSplitUpdateRequest.getSources());
             lastActivityNanos.set(System.nanoTime());
             return buildTaskInfo();
         }
 
+        private void addSources(List<TaskSource> sources)
+        {
+            for (TaskSource source : sources) {
+                taskSourceMap.compute(source.getPlanNodeId(), (planNodeId, taskSource) -> taskSource == null ? source : taskSource.update(source));
+            }
+        }
+
+        public synchronized int getSplitUpdateCount()
+        {
+            return splitUpdateCount;
+        }
+
+        public synchronized int getRejectedSplitUpdateCount()
+        {
+            return rejectedSplitUpdateCount;
+        }
+
+        /**
+         * Simulates a worker that restarted and created the task again, without its plan and sources.
+         */
+        public synchronized void losePlan()
+        {
+            needsPlan = true;
+            taskSourceMap.clear();
+        }
+
         public synchronized TaskSource getTaskSource(PlanNodeId planNodeId)
         {
             TaskSource source = taskSourceMap.get(planNodeId);
@@ -583,6 +705,7 @@ public class TestHttpRemoteTask
             this.initialTaskInfo = initialTaskInfo;
             this.initialTaskStatus = initialTaskInfo.getTaskStatus();
             this.taskState = initialTaskStatus.getState();
+            this.needsPlan = initialTaskInfo.isNeedsPlan();
             this.version = initialTaskStatus.getVersion();
             switch (failureScenario) {
                 case TASK_MISMATCH_WHEN_VERSION_IS_HIGH:
@@ -608,7 +731,7 @@ public class TestHttpRemoteTask
                     initialTaskInfo.getOutputBuffers(),
                     initialTaskInfo.getNoMoreSplits(),
                     initialTaskInfo.getStats(),
-                    initialTaskInfo.isNeedsPlan(),
+                    needsPlan,
                     initialTaskInfo.getMetadataUpdates(),
                     initialTaskInfo.getNodeId());
         }
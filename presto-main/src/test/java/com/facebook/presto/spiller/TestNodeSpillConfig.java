@@ -18,10 +18,14 @@ import com.google.common.collect.ImmutableMap;
 import io.airlift.units.DataSize;
 import org.testng.annotations.Test;
 
+import javax.validation.constraints.AssertTrue;
+
 import java.util.Map;
 
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static com.facebook.airlift.testing.ValidationAssertions.assertFailsValidation;
+import static com.facebook.airlift.testing.ValidationAssertions.assertValidates;
 import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
@@ -37,6 +41,8 @@ public class TestNodeSpillConfig
                 .setQueryMaxSpillPerNode(new DataSize(100, GIGABYTE))
                 .setSpillCompressionEnabled(false)
                 .setSpillEncryptionEnabled(false)
+                .setSpillStripingEnabled(false)
+                .setSpillStripeSize(new DataSize(1, MEGABYTE))
                 .setTempStorageBufferSize(new DataSize(4, KILOBYTE)));
     }
 
@@ -49,6 +55,8 @@ public class TestNodeSpillConfig
                 .put("experimental.query-max-spill-per-node", "15 MB")
                 .put("experimental.spill-compression-enabled", "true")
                 .put("experimental.spill-encryption-enabled", "true")
+                .put("experimental.spill-striping-enabled", "true")
+                .put("experimental.spill-stripe-size", "4MB")
                 .put("experimental.temp-storage-buffer-size", "24MB")
                 .build();
 
@@ -58,8 +66,21 @@ public class TestNodeSpillConfig
                 .setQueryMaxSpillPerNode(new DataSize(15, MEGABYTE))
                 .setSpillCompressionEnabled(true)
                 .setSpillEncryptionEnabled(true)
+                .setSpillStripingEnabled(true)
+                .setSpillStripeSize(new DataSize(4, MEGABYTE))
                 .setTempStorageBufferSize(new DataSize(24, MEGABYTE));
 
         assertFullMapping(properties, expected);
     }
+
+    @Test
+    public void testSpillStripeSizeValidation()
+    {
+        assertValidates(new NodeSpillConfig().setSpillStripeSize(new DataSize(64, KILOBYTE)));
+        assertFailsValidation(
+                new NodeSpillConfig().setSpillStripeSize(new DataSize(6, KILOBYTE)),
+                "spillStripeSizeAligned",
+                "experimental.spill-stripe-size must be a multiple of 4kB",
+                AssertTrue.class);
+    }
 }
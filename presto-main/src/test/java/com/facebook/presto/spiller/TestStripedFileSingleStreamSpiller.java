@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.PageAssertions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.MoreFiles.listFiles;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static java.nio.file.Files.size;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestStripedFileSingleStreamSpiller
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, VARCHAR);
+    private static final DataSize STRIPE_SIZE = new DataSize(4, KILOBYTE);
+
+    private final ListeningExecutorService executor = listeningDecorator(newCachedThreadPool());
+    private final ListeningExecutorService ioExecutor = listeningDecorator(newCachedThreadPool());
+    private final File tempDirectory = Files.createTempDir();
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws Exception
+    {
+        executor.shutdown();
+        ioExecutor.shutdown();
+        deleteRecursively(tempDirectory.toPath(), ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testSpill()
+            throws Exception
+    {
+        assertSpill(false, false);
+    }
+
+    @Test
+    public void testSpillCompressionAndEncryption()
+            throws Exception
+    {
+        assertSpill(true, true);
+    }
+
+    @Test
+    public void testStripeBuffersAreDirectAndAligned()
+    {
+        for (int i = 0; i < 10; i++) {
+            ByteBuffer buffer = StripedFileSingleStreamSpiller.allocateAligned((int) STRIPE_SIZE.toBytes());
+            assertTrue(buffer.isDirect());
+            assertEquals(buffer.capacity(), STRIPE_SIZE.toBytes());
+            assertEquals(wrappedBuffer(buffer).getAddress() % StripedFileSingleStreamSpiller.ALIGNMENT, 0);
+        }
+    }
+
+    @Test
+    public void testSinglePathIsNotStriped()
+    {
+        List<Path> spillPaths = createSpillPaths(1);
+        FileSingleStreamSpillerFactory spillerFactory = createSpillerFactory(spillPaths, false, false);
+        LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+        try (SingleStreamSpiller spiller = spillerFactory.create(TYPES, new TestingSpillContext(), memoryContext)) {
+            assertTrue(spiller instanceof FileSingleStreamSpiller);
+        }
+    }
+
+    private void assertSpill(boolean compression, boolean encryption)
+            throws Exception
+    {
+        List<Path> spillPaths = createSpillPaths(3);
+        FileSingleStreamSpillerFactory spillerFactory = createSpillerFactory(spillPaths, compression, encryption);
+        LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+        SingleStreamSpiller singleStreamSpiller = spillerFactory.create(TYPES, new TestingSpillContext(), memoryContext);
+        assertTrue(singleStreamSpiller instanceof StripedFileSingleStreamSpiller);
+        StripedFileSingleStreamSpiller spiller = (StripedFileSingleStreamSpiller) singleStreamSpiller;
+        assertEquals(spiller.getFileCount(), 3);
+
+        // one stripe buffer per file plus one, each with room to be aligned, and the buffer of the slice output or input
+        long bufferSize = 4 * (STRIPE_SIZE.toBytes() + StripedFileSingleStreamSpiller.ALIGNMENT) + FileSingleStreamSpiller.BUFFER_SIZE;
+        assertEquals(StripedFileSingleStreamSpiller.getBufferSizeInBytes(3, (int) STRIPE_SIZE.toBytes()), bufferSize);
+        assertEquals(memoryContext.getBytes(), bufferSize);
+
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        for (int i = 0; i < 10; i++) {
+            pages.add(buildPage(i * 1000, 1000));
+        }
+        List<Page> expectedPages = pages.build();
+        spiller.spill(expectedPages.get(0)).get();
+        spiller.spill(expectedPages.subList(1, expectedPages.size()).iterator()).get();
+
+        // every spill path holds one file, with at least one stripe in it
+        for (Path spillPath : spillPaths) {
+            List<Path> files = listFiles(spillPath);
+            assertEquals(files.size(), 1);
+            assertTrue(size(files.get(0)) > 0);
+        }
+
+        List<Page> spilledPages = ImmutableList.copyOf(spiller.getSpilledPages());
+        assertEquals(memoryContext.getBytes(), bufferSize);
+        assertEquals(spilledPages.size(), expectedPages.size());
+        for (int i = 0; i < expectedPages.size(); i++) {
+            PageAssertions.assertPageEquals(TYPES, spilledPages.get(i), expectedPages.get(i));
+        }
+
+        spiller.close();
+        for (Path spillPath : spillPaths) {
+            assertEquals(listFiles(spillPath).size(), 0);
+        }
+        assertEquals(memoryContext.getBytes(), 0);
+    }
+
+    private List<Path> createSpillPaths(int count)
+    {
+        File directory = new File(tempDirectory, UUID.randomUUID().toString());
+        return IntStream.range(0, count)
+                .mapToObj(i -> new File(directory, "disk" + i).toPath())
+                .collect(toImmutableList());
+    }
+
+    private FileSingleStreamSpillerFactory createSpillerFactory(List<Path> spillPaths, boolean compression, boolean encryption)
+    {
+        // executors won't be closed, because we don't call destroy() on the spiller factory
+        return new FileSingleStreamSpillerFactory(
+                executor,
+                Optional.of(ioExecutor),
+                new BlockEncodingManager(),
+                new SpillerStats(),
+                spillPaths,
+                1.0,
+                compression,
+                encryption,
+                true,
+                STRIPE_SIZE);
+    }
+
+    private static Page buildPage(int start, int positionCount)
+    {
+        BlockBuilder numbers = BIGINT.createBlockBuilder(null, positionCount);
+        BlockBuilder names = VARCHAR.createBlockBuilder(null, positionCount);
+        for (int i = start; i < start + positionCount; i++) {
+            BIGINT.writeLong(numbers, i);
+            VARCHAR.writeSlice(names, utf8Slice("value-" + i));
+        }
+        return new Page(numbers.build(), names.build());
+    }
+}
@@ -46,6 +46,7 @@ import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrate
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrategy.PER_TASK_MEMORY_THRESHOLD;
 import static com.facebook.presto.sql.tree.CreateView.Security.DEFINER;
 import static com.facebook.presto.sql.tree.CreateView.Security.INVOKER;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
@@ -96,6 +97,7 @@ public class TestFeaturesConfig
                 .setOptimizeHashGeneration(true)
                 .setPushTableWriteThroughUnion(true)
                 .setDictionaryAggregation(false)
+                .setFixedWidthGroupByHashEnabled(false)
                 .setConfidenceBasedBroadcastEnabled(false)
                 .setRetryQueryWithHistoryBasedOptimizationEnabled(false)
                 .setTreatLowConfidenceZeroEstimationAsUnknownEnabled(false)
@@ -120,6 +122,7 @@ public class TestFeaturesConfig
                 .setDynamicFilteringMaxPerDriverRowCount(100)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(10, KILOBYTE))
                 .setDynamicFilteringRangeRowLimitPerDriver(0)
+                .setDynamicFilteringMaxBloomFilterSizePerDriver(new DataSize(0, BYTE))
                 .setFragmentResultCachingEnabled(false)
                 .setEnableStatsCalculator(true)
                 .setEnableStatsCollectionForTemporaryTable(false)
@@ -132,6 +135,7 @@ public class TestFeaturesConfig
                 .setPushAggregationThroughJoin(true)
                 .setForceSingleNodeOutput(true)
                 .setPagesIndexEagerCompactionEnabled(false)
+                .setPagesIndexPrefixSortEnabled(true)
                 .setFilterAndProjectMinOutputPageSize(new DataSize(500, KILOBYTE))
                 .setFilterAndProjectMinOutputPageRowCount(256)
                 .setUseMarkDistinct(true)
@@ -155,6 +159,14 @@ public class TestFeaturesConfig
                 .setPushdownDereferenceEnabled(false)
                 .setIndexLoaderTimeout(new Duration(20, SECONDS))
                 .setOptimizedRepartitioningEnabled(false)
+                .setOptimizedRepartitioningBitPackingEnabled(false)
+                .setPartitionedOutputHotKeyDetectionEnabled(false)
+                .setLockFreeLocalExchangeEnabled(false)
+                .setOptimizedRepartitioningDictionaryEncodingEnabled(false)
+                .setExchangePageCoalescingEnabled(false)
+                .setExchangeMinOutputPageSize(new DataSize(500, KILOBYTE))
+                .setExchangeMinOutputPageRowCount(256)
+                .setExchangeMaxOutputPageSize(new DataSize(4, MEGABYTE))
                 .setListBuiltInFunctionsOnly(true)
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.AUTOMATIC)
                 .setExperimentalFunctionsEnabled(false)
@@ -249,7 +261,10 @@ public class TestFeaturesConfig
                 .setEagerPlanValidationEnabled(false)
                 .setEagerPlanValidationThreadPoolSize(20)
                 .setPrestoSparkExecutionEnvironment(false)
-                .setSingleNodeExecutionEnabled(false));
+                .setSingleNodeExecutionEnabled(false)
+                .setJoinHashTableOffHeapEnabled(false)
+                .setJoinHashBuildParallelism(1)
+                .setJoinHashBuildThreads(Runtime.getRuntime().availableProcessors()));
     }
 
     @Test
@@ -266,6 +281,7 @@ public class TestFeaturesConfig
                 .put("dynamic-filtering-max-per-driver-row-count", "256")
                 .put("dynamic-filtering-max-per-driver-size", "64kB")
                 .put("dynamic-filtering-range-row-limit-per-driver", "1000")
+                .put("dynamic-filtering-max-bloom-filter-size-per-driver", "2MB")
                 .put("fragment-result-cache.enabled", "true")
                 .put("experimental.enable-stats-calculator", "false")
                 .put("experimental.enable-stats-collection-for-temporary-table", "true")
@@ -308,6 +324,7 @@ public class TestFeaturesConfig
                 .put("optimizer.optimize-mixed-distinct-aggregations", "true")
                 .put("optimizer.push-table-write-through-union", "false")
                 .put("optimizer.dictionary-aggregation", "true")
+                .put("fixed-width-group-by-hash-enabled", "true")
                 .put("optimizer.confidence-based-broadcast", "true")
                 .put("optimizer.retry-query-with-history-based-optimization", "true")
                 .put("optimizer.treat-low-confidence-zero-estimation-as-unknown", "true")
@@ -330,6 +347,7 @@ public class TestFeaturesConfig
                 .put("optimizer.enable-intermediate-aggregations", "true")
                 .put("optimizer.force-single-node-output", "false")
                 .put("pages-index.eager-compaction-enabled", "true")
+                .put("pages-index.prefix-sort-enabled", "false")
                 .put("experimental.filter-and-project-min-output-page-size", "1MB")
                 .put("experimental.filter-and-project-min-output-page-row-count", "2048")
                 .put("optimizer.use-mark-distinct", "false")
@@ -353,6 +371,14 @@ public class TestFeaturesConfig
                 .put("experimental.pushdown-dereference-enabled", "true")
                 .put("index-loader-timeout", "10s")
                 .put("experimental.optimized-repartitioning", "true")
+                .put("experimental.optimized-repartitioning-bit-packing-enabled", "true")
+                .put("experimental.partitioned-output-hot-key-detection-enabled", "true")
+                .put("experimental.lock-free-local-exchange-enabled", "true")
+                .put("experimental.optimized-repartitioning-dictionary-encoding-enabled", "true")
+                .put("experimental.exchange-page-coalescing-enabled", "true")
+                .put("experimental.exchange-min-output-page-size", "1MB")
+                .put("experimental.exchange-min-output-page-row-count", "1024")
+                .put("experimental.exchange-max-output-page-size", "8MB")
                 .put("list-built-in-functions-only", "false")
                 .put("partitioning-precision-strategy", "PREFER_EXACT_PARTITIONING")
                 .put("experimental-functions-enabled", "true")
@@ -448,6 +474,9 @@ public class TestFeaturesConfig
                 .put("eager-plan-validation-thread-pool-size", "2")
                 .put("presto-spark-execution-environment", "true")
                 .put("single-node-execution-enabled", "true")
+                .put("join-hash-table-off-heap-enabled", "true")
+                .put("join-hash-build-parallelism", "4")
+                .put("join-hash-build-threads", "3")
                 .build();
 
         FeaturesConfig expected = new FeaturesConfig()
@@ -461,6 +490,7 @@ public class TestFeaturesConfig
                 .setDynamicFilteringMaxPerDriverRowCount(256)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(64, KILOBYTE))
                 .setDynamicFilteringRangeRowLimitPerDriver(1000)
+                .setDynamicFilteringMaxBloomFilterSizePerDriver(new DataSize(2, MEGABYTE))
                 .setFragmentResultCachingEnabled(true)
                 .setEnableStatsCalculator(false)
                 .setEnableStatsCollectionForTemporaryTable(true)
@@ -502,6 +532,7 @@ public class TestFeaturesConfig
                 .setOptimizeMixedDistinctAggregations(true)
                 .setPushTableWriteThroughUnion(false)
                 .setDictionaryAggregation(true)
+                .setFixedWidthGroupByHashEnabled(true)
                 .setConfidenceBasedBroadcastEnabled(true)
                 .setRetryQueryWithHistoryBasedOptimizationEnabled(true)
                 .setTreatLowConfidenceZeroEstimationAsUnknownEnabled(true)
@@ -524,6 +555,7 @@ public class TestFeaturesConfig
                 .setEnableIntermediateAggregations(true)
                 .setForceSingleNodeOutput(false)
                 .setPagesIndexEagerCompactionEnabled(true)
+                .setPagesIndexPrefixSortEnabled(false)
                 .setFilterAndProjectMinOutputPageSize(new DataSize(1, MEGABYTE))
                 .setFilterAndProjectMinOutputPageRowCount(2048)
                 .setUseMarkDistinct(false)
@@ -548,6 +580,14 @@ public class TestFeaturesConfig
                 .setPushdownDereferenceEnabled(true)
                 .setIndexLoaderTimeout(new Duration(10, SECONDS))
                 .setOptimizedRepartitioningEnabled(true)
+                .setOptimizedRepartitioningBitPackingEnabled(true)
+                .setPartitionedOutputHotKeyDetectionEnabled(true)
+                .setLockFreeLocalExchangeEnabled(true)
+                .setOptimizedRepartitioningDictionaryEncodingEnabled(true)
+                .setExchangePageCoalescingEnabled(true)
+                .setExchangeMinOutputPageSize(new DataSize(1, MEGABYTE))
+                .setExchangeMinOutputPageRowCount(1024)
+                .setExchangeMaxOutputPageSize(new DataSize(8, MEGABYTE))
                 .setListBuiltInFunctionsOnly(false)
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.PREFER_EXACT_PARTITIONING)
                 .setExperimentalFunctionsEnabled(true)
@@ -643,7 +683,10 @@ public class TestFeaturesConfig
                 .setEagerPlanValidationEnabled(true)
                 .setEagerPlanValidationThreadPoolSize(2)
                 .setPrestoSparkExecutionEnvironment(true)
-                .setSingleNodeExecutionEnabled(true);
+                .setSingleNodeExecutionEnabled(true)
+                .setJoinHashTableOffHeapEnabled(true)
+                .setJoinHashBuildParallelism(4)
+                .setJoinHashBuildThreads(3);
         assertFullMapping(properties, expected);
     }
 
@@ -37,9 +37,11 @@ public class TestJavaFeaturesConfig
                 .setOrderByAggregationSpillEnabled(true)
                 .setWindowSpillEnabled(true)
                 .setOrderBySpillEnabled(true)
+                .setOrderByRevokeCompressionEnabled(false)
                 .setTopNSpillEnabled(true)
                 .setAggregationOperatorUnspillMemoryLimit(DataSize.valueOf("4MB"))
-                .setTopNOperatorUnspillMemoryLimit(DataSize.valueOf("4MB")));
+                .setTopNOperatorUnspillMemoryLimit(DataSize.valueOf("4MB"))
+                .setWindowOperatorUnspillMemoryLimit(DataSize.valueOf("4MB")));
     }
 
     @Test
@@ -54,9 +56,11 @@ public class TestJavaFeaturesConfig
                 .put("experimental.order-by-aggregation-spill-enabled", "false")
                 .put("experimental.window-spill-enabled", "false")
                 .put("experimental.order-by-spill-enabled", "false")
+                .put("experimental.order-by-revoke-compression-enabled", "true")
                 .put("experimental.topn-spill-enabled", "false")
                 .put("experimental.aggregation-operator-unspill-memory-limit", "100MB")
                 .put("experimental.topn-operator-unspill-memory-limit", "100MB")
+                .put("experimental.window-operator-unspill-memory-limit", "100MB")
                 .build();
 
         JavaFeaturesConfig expected = new JavaFeaturesConfig()
@@ -68,9 +72,11 @@ public class TestJavaFeaturesConfig
                 .setOrderByAggregationSpillEnabled(false)
                 .setWindowSpillEnabled(false)
                 .setOrderBySpillEnabled(false)
+                .setOrderByRevokeCompressionEnabled(true)
                 .setTopNSpillEnabled(false)
                 .setAggregationOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"))
-                .setTopNOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"));
+                .setTopNOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"))
+                .setWindowOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"));
         assertFullMapping(properties, expected);
     }
 }
@@ -16,8 +16,11 @@ package com.facebook.presto.sql.planner;
 
 import com.facebook.presto.Session;
 import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.ValueSet;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
+import com.facebook.presto.operator.BlockedBloomFilter;
 import com.facebook.presto.spi.plan.JoinNode;
 import com.facebook.presto.spi.relation.VariableReferenceExpression;
 import com.facebook.presto.sql.Optimizer;
@@ -35,6 +38,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import static com.facebook.presto.SystemSessionProperties.ENABLE_DYNAMIC_FILTERING;
@@ -46,6 +50,7 @@ import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.testing.assertions.Assert.assertEquals;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestLocalDynamicFilter
         extends BasePlanTest
@@ -123,6 +128,57 @@ public class TestLocalDynamicFilter
                 new VariableReferenceExpression(Optional.empty(), "a", INTEGER), Domain.multipleValues(INTEGER, ImmutableList.of(10L, 20L)))));
     }
 
+    @Test
+    public void testBloomFilterPartitions()
+            throws ExecutionException, InterruptedException
+    {
+        VariableReferenceExpression probeVariable = new VariableReferenceExpression(Optional.empty(), "a", BIGINT);
+        LocalDynamicFilter filter = new LocalDynamicFilter(
+                ImmutableMultimap.of("123", new DynamicFilterPlaceholder("123", probeVariable, EQUAL)),
+                ImmutableMap.of("123", 0),
+                3);
+        BiConsumer<TupleDomain<String>, Map<String, BlockedBloomFilter>> consumer = filter.getPartitionConsumer();
+        ListenableFuture<Map<VariableReferenceExpression, BlockedBloomFilter>> bloomFilters = filter.getBloomFiltersFuture();
+
+        // one partition gave up on exact values, the others stayed small or saw no rows
+        BlockedBloomFilter partitionBloomFilter = new BlockedBloomFilter(BIGINT, 16);
+        for (long value = 1000; value < 2000; value++) {
+            partitionBloomFilter.add(value);
+        }
+        consumer.accept(
+                TupleDomain.withColumnDomains(ImmutableMap.of("123", Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 1000L, true, 1999L, true)), false))),
+                ImmutableMap.of("123", partitionBloomFilter));
+        consumer.accept(TupleDomain.withColumnDomains(ImmutableMap.of("123", Domain.multipleValues(BIGINT, ImmutableList.of(5L, 7L)))), ImmutableMap.of());
+        assertFalse(bloomFilters.isDone());
+        consumer.accept(TupleDomain.none(), ImmutableMap.of());
+
+        BlockedBloomFilter union = bloomFilters.get().get(probeVariable);
+        assertEquals(union.getBlockCount(), 16);
+        for (long value = 1000; value < 2000; value++) {
+            assertTrue(union.mightContain(value));
+        }
+        assertTrue(union.mightContain(5L));
+        assertTrue(union.mightContain(7L));
+        assertTrue(filter.getResultFuture().isDone());
+    }
+
+    @Test
+    public void testBloomFilterDroppedWhenPartitionGivesUp()
+            throws ExecutionException, InterruptedException
+    {
+        LocalDynamicFilter filter = new LocalDynamicFilter(
+                ImmutableMultimap.of("123", new DynamicFilterPlaceholder("123", new VariableReferenceExpression(Optional.empty(), "a", BIGINT), EQUAL)),
+                ImmutableMap.of("123", 0),
+                2);
+        BiConsumer<TupleDomain<String>, Map<String, BlockedBloomFilter>> consumer = filter.getPartitionConsumer();
+
+        consumer.accept(TupleDomain.all(), ImmutableMap.of("123", new BlockedBloomFilter(BIGINT, 1)));
+        consumer.accept(TupleDomain.all(), ImmutableMap.of());
+
+        assertEquals(filter.getBloomFiltersFuture().get(), ImmutableMap.of());
+        assertEquals(filter.getResultFuture().get(), TupleDomain.all());
+    }
+
     @Test
     public void testNone()
             throws ExecutionException, InterruptedException
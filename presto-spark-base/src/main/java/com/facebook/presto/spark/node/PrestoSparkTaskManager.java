@@ -85,6 +85,12 @@ public class PrestoSparkTaskManager
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public TaskInfo addSources(TaskId taskId, List<TaskSource> sources)
+    {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public TaskInfo cancelTask(TaskId taskId)
     {
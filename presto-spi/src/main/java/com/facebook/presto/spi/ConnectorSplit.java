@@ -64,4 +64,13 @@ public interface ConnectorSplit
     {
         return SplitWeight.standard();
     }
+
+    /**
+     * Whether reading the split mostly waits on blocking I/O, such as a remote database result set,
+     * rather than using CPU. Workers may run such splits on separate threads.
+     */
+    default boolean isBlockingIo()
+    {
+        return false;
+    }
 }
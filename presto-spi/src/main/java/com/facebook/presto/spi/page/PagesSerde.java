@@ -14,7 +14,15 @@
 package com.facebook.presto.spi.page;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockEncodingSerde;
+import com.facebook.presto.common.block.ByteArrayBlock;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.Int128ArrayBlock;
+import com.facebook.presto.common.block.IntArrayBlock;
+import com.facebook.presto.common.block.LongArrayBlock;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.facebook.presto.common.block.ShortArrayBlock;
 import com.facebook.presto.spi.spiller.SpillCipher;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
@@ -50,6 +58,8 @@ public class PagesSerde
     private final boolean checksumEnabled;
 
     private byte[] compressionBuffer;
+    // reused for pages whose blocks were copied out of it, see isCopiedFromInput
+    private byte[] decompressionBuffer;
 
     public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<PageCompressor> compressor, Optional<PageDecompressor> decompressor, Optional<SpillCipher> spillCipher)
     {
@@ -96,26 +106,62 @@ public class PagesSerde
             checkState(decompressor.isPresent(), "Page is compressed, but decompressor is missing");
 
             int uncompressedSize = serializedPage.getUncompressedSizeInBytes();
-            ByteBuffer decompressionBuffer = ByteBuffer.allocate(uncompressedSize);
+            byte[] buffer = ensureCapacity(decompressionBuffer, uncompressedSize);
+            // the buffer is only given back once it is known that the page does not share it
+            decompressionBuffer = null;
+            ByteBuffer output = ByteBuffer.wrap(buffer, 0, uncompressedSize);
+
+            decompressor.get().decompress(slice.toByteBuffer(), output);
+            ((Buffer) output).flip();
+            checkState(output.remaining() == uncompressedSize, "page size changed after decompression into decompressionBuffer");
+
+            Page page = readRawPage(serializedPage.getPositionCount(), Slices.wrappedBuffer(buffer, 0, uncompressedSize).getInput(), blockEncodingSerde);
+            if (isCopiedFromInput(page)) {
+                decompressionBuffer = buffer;
+            }
+            return page;
+        }
 
-            decompressor.get().decompress(slice.toByteBuffer(), decompressionBuffer);
-            ((Buffer) decompressionBuffer).flip();
-            checkState(decompressionBuffer.remaining() == uncompressedSize, "page size changed after decompression into decompressionBuffer");
+        return readRawPage(serializedPage.getPositionCount(), slice.getInput(), blockEncodingSerde);
+    }
 
-            slice = Slices.wrappedBuffer(decompressionBuffer);
+    /**
+     * Returns true if the blocks of the page hold their own copy of the data they were read from.
+     * Variable width blocks, for example, are slices of the input and keep it alive.
+     */
+    private static boolean isCopiedFromInput(Page page)
+    {
+        for (int channel = 0; channel < page.getChannelCount(); channel++) {
+            if (!isCopiedFromInput(page.getBlock(channel))) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        return readRawPage(serializedPage.getPositionCount(), slice.getInput(), blockEncodingSerde);
+    private static boolean isCopiedFromInput(Block block)
+    {
+        if (block instanceof RunLengthEncodedBlock) {
+            return isCopiedFromInput(((RunLengthEncodedBlock) block).getValue());
+        }
+        if (block instanceof DictionaryBlock) {
+            return isCopiedFromInput(((DictionaryBlock) block).getDictionary());
+        }
+        return block instanceof LongArrayBlock ||
+                block instanceof IntArrayBlock ||
+                block instanceof ShortArrayBlock ||
+                block instanceof ByteArrayBlock ||
+                block instanceof Int128ArrayBlock;
     }
 
     public long getSizeInBytes()
     {
-        return compressionBuffer == null ? 0 : compressionBuffer.length;
+        return (compressionBuffer == null ? 0 : compressionBuffer.length) + (decompressionBuffer == null ? 0 : decompressionBuffer.length);
     }
 
     public long getRetainedSizeInBytes()
     {
-        return sizeOf(compressionBuffer);
+        return sizeOf(compressionBuffer) + sizeOf(decompressionBuffer);
     }
 
     private SerializedPage wrapSlice(Slice slice, int positionCount)